@@ -0,0 +1,2 @@
+create table if not exists benchEntity (id bigint primary key, num integer, name varchar(255), value bigint);
+create index if not exists idx_benchEntity_num on benchEntity (num);
@@ -0,0 +1,44 @@
+package dbcache.benchmark;
+
+import dbcache.benchmark.model.BenchEntity;
+import dbcache.conf.CfgConstants;
+import dbcache.conf.PersistType;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * 基准测试Spring容器
+ * <br/>使用内存H2数据库(AnsiSqlDialect),同一个fork内只启动一次
+ * <br/>实体的入库方式在启动前通过系统属性指定,一个fork只能测试一种入库方式
+ */
+public class BenchmarkContext {
+
+	/** 配置文件 */
+	private static final String CONFIG_LOCATION = "applicationContext-benchmark.xml";
+
+	/** 测试实体入库方式的系统属性 */
+	public static final String PERSIST_TYPE_PROPERTY = CfgConstants.PERSIST_TYPE_PREFIX + BenchEntity.class.getName();
+
+	private static ClassPathXmlApplicationContext context;
+
+	private static PersistType contextPersistType;
+
+
+	/**
+	 * 获取测试使用的缓存服务
+	 * @param persistType 测试实体的入库方式
+	 * @return
+	 * @throws IllegalStateException 当前fork已使用其他入库方式启动时抛出
+	 */
+	public static synchronized BenchmarkServices getServices(PersistType persistType) {
+		if (context == null) {
+			System.setProperty(PERSIST_TYPE_PROPERTY, persistType.name());
+			context = new ClassPathXmlApplicationContext(CONFIG_LOCATION);
+			context.registerShutdownHook();
+			contextPersistType = persistType;
+		} else if (contextPersistType != persistType) {
+			throw new IllegalStateException("当前fork已使用入库方式" + contextPersistType + "启动");
+		}
+		return context.getBean(BenchmarkServices.class);
+	}
+
+}
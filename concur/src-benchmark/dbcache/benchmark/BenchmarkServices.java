@@ -0,0 +1,75 @@
+package dbcache.benchmark;
+
+import dbcache.DbCacheService;
+import dbcache.benchmark.model.BenchEntity;
+import dbcache.support.jdbc.JdbcSupport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 基准测试使用的缓存服务
+ * <br/>由DbCacheInjectProcessor注入,入库方式由启动时的系统属性决定
+ * @see BenchmarkContext#PERSIST_TYPE_PROPERTY
+ */
+@Component
+public class BenchmarkServices {
+
+	/** 等待入库完成的最长时间(毫秒) */
+	private static final long PERSIST_WAIT_MILLIS = 60000;
+
+	private DbCacheService<BenchEntity, Long> service;
+
+	@Autowired
+	private JdbcSupport jdbcSupport;
+
+	/** 已准备的实体数量 */
+	private int preparedCount;
+
+
+	/**
+	 * 获取测试实体的缓存服务
+	 * @return
+	 */
+	public DbCacheService<BenchEntity, Long> getService() {
+		return this.service;
+	}
+
+
+	/**
+	 * 准备测试数据,创建id为1~count的实体并等待入库完成
+	 * @param count 实体数量
+	 * @param indexValues 索引值个数
+	 */
+	public synchronized void prepare(int count, int indexValues) {
+		if (this.preparedCount >= count) {
+			return;
+		}
+		for (long id = this.preparedCount + 1; id <= count; id++) {
+			BenchEntity entity = new BenchEntity();
+			entity.setId(id);
+			entity.setNum((int) (id % indexValues));
+			entity.setName("bench" + id);
+			this.service.submitCreate(entity);
+		}
+		this.awaitPersist(count);
+		this.preparedCount = count;
+	}
+
+
+	// 等待最后一个实体入库
+	private void awaitPersist(long lastId) {
+		long deadline = System.currentTimeMillis() + PERSIST_WAIT_MILLIS;
+		while (this.jdbcSupport.get(BenchEntity.class, lastId) == null) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("等待测试数据入库超时");
+			}
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+}
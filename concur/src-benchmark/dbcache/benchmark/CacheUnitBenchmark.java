@@ -0,0 +1,71 @@
+package dbcache.benchmark;
+
+import dbcache.cache.CacheUnit;
+import dbcache.conf.CacheType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各CacheUnit实现的基准测试
+ * <br/>键空间为容量的2倍,get包含命中和未命中
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheUnitBenchmark {
+
+	/** 缓存容量 */
+	private static final int CACHE_SIZE = 10000;
+
+	@Param({ "LRU", "LRU1", "WEEKMAP" })
+	public String cacheType;
+
+	private CacheUnit cacheUnit;
+
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		CacheType type = CacheType.valueOf(this.cacheType);
+		this.cacheUnit = (CacheUnit) type.getCacheClass().newInstance();
+		this.cacheUnit.init("BENCHMARK_" + this.cacheType, CACHE_SIZE, Runtime.getRuntime().availableProcessors());
+		for (long key = 1; key <= CACHE_SIZE; key++) {
+			this.cacheUnit.put(key, key);
+		}
+	}
+
+
+	@Benchmark
+	public Object get(ThreadState state) {
+		return this.cacheUnit.get(state.nextId(CACHE_SIZE * 2));
+	}
+
+
+	@Benchmark
+	public Object put(ThreadState state) {
+		long key = state.nextId(CACHE_SIZE * 2);
+		return this.cacheUnit.put(key, key);
+	}
+
+
+	@Benchmark
+	public Object putIfAbsent(ThreadState state) {
+		long key = state.nextId(CACHE_SIZE * 2);
+		return this.cacheUnit.putIfAbsent(key, key);
+	}
+
+}
@@ -0,0 +1,89 @@
+package dbcache.benchmark;
+
+import dbcache.DbCacheService;
+import dbcache.benchmark.model.BenchEntity;
+import dbcache.cache.CacheUnit;
+import dbcache.conf.PersistType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DbCacheServiceImpl热点路径基准测试
+ * <br/>get命中/未命中(从数据库加载), listByIndex, 多线程争用下的submitUpdate
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DbCacheServiceBenchmark {
+
+	/** 实体数量 */
+	static final int ENTITY_COUNT = 10000;
+
+	/** 索引值个数 */
+	static final int INDEX_VALUES = 100;
+
+	/** 争用的热点实体数量 */
+	static final int HOT_COUNT = 16;
+
+	private DbCacheService<BenchEntity, Long> service;
+
+	private CacheUnit cacheUnit;
+
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkServices services = BenchmarkContext.getServices(PersistType.INTIME);
+		services.prepare(ENTITY_COUNT, INDEX_VALUES);
+		this.service = services.getService();
+		this.cacheUnit = this.service.getCacheUnit();
+		// 预热缓存
+		for (long id = 1; id <= ENTITY_COUNT; id++) {
+			this.service.get(id);
+		}
+	}
+
+
+	@Benchmark
+	public Object getHit(ThreadState state) {
+		return this.service.get(state.nextId(ENTITY_COUNT));
+	}
+
+
+	@Benchmark
+	public Object getMiss(ThreadState state) {
+		long id = state.nextId(ENTITY_COUNT);
+		this.cacheUnit.evict(id);
+		return this.service.get(id);
+	}
+
+
+	@Benchmark
+	public Object listByIndex(ThreadState state) {
+		return this.service.listByIndex(BenchEntity.NUM_INDEX, state.nextInt(INDEX_VALUES));
+	}
+
+
+	@Benchmark
+	@Threads(4)
+	public void submitUpdateContended(ThreadState state) {
+		BenchEntity entity = this.service.get(state.nextId(HOT_COUNT));
+		entity.setValue(entity.getValue() + 1);
+		this.service.submitUpdate(entity);
+	}
+
+}
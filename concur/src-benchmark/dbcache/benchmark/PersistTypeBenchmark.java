@@ -0,0 +1,64 @@
+package dbcache.benchmark;
+
+import dbcache.DbCacheService;
+import dbcache.benchmark.model.BenchEntity;
+import dbcache.conf.PersistType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各入库方式(PersistType)的提交更新基准测试
+ * <br/>每个persistType参数在单独的fork中运行,测试实体使用该入库方式
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistTypeBenchmark {
+
+	@Param({ "INTIME", "DELAY", "DELAY_BATCH", "RING_BUFFER" })
+	public String persistType;
+
+	private DbCacheService<BenchEntity, Long> service;
+
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkServices services = BenchmarkContext.getServices(PersistType.valueOf(this.persistType));
+		services.prepare(DbCacheServiceBenchmark.ENTITY_COUNT, DbCacheServiceBenchmark.INDEX_VALUES);
+		this.service = services.getService();
+	}
+
+
+	@Benchmark
+	public void submitUpdate(ThreadState state) {
+		BenchEntity entity = this.service.get(state.nextId(DbCacheServiceBenchmark.ENTITY_COUNT));
+		entity.setValue(entity.getValue() + 1);
+		this.service.submitUpdate(entity);
+	}
+
+
+	@Benchmark
+	@Threads(4)
+	public void submitUpdateContended(ThreadState state) {
+		BenchEntity entity = this.service.get(state.nextId(DbCacheServiceBenchmark.HOT_COUNT));
+		entity.setValue(entity.getValue() + 1);
+		this.service.submitUpdate(entity);
+	}
+
+}
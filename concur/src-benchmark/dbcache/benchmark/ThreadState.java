@@ -0,0 +1,34 @@
+package dbcache.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * 线程私有的随机数,避免线程间争用同一个Random
+ */
+@State(Scope.Thread)
+public class ThreadState {
+
+	private final Random random = new Random();
+
+	/**
+	 * 获取[1, bound]范围内的随机id
+	 * @param bound 上限
+	 * @return
+	 */
+	public long nextId(int bound) {
+		return 1 + this.random.nextInt(bound);
+	}
+
+	/**
+	 * 获取[0, bound)范围内的随机数
+	 * @param bound 上限
+	 * @return
+	 */
+	public int nextInt(int bound) {
+		return this.random.nextInt(bound);
+	}
+
+}
@@ -0,0 +1,367 @@
+package dbcache.benchmark.load;
+
+import dbcache.DbCacheService;
+import dbcache.benchmark.BenchmarkContext;
+import dbcache.benchmark.BenchmarkServices;
+import dbcache.benchmark.model.BenchEntity;
+import dbcache.conf.DbRuleService;
+import dbcache.conf.PersistType;
+import dbcache.support.jdbc.SqlProfiler;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import utils.collections.concurrent.ThreadLocalRandom8;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JdbcDbAccessServiceImpl入库压测工具
+ * <br/>使用内嵌SQLite数据库(Sqlite3Dialect),依次对各入库方式按配置的操作比例、并发数和Zipf倾斜度施压,
+ * 输出吞吐量、p99延迟和写放大(实际写入行数/逻辑写操作数)
+ * <br/>实体的入库方式在进程内固定,测试多种入库方式时每种入库方式在单独的子进程中从空库开始
+ * <br/>运行: java -cp target/benchmarks.jar [-Dload.xxx=...] dbcache.benchmark.load.LoadHarness
+ * <br/>参数(系统属性):
+ * <br/>load.persistTypes 入库方式,逗号分隔,默认全部
+ * <br/>load.threads 并发线程数,默认8
+ * <br/>load.entities 预置实体数量,默认10000
+ * <br/>load.operations 每种入库方式的操作次数,默认100000
+ * <br/>load.zipf Zipf倾斜度[0, 1),0为均匀分布,默认0.99
+ * <br/>load.mix 操作比例 get:update:create,默认60:35:5
+ */
+public class LoadHarness {
+
+	/** Spring配置 */
+	private static final String CONFIG_LOCATION = "applicationContext-load.xml";
+
+	/** SQLite数据库文件,与applicationContext-load.xml一致 */
+	private static final String DB_FILE = "dbcache-load.db";
+
+	/** 索引值个数 */
+	private static final int INDEX_VALUES = 100;
+
+	/** 等待入库完成的最长时间(毫秒) */
+	private static final long DRAIN_TIMEOUT_MILLIS = 300000;
+
+	/** 子进程输出压测结果的行前缀 */
+	private static final String RESULT_PREFIX = "result: ";
+
+	private final BenchmarkServices services;
+
+	private final int threads;
+
+	private final int entities;
+
+	private final int operations;
+
+	private final int getWeight;
+
+	private final int updateWeight;
+
+	private final int createWeight;
+
+	private final ZipfianGenerator keyGenerator;
+
+	/** 写入停止多久后认为入库完成 */
+	private final long quietMillis;
+
+	/** 新建实体的id */
+	private final AtomicLong createId;
+
+
+	LoadHarness(BenchmarkServices services, DbRuleService dbRuleService) {
+		this.services = services;
+		this.threads = Integer.getInteger("load.threads", 8);
+		this.entities = Integer.getInteger("load.entities", 10000);
+		this.operations = Integer.getInteger("load.operations", 100000);
+		double theta = Double.parseDouble(System.getProperty("load.zipf", String.valueOf(ZipfianGenerator.DEFAULT_THETA)));
+		this.keyGenerator = new ZipfianGenerator(this.entities, theta);
+
+		String[] mix = System.getProperty("load.mix", "60:35:5").split(":");
+		if (mix.length != 3) {
+			throw new IllegalArgumentException("load.mix 格式应为 get:update:create");
+		}
+		this.getWeight = Integer.parseInt(mix[0].trim());
+		this.updateWeight = Integer.parseInt(mix[1].trim());
+		this.createWeight = Integer.parseInt(mix[2].trim());
+		if (this.getWeight + this.updateWeight + this.createWeight <= 0) {
+			throw new IllegalArgumentException("load.mix 比例之和必须大于0");
+		}
+
+		this.quietMillis = dbRuleService.getDelayWaitTimmer() * 2 + 2000;
+		// 新建实体的id与预置实体不重复
+		this.createId = new AtomicLong(this.entities * 100L);
+	}
+
+
+	/**
+	 * 单次压测结果
+	 */
+	static class Result {
+
+		PersistType persistType;
+
+		long operations;
+
+		long logicalWrites;
+
+		long elapsedNanos;
+
+		long p50Micros;
+
+		long p99Micros;
+
+		long maxMicros;
+
+		long writeRows;
+
+		long drainMillis;
+
+		@Override
+		public String toString() {
+			double seconds = elapsedNanos / 1e9;
+			return String.format("%-12s ops=%d, throughput=%.0f ops/s, p50=%dus, p99=%dus, max=%dus, "
+							+ "logicalWrites=%d, rowsWritten=%d, writeAmplification=%.3f, drain=%dms",
+					persistType, operations, operations / seconds, p50Micros, p99Micros, maxMicros,
+					logicalWrites, writeRows, logicalWrites > 0 ? (double) writeRows / logicalWrites : 0d,
+					drainMillis);
+		}
+	}
+
+
+	/**
+	 * 压测一种入库方式
+	 * @param persistType 入库方式
+	 * @return
+	 * @throws InterruptedException
+	 */
+	Result run(PersistType persistType) throws InterruptedException {
+		final DbCacheService<BenchEntity, Long> service = this.services.getService();
+
+		// 排除之前的入库
+		this.awaitQuiet();
+		SqlProfiler.reset();
+
+		final int perThread = this.operations / this.threads;
+		final long[][] latencies = new long[this.threads][];
+		final long[] logicalWrites = new long[this.threads];
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(this.threads);
+
+		for (int t = 0; t < this.threads; t++) {
+			final int index = t;
+			Thread thread = new Thread("load-" + persistType + "-" + t) {
+				@Override
+				public void run() {
+					long[] samples = new long[perThread];
+					long writes = 0;
+					try {
+						start.await();
+						for (int i = 0; i < perThread; i++) {
+							long begin = System.nanoTime();
+							if (execute(service)) {
+								writes++;
+							}
+							samples[i] = System.nanoTime() - begin;
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						latencies[index] = samples;
+						logicalWrites[index] = writes;
+						done.countDown();
+					}
+				}
+			};
+			thread.start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+
+		long drainStart = System.currentTimeMillis();
+		this.awaitQuiet();
+
+		Result result = new Result();
+		result.persistType = persistType;
+		result.operations = (long) perThread * this.threads;
+		result.elapsedNanos = elapsed;
+		result.drainMillis = System.currentTimeMillis() - drainStart - this.quietMillis;
+		result.writeRows = SqlProfiler.getWriteRows();
+		for (long writes : logicalWrites) {
+			result.logicalWrites += writes;
+		}
+
+		long[] all = new long[(int) result.operations];
+		int pos = 0;
+		for (long[] samples : latencies) {
+			System.arraycopy(samples, 0, all, pos, samples.length);
+			pos += samples.length;
+		}
+		Arrays.sort(all);
+		result.p50Micros = percentile(all, 50) / 1000;
+		result.p99Micros = percentile(all, 99) / 1000;
+		result.maxMicros = all.length > 0 ? all[all.length - 1] / 1000 : 0;
+		return result;
+	}
+
+
+	// 执行一次操作,返回是否为逻辑写
+	private boolean execute(DbCacheService<BenchEntity, Long> service) {
+		int total = this.getWeight + this.updateWeight + this.createWeight;
+		int dice = ThreadLocalRandom8.current().nextInt(total);
+		if (dice < this.getWeight) {
+			service.get(this.nextId());
+			return false;
+		}
+		if (dice < this.getWeight + this.updateWeight) {
+			BenchEntity entity = service.get(this.nextId());
+			if (entity == null) {
+				return false;
+			}
+			entity.setValue(entity.getValue() + 1);
+			service.submitUpdate(entity);
+			return true;
+		}
+		long id = this.createId.incrementAndGet();
+		BenchEntity entity = new BenchEntity();
+		entity.setId(id);
+		entity.setNum((int) (id % INDEX_VALUES));
+		entity.setName("load" + id);
+		service.submitCreate(entity);
+		return true;
+	}
+
+
+	// 热点id为1,2,3...
+	private long nextId() {
+		return this.keyGenerator.next() + 1;
+	}
+
+
+	// 等待写入停止(入库队列已清空)
+	private void awaitQuiet() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+		long lastRows = SqlProfiler.getWriteRows();
+		long lastChange = System.currentTimeMillis();
+		while (System.currentTimeMillis() - lastChange < this.quietMillis) {
+			if (System.currentTimeMillis() > deadline) {
+				System.err.println("等待入库完成超时, 写放大可能偏低");
+				return;
+			}
+			Thread.sleep(200);
+			long rows = SqlProfiler.getWriteRows();
+			if (rows != lastRows) {
+				lastRows = rows;
+				lastChange = System.currentTimeMillis();
+			}
+		}
+	}
+
+
+	private static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+
+	private static List<PersistType> parsePersistTypes() {
+		List<PersistType> persistTypes = new ArrayList<PersistType>();
+		String value = System.getProperty("load.persistTypes");
+		if (value == null || value.trim().isEmpty()) {
+			persistTypes.addAll(Arrays.asList(PersistType.values()));
+			return persistTypes;
+		}
+		for (String name : value.split(",")) {
+			persistTypes.add(PersistType.valueOf(name.trim().toUpperCase()));
+		}
+		return persistTypes;
+	}
+
+
+	// 在子进程中压测一种入库方式,返回压测结果
+	private static String runInChildProcess(PersistType persistType) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-Dload.persistTypes=" + persistType.name());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(LoadHarness.class.getName());
+
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		String result = null;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				System.out.println(line);
+				if (line.startsWith(RESULT_PREFIX)) {
+					result = line.substring(RESULT_PREFIX.length());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if (process.waitFor() != 0 || result == null) {
+			throw new IllegalStateException("压测子进程执行失败:" + persistType);
+		}
+		return result;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		List<PersistType> persistTypes = parsePersistTypes();
+		if (persistTypes.size() > 1) {
+			List<String> results = new ArrayList<String>(persistTypes.size());
+			for (PersistType persistType : persistTypes) {
+				results.add(runInChildProcess(persistType));
+			}
+
+			System.out.println("======== summary ========");
+			for (String result : results) {
+				System.out.println(result);
+			}
+			return;
+		}
+		PersistType persistType = persistTypes.get(0);
+
+		// 每次从空库开始
+		File dbFile = new File(DB_FILE);
+		if (dbFile.exists() && !dbFile.delete()) {
+			throw new IllegalStateException("无法删除数据库文件:" + dbFile.getAbsolutePath());
+		}
+
+		System.setProperty(BenchmarkContext.PERSIST_TYPE_PROPERTY, persistType.name());
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(CONFIG_LOCATION);
+		try {
+			// 统计全部语句的影响行数
+			SqlProfiler.setSampleRate(1);
+
+			LoadHarness harness = new LoadHarness(context.getBean(BenchmarkServices.class),
+					context.getBean(DbRuleService.class));
+			System.out.println(String.format("threads=%d, entities=%d, operations=%d, zipf=%.2f, mix(get:update:create)=%d:%d:%d",
+					harness.threads, harness.entities, harness.operations, harness.keyGenerator.getTheta(),
+					harness.getWeight, harness.updateWeight, harness.createWeight));
+
+			harness.services.prepare(harness.entities, INDEX_VALUES);
+
+			System.out.println(RESULT_PREFIX + harness.run(persistType));
+		} finally {
+			context.close();
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package dbcache.benchmark.load;
+
+import utils.collections.concurrent.ThreadLocalRandom8;
+
+/**
+ * Zipf分布的随机数生成器(Gray等人的快速算法,与YCSB相同)
+ * <br/>生成[0, items)范围内的整数,0出现的概率最高;theta越大越倾斜,theta为0时为均匀分布
+ * <br/>线程安全,使用线程本地的随机数
+ */
+public class ZipfianGenerator {
+
+	/** YCSB默认的倾斜度 */
+	public static final double DEFAULT_THETA = 0.99;
+
+	private final long items;
+
+	private final double theta;
+
+	private final double zetan;
+
+	private final double alpha;
+
+	private final double eta;
+
+	private final double halfPowTheta;
+
+
+	/**
+	 * 构造方法
+	 * @param items 元素个数
+	 * @param theta 倾斜度 [0, 1)
+	 */
+	public ZipfianGenerator(long items, double theta) {
+		if (items <= 0) {
+			throw new IllegalArgumentException("items must > 0");
+		}
+		if (theta < 0 || theta >= 1) {
+			throw new IllegalArgumentException("theta must in [0, 1)");
+		}
+		this.items = items;
+		this.theta = theta;
+		this.zetan = zeta(items, theta);
+		this.alpha = 1.0 / (1.0 - theta);
+		this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / this.zetan);
+		this.halfPowTheta = 1 + Math.pow(0.5, theta);
+	}
+
+
+	// 广义调和数 sum(1/i^theta)
+	private static double zeta(long n, double theta) {
+		double sum = 0;
+		for (long i = 1; i <= n; i++) {
+			sum += 1 / Math.pow(i, theta);
+		}
+		return sum;
+	}
+
+
+	/**
+	 * 获取下一个随机数
+	 * @return [0, items)
+	 */
+	public long next() {
+		ThreadLocalRandom8 random = ThreadLocalRandom8.current();
+		if (this.theta == 0) {
+			return (long) (random.nextDouble() * this.items);
+		}
+		double u = random.nextDouble();
+		double uz = u * this.zetan;
+		if (uz < 1.0) {
+			return 0;
+		}
+		if (uz < this.halfPowTheta) {
+			return this.items > 1 ? 1 : 0;
+		}
+		long ret = (long) (this.items * Math.pow(this.eta * u - this.eta + 1, this.alpha));
+		return ret < this.items ? ret : this.items - 1;
+	}
+
+	public long getItems() {
+		return items;
+	}
+
+	public double getTheta() {
+		return theta;
+	}
+
+}
@@ -0,0 +1,66 @@
+package dbcache.benchmark.model;
+
+import dbcache.IEntity;
+import dbcache.anno.Cached;
+import dbcache.anno.Index;
+import dbcache.conf.PersistType;
+
+import javax.persistence.Id;
+
+/**
+ * 基准测试实体
+ * <br/>入库方式由系统属性dbcache.persist.type.dbcache.benchmark.model.BenchEntity指定,一个进程只使用一种入库方式
+ * @see dbcache.benchmark.BenchmarkContext#getServices(PersistType)
+ */
+@Cached(persistType = PersistType.INTIME, enableIndex = true, entitySize = 20000)
+@javax.persistence.Entity
+public class BenchEntity implements IEntity<Long> {
+
+	/** 数值索引名 */
+	public static final String NUM_INDEX = "num_idx";
+
+	@Id
+	private Long id;
+
+	@Index(name = NUM_INDEX)
+	private int num;
+
+	private String name;
+
+	private long value;
+
+	@Override
+	public Long getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public int getNum() {
+		return num;
+	}
+
+	public void setNum(int num) {
+		this.num = num;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public long getValue() {
+		return value;
+	}
+
+	public void setValue(long value) {
+		this.value = value;
+	}
+
+}
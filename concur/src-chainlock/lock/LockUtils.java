@@ -38,9 +38,11 @@ public class LockUtils {
 			throw new IllegalArgumentException("objects不能为NULL.");
 		}
 
+		// ChainLock会修改锁列表,不能使用不可变列表
 		if(objects.length == 1) {
-			ObjectLock lock = holder.getLock(objects[0]);
-			return Collections.singletonList(lock);
+			List<ObjectLock> locks = new ArrayList<ObjectLock>(1);
+			locks.add(holder.getLock(objects[0]));
+			return locks;
 		}
 
 		// 获取锁并排序
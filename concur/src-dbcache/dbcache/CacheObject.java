@@ -47,6 +47,11 @@ public class CacheObject<T extends IEntity<?>> {
 	 */
 	private volatile boolean updateProcessing = false;
 
+	/**
+	 * 是否已写入死信日志(多次入库失败,等待重放)
+	 */
+	private volatile boolean deadLetter = false;
+
 	/**
 	 * 索引对象引用持有
 	 */
@@ -157,6 +162,14 @@ public class CacheObject<T extends IEntity<?>> {
 		this.updateProcessing = updateProcessing;
 	}
 
+	public boolean isDeadLetter() {
+		return deadLetter;
+	}
+
+	public void setDeadLetter(boolean deadLetter) {
+		this.deadLetter = deadLetter;
+	}
+
 	public AtomicReference<SimpleLinkingRunnable> getLastLinkingRunnable() {
 		return lastLinkingRunnable;
 	}
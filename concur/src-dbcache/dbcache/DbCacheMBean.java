@@ -1,5 +1,6 @@
 package dbcache;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,4 +30,18 @@ public interface DbCacheMBean {
 	 */
 	Map<String, Object> getDbPersistInfo();
 
+
+	/**
+	 * 获取Sql执行耗时采样统计
+	 * @return
+	 */
+	Map<String, String> getSqlProfileInfo();
+
+
+	/**
+	 * 获取最近的慢Sql
+	 * @return
+	 */
+	List<String> getSlowSqlInfo();
+
 }
@@ -14,7 +14,7 @@ import java.util.concurrent.ExecutorService;
  * <br/>集成了Cache,调用接口将同时修改缓存并同步到数据库
  * <br/>集成了DbIndexService,支持自动维护单列索引。需要修改数据索引,需启用dbcache.anno.Cached#enableIndex(),直接调用实体更改的方法即可
  * <br/>仅采用Hibernate的自动建表工具,数据库交互使用Jdbc,@see {@link dbcache.support.jdbc.JdbcSupport}
- * <br/>数据库交互不使用事务,需要业务逻辑维护缓存的事务性.
+ * <br/>数据库交互不使用事务,需要业务逻辑维护缓存的事务性;多个实体需要同时入库时使用{@link UnitOfWork}.
  * @author jake
  * @date 2014-7-31-下午6:06:15
  */
@@ -47,6 +47,26 @@ public interface DbCacheService<T extends IEntity<PK>, PK extends Comparable<PK>
 	T submitCreate(T entity);
 
 
+	/**
+	 * 批量提交新建实体到更新队列
+	 * <br/>主键为null的实体一次分配连续的主键,新分配主键的实体不再查询数据库
+	 * @param entities 新建实体对象集合
+	 * @return 返回保存的实体对象列表(顺序与entities一致,重复提交失败的实体不包含在内)
+	 * @throws IllegalArgumentException 如果未能识别主键类型
+	 */
+	List<T> submitCreateAll(Collection<T> entities);
+
+
+	/**
+	 * 新建实体并加入工作单元,工作单元提交时入库
+	 * @param entity 新建实体对象
+	 * @param unitOfWork 工作单元
+	 * @return 返回保存的实体对象(可能与entity不是同一个实例)
+	 * @see UnitOfWork
+	 */
+	T submitCreate(T entity, UnitOfWork unitOfWork);
+
+
 	/**
 	 * 提交实体修改任务到更新队列(默认即时入库)
 	 * @param entity 实体
@@ -54,6 +74,22 @@ public interface DbCacheService<T extends IEntity<PK>, PK extends Comparable<PK>
 	void submitUpdate(T entity);
 
 
+	/**
+	 * 将实体修改加入工作单元,工作单元提交时入库
+	 * @param entity 实体
+	 * @param unitOfWork 工作单元
+	 * @see UnitOfWork
+	 */
+	void submitUpdate(T entity, UnitOfWork unitOfWork);
+
+
+	/**
+	 * 批量提交实体修改任务到更新队列
+	 * @param entities 实体集合
+	 */
+	void submitUpdateAll(Collection<T> entities);
+
+
 	/**
 	 * 提交实体删除任务到更新队列(即时入库)
 	 * @param entity 实体
@@ -68,6 +104,22 @@ public interface DbCacheService<T extends IEntity<PK>, PK extends Comparable<PK>
 	void submitDelete(PK id);
 
 
+	/**
+	 * 将实体删除加入工作单元,工作单元提交时入库
+	 * @param entity 实体
+	 * @param unitOfWork 工作单元
+	 * @see UnitOfWork
+	 */
+	void submitDelete(T entity, UnitOfWork unitOfWork);
+
+
+	/**
+	 * 批量提交实体删除任务到更新队列
+	 * @param entities 实体集合
+	 */
+	void submitDeleteAll(Collection<T> entities);
+
+
 	/**
 	 * 根据索引获取实体列表
 	 * <br/>内部已维护索引表
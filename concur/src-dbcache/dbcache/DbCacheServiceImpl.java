@@ -9,7 +9,11 @@ import dbcache.conf.Inject;
 import dbcache.dbaccess.DbAccessService;
 import dbcache.index.DbIndexService;
 import dbcache.index.IndexValue;
+import dbcache.persist.DeadLetterLog.Operation;
+import dbcache.persist.PersistStatus;
 import dbcache.persist.service.DbPersistService;
+import dbcache.support.jdbc.JdbcCursor;
+import dbcache.support.jdbc.JdbcSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +23,7 @@ import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.stereotype.Component;
 import utils.JsonUtils;
 import utils.collections.concurrent.ConcurrentHashMapV8;
+import utils.collections.concurrent.CountingBloomFilter;
 import utils.enhance.asm.ValueGetter;
 
 import java.io.Serializable;
@@ -61,6 +66,11 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 	 */
 	private static final Logger logger = LoggerFactory.getLogger(DbCacheServiceImpl.class);
 
+	/**
+	 * 不存在主键过滤器误判率
+	 */
+	private static final double MISS_FILTER_FPP = 0.01;
+
 	/**
 	 * 实体类形
 	 * 需要外部设定值
@@ -101,11 +111,19 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 	@Qualifier("concurrentLruHashMapCache")
 	private CacheUnit cacheUnit;
 
+	@Autowired
+	private JdbcSupport jdbcSupport;
+
 	/**
 	 * 等待锁map {key:lock}
 	 */
 	private final ConcurrentMap<Object, Lock> WAITING_LOCK_MAP = new ConcurrentHashMapV8<Object, Lock>();
 
+	/**
+	 * 不存在主键过滤器,未启用时为null
+	 */
+	private volatile CountingBloomFilter missFilter;
+
 
 	@Override
 	public T get(PK id) {
@@ -138,6 +156,12 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 		if (wrapper != null) {	// 已经缓存
 			return wrapper;
 		}
+
+		// 一定不存在的主键,不查询数据库也不缓存
+		CountingBloomFilter missFilter = this.missFilter;
+		if (missFilter != null && !missFilter.mightContain(key)) {
+			return null;
+		}
 		
 		// 获取缓存唯一锁
 		Lock lock = new ReentrantLock();
@@ -165,6 +189,8 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 			// 创建缓存对象
 			CacheObject<T> cacheObject = configFactory.createCacheObject(
 					entity, clazz, indexService, key, cacheUnit, cacheConfig);
+			// 从数据库加载的实体已经是持久态
+			cacheObject.setPersistStatus(PersistStatus.PERSIST);
 			wrapper = cacheUnit.putIfAbsent(key, cacheObject);
 			
 			cacheObject = (CacheObject<T>) wrapper.get();
@@ -244,9 +270,26 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 	}
 
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public T submitCreate(T entity) {
+		return this.doCreate(entity, null);
+	}
+
+
+	@Override
+	public T submitCreate(T entity, UnitOfWork unitOfWork) {
+		return this.doCreate(entity, unitOfWork);
+	}
+
+
+	/**
+	 * 新建实体
+	 * @param entity 新建实体对象
+	 * @param unitOfWork 工作单元,为null时提交到入库服务
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	private T doCreate(T entity, UnitOfWork unitOfWork) {
 
 		// 生成主键
 		if (entity.getId() == null) {
@@ -276,15 +319,9 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 		// 存储到缓存
 		CacheObject<T> newCacheObject = configFactory.createCacheObject(entity,
 				this.clazz, indexService, key, cacheUnit, cacheConfig);
-		
-		if (wrapper == null) {										 	 // 缓存还不存在
-			wrapper = cacheUnit.putIfAbsent(key, newCacheObject);
-		} else {								 // 缓存为NULL或已经删除
-			wrapper = cacheUnit.replace(key, null, newCacheObject);
-		}
-
+		this.addToMissFilter(key);
+		CacheObject<T> curCacheObject = this.putCacheObject(key, wrapper, newCacheObject);
 
-		CacheObject<T> curCacheObject = (CacheObject<T>) wrapper.get();   // 再获取一次最新的值
 		if (curCacheObject == null) {									  // 重复提交/替换失败
 			return null;
 		}
@@ -313,15 +350,152 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 		}
 
 		// 提交持久化
-		dbPersistService.handleSave(newCacheObject, this.dbAccessService, this.cacheConfig);
+		if (unitOfWork != null) {
+			unitOfWork.add(Operation.SAVE, newCacheObject, this.cacheConfig,
+					this.dbAccessService, this.dbPersistService, key, this.cacheUnit);
+		} else {
+			dbPersistService.handleSave(newCacheObject, this.dbAccessService, this.cacheConfig);
+		}
 		
 		return newCacheObject.getProxyEntity();
 	}
 
 
-	
+
+	/**
+	 * 存储新建的缓存对象
+	 * @param key 实体id
+	 * @param wrapper 旧的缓存值
+	 * @param newCacheObject 新建的缓存对象
+	 * @return 缓存中最新的缓存对象
+	 */
+	@SuppressWarnings("unchecked")
+	private CacheObject<T> putCacheObject(PK key, ValueWrapper wrapper, CacheObject<T> newCacheObject) {
+		if (wrapper == null) {										 	 // 缓存还不存在
+			wrapper = cacheUnit.putIfAbsent(key, newCacheObject);
+		} else {								 // 缓存为NULL或已经删除
+			wrapper = cacheUnit.replace(key, null, newCacheObject);
+		}
+		return (CacheObject<T>) wrapper.get();   // 再获取一次最新的值
+	}
+
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public List<T> submitCreateAll(Collection<T> entities) {
+		if (entities == null || entities.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// 一次生成连续的主键
+		int idCount = 0;
+		for (T entity : entities) {
+			if (entity.getId() == null) {
+				idCount++;
+			}
+		}
+		Iterator<?> idIterator = null;
+		if (idCount > 0) {
+			List<?> ids = cacheConfig.getIdAutoGenerateValues(idCount);
+			if (ids == null) {
+				String msg = "提交新建实体到更新队列参数错：未能识别主键类型";
+				logger.error(msg);
+				throw new IllegalArgumentException(msg);
+			}
+			idIterator = ids.iterator();
+		}
+
+		final List<T> result = new ArrayList<T>(entities.size());
+		final List<CacheObject<T>> newCacheObjects = new ArrayList<CacheObject<T>>(entities.size());
+		for (T entity : entities) {
+
+			// 新生成的主键不需要查询数据库
+			ValueWrapper wrapper = null;
+			if (entity.getId() == null) {
+				entity.setId((PK) idIterator.next());
+			} else {
+				wrapper = this.getCacheWrapper(entity.getId());
+				CacheObject<T> oldCacheObject = wrapper != null ? (CacheObject<T>) wrapper.get() : null;
+				if (oldCacheObject != null) {							 // 缓存中已经存在实体
+					result.add(oldCacheObject.getProxyEntity());
+					continue;
+				}
+			}
+
+			// 存储到缓存
+			final PK key = entity.getId();
+			CacheObject<T> newCacheObject = configFactory.createCacheObject(entity,
+					this.clazz, indexService, key, cacheUnit, cacheConfig);
+			this.addToMissFilter(key);
+			CacheObject<T> curCacheObject = this.putCacheObject(key, wrapper, newCacheObject);
+
+			if (curCacheObject == null) {								  // 重复提交/替换失败
+				continue;
+			}
+			if (curCacheObject != newCacheObject) {						  // 并发时被抢先提交
+				result.add(curCacheObject.getProxyEntity());
+				continue;
+			}
+
+			newCacheObject.doAfterLoad();								   // 加载回调
+			newCacheObjects.add(newCacheObject);
+			result.add(newCacheObject.getProxyEntity());
+		}
+
+		if (newCacheObjects.isEmpty()) {
+			return result;
+		}
+
+		// 批量更新索引
+		if (cacheConfig.isEnableIndex()) {
+			List<EnhancedEntity> enhancedEntities = new ArrayList<EnhancedEntity>(newCacheObjects.size());
+			for (CacheObject<T> cacheObject : newCacheObjects) {
+				enhancedEntities.add((EnhancedEntity) cacheObject.getProxyEntity());
+			}
+			for (Entry<String, ValueGetter<T>> entry : cacheConfig.getIndexes().entrySet()) {
+				List<IndexValue<PK>> indexValues = new ArrayList<IndexValue<PK>>(newCacheObjects.size());
+				for (CacheObject<T> cacheObject : newCacheObjects) {
+					T entity = cacheObject.getEntity();
+					indexValues.add(IndexValue.valueOf(entry.getKey(), entry.getValue().get(entity), entity.getId()));
+				}
+				this.indexService.createAll(enhancedEntities, indexValues);
+			}
+		}
+
+		// 实体加载监听接口回调
+		if (cacheConfig.isHasLoadListeners()) {
+			for (CacheObject<T> cacheObject : newCacheObjects) {
+				for (EntityLoadListener listener : cacheConfig.getEntityLoadEventListeners()) {
+					listener.onEntityLoad(cacheObject.getEntity());
+				}
+			}
+		}
+
+		// 批量提交持久化
+		dbPersistService.handleBatchSave(newCacheObjects, this.dbAccessService, this.cacheConfig);
+
+		return result;
+	}
+
+
 	@Override
 	public void submitUpdate(T entity) {
+		this.doUpdate(entity, null);
+	}
+
+
+	@Override
+	public void submitUpdate(T entity, UnitOfWork unitOfWork) {
+		this.doUpdate(entity, unitOfWork);
+	}
+
+
+	/**
+	 * 修改实体
+	 * @param entity 实体
+	 * @param unitOfWork 工作单元,为null时提交到入库服务
+	 */
+	private void doUpdate(T entity, UnitOfWork unitOfWork) {
 
 		ValueWrapper wrapper = this.getCacheWrapper(entity.getId());
 		if (wrapper == null) {
@@ -345,21 +519,64 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 		}
 		
 		// 提交持久化任务
+		if (unitOfWork != null) {
+			unitOfWork.add(Operation.UPDATE, cacheObject, this.cacheConfig,
+					this.dbAccessService, this.dbPersistService, entity.getId(), this.cacheUnit);
+			return;
+		}
 		dbPersistService.handleUpdate(cacheObject, this.dbAccessService, this.cacheConfig);
 	}
 
 	
 
+	@Override
+	public void submitUpdateAll(Collection<T> entities) {
+		if (entities == null) {
+			return;
+		}
+		for (T entity : entities) {
+			this.submitUpdate(entity);
+		}
+	}
+
+
 	@Override
 	public void submitDelete(T entity) {
 		this.submitDelete(entity.getId());
 	}
 
 
+	@Override
+	public void submitDelete(T entity, UnitOfWork unitOfWork) {
+		this.doDelete(entity.getId(), unitOfWork);
+	}
+
+
+	@Override
+	public void submitDeleteAll(Collection<T> entities) {
+		if (entities == null) {
+			return;
+		}
+		for (T entity : entities) {
+			this.submitDelete(entity.getId());
+		}
+	}
+
+
 	
-	@SuppressWarnings("unchecked")
 	@Override
 	public void submitDelete(final PK id) {
+		this.doDelete(id, null);
+	}
+
+
+	/**
+	 * 删除实体
+	 * @param id 主键id
+	 * @param unitOfWork 工作单元,为null时提交到入库服务
+	 */
+	@SuppressWarnings("unchecked")
+	private void doDelete(final PK id, UnitOfWork unitOfWork) {
 
 		ValueWrapper wrapper = this.getCacheWrapper(id);
 		if (wrapper == null) {
@@ -376,6 +593,11 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 		if (cacheObject == wrapper.get()) {// 替换失败
 			return;
 		}
+
+		CountingBloomFilter missFilter = this.missFilter;
+		if (missFilter != null) {
+			missFilter.remove(id);
+		}
 		
 		// 更新索引
 		if (cacheConfig.isEnableIndex()) {
@@ -387,7 +609,12 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 		}
 		
 		// 提交持久化任务
-		dbPersistService.handleDelete(cacheObject, this.dbAccessService, id, this.cacheUnit);
+		if (unitOfWork != null) {
+			unitOfWork.add(Operation.DELETE, cacheObject, null,
+					this.dbAccessService, this.dbPersistService, id, this.cacheUnit);
+		} else {
+			dbPersistService.handleDelete(cacheObject, this.dbAccessService, id, this.cacheUnit);
+		}
 
 		if (cacheConfig.isEvictWhenDelete()) {
 			// 从缓存中移除
@@ -409,6 +636,54 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 				dbPersistService.logHadNotPersistEntity();
 			}
 		});
+
+		//预热不存在主键过滤器
+		if (cacheConfig.isEnableMissFilter()) {
+			this.initMissFilter();
+		}
+	}
+
+
+	/**
+	 * 读取全部主键构建不存在主键过滤器
+	 * <br/>构建失败时不启用过滤
+	 */
+	private void initMissFilter() {
+		CountingBloomFilter missFilter = new CountingBloomFilter(cacheConfig.getMissFilterSize(), MISS_FILTER_FPP);
+		JdbcCursor<Object> cursor = null;
+		try {
+			cursor = jdbcSupport.streamPrimaryKeys(this.clazz);
+			if (cursor == null) {
+				logger.error("实体[{}]主键读取失败,不启用不存在主键过滤", this.clazz.getName());
+				return;
+			}
+			int count = 0;
+			while (cursor.hasNext()) {
+				missFilter.add(cursor.next());
+				count++;
+			}
+			if (count > cacheConfig.getMissFilterSize()) {
+				logger.warn("实体[{}]主键数量{}超出不存在主键过滤器预计数量{},误判率将上升",
+						new Object[] { this.clazz.getName(), count, cacheConfig.getMissFilterSize() });
+			}
+			this.missFilter = missFilter;
+			logger.info("实体[{}]不存在主键过滤器预热完成,主键数量:{}", this.clazz.getName(), count);
+		} catch (Exception e) {
+			logger.error("实体[" + this.clazz.getName() + "]主键读取失败,不启用不存在主键过滤", e);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
+
+	// 新建实体时登记主键
+	private void addToMissFilter(PK key) {
+		CountingBloomFilter missFilter = this.missFilter;
+		if (missFilter != null) {
+			missFilter.add(key);
+		}
 	}
 
 
@@ -458,6 +733,8 @@ public class DbCacheServiceImpl<T extends IEntity<PK>, PK extends Comparable<PK>
 		toStrMap.put("proxyClazz", this.cacheConfig.getProxyClazz());
 		toStrMap.put("WAITING_LOCK_MAP_SIZE", this.WAITING_LOCK_MAP.size());
 		toStrMap.put("cacheUseSize", this.cacheUnit.getCachedSize());
+		toStrMap.put("cachePinnedSize", this.cacheUnit.getPinnedSize());
+		toStrMap.put("cachePinnedBytes", this.cacheUnit.getPinnedBytes());
 		toStrMap.put("indexServiceCacheUseSize", this.indexService.getCacheUnit().getCachedSize());
 		return JsonUtils.object2JsonString(toStrMap);
 	}
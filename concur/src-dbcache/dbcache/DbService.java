@@ -86,4 +86,39 @@ public interface DbService {
     <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> Collection<PK> listIdByIndex(Class<T> clazz, String indexName, Object indexValue);
 
 
+    /**
+     * 开始一个工作单元
+     * <br/>多个实体的新建/修改/删除加入同一工作单元后,提交时在同一事务中入库
+     * <br/>未提交的工作单元不会入库
+     * @return
+     * @see UnitOfWork
+     */
+    UnitOfWork beginUnitOfWork();
+
+
+    /**
+     * 新建实体并加入工作单元
+     * @param entity 新建实体对象
+     * @param unitOfWork 工作单元
+     * @return 返回保存的实体对象(可能与entity不是同一个实例)
+     */
+    <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> T submitCreate(T entity, UnitOfWork unitOfWork);
+
+
+    /**
+     * 将实体修改加入工作单元
+     * @param entity 实体
+     * @param unitOfWork 工作单元
+     */
+    <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> void submitUpdate(T entity, UnitOfWork unitOfWork);
+
+
+    /**
+     * 将实体删除加入工作单元
+     * @param entity 实体
+     * @param unitOfWork 工作单元
+     */
+    <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> void submitDelete(T entity, UnitOfWork unitOfWork);
+
+
 }
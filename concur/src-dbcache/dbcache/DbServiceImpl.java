@@ -2,6 +2,7 @@ package dbcache;
 
 import dbcache.anno.ThreadSafe;
 import dbcache.conf.DbConfigFactory;
+import dbcache.support.jdbc.Config;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -22,6 +23,9 @@ public class DbServiceImpl implements DbService {
     @Autowired
     private DbConfigFactory configFactory;
 
+    @Autowired
+    private Config config;
+
     @Override
     public <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> T get(Class<T> clazz, PK id) {
         return this.getDbCacheService(clazz).get(id);
@@ -62,6 +66,26 @@ public class DbServiceImpl implements DbService {
         return this.getDbCacheService(clazz).listIdByIndex(indexName, indexValue);
     }
 
+    @Override
+    public UnitOfWork beginUnitOfWork() {
+        return new UnitOfWork(config);
+    }
+
+    @Override
+    public <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> T submitCreate(T entity, UnitOfWork unitOfWork) {
+        return this.getDbCacheService(getRealClass(entity)).submitCreate(entity, unitOfWork);
+    }
+
+    @Override
+    public <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> void submitUpdate(T entity, UnitOfWork unitOfWork) {
+        this.getDbCacheService(getRealClass(entity)).submitUpdate(entity, unitOfWork);
+    }
+
+    @Override
+    public <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> void submitDelete(T entity, UnitOfWork unitOfWork) {
+        this.getDbCacheService(getRealClass(entity)).submitDelete(entity, unitOfWork);
+    }
+
     // 获取DbCacheService
     private <T extends IEntity<PK>, PK extends Comparable<PK> & Serializable> DbCacheService<T, PK> getDbCacheService(Class<T> clazz) {
         if (clazz == null) {
@@ -0,0 +1,319 @@
+package dbcache;
+
+import dbcache.cache.CacheUnit;
+import dbcache.conf.impl.CacheConfig;
+import dbcache.dbaccess.DbAccessService;
+import dbcache.persist.DeadLetterLog.Operation;
+import dbcache.persist.PersistStatus;
+import dbcache.persist.service.DbPersistService;
+import dbcache.support.jdbc.Config;
+import dbcache.support.jdbc.TransactionSynchronization;
+import lock.ChainLock;
+import lock.LockUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 多实体工作单元
+ * <br/>收集一次业务操作(如交易,合成)中修改的多个实体(可为不同类型),提交时按{@link LockUtils}的顺序锁定全部实体,
+ * 在调用线程中使用同一个jdbc事务入库,这一组修改同时成功或同时失败
+ * <br/>事务失败时回滚,并将各实体转交给原入库服务处理(重试/死信)
+ * <br/>加入工作单元的修改只在{@link #commit()}时入库,未提交的工作单元不会入库,也不会转交给入库服务,
+ * 此时缓存中已生效的修改与数据库不一致,不再需要工作单元时也应提交
+ * <br/>可在外部用LockUtils.getLock锁定相同的实体后再修改和提交,锁可重入
+ * <br/>非线程安全,一个工作单元只应在一个线程中使用
+ * @see DbService#beginUnitOfWork()
+ */
+public class UnitOfWork {
+
+	/**
+	 * logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(UnitOfWork.class);
+
+	/**
+	 * jdbc配置
+	 */
+	private final Config config;
+
+	/**
+	 * 待入库的实体 {实体缓存对象:入库项}
+	 */
+	private final Map<CacheObject<?>, Item> items = new LinkedHashMap<CacheObject<?>, Item>();
+
+	/**
+	 * 是否已提交
+	 */
+	private boolean committed = false;
+
+
+	UnitOfWork(Config config) {
+		this.config = config;
+	}
+
+
+	/**
+	 * 入库项
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static class Item {
+
+		/** 操作类型 */
+		private Operation operation;
+
+		/** 实体缓存对象 */
+		private final CacheObject cacheObject;
+
+		/** 实体配置 */
+		private final CacheConfig cacheConfig;
+
+		/** 数据库存取服务 */
+		private final DbAccessService dbAccessService;
+
+		/** 实体原入库服务 */
+		private final DbPersistService dbPersistService;
+
+		/** 主键(删除时使用) */
+		private final Object key;
+
+		/** 缓存单元(删除时使用) */
+		private final CacheUnit cacheUnit;
+
+		Item(Operation operation, CacheObject<?> cacheObject, CacheConfig<?> cacheConfig,
+			 DbAccessService dbAccessService, DbPersistService dbPersistService,
+			 Object key, CacheUnit cacheUnit) {
+			this.operation = operation;
+			this.cacheObject = cacheObject;
+			this.cacheConfig = cacheConfig;
+			this.dbAccessService = dbAccessService;
+			this.dbPersistService = dbPersistService;
+			this.key = key;
+			this.cacheUnit = cacheUnit;
+		}
+
+		// 合并同一实体的操作,删除优先于保存,保存优先于更新
+		void merge(Operation operation) {
+			if (operation == Operation.DELETE || this.operation == Operation.UPDATE) {
+				this.operation = operation;
+			}
+		}
+
+		// 在当前事务中入库
+		void persist() {
+			Object entity = this.cacheObject.getEntity();
+			switch (this.operation) {
+				case SAVE:
+					this.cacheObject.doBeforePersist(this.cacheConfig);
+					this.dbAccessService.save(entity);
+					break;
+
+				case UPDATE:
+					this.cacheObject.doBeforePersist(this.cacheConfig);
+					if (this.cacheObject.getPersistStatus() == PersistStatus.TRANSIENT) {
+						// 保存尚未入库,在事务中一并保存
+						this.dbAccessService.save(entity);
+					} else {
+						// 修改记录留给失败时的入库服务,使用全量更新
+						this.dbAccessService.update(entity);
+					}
+					break;
+
+				case DELETE:
+					this.dbAccessService.delete(entity);
+					break;
+			}
+		}
+
+		// 事务提交后更新状态,队列中尚未执行的保存将失效
+		void afterCommit() {
+			if (this.operation == Operation.DELETE) {
+				this.cacheObject.setPersistStatus(PersistStatus.DELETED);
+			} else {
+				this.cacheObject.setPersistStatus(PersistStatus.PERSIST);
+			}
+		}
+
+		// 事务失败,交给原入库服务
+		void fallback() {
+			switch (this.operation) {
+				case SAVE:
+					this.dbPersistService.handleSave(this.cacheObject, this.dbAccessService, this.cacheConfig);
+					break;
+				case UPDATE:
+					this.dbPersistService.handleUpdate(this.cacheObject, this.dbAccessService, this.cacheConfig);
+					break;
+				case DELETE:
+					this.dbPersistService.handleDelete(this.cacheObject, this.dbAccessService, this.key, this.cacheUnit);
+					break;
+			}
+		}
+
+	}
+
+
+	/**
+	 * 添加入库项
+	 * @param operation 操作类型
+	 * @param cacheObject 实体缓存对象
+	 * @param cacheConfig 实体配置
+	 * @param dbAccessService 数据库存取服务
+	 * @param dbPersistService 实体原入库服务
+	 * @param key 主键
+	 * @param cacheUnit 缓存单元
+	 */
+	void add(Operation operation, CacheObject<?> cacheObject, CacheConfig<?> cacheConfig,
+			 DbAccessService dbAccessService, DbPersistService dbPersistService,
+			 Object key, CacheUnit cacheUnit) {
+		if (this.committed) {
+			throw new IllegalStateException("工作单元已提交");
+		}
+		Item item = this.items.get(cacheObject);
+		if (item != null) {
+			item.merge(operation);
+			return;
+		}
+		this.items.put(cacheObject, new Item(operation, cacheObject, cacheConfig,
+				dbAccessService, dbPersistService, key, cacheUnit));
+	}
+
+
+	/**
+	 * 提交工作单元
+	 * <br/>锁定全部实体后在同一事务中入库
+	 * <br/>当前线程已在事务中时加入该事务,异常向外抛出;实体状态在外层事务提交后更新,
+	 * 外层事务回滚时转交原入库服务,外层事务的发起方需调用{@link Config#afterCompletion(boolean)},
+	 * 未调用就移除事务连接时按回滚处理,同样转交原入库服务
+	 * @return true 事务提交成功或已加入外层事务; false 事务已回滚,实体已转交原入库服务
+	 * @throws IllegalStateException 重复提交时抛出
+	 */
+	public boolean commit() {
+		if (this.committed) {
+			throw new IllegalStateException("工作单元已提交");
+		}
+		this.committed = true;
+		if (this.items.isEmpty()) {
+			return true;
+		}
+
+		Object[] lockObjects = new Object[this.items.size()];
+		int i = 0;
+		for (CacheObject<?> cacheObject : this.items.keySet()) {
+			lockObjects[i++] = cacheObject.getProxyEntity();
+		}
+
+		ChainLock lock = LockUtils.getLock(lockObjects);
+		lock.lock();
+		try {
+			// 加入外层事务,外层事务完成后再更新状态
+			if (this.config.getThreadLocalConnection() != null) {
+				this.config.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCompletion(boolean committed) {
+						UnitOfWork.this.afterCompletion(committed);
+					}
+				});
+				for (Item item : this.items.values()) {
+					item.persist();
+				}
+				return true;
+			}
+
+			if (this.persistInTransaction()) {
+				return true;
+			}
+
+			for (Item item : this.items.values()) {
+				item.fallback();
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	// 在新事务中入库
+	private boolean persistInTransaction() {
+		Connection conn = null;
+		boolean autoCommit = true;
+		boolean success = false;
+		try {
+			conn = this.config.getConnection();
+			autoCommit = conn.getAutoCommit();
+			conn.setTransactionIsolation(this.config.getTransactionLevel());
+			conn.setAutoCommit(false);
+			this.config.setThreadLocalConnection(conn);
+
+			for (Item item : this.items.values()) {
+				item.persist();
+			}
+			conn.commit();
+			success = true;
+		} catch (Exception e) {
+			logger.error("工作单元入库失败,回滚事务,转交入库服务处理:" + this.items.size(), e);
+			if (conn != null) {
+				try {
+					conn.rollback();
+				} catch (SQLException e1) {
+					logger.error("工作单元回滚事务失败", e1);
+				}
+			}
+			return false;
+		} finally {
+			// 触发入库过程中注册的事务完成回调
+			this.config.afterCompletion(success);
+			this.config.removeThreadLocalConnection();
+			if (conn != null) {
+				try {
+					conn.setAutoCommit(autoCommit);
+				} catch (SQLException e) {
+					logger.error("恢复连接自动提交失败", e);
+				}
+				try {
+					conn.close();
+				} catch (SQLException e) {
+					logger.error("关闭连接失败", e);
+				}
+			}
+		}
+
+		for (Item item : this.items.values()) {
+			item.afterCommit();
+		}
+		return true;
+	}
+
+
+	// 外层事务完成
+	private void afterCompletion(boolean committed) {
+		if (committed) {
+			for (Item item : this.items.values()) {
+				item.afterCommit();
+			}
+			return;
+		}
+		logger.error("外层事务已回滚,工作单元转交入库服务处理:" + this.items.size());
+		for (Item item : this.items.values()) {
+			item.fallback();
+		}
+	}
+
+
+	/**
+	 * 获取入库项数量
+	 * @return
+	 */
+	public int size() {
+		return this.items.size();
+	}
+
+	public boolean isCommitted() {
+		return committed;
+	}
+
+}
@@ -80,4 +80,19 @@ public @interface Cached {
 	 */
 	boolean evictWhenDelete() default false;
 
+	/**
+	 * 是否启用不存在主键过滤(计数布隆过滤器)
+	 * <br/>启动时读取全部主键,新建/删除时维护,查询一定不存在的主键时不再访问数据库,也不缓存NULL值
+	 * <br/>只适用于仅通过dbcache写入的表,其他途径插入的记录可能查询不到
+	 * @return
+	 */
+	boolean enableMissFilter() default false;
+
+	/**
+	 * 不存在主键过滤器的预计主键数量,默认1000000
+	 * <br/>超出后误判率(仍访问数据库)上升
+	 * @return
+	 */
+	int missFilterSize() default 1000000;
+
 }
@@ -16,5 +16,15 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface JsonType {
-	
+
+	/**
+	 * 是否延迟解析
+	 * <br/>启用后缓存加载实体时只保留字段原始值,第一次通过代理对象调用读取或修改该属性的方法时才解析(只给该属性赋值的set方法不解析),
+	 * 未解析过的属性入库时直接写回原始值;EntityInitializer回调和EntityLoadListener拿到的是原始实体,不能使用延迟解析的属性
+	 * <br/>属性必须声明在实体类本身,不支持声明在父类(如@MappedSuperclass)中
+	 * @see dbcache.support.jdbc.LazyJsonFields
+	 * @return
+	 */
+	boolean lazy() default false;
+
 }
@@ -1,9 +1,19 @@
 package dbcache.anno;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
 /**
  * 带缓存的查询语句注解
+ * <br/>标注在查询接口的方法上,由QueryRepositoryFactory生成基于JdbcSupport的实现
+ * <br/>返回值支持: List/Collection(实体、Object[]、List或单列值),单个实体,单列值,JdbcCursor(实体);
+ * 非select语句返回void/boolean
  * Created by Jake on 2015/8/1.
  */
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
 public @interface Query {
 
     /**
@@ -12,4 +22,24 @@ public @interface Query {
      */
     String value();
 
+    /**
+     * 是否缓存查询结果(按参数缓存,相关实体变更时失效)
+     * <br/>返回实体的查询只支持@Cached实体,只缓存主键,返回的是实体缓存中的实体
+     * @return
+     */
+    boolean cache() default false;
+
+    /**
+     * 查询结果缓存数量
+     * @return
+     */
+    int cacheSize() default 1000;
+
+    /**
+     * 查询结果依赖的实体类,这些实体变更时缓存失效;非select语句执行后使这些实体相关的缓存失效
+     * <br/>为空时使用返回值的实体类型
+     * @return
+     */
+    Class<?>[] entities() default {};
+
 }
@@ -67,6 +67,18 @@ public interface CacheUnit {
 	 */
 	int getCachedSize();
 
+	/**
+	 * 获取淘汰时因未入库而固定的对象数量
+	 * @return
+	 */
+	int getPinnedSize();
+
+	/**
+	 * 获取固定对象估算占用的字节数
+	 * @return
+	 */
+	long getPinnedBytes();
+
 
 	/**
 	 * 获取缓存单元名称
@@ -13,6 +13,7 @@ import java.lang.ref.ReferenceQueue;
 /**
  * Apache ConcurrentLRUCache缓存容器
  * 如果外部持有缓存对象的引用,对象将不会被回收
+ * 淘汰时还未入库的对象将被固定,入库完成后才可回收
  * @author jake
  * @date 2014-7-31-下午8:24:23
  */
@@ -39,6 +40,11 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 	 */
 	private ConcurrentReferenceHashMap<Object, Object> evictions;
 
+	/**
+	 * 淘汰时未入库的实体
+	 */
+	private DirtyEntryPinning pinning;
+
 
 	/**
 	 * 初始化
@@ -50,6 +56,7 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 
 		this.name = name;
 		this.evictions = new ConcurrentReferenceHashMap<Object, Object>(ReferenceType.STRONG, ReferenceType.WEAK);
+		this.pinning = new DirtyEntryPinning(this.evictions);
 
 		int size = (entityCacheSize * 4 + 3) / 3;
 		this.store = new ConcurrentLRUCache<Object, ValueWrapper>(size, entityCacheSize, (int) Math
@@ -59,7 +66,7 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 			@Override
 			public void evictedEntry(Object key, ValueWrapper value) {
 				if (value.get() != null) {
-					evictions.put(key, value.get());
+					pinning.onEvicted(key, value.get());
 				}
 			}
 
@@ -80,6 +87,20 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 		if(value != null) {
 			return (ValueWrapper) fromStoreValue(value);
 		}
+		value = this.pinning.get(key);
+		if(value != null) {
+			// 添加到主缓存
+			this.putIfAbsent(key, value);
+			// 解除固定
+			this.pinning.remove(key, value);
+
+			return this.get(key);
+		}
+		if(this.pinning.isDeleted(key)) {
+			// 删除未入库,不能从数据库重新加载
+			this.store.putIfAbsent(key, NULL_HOLDER);
+			return this.get(key);
+		}
 		value = this.evictions.get(key);
 		if(value != null) {
 			// 添加到主缓存
@@ -95,6 +116,9 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 
 	@Override
 	public ValueWrapper put(Object key, Object value) {
+		if (value != null) {
+			this.pinning.onRestored(key);
+		}
 		return this.store.put(key, toStoreValue(value));
 	}
 
@@ -110,7 +134,13 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 
 	@Override
 	public ValueWrapper replace(Object key, Object oldValue, Object newValue) {
-		this.store.replace(key, toStoreValue(oldValue), toStoreValue(newValue));
+		if (this.store.replace(key, toStoreValue(oldValue), toStoreValue(newValue))) {
+			if (newValue == null) {
+				this.pinning.onDeleted(key, oldValue);
+			} else if (oldValue == null) {
+				this.pinning.onRestored(key);
+			}
+		}
 		return this.get(key);
 	}
 
@@ -119,11 +149,16 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 	public ValueWrapper evict(Object key) {
 		ValueWrapper value = this.store.remove(key);
 		Object value1 = this.evictions.remove(key);
+		// 未入库的实体不能丢弃
+		if (value != null && DirtyEntryPinning.isDirty(value.get())) {
+			this.pinning.onEvicted(key, value.get());
+		}
 		return value == null ? SimpleValueWrapper.valueOf(value1) : value;
 	}
 
 	@Override
 	public ValueWrapper remove(Object key) {
+		this.pinning.remove(key);
 		return this.store.remove(key);
 	}
 
@@ -131,6 +166,7 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 	public void clear() {
 		this.store.clear();
 		this.evictions.clear();
+		this.pinning.clear();
 	}
 
 
@@ -163,6 +199,16 @@ public class ConcurrentLruHashMapCache implements CacheUnit {
 		return store.size();
 	}
 
+	@Override
+	public int getPinnedSize() {
+		return this.pinning.getPinnedSize();
+	}
+
+	@Override
+	public long getPinnedBytes() {
+		return this.pinning.getPinnedBytes();
+	}
+
 	@Override
 	public String getName() {
 		return this.name;
@@ -351,6 +351,17 @@ public class ConcurrentWeekHashMapCache implements CacheUnit {
 		return store.size();
 	}
 
+	@Override
+	public int getPinnedSize() {
+		// 弱引用缓存不固定对象
+		return 0;
+	}
+
+	@Override
+	public long getPinnedBytes() {
+		return 0;
+	}
+
 	@Override
 	public String getName() {
 		return this.name;
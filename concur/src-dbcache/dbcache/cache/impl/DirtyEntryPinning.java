@@ -0,0 +1,258 @@
+package dbcache.cache.impl;
+
+import dbcache.CacheObject;
+import dbcache.persist.PersistStatus;
+import dbcache.utils.ObjectSizeEstimator;
+import utils.collections.concurrent.ConcurrentHashMapV8;
+import utils.collections.concurrent.ConcurrentReferenceHashMap;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 淘汰时固定未入库的缓存对象
+ * <br/>缓存容器淘汰的对象如果还有未完成的入库(保存未执行或有排队中的更新),使用强引用保存,
+ * 入库完成后再转移到弱引用的淘汰缓存,避免对象被回收后重新加载到数据库中的旧数据
+ * <br/>已写入死信日志的保存由死信日志保留数据,不再固定
+ * <br/>删除未入库的key记录为已删除,缓存中的空值被淘汰或移除后仍返回空值,避免从数据库重新加载被删除的实体
+ * <br/>定期检查入库状态,检查由缓存访问触发,两次检查间隔至少{@link #SWEEP_INTERVAL_MILLIS}毫秒
+ */
+class DirtyEntryPinning {
+
+	/** 检查间隔(毫秒) */
+	static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+	/** 固定的对象 {key:固定项} */
+	private final ConcurrentMap<Object, Pinned> pinned = new ConcurrentHashMapV8<Object, Pinned>();
+
+	/** 删除未入库的对象 {key:被删除的缓存对象} */
+	private final ConcurrentMap<Object, CacheObject<?>> deleted = new ConcurrentHashMapV8<Object, CacheObject<?>>();
+
+	/** 入库完成后转移到的淘汰缓存 */
+	private final ConcurrentReferenceHashMap<Object, Object> evictions;
+
+	/** 固定对象估算字节数 */
+	private final AtomicLong pinnedBytes = new AtomicLong();
+
+	/** 下次检查时间 */
+	private final AtomicLong nextSweepTime = new AtomicLong();
+
+
+	/**
+	 * 固定项
+	 */
+	private static class Pinned {
+
+		private final CacheObject<?> cacheObject;
+
+		private final long bytes;
+
+		Pinned(CacheObject<?> cacheObject, long bytes) {
+			this.cacheObject = cacheObject;
+			this.bytes = bytes;
+		}
+	}
+
+
+	DirtyEntryPinning(ConcurrentReferenceHashMap<Object, Object> evictions) {
+		this.evictions = evictions;
+	}
+
+
+	/**
+	 * 是否有未完成的入库
+	 * @param value 缓存值
+	 * @return
+	 */
+	static boolean isDirty(Object value) {
+		if (!(value instanceof CacheObject)) {
+			return false;
+		}
+		CacheObject<?> cacheObject = (CacheObject<?>) value;
+		return cacheObject.isUpdateProcessing()
+				|| (cacheObject.getPersistStatus() == PersistStatus.TRANSIENT && !cacheObject.isDeadLetter());
+	}
+
+
+	/**
+	 * 删除是否未入库
+	 * <br/>未保存成功且已写入死信日志的对象数据库中没有记录,不需要删除
+	 * @param cacheObject 被删除的缓存对象
+	 * @return
+	 */
+	static boolean isDeletePending(CacheObject<?> cacheObject) {
+		PersistStatus persistStatus = cacheObject.getPersistStatus();
+		return persistStatus == PersistStatus.PERSIST
+				|| (persistStatus == PersistStatus.TRANSIENT && !cacheObject.isDeadLetter());
+	}
+
+
+	/**
+	 * 处理被淘汰的对象
+	 * <br/>未入库的对象固定,其他放入弱引用的淘汰缓存
+	 * @param key 缓存key
+	 * @param value 缓存值
+	 */
+	void onEvicted(Object key, Object value) {
+		if (isDirty(value)) {
+			CacheObject<?> cacheObject = (CacheObject<?>) value;
+			long bytes = ObjectSizeEstimator.estimate(cacheObject.getEntity());
+			Pinned prev = this.pinned.put(key, new Pinned(cacheObject, bytes));
+			this.pinnedBytes.addAndGet(prev != null ? bytes - prev.bytes : bytes);
+		} else {
+			this.evictions.put(key, value);
+		}
+		this.trySweep();
+	}
+
+
+	/**
+	 * 处理被删除的对象
+	 * @param key 缓存key
+	 * @param value 被删除的缓存值
+	 */
+	void onDeleted(Object key, Object value) {
+		if (value instanceof CacheObject) {
+			this.deleted.put(key, (CacheObject<?>) value);
+		}
+		this.trySweep();
+	}
+
+
+	/**
+	 * 删除后重新放入了对象
+	 * @param key 缓存key
+	 */
+	void onRestored(Object key) {
+		this.deleted.remove(key);
+	}
+
+
+	/**
+	 * 是否已删除且删除未入库
+	 * @param key 缓存key
+	 * @return
+	 */
+	boolean isDeleted(Object key) {
+		CacheObject<?> cacheObject = this.deleted.get(key);
+		return cacheObject != null && isDeletePending(cacheObject);
+	}
+
+
+	/**
+	 * 获取固定的对象
+	 * @param key 缓存key
+	 * @return
+	 */
+	Object get(Object key) {
+		Pinned p = this.pinned.get(key);
+		return p != null ? p.cacheObject : null;
+	}
+
+
+	/**
+	 * 移除固定的对象
+	 * @param key 缓存key
+	 * @return 被移除的对象
+	 */
+	Object remove(Object key) {
+		Pinned p = this.pinned.remove(key);
+		if (p == null) {
+			return null;
+		}
+		this.pinnedBytes.addAndGet(-p.bytes);
+		return p.cacheObject;
+	}
+
+
+	/**
+	 * 移除指定的固定对象
+	 * @param key 缓存key
+	 * @param value 固定的对象
+	 * @return 是否移除
+	 */
+	boolean remove(Object key, Object value) {
+		Pinned p = this.pinned.get(key);
+		if (p == null || p.cacheObject != value || !this.pinned.remove(key, p)) {
+			return false;
+		}
+		this.pinnedBytes.addAndGet(-p.bytes);
+		return true;
+	}
+
+
+	/**
+	 * 清空
+	 */
+	void clear() {
+		for (Object key : this.pinned.keySet()) {
+			this.remove(key);
+		}
+		this.deleted.clear();
+	}
+
+
+	/**
+	 * 到达检查时间时释放已入库的对象
+	 */
+	void trySweep() {
+		long now = System.currentTimeMillis();
+		long next = this.nextSweepTime.get();
+		if (now < next || !this.nextSweepTime.compareAndSet(next, now + SWEEP_INTERVAL_MILLIS)) {
+			return;
+		}
+		this.sweep();
+	}
+
+
+	/**
+	 * 释放已入库的对象到弱引用的淘汰缓存,清除删除已入库的记录
+	 */
+	void sweep() {
+		for (Iterator<Map.Entry<Object, CacheObject<?>>> it = this.deleted.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Object, CacheObject<?>> entry = it.next();
+			if (!isDeletePending(entry.getValue())) {
+				this.deleted.remove(entry.getKey(), entry.getValue());
+			}
+		}
+
+		if (this.pinned.isEmpty()) {
+			return;
+		}
+		for (Iterator<Map.Entry<Object, Pinned>> it = this.pinned.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Object, Pinned> entry = it.next();
+			Pinned p = entry.getValue();
+			if (isDirty(p.cacheObject)) {
+				continue;
+			}
+			// 先放入淘汰缓存再移除,保证并发get可以获取到
+			this.evictions.putIfAbsent(entry.getKey(), p.cacheObject);
+			if (this.pinned.remove(entry.getKey(), p)) {
+				this.pinnedBytes.addAndGet(-p.bytes);
+			}
+		}
+	}
+
+
+	/**
+	 * 获取固定对象数量
+	 * @return
+	 */
+	int getPinnedSize() {
+		this.trySweep();
+		return this.pinned.size();
+	}
+
+
+	/**
+	 * 获取固定对象估算字节数
+	 * @return
+	 */
+	long getPinnedBytes() {
+		this.trySweep();
+		return this.pinnedBytes.get();
+	}
+
+}
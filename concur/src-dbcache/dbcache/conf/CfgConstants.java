@@ -36,6 +36,70 @@ public interface CfgConstants {
 	 */
 	String DELAY_WAITTIMMER = "dbcache.delay.timmer";
 
+	/**
+	 * Sql耗时采样率(每N条语句采样一条, 0为关闭)
+	 */
+	String SQL_PROFILE_SAMPLE_RATE = "dbcache.sql.profile.sample";
+
+	/**
+	 * 慢Sql阀值(毫秒)
+	 */
+	String SQL_PROFILE_SLOW_MILLIS = "dbcache.sql.profile.slow";
+
+	/**
+	 * RingBuffer入库队列大小(必须为2的幂)
+	 */
+	String RING_BUFFER_SIZE = "dbcache.ringbuffer.size";
+
+	/**
+	 * RingBuffer入库等待策略(blocking|lite|sleeping|yielding|busyspin)
+	 */
+	String RING_BUFFER_WAIT_STRATEGY = "dbcache.ringbuffer.wait";
+
+	/**
+	 * 即时入库最大重试次数(超过后写入死信日志)
+	 */
+	String RETRY_MAX_TIMES = "dbcache.retry.max";
+
+	/**
+	 * 入库死信日志文件
+	 */
+	String DEAD_LETTER_FILE = "dbcache.deadletter.file";
+
+	/**
+	 * 入库队列背压配置前缀
+	 * <br/>dbcache.backpressure.[high|low|mode|block]为缺省值
+	 * <br/>dbcache.backpressure.{服务名}.[high|low|mode|block]为单个入库服务的配置,服务名为intime|delay|delay_batch
+	 */
+	String BACKPRESSURE_PREFIX = "dbcache.backpressure.";
+
+	/**
+	 * 背压高水位(待处理任务数, 0为不限制)
+	 */
+	String BACKPRESSURE_HIGH = "high";
+
+	/**
+	 * 背压低水位
+	 */
+	String BACKPRESSURE_LOW = "low";
+
+	/**
+	 * 背压过载处理方式(block|shed|sync)
+	 */
+	String BACKPRESSURE_MODE = "mode";
+
+	/**
+	 * 背压最长阻塞时间(毫秒)
+	 */
+	String BACKPRESSURE_BLOCK_MILLIS = "block";
+
+	/**
+	 * 实体入库方式配置前缀
+	 * <br/>dbcache.persist.type.{实体类全限定名}=INTIME|DELAY|DELAY_BATCH|RING_BUFFER,覆盖@Cached的persistType,
+	 * 同名的系统属性优先
+	 */
+	String PERSIST_TYPE_PREFIX = "dbcache.persist.type.";
+
 	/**
 	 * 分隔符定义
 	 */
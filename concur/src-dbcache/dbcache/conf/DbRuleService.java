@@ -58,6 +58,66 @@ public interface DbRuleService {
 	 */
 	long getDelayWaitTimmer();
 
+	/**
+	 * 获取RingBuffer入库队列大小
+	 * @return
+	 */
+	int getRingBufferSize();
+
+	/**
+	 * 获取RingBuffer入库等待策略
+	 * @return
+	 */
+	String getRingBufferWaitStrategy();
+
+	/**
+	 * 获取即时入库最大重试次数
+	 * @return
+	 */
+	int getRetryMaxTimes();
+
+	/**
+	 * 获取入库死信日志文件
+	 * @return
+	 */
+	String getDeadLetterFile();
+
+	/**
+	 * 获取入库队列背压高水位
+	 * @param service 入库服务名
+	 * @return 小于等于0为不限制
+	 */
+	int getBackpressureHighWatermark(String service);
+
+	/**
+	 * 获取入库队列背压低水位
+	 * @param service 入库服务名
+	 * @return
+	 */
+	int getBackpressureLowWatermark(String service);
+
+	/**
+	 * 获取入库队列过载处理方式
+	 * @param service 入库服务名
+	 * @return block|shed|sync
+	 */
+	String getBackpressureMode(String service);
+
+	/**
+	 * 获取入库队列过载时最长阻塞时间(毫秒)
+	 * @param service 入库服务名
+	 * @return
+	 */
+	long getBackpressureBlockMillis(String service);
+
+	/**
+	 * 获取实体的入库方式
+	 * @param clazz 实体类
+	 * @param defaultType 未配置时使用的入库方式(@Cached的persistType)
+	 * @return
+	 */
+	PersistType getPersistType(Class<?> clazz, PersistType defaultType);
+
 	/**
 	 * 获取默认服Id
 	 * @return
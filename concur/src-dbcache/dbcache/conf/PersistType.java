@@ -3,6 +3,7 @@ package dbcache.conf;
 import dbcache.persist.service.impl.DelayBatchDbPersistService;
 import dbcache.persist.service.impl.DelayDbPersistService;
 import dbcache.persist.service.impl.InTimeDbPersistService;
+import dbcache.persist.service.impl.RingBufferDbPersistService;
 
 /**
  * 持久化处理类型
@@ -28,7 +29,16 @@ public enum PersistType {
 	 * <br/>此方式不支持DynamicUpdate
 	 * <br/>不能支持到Hibernate入库方式
 	 */
-	DELAY_BATCH(DelayBatchDbPersistService.class, "delayBatchDbPersistService");
+	DELAY_BATCH(DelayBatchDbPersistService.class, "delayBatchDbPersistService"),
+
+
+	/**
+	 * RingBuffer批量入库
+	 * <br/>提交时不创建对象,由单个入库线程合并批量执行
+	 * <br/>DynamicUpdate的实体逐条更新
+	 * <br/>不能支持到Hibernate入库方式
+	 */
+	RING_BUFFER(RingBufferDbPersistService.class, "ringBufferDbPersistService");
 
 
 	/** 持久化类 */
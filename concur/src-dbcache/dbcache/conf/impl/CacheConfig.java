@@ -10,8 +10,10 @@ import dbcache.conf.CacheType;
 import dbcache.conf.PersistType;
 import dbcache.conf.ShardStrategy;
 import dbcache.index.IndexChangeListener;
+import dbcache.pkey.BatchIdGenerator;
 import dbcache.pkey.IdGenerator;
 import dbcache.support.asm.ConstructorBuilder;
+import dbcache.support.jdbc.LazyJsonFields;
 import utils.JsonUtils;
 import utils.enhance.asm.ValueGetter;
 import utils.reflect.AnnotationUtils;
@@ -61,6 +63,9 @@ public class CacheConfig<T> {
 	/** 启用动态更新 */
 	private boolean enableDynamicUpdate = false;
 
+	/** 是否存在延迟解析的json属性 */
+	private boolean hasLazyJsonFields = false;
+
 	/** 索引服务缓存类 */
 	private Class<?> indexCacheClass = ConcurrentLinkedHashMapCache.class;
 
@@ -94,6 +99,12 @@ public class CacheConfig<T> {
 	/** 是否在移除时候同时删除缓存 */
 	private boolean evictWhenDelete = false;
 
+	/** 是否启用不存在主键过滤 */
+	private boolean enableMissFilter = false;
+
+	/** 不存在主键过滤器的预计主键数量 */
+	private int missFilterSize;
+
 
 	/**
 	 * 获取实例
@@ -120,6 +131,10 @@ public class CacheConfig<T> {
 		if (entityClass.isAnnotationPresent(DynamicUpdate.class)) {
 			cacheConfig.setEnableDynamicUpdate(true);
 		}
+
+		if (LazyJsonFields.valueOf(entityClass).size() > 0) {
+			cacheConfig.setHasLazyJsonFields(true);
+		}
 		
 		if (entityClass.isAnnotationPresent(Shard.class)) {
 			Shard shardAnno = entityClass.getAnnotation(Shard.class);
@@ -150,6 +165,8 @@ public class CacheConfig<T> {
 		cacheConfig.setConcurrencyLevel(cachedAnno.concurrencyLevel());
 		cacheConfig.setEnableIndex(cachedAnno.enableIndex());
 		cacheConfig.setEvictWhenDelete(cachedAnno.evictWhenDelete());
+		cacheConfig.setEnableMissFilter(cachedAnno.enableMissFilter());
+		cacheConfig.setMissFilterSize(cachedAnno.missFilterSize());
 		return cacheConfig;
 	}
 
@@ -182,6 +199,28 @@ public class CacheConfig<T> {
 	}
 
 
+	/**
+	 * 批量生成自增长Id
+	 * <br/>默认Id生成器支持时一次分配连续的一段Id
+	 * @param count 数量
+	 * @return 未设置Id生成器时返回null
+	 */
+	public List<?> getIdAutoGenerateValues(int count) {
+		IdGenerator<?> idGenerator = this.defaultIdGenerator;
+		if (idGenerator == null) {
+			return null;
+		}
+		if (idGenerator instanceof BatchIdGenerator) {
+			return ((BatchIdGenerator<?>) idGenerator).generateIds(count);
+		}
+		List<Object> ids = new ArrayList<Object>(count);
+		for (int i = 0; i < count; i++) {
+			ids.add(idGenerator.generateId());
+		}
+		return ids;
+	}
+
+
 	/**
 	 * 生成自增长Id
 	 * @param category 服Id
@@ -313,6 +352,14 @@ public class CacheConfig<T> {
 		this.enableDynamicUpdate = enableDynamicUpdate;
 	}
 
+	public boolean isHasLazyJsonFields() {
+		return hasLazyJsonFields;
+	}
+
+	protected void setHasLazyJsonFields(boolean hasLazyJsonFields) {
+		this.hasLazyJsonFields = hasLazyJsonFields;
+	}
+
 	public int getFieldCount() {
 		return fieldCount;
 	}
@@ -360,4 +407,20 @@ public class CacheConfig<T> {
 	protected void setEvictWhenDelete(boolean evictWhenDelete) {
 		this.evictWhenDelete = evictWhenDelete;
 	}
+
+	public boolean isEnableMissFilter() {
+		return enableMissFilter;
+	}
+
+	protected void setEnableMissFilter(boolean enableMissFilter) {
+		this.enableMissFilter = enableMissFilter;
+	}
+
+	public int getMissFilterSize() {
+		return missFilterSize;
+	}
+
+	protected void setMissFilterSize(int missFilterSize) {
+		this.missFilterSize = missFilterSize;
+	}
 }
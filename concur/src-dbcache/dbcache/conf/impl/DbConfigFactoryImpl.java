@@ -7,9 +7,11 @@ import dbcache.conf.DbConfigFactory;
 import dbcache.conf.DbRuleService;
 import dbcache.conf.PersistType;
 import dbcache.index.DbIndexService;
+import dbcache.persist.PersistBackpressure;
 import dbcache.persist.service.DbPersistService;
 import dbcache.pkey.IdGenerator;
 import dbcache.support.asm.*;
+import dbcache.support.jdbc.SqlProfiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +35,8 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentMap;
@@ -71,6 +75,9 @@ public class DbConfigFactoryImpl implements DbConfigFactory, DbCacheMBean {
 	
 	@Autowired
 	private ModifiedFieldMethodAspect fieldChangeAspect;
+
+	@Autowired
+	private LazyJsonMethodAspect lazyJsonAspect;
 	
 	/**
 	 * 数据库入库规则服务
@@ -245,6 +252,18 @@ public class DbConfigFactoryImpl implements DbConfigFactory, DbCacheMBean {
 	
 	// 创建AsmMethodProxyAspect
 	private AbstractAsmMethodProxyAspect createAspector(CacheConfig cacheConfig) {
+		// 延迟解析json属性需要在其他切面之前解析
+		if (cacheConfig.isHasLazyJsonFields()) {
+			List<AbstractAsmMethodProxyAspect> aspects = new LinkedList<AbstractAsmMethodProxyAspect>();
+			aspects.add(this.lazyJsonAspect);
+			if (cacheConfig.isEnableDynamicUpdate()) {
+				aspects.add(this.fieldChangeAspect);
+			}
+			if (cacheConfig.isEnableIndex()) {
+				aspects.add(this.indexAspect);
+			}
+			return aspects.size() == 1 ? this.lazyJsonAspect : new ChainedMethodProxyAspect(aspects);
+		}
 		if (cacheConfig.isEnableIndex() && !cacheConfig.isEnableDynamicUpdate()) {
 			return this.indexAspect;
 		}
@@ -303,6 +322,7 @@ public class DbConfigFactoryImpl implements DbConfigFactory, DbCacheMBean {
 	private CacheConfig createCacheConfig(final Class<?> clz) {
 
 		CacheConfig cacheConfig = CacheConfig.valueOf(clz);
+		cacheConfig.setPersistType(dbRuleService.getPersistType(clz, cacheConfig.getPersistType()));
 		final Map<String, ValueGetter<?>> indexes = new HashMap<String, ValueGetter<?>>();
 
 		// 解析注解
@@ -357,7 +377,8 @@ public class DbConfigFactoryImpl implements DbConfigFactory, DbCacheMBean {
 			CacheConfig<T> cacheConfig,
 			AtomicIntegerArray modifiedFields) {
 		// 判断是否启用索引服务
-		if(cacheConfig == null || (!cacheConfig.isEnableIndex() && !cacheConfig.isEnableDynamicUpdate())) {
+		if(cacheConfig == null || (!cacheConfig.isEnableIndex() && !cacheConfig.isEnableDynamicUpdate()
+				&& !cacheConfig.isHasLazyJsonFields())) {
 			return entity;
 		}
 		return (T) cacheConfig.getConstructorBuilder()
@@ -546,9 +567,31 @@ public class DbConfigFactoryImpl implements DbConfigFactory, DbCacheMBean {
 		infoMap.put("delayDbPersistService", ThreadUtils.dumpThreadPool(
 				"delayDbPersistServiceTheadPool",
 				this.delayDbPersistService.getThreadPool()));
+
+		// 入库队列背压统计
+		Map<Object, DbPersistService> persistServices = new HashMap<Object, DbPersistService>(this.persistServiceMap);
+		persistServices.put(PersistType.INTIME, this.intimeDbPersistService);
+		persistServices.put(PersistType.DELAY, this.delayDbPersistService);
+		for (Entry<Object, DbPersistService> entry : persistServices.entrySet()) {
+			PersistBackpressure backpressure = entry.getValue().getBackpressure();
+			if (backpressure != null) {
+				infoMap.put(entry.getKey() + "Backpressure", backpressure.getInfo());
+			}
+		}
 		return infoMap;
 	}
 
 
+	@Override
+	public Map<String, String> getSqlProfileInfo() {
+		return SqlProfiler.getStatInfo();
+	}
+
+
+	@Override
+	public List<String> getSlowSqlInfo() {
+		return SqlProfiler.getSlowSqlInfo();
+	}
+
 
 }
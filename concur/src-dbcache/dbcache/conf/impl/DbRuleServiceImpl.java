@@ -1,12 +1,14 @@
 package dbcache.conf.impl;
 
 import dbcache.conf.DbRuleService;
+import dbcache.conf.PersistType;
 import dbcache.pkey.IdGenerator;
 import dbcache.pkey.LongGenerator;
 import dbcache.pkey.ServerEntityIdRule;
 import dbcache.IEntity;
 import dbcache.dbaccess.DbAccessService;
 import dbcache.support.jdbc.ModelInfo;
+import dbcache.support.jdbc.SqlProfiler;
 import utils.reflect.GenericsUtils;
 import utils.reflect.ReflectionUtility;
 import org.slf4j.Logger;
@@ -108,6 +110,76 @@ public class DbRuleServiceImpl implements DbRuleService {
 	 */
 	private static final int DEFAULT_MAX_CAPACITY_OF_ENTITY_CACHE = 1000000;
 
+	/**
+	 * 缺省RingBuffer入库队列大小
+	 */
+	private static final int DEFAULT_RING_BUFFER_SIZE = 65536;
+
+	/**
+	 * 缺省RingBuffer入库等待策略
+	 */
+	private static final String DEFAULT_RING_BUFFER_WAIT_STRATEGY = "blocking";
+
+	/**
+	 * 缺省即时入库最大重试次数
+	 */
+	private static final int DEFAULT_RETRY_MAX_TIMES = 10;
+
+	/**
+	 * 缺省入库死信日志文件
+	 */
+	private static final String DEFAULT_DEAD_LETTER_FILE = "dbcache-deadletter.log";
+
+	/**
+	 * 缺省背压高水位
+	 */
+	private static final int DEFAULT_BACKPRESSURE_HIGH = 200000;
+
+	/**
+	 * 缺省背压低水位
+	 */
+	private static final int DEFAULT_BACKPRESSURE_LOW = 100000;
+
+	/**
+	 * 缺省背压过载处理方式
+	 */
+	private static final String DEFAULT_BACKPRESSURE_MODE = "block";
+
+	/**
+	 * 缺省背压最长阻塞时间(毫秒)
+	 */
+	private static final long DEFAULT_BACKPRESSURE_BLOCK_MILLIS = 10;
+
+	/**
+	 * 背压配置 {配置项:值}
+	 */
+	private final Map<String, String> backpressureProperties = new HashMap<String, String>();
+
+	/**
+	 * 实体入库方式配置 {实体类名:入库方式}
+	 */
+	private final Map<String, String> persistTypeProperties = new HashMap<String, String>();
+
+	/**
+	 * 即时入库最大重试次数
+	 */
+	private int retryMaxTimes = DEFAULT_RETRY_MAX_TIMES;
+
+	/**
+	 * 入库死信日志文件
+	 */
+	private String deadLetterFile = DEFAULT_DEAD_LETTER_FILE;
+
+	/**
+	 * RingBuffer入库队列大小
+	 */
+	private int ringBufferSize = DEFAULT_RING_BUFFER_SIZE;
+
+	/**
+	 * RingBuffer入库等待策略
+	 */
+	private String ringBufferWaitStrategy = DEFAULT_RING_BUFFER_WAIT_STRATEGY;
+
 	/**
 	 * 服标识部分ID基础值
 	 */
@@ -218,6 +290,75 @@ public class DbRuleServiceImpl implements DbRuleService {
 		}
 		this.delayWaitTimmer = this.delayWaitTimmer > 0? this.delayWaitTimmer : delayWaitTimmer;
 
+
+		//Sql耗时采样
+		if (properties.containsKey(SQL_PROFILE_SAMPLE_RATE)) {
+			try {
+				SqlProfiler.setSampleRate(Integer.parseInt(properties.getProperty(SQL_PROFILE_SAMPLE_RATE).trim()));
+			} catch (Exception ex) {
+				logger.error("转换'{}'失败， 使用缺省值", SQL_PROFILE_SAMPLE_RATE);
+			}
+		}
+		if (properties.containsKey(SQL_PROFILE_SLOW_MILLIS)) {
+			try {
+				SqlProfiler.setSlowMillis(Long.parseLong(properties.getProperty(SQL_PROFILE_SLOW_MILLIS).trim()));
+			} catch (Exception ex) {
+				logger.error("转换'{}'失败， 使用缺省值", SQL_PROFILE_SLOW_MILLIS);
+			}
+		}
+
+
+		//RingBuffer入库
+		if (properties.containsKey(RING_BUFFER_SIZE)) {
+			try {
+				int ringBufferSize = Integer.parseInt(properties.getProperty(RING_BUFFER_SIZE).trim());
+				if (ringBufferSize <= 0 || Integer.bitCount(ringBufferSize) != 1) {
+					throw new IllegalArgumentException("RingBuffer大小必须为2的幂:" + ringBufferSize);
+				}
+				this.ringBufferSize = ringBufferSize;
+			} catch (Exception ex) {
+				logger.error("转换'{}'失败， 使用缺省值", RING_BUFFER_SIZE);
+			}
+		}
+		if (properties.containsKey(RING_BUFFER_WAIT_STRATEGY)) {
+			this.ringBufferWaitStrategy = properties.getProperty(RING_BUFFER_WAIT_STRATEGY).trim();
+		}
+
+
+		//入库重试
+		if (properties.containsKey(RETRY_MAX_TIMES)) {
+			try {
+				this.retryMaxTimes = Integer.parseInt(properties.getProperty(RETRY_MAX_TIMES).trim());
+			} catch (Exception ex) {
+				logger.error("转换'{}'失败， 使用缺省值", RETRY_MAX_TIMES);
+			}
+		}
+		if (properties.containsKey(DEAD_LETTER_FILE)) {
+			this.deadLetterFile = properties.getProperty(DEAD_LETTER_FILE).trim();
+		}
+
+
+		//入库队列背压
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(BACKPRESSURE_PREFIX)) {
+				this.backpressureProperties.put(key, properties.getProperty(key).trim());
+			}
+		}
+
+
+		//实体入库方式,系统属性优先
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(PERSIST_TYPE_PREFIX)) {
+				this.persistTypeProperties.put(key.substring(PERSIST_TYPE_PREFIX.length()), properties.getProperty(key).trim());
+			}
+		}
+		Properties systemProperties = System.getProperties();
+		for (String key : systemProperties.stringPropertyNames()) {
+			if (key.startsWith(PERSIST_TYPE_PREFIX)) {
+				this.persistTypeProperties.put(key.substring(PERSIST_TYPE_PREFIX.length()), systemProperties.getProperty(key).trim());
+			}
+		}
+
 	}
 
 
@@ -492,5 +633,87 @@ public class DbRuleServiceImpl implements DbRuleService {
 		return delayWaitTimmer;
 	}
 
+	@Override
+	public int getRingBufferSize() {
+		return ringBufferSize;
+	}
+
+	@Override
+	public String getRingBufferWaitStrategy() {
+		return ringBufferWaitStrategy;
+	}
+
+	@Override
+	public int getRetryMaxTimes() {
+		return retryMaxTimes;
+	}
+
+	@Override
+	public String getDeadLetterFile() {
+		return deadLetterFile;
+	}
+
+	@Override
+	public int getBackpressureHighWatermark(String service) {
+		String value = this.getBackpressureProperty(service, BACKPRESSURE_HIGH);
+		try {
+			return value != null ? Integer.parseInt(value) : DEFAULT_BACKPRESSURE_HIGH;
+		} catch (Exception ex) {
+			logger.error("转换'{}'失败， 使用缺省值", BACKPRESSURE_PREFIX + service + "." + BACKPRESSURE_HIGH);
+			return DEFAULT_BACKPRESSURE_HIGH;
+		}
+	}
+
+	@Override
+	public int getBackpressureLowWatermark(String service) {
+		String value = this.getBackpressureProperty(service, BACKPRESSURE_LOW);
+		try {
+			return value != null ? Integer.parseInt(value) : DEFAULT_BACKPRESSURE_LOW;
+		} catch (Exception ex) {
+			logger.error("转换'{}'失败， 使用缺省值", BACKPRESSURE_PREFIX + service + "." + BACKPRESSURE_LOW);
+			return DEFAULT_BACKPRESSURE_LOW;
+		}
+	}
+
+	@Override
+	public String getBackpressureMode(String service) {
+		String value = this.getBackpressureProperty(service, BACKPRESSURE_MODE);
+		return value != null ? value : DEFAULT_BACKPRESSURE_MODE;
+	}
+
+	@Override
+	public long getBackpressureBlockMillis(String service) {
+		String value = this.getBackpressureProperty(service, BACKPRESSURE_BLOCK_MILLIS);
+		try {
+			return value != null ? Long.parseLong(value) : DEFAULT_BACKPRESSURE_BLOCK_MILLIS;
+		} catch (Exception ex) {
+			logger.error("转换'{}'失败， 使用缺省值", BACKPRESSURE_PREFIX + service + "." + BACKPRESSURE_BLOCK_MILLIS);
+			return DEFAULT_BACKPRESSURE_BLOCK_MILLIS;
+		}
+	}
+
+	@Override
+	public PersistType getPersistType(Class<?> clazz, PersistType defaultType) {
+		String value = this.persistTypeProperties.get(clazz.getName());
+		if (value == null) {
+			return defaultType;
+		}
+		try {
+			return PersistType.valueOf(value.toUpperCase());
+		} catch (Exception ex) {
+			logger.error("转换'{}'失败， 使用缺省值", PERSIST_TYPE_PREFIX + clazz.getName());
+			return defaultType;
+		}
+	}
+
+	// 获取背压配置,优先使用入库服务的配置
+	private String getBackpressureProperty(String service, String name) {
+		String value = this.backpressureProperties.get(BACKPRESSURE_PREFIX + service + "." + name);
+		if (value == null) {
+			value = this.backpressureProperties.get(BACKPRESSURE_PREFIX + name);
+		}
+		return value;
+	}
+
 
 }
@@ -23,13 +23,14 @@ public class JdbcDbAccessServiceImpl implements DbBatchAccessService {
 
 	/**
 	 * 根据主键id取得实体对象
+	 * <br/>用于缓存加载,延迟解析的json属性由缓存代理对象访问时解析
 	 * @param entityClazz 实体类
 	 * @param id 主键id
 	 * @return 实体对象
 	 */
 	@Override
 	public <T> T get(Class<T> entityClazz, Serializable id) {
-		return jdbcSupport.get(entityClazz, id);
+		return jdbcSupport.get(entityClazz, id, true);
 	}
 
 
@@ -5,6 +5,7 @@ import dbcache.cache.CacheUnit;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 
 
 /**
@@ -32,6 +33,15 @@ public interface DbIndexService<PK extends Comparable<PK> & Serializable> {
 	void create(EnhancedEntity enhancedEntity, IndexValue<PK> indexValue);
 
 
+	/**
+	 * 批量创建实体索引
+	 * <br/>相同的索引值只获取一次索引对象
+	 * @param enhancedEntities 实体列表
+	 * @param indexValues 索引值列表(与实体列表一一对应)
+	 */
+	void createAll(List<EnhancedEntity> enhancedEntities, List<IndexValue<PK>> indexValues);
+
+
 	/**
 	 * 更新索引
 	 * @param enhancedEntity 实体
@@ -19,7 +19,9 @@ import utils.enhance.asm.ValueGetter;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
@@ -175,6 +177,39 @@ public class DbIndexServiceImpl<PK extends Comparable<PK> & Serializable>
 	}
 
 
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public void createAll(List<EnhancedEntity> enhancedEntities, List<IndexValue<PK>> indexValues) {
+
+		// 索引key - 索引对象
+		Map<Object, IndexObject<PK>> indexObjects = new HashMap<Object, IndexObject<PK>>();
+
+		for (int i = 0; i < indexValues.size(); i++) {
+			IndexValue<PK> indexValue = indexValues.get(i);
+
+			final Object key = CacheRule.getIndexIdKey(indexValue.getName(), indexValue.getValue());
+			IndexObject<PK> indexObject = indexObjects.get(key);
+			if (indexObject == null) {
+				indexObject = this.getPersist(indexValue.getName(), indexValue.getValue());
+				indexObjects.put(key, indexObject);
+			}
+			indexObject.put(indexValue.getId(), true);
+
+			enhancedEntities.get(i).getRefHolder().addIndexObject(indexObject);
+		}
+
+		// 索引变化监听
+		if (cacheConfig.isHasIndexListeners()) {
+			for (IndexValue<PK> indexValue : indexValues) {
+				for (IndexChangeListener listener : cacheConfig.getIndexChangeListener()) {
+					listener.onIndexCreate(indexValue.getName(), indexValue.getValue(), indexValue.getId());
+				}
+			}
+		}
+
+	}
+
+
 	@Override
 	public void remove(EnhancedEntity enhancedEntity, IndexValue<PK> indexValue) {
 
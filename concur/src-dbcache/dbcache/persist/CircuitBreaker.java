@@ -0,0 +1,94 @@
+package dbcache.persist;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 入库熔断器
+ * <br/>连续失败达到阀值后打开,打开期间不再访问数据库;打开时间到后放行一次试探请求,成功则关闭
+ */
+public class CircuitBreaker {
+
+	/**
+	 * 连续失败次数阀值
+	 */
+	private final int failureThreshold;
+
+	/**
+	 * 打开时间(毫秒)
+	 */
+	private final long openMillis;
+
+	/**
+	 * 连续失败次数
+	 */
+	private final AtomicInteger failures = new AtomicInteger(0);
+
+	/**
+	 * 打开时间点,0为关闭状态
+	 */
+	private final AtomicLong openTime = new AtomicLong(0);
+
+
+	/**
+	 * 构造方法
+	 * @param failureThreshold 连续失败次数阀值
+	 * @param openMillis 打开时间(毫秒)
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+
+	/**
+	 * 是否允许访问数据库
+	 * <br/>打开时间到后只有一个调用者能获得试探机会
+	 * @return
+	 */
+	public boolean allowRequest() {
+		long open = this.openTime.get();
+		if (open == 0) {
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		if (now - open < this.openMillis) {
+			return false;
+		}
+		// 半开状态,重新计时后放行一次
+		return this.openTime.compareAndSet(open, now);
+	}
+
+
+	/**
+	 * 是否处于打开状态
+	 * @return
+	 */
+	public boolean isOpen() {
+		return this.openTime.get() != 0;
+	}
+
+
+	/**
+	 * 访问成功
+	 */
+	public void onSuccess() {
+		if (this.failures.get() != 0) {
+			this.failures.set(0);
+		}
+		if (this.openTime.get() != 0) {
+			this.openTime.set(0);
+		}
+	}
+
+
+	/**
+	 * 访问失败
+	 */
+	public void onFailure() {
+		if (this.failures.incrementAndGet() >= this.failureThreshold) {
+			this.openTime.compareAndSet(0, System.currentTimeMillis());
+		}
+	}
+
+}
@@ -0,0 +1,248 @@
+package dbcache.persist;
+
+import dbcache.dbaccess.DbAccessService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.JsonUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 入库死信日志
+ * <br/>多次重试仍失败的实体以json格式追加到文件,一行一条: 时间\t操作\t实体类\tjson
+ * <br/>数据库恢复后可调用{@link #replay(DbAccessService)}重新入库
+ * <br/>日志中是写入时的数据,实体仍在缓存中时可能已过期,应通过{@link Replayer}按缓存中的状态入库
+ */
+public class DeadLetterLog {
+
+	/**
+	 * logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(DeadLetterLog.class);
+
+	/** 字段分隔符 */
+	private static final String SEPARATOR = "\t";
+
+	/** 文件编码 */
+	private static final String CHARSET = "UTF-8";
+
+	/** 重放时的临时文件后缀 */
+	private static final String REPLAY_SUFFIX = ".replay";
+
+	/**
+	 * 入库操作类型
+	 */
+	public enum Operation {
+
+		/** 保存 */
+		SAVE,
+
+		/** 更新 */
+		UPDATE,
+
+		/** 删除 */
+		DELETE
+	}
+
+	/**
+	 * 死信重放处理
+	 */
+	public interface Replayer {
+
+		/**
+		 * 重放一条死信
+		 * @param operation 操作类型
+		 * @param entity 死信日志中的实体
+		 * @throws Exception 重放失败时该记录重新写回死信日志
+		 */
+		void replay(Operation operation, Object entity) throws Exception;
+	}
+
+
+	/**
+	 * 按死信日志中的数据直接入库
+	 */
+	public static class DbReplayer implements Replayer {
+
+		private final DbAccessService dbAccessService;
+
+		public DbReplayer(DbAccessService dbAccessService) {
+			this.dbAccessService = dbAccessService;
+		}
+
+		@Override
+		public void replay(Operation operation, Object entity) {
+			switch (operation) {
+				case SAVE:
+					this.dbAccessService.save(entity);
+					break;
+				case UPDATE:
+					this.dbAccessService.update(entity);
+					break;
+				case DELETE:
+					this.dbAccessService.delete(entity);
+					break;
+			}
+		}
+	}
+
+
+	/**
+	 * 日志文件
+	 */
+	private final File file;
+
+	/**
+	 * 写入流
+	 */
+	private Writer writer;
+
+
+	public DeadLetterLog(String fileName) {
+		this.file = new File(fileName);
+	}
+
+
+	/**
+	 * 追加死信
+	 * @param operation 操作类型
+	 * @param entity 实体
+	 * @return 是否写入成功
+	 */
+	public synchronized boolean append(Operation operation, Object entity) {
+		StringBuilder line = new StringBuilder();
+		line.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())).append(SEPARATOR)
+				.append(operation.name()).append(SEPARATOR)
+				.append(entity.getClass().getName()).append(SEPARATOR)
+				.append(JsonUtils.object2JsonString(entity));
+		try {
+			if (this.writer == null) {
+				File parent = this.file.getAbsoluteFile().getParentFile();
+				if (parent != null && !parent.exists()) {
+					parent.mkdirs();
+				}
+				this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file, true), CHARSET));
+			}
+			this.writer.write(line.toString());
+			this.writer.write('\n');
+			this.writer.flush();
+			return true;
+		} catch (IOException e) {
+			logger.error("写入死信日志失败:" + line, e);
+			this.closeWriter();
+			return false;
+		}
+	}
+
+
+	/**
+	 * 按死信日志中的数据重新入库
+	 * <br/>仍然失败的记录重新写回死信日志;实体仍在缓存中时会覆盖缓存中更新的数据,应使用{@link #replay(Replayer)}
+	 * @param dbAccessService 数据库存取服务
+	 * @return 成功入库的条数
+	 */
+	public int replay(DbAccessService dbAccessService) {
+		return this.replay(new DbReplayer(dbAccessService));
+	}
+
+
+	/**
+	 * 重放死信
+	 * <br/>仍然失败的记录重新写回死信日志
+	 * @param replayer 死信重放处理
+	 * @return 成功重放的条数
+	 */
+	public synchronized int replay(Replayer replayer) {
+		if (!this.file.exists()) {
+			return 0;
+		}
+
+		this.closeWriter();
+		File replayFile = new File(this.file.getPath() + REPLAY_SUFFIX);
+		if (!replayFile.exists() && !this.file.renameTo(replayFile)) {
+			logger.error("无法重命名死信日志:" + this.file.getAbsolutePath());
+			return 0;
+		}
+
+		int count = 0;
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(replayFile), CHARSET));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() == 0) {
+					continue;
+				}
+				String[] parts = line.split(SEPARATOR, 4);
+				if (parts.length < 4) {
+					logger.error("死信日志格式错误:" + line);
+					continue;
+				}
+				Operation operation = null;
+				Object entity = null;
+				try {
+					operation = Operation.valueOf(parts[1]);
+					entity = JsonUtils.jsonString2Object(parts[3], Class.forName(parts[2]));
+					replayer.replay(operation, entity);
+					count++;
+				} catch (Exception e) {
+					logger.error("重放死信失败:" + line, e);
+					if (operation != null && entity != null) {
+						this.append(operation, entity);
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.error("读取死信日志失败:" + replayFile.getAbsolutePath(), e);
+			return count;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					logger.error("关闭死信重放文件失败:" + replayFile.getAbsolutePath(), e);
+				}
+			}
+		}
+
+		if (!replayFile.delete()) {
+			logger.error("无法删除死信重放文件:" + replayFile.getAbsolutePath());
+		}
+		return count;
+	}
+
+
+	/**
+	 * 关闭
+	 */
+	public synchronized void close() {
+		this.closeWriter();
+	}
+
+	private void closeWriter() {
+		if (this.writer == null) {
+			return;
+		}
+		try {
+			this.writer.close();
+		} catch (IOException e) {
+			logger.error("关闭死信日志失败:" + this.file.getAbsolutePath(), e);
+		}
+		this.writer = null;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+}
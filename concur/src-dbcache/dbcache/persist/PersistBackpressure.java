@@ -0,0 +1,337 @@
+package dbcache.persist;
+
+import dbcache.CacheObject;
+import dbcache.IEntity;
+import dbcache.conf.DbRuleService;
+import dbcache.conf.impl.CacheConfig;
+import dbcache.dbaccess.DbAccessService;
+import dbcache.persist.service.DbPersistService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.collections.concurrent.ConcurrentHashMapV8;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 入库队列背压控制
+ * <br/>待处理任务数达到高水位后进入过载状态,降到低水位以下恢复
+ * <br/>过载时提交更新的处理方式:
+ * <br/>BLOCK 短暂阻塞提交线程等待队列消化
+ * <br/>SHED 暂不提交,按实体合并保存,恢复后再提交
+ * <br/>SYNC 在提交线程中直接同步更新数据库
+ */
+public class PersistBackpressure {
+
+	/**
+	 * logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(PersistBackpressure.class);
+
+	/**
+	 * 过载处理方式
+	 */
+	public enum Mode {
+
+		/** 短暂阻塞 */
+		BLOCK,
+
+		/** 合并延后提交 */
+		SHED,
+
+		/** 同步更新 */
+		SYNC
+	}
+
+	/** 名称 */
+	private final String name;
+
+	/** 高水位,小于等于0时不限制 */
+	private final int highWatermark;
+
+	/** 低水位 */
+	private final int lowWatermark;
+
+	/** 过载处理方式 */
+	private final Mode mode;
+
+	/** 最长阻塞时间(毫秒) */
+	private final long blockMillis;
+
+	/** 待处理任务数 */
+	private final AtomicInteger pending = new AtomicInteger(0);
+
+	/** 是否过载 */
+	private volatile boolean overloaded = false;
+
+	/** 阻塞次数 */
+	private final AtomicLong blockCount = new AtomicLong(0);
+
+	/** 合并延后次数 */
+	private final AtomicLong shedCount = new AtomicLong(0);
+
+	/** 同步更新次数 */
+	private final AtomicLong syncCount = new AtomicLong(0);
+
+	/** 合并延后的更新 {实体缓存对象:重新提交任务} */
+	private final ConcurrentMap<CacheObject<?>, Runnable> shedUpdates = new ConcurrentHashMapV8<CacheObject<?>, Runnable>();
+
+
+	public PersistBackpressure(String name, int highWatermark, int lowWatermark, Mode mode, long blockMillis) {
+		this.name = name;
+		this.highWatermark = highWatermark;
+		this.lowWatermark = Math.min(lowWatermark, highWatermark);
+		this.mode = mode;
+		this.blockMillis = blockMillis;
+	}
+
+
+	/**
+	 * 根据配置创建
+	 * @param name 入库服务名
+	 * @param dbRuleService 配置服务
+	 * @return
+	 */
+	public static PersistBackpressure valueOf(String name, DbRuleService dbRuleService) {
+		Mode mode;
+		try {
+			mode = Mode.valueOf(dbRuleService.getBackpressureMode(name).toUpperCase());
+		} catch (Exception e) {
+			logger.error("不支持的背压方式'{}', 使用BLOCK", dbRuleService.getBackpressureMode(name));
+			mode = Mode.BLOCK;
+		}
+		return new PersistBackpressure(name,
+				dbRuleService.getBackpressureHighWatermark(name),
+				dbRuleService.getBackpressureLowWatermark(name),
+				mode,
+				dbRuleService.getBackpressureBlockMillis(name));
+	}
+
+
+	/**
+	 * 提交了一个任务
+	 */
+	public void onSubmit() {
+		if (this.pending.incrementAndGet() >= this.highWatermark
+				&& this.highWatermark > 0 && !this.overloaded) {
+			this.overloaded = true;
+		}
+	}
+
+
+	/**
+	 * 取出了一个任务
+	 */
+	public void onComplete() {
+		if (this.pending.decrementAndGet() <= this.lowWatermark && this.overloaded) {
+			this.overloaded = false;
+		}
+	}
+
+
+	/**
+	 * 提交更新前检查
+	 * @param persistService 入库服务
+	 * @param cacheObject 实体缓存对象
+	 * @param dbAccessService 数据库存取服务
+	 * @param cacheConfig 实体配置
+	 * @param syncSupported 是否支持同步更新(不支持时按SHED处理)
+	 * @return true 继续提交到队列; false 已合并延后或已同步更新
+	 */
+	public <T extends IEntity<?>> boolean beforeUpdate(
+			final DbPersistService persistService,
+			final CacheObject<T> cacheObject,
+			final DbAccessService dbAccessService,
+			final CacheConfig<T> cacheConfig,
+			boolean syncSupported) {
+
+		if (!this.overloaded) {
+			return true;
+		}
+
+		switch (this.mode) {
+			case BLOCK:
+				this.awaitRelief();
+				return true;
+
+			case SYNC:
+				if (syncSupported && cacheObject.getPersistStatus() == PersistStatus.PERSIST) {
+					return !this.syncUpdate(cacheObject, dbAccessService, cacheConfig);
+				}
+				// 未入库的实体不能同步更新,合并延后
+				this.shed(persistService, cacheObject, dbAccessService, cacheConfig);
+				return false;
+
+			default:
+				this.shed(persistService, cacheObject, dbAccessService, cacheConfig);
+				return false;
+		}
+	}
+
+
+	// 合并延后提交更新
+	private <T extends IEntity<?>> void shed(
+			final DbPersistService persistService,
+			final CacheObject<T> cacheObject,
+			final DbAccessService dbAccessService,
+			final CacheConfig<T> cacheConfig) {
+		this.shedUpdates.put(cacheObject, new Runnable() {
+			@Override
+			public void run() {
+				persistService.handleUpdate(cacheObject, dbAccessService, cacheConfig);
+			}
+		});
+		this.shedCount.incrementAndGet();
+	}
+
+
+	/**
+	 * 在提交线程中同步更新
+	 * <br/>与入库任务一致,先清除更新状态再取出修改记录;失败时恢复修改记录
+	 * @return 是否更新成功
+	 */
+	private <T extends IEntity<?>> boolean syncUpdate(
+			CacheObject<T> cacheObject,
+			DbAccessService dbAccessService,
+			CacheConfig<T> cacheConfig) {
+
+		// 改变更新状态
+		cacheObject.setUpdateProcessing(false);
+		// 持久化前的操作
+		cacheObject.doBeforePersist(cacheConfig);
+		AtomicIntegerArray modifiedFields = cacheObject.getModifiedFields();
+		AtomicIntegerArray updateFields = takeModifiedFields(modifiedFields);
+
+		try {
+			if (cacheConfig.isEnableDynamicUpdate() && updateFields != null) {
+				dbAccessService.update(cacheObject.getEntity(), updateFields);
+			} else {
+				dbAccessService.update(cacheObject.getEntity());
+			}
+			this.syncCount.incrementAndGet();
+			return true;
+		} catch (Exception e) {
+			restoreModifiedFields(modifiedFields, updateFields);
+			logger.error("同步更新实体失败, 提交到入库队列", e);
+			return false;
+		}
+	}
+
+
+	// 取出并清除修改记录
+	private static AtomicIntegerArray takeModifiedFields(AtomicIntegerArray modifiedFields) {
+		if (modifiedFields == null) {
+			return null;
+		}
+		int length = modifiedFields.length();
+		AtomicIntegerArray taken = new AtomicIntegerArray(length);
+		for (int i = 0; i < length; i++) {
+			if (modifiedFields.getAndSet(i, 0) == 1) {
+				taken.set(i, 1);
+			}
+		}
+		return taken;
+	}
+
+
+	// 恢复未成功更新的修改记录
+	private static void restoreModifiedFields(AtomicIntegerArray modifiedFields, AtomicIntegerArray taken) {
+		if (modifiedFields == null || taken == null) {
+			return;
+		}
+		for (int i = 0; i < taken.length(); i++) {
+			if (taken.get(i) == 1) {
+				modifiedFields.set(i, 1);
+			}
+		}
+	}
+
+
+	// 阻塞等待降到低水位,最多等待blockMillis
+	private void awaitRelief() {
+		this.blockCount.incrementAndGet();
+		long deadline = System.currentTimeMillis() + this.blockMillis;
+		try {
+			while (this.overloaded && System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * 未过载时重新提交合并延后的更新
+	 * <br/>由入库线程定时调用
+	 */
+	public void drainShedUpdates() {
+		Iterator<Map.Entry<CacheObject<?>, Runnable>> it = this.shedUpdates.entrySet().iterator();
+		while (it.hasNext() && !this.overloaded) {
+			Map.Entry<CacheObject<?>, Runnable> entry = it.next();
+			if (this.shedUpdates.remove(entry.getKey(), entry.getValue())) {
+				entry.getValue().run();
+			}
+		}
+	}
+
+
+	/**
+	 * 立即重新提交所有合并延后的更新,关闭时调用
+	 */
+	public void flushShedUpdates() {
+		Iterator<Map.Entry<CacheObject<?>, Runnable>> it = this.shedUpdates.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<CacheObject<?>, Runnable> entry = it.next();
+			if (this.shedUpdates.remove(entry.getKey(), entry.getValue())) {
+				entry.getValue().run();
+			}
+		}
+	}
+
+
+	/**
+	 * 获取统计信息
+	 * @return
+	 */
+	public Map<String, Object> getInfo() {
+		Map<String, Object> info = new HashMap<String, Object>();
+		info.put("name", this.name);
+		info.put("mode", this.mode);
+		info.put("highWatermark", this.highWatermark);
+		info.put("lowWatermark", this.lowWatermark);
+		info.put("pending", this.pending.get());
+		info.put("overloaded", this.overloaded);
+		info.put("shedPending", this.shedUpdates.size());
+		info.put("blockCount", this.blockCount.get());
+		info.put("shedCount", this.shedCount.get());
+		info.put("syncCount", this.syncCount.get());
+		return info;
+	}
+
+	public int getPending() {
+		return pending.get();
+	}
+
+	public boolean isOverloaded() {
+		return overloaded;
+	}
+
+	public long getBlockCount() {
+		return blockCount.get();
+	}
+
+	public long getShedCount() {
+		return shedCount.get();
+	}
+
+	public long getSyncCount() {
+		return syncCount.get();
+	}
+
+}
@@ -5,7 +5,9 @@ import dbcache.CacheObject;
 import dbcache.IEntity;
 import dbcache.cache.CacheUnit;
 import dbcache.dbaccess.DbAccessService;
+import dbcache.persist.PersistBackpressure;
 
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -26,6 +28,17 @@ public interface DbPersistService {
 			DbAccessService dbAccessService,
 			CacheConfig<T> cacheConfig);
 
+	/**
+	 * 批量处理创建
+	 * @param cacheObjects 实体缓存对象列表(同一实体类)
+	 * @param dbAccessService 数据库存取服务
+	 * @param cacheConfig 实体配置
+	 */
+	<T extends IEntity<?>> void handleBatchSave(
+			List<CacheObject<T>> cacheObjects,
+			DbAccessService dbAccessService,
+			CacheConfig<T> cacheConfig);
+
 	/**
 	 * 处理更新
 	 * @param cacheObject 实体缓存对象
@@ -65,4 +78,10 @@ public interface DbPersistService {
 	 */
 	ExecutorService getThreadPool();
 
+	/**
+	 * 获取入库队列背压控制
+	 * @return 不需要背压控制时返回null
+	 */
+	PersistBackpressure getBackpressure();
+
 }
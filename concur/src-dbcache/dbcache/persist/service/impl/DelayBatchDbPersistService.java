@@ -7,6 +7,7 @@ import dbcache.dbaccess.DbAccessService;
 import dbcache.CacheObject;
 import dbcache.IEntity;
 import dbcache.persist.PersistAction;
+import dbcache.persist.PersistBackpressure;
 import dbcache.persist.PersistStatus;
 import dbcache.persist.service.DbBatchAccessService;
 import dbcache.persist.service.DbPersistService;
@@ -56,6 +57,11 @@ public class DelayBatchDbPersistService implements DbPersistService {
 	 * 分类批量任务队列
 	 */
 	private final BatchTasks batchTasks = new BatchTasks();
+
+	/**
+	 * 入库队列背压控制
+	 */
+	private PersistBackpressure backpressure;
 	
 
 	@Autowired
@@ -121,12 +127,18 @@ public class DelayBatchDbPersistService implements DbPersistService {
 					continue;
 				}
 				List<Object> entityList = new ArrayList<Object>();
+				List<CacheObject<?>> deletedList = new ArrayList<CacheObject<?>>();
 				for (CacheObject<?> cacheObj : list) {
 					if (cacheObj.getPersistStatus() == PersistStatus.PERSIST) {
 						entityList.add(cacheObj.getEntity());
+						deletedList.add(cacheObj);
 					}
 				}
 				this.dbAccessService.delete(entry.getKey(), entityList);
+				// 设置状态为已删除
+				for (CacheObject<?> cacheObj : deletedList) {
+					cacheObj.setPersistStatus(PersistStatus.DELETED);
+				}
 				list.clear();
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -143,6 +155,9 @@ public class DelayBatchDbPersistService implements DbPersistService {
 		NamedThreadFactory threadFactory = new NamedThreadFactory(threadGroup, "延时入库线程池");
 		DB_POOL_SERVICE = Executors.newSingleThreadExecutor(threadFactory);
 
+		// 初始化背压控制
+		this.backpressure = PersistBackpressure.valueOf("delay_batch", dbRuleService);
+
 		// 初始化入库线程
 		DB_POOL_SERVICE.submit(new Runnable() {
 
@@ -203,6 +218,58 @@ public class DelayBatchDbPersistService implements DbPersistService {
 	}
 
 	
+	@Override
+	public <T extends IEntity<?>> void handleBatchSave(
+			final List<CacheObject<T>> cacheObjects,
+			final DbAccessService dbAccessService,
+			final CacheConfig<T> cacheConfig) {
+
+		this.handlePersist(new PersistAction() {
+
+			@Override
+			public void run() {
+				for (CacheObject<T> cacheObject : cacheObjects) {
+					// 判断是否有效
+					if (cacheObject.getPersistStatus() != PersistStatus.TRANSIENT) {
+						continue;
+					}
+
+					// 持久化前操作
+					cacheObject.doBeforePersist(cacheConfig);
+
+					// 添加持久化任务到批量任务队列
+					batchTasks.addSaveTask(cacheObject);
+
+					// 设置更新状态
+					cacheObject.setPersistStatus(PersistStatus.PERSIST);
+				}
+			}
+
+			@Override
+			public String getPersistInfo() {
+				StringBuilder sb = new StringBuilder();
+				for (CacheObject<T> cacheObject : cacheObjects) {
+					if (cacheObject.getPersistStatus() == PersistStatus.TRANSIENT) {
+						sb.append(JsonUtils.object2JsonString(cacheObject.getEntity()));
+					}
+				}
+				return sb.length() == 0 ? null : sb.toString();
+			}
+
+			@Override
+			public boolean valid() {
+				for (CacheObject<T> cacheObject : cacheObjects) {
+					if (cacheObject.getPersistStatus() == PersistStatus.TRANSIENT) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+		});
+	}
+
+
 	@Override
 	public <T extends IEntity<?>> void handleUpdate(
 			final CacheObject<T> cacheObject,
@@ -214,6 +281,11 @@ public class DelayBatchDbPersistService implements DbPersistService {
 			return;
 		}
 
+		// 入库队列过载,批量入库不支持同步更新
+		if (!this.backpressure.beforeUpdate(this, cacheObject, dbAccessService, cacheConfig, false)) {
+			return;
+		}
+
 		// 改变更新状态
 		cacheObject.setUpdateProcessing(true);
 
@@ -288,6 +360,21 @@ public class DelayBatchDbPersistService implements DbPersistService {
 	 */
 	private void handlePersist(PersistAction persistAction) {
 		updateQueue.add(persistAction);
+		backpressure.onSubmit();
+	}
+
+
+	/**
+	 * 取出持久化任务
+	 * @param queue 任务队列
+	 * @return
+	 */
+	private PersistAction pollAction(ConcurrentLinkedQueue<PersistAction> queue) {
+		PersistAction persistAction = queue.poll();
+		if (persistAction != null) {
+			backpressure.onComplete();
+		}
+		return persistAction;
 	}
 
 	
@@ -301,7 +388,7 @@ public class DelayBatchDbPersistService implements DbPersistService {
 
 
 		ConcurrentLinkedQueue<PersistAction> processQueue = updateQueue;
-		PersistAction persistAction = processQueue.poll();
+		PersistAction persistAction = this.pollAction(processQueue);
 		
 		//循环定时检测入库,失败自动进入重试
 		while (!Thread.interrupted()) {
@@ -335,12 +422,15 @@ public class DelayBatchDbPersistService implements DbPersistService {
 							if (Thread.interrupted()) {
 								break;
 							}
-						} while ((persistAction = processQueue.poll()) != null); // 获取下一个有效的操作元素
+						} while ((persistAction = this.pollAction(processQueue)) != null); // 获取下一个有效的操作元素
 
 
 						// 执行批量入库任务
 						flushBatchTask();
-						
+
+						// 未过载时重新提交合并延后的更新
+						backpressure.drainShedUpdates();
+
 						swapQueue = processQueue;
 						processQueue = updateQueue;
 						lastFlush = System.currentTimeMillis();
@@ -376,7 +466,10 @@ public class DelayBatchDbPersistService implements DbPersistService {
 	public void destroy() {
 		// 关闭消费入库线程池
 		ThreadUtils.shundownThreadPool(DB_POOL_SERVICE, true);
-				
+
+		// 提交合并延后的更新
+		this.backpressure.flushShedUpdates();
+
 		int failCount = 0;
 		while (failCount < 3) {
 			try {
@@ -399,18 +492,18 @@ public class DelayBatchDbPersistService implements DbPersistService {
 	 */
 	public void flushAllEntity() {
 		//入库延迟队列中的实体
-		PersistAction updateAction = this.updateQueue.poll();
+		PersistAction updateAction = this.pollAction(this.updateQueue);
 		while (updateAction != null) {
 			//执行入库
 			updateAction.run();
-			updateAction = this.updateQueue.poll();
+			updateAction = this.pollAction(this.updateQueue);
 		}
 		
-		updateAction = this.swapQueue.poll();
+		updateAction = this.pollAction(this.swapQueue);
 		while (updateAction != null) {
 			//执行入库
 			updateAction.run();
-			updateAction = this.swapQueue.poll();
+			updateAction = this.pollAction(this.swapQueue);
 		}
 		
 		// 执行批量入库任务
@@ -439,6 +532,12 @@ public class DelayBatchDbPersistService implements DbPersistService {
 	}
 
 
+	@Override
+	public PersistBackpressure getBackpressure() {
+		return backpressure;
+	}
+
+
 	@Override
 	public ExecutorService getThreadPool() {
 		return DB_POOL_SERVICE;
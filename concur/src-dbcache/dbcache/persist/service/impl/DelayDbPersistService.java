@@ -4,9 +4,11 @@ import dbcache.conf.impl.CacheConfig;
 import dbcache.CacheObject;
 import dbcache.IEntity;
 import dbcache.persist.PersistAction;
+import dbcache.persist.PersistBackpressure;
 import dbcache.persist.PersistStatus;
 import dbcache.cache.CacheUnit;
 import dbcache.dbaccess.DbAccessService;
+import dbcache.persist.service.DbBatchAccessService;
 import dbcache.persist.service.DbPersistService;
 import dbcache.conf.DbRuleService;
 import utils.JsonUtils;
@@ -19,7 +21,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -50,6 +54,12 @@ public class DelayDbPersistService implements DbPersistService {
 	private volatile QueuedAction currentDelayUpdateAction;
 
 
+	/**
+	 * 入库队列背压控制
+	 */
+	private PersistBackpressure backpressure;
+
+
 	@Autowired
 	private DbRuleService dbRuleService;
 
@@ -68,6 +78,9 @@ public class DelayDbPersistService implements DbPersistService {
 		NamedThreadFactory threadFactory = new NamedThreadFactory(threadGroup, "延时入库线程池");
 		DB_POOL_SERVICE = Executors.newSingleThreadExecutor(threadFactory);
 
+		// 初始化背压控制
+		this.backpressure = PersistBackpressure.valueOf("delay", dbRuleService);
+
 		// 初始化入库线程
 		DB_POOL_SERVICE.submit(new Runnable() {
 			@Override
@@ -126,6 +139,69 @@ public class DelayDbPersistService implements DbPersistService {
 		});
 	}
 
+	@Override
+	public <T extends IEntity<?>> void handleBatchSave(
+			final List<CacheObject<T>> cacheObjects,
+			final DbAccessService dbAccessService,
+			final CacheConfig<T> cacheConfig) {
+
+		this.handlePersist(new PersistAction() {
+
+			@Override
+			public void run() {
+
+				List<CacheObject<T>> saveList = new ArrayList<CacheObject<T>>(cacheObjects.size());
+				List<Object> entityList = new ArrayList<Object>(cacheObjects.size());
+				for (CacheObject<T> cacheObject : cacheObjects) {
+					// 判断是否有效
+					if (cacheObject.getPersistStatus() != PersistStatus.TRANSIENT) {
+						continue;
+					}
+					// 持久化前操作
+					cacheObject.doBeforePersist(cacheConfig);
+					saveList.add(cacheObject);
+					entityList.add(cacheObject.getEntity());
+				}
+
+				// 持久化
+				if (dbAccessService instanceof DbBatchAccessService) {
+					((DbBatchAccessService) dbAccessService).save(cacheConfig.getClazz(), entityList);
+				} else {
+					for (Object entity : entityList) {
+						dbAccessService.save(entity);
+					}
+				}
+
+				// 设置更新状态
+				for (CacheObject<T> cacheObject : saveList) {
+					cacheObject.setPersistStatus(PersistStatus.PERSIST);
+				}
+			}
+
+			@Override
+			public String getPersistInfo() {
+				StringBuilder sb = new StringBuilder();
+				for (CacheObject<T> cacheObject : cacheObjects) {
+					if (cacheObject.getPersistStatus() == PersistStatus.TRANSIENT) {
+						sb.append(JsonUtils.object2JsonString(cacheObject.getEntity()));
+					}
+				}
+				return sb.length() == 0 ? null : sb.toString();
+			}
+
+			@Override
+			public boolean valid() {
+				for (CacheObject<T> cacheObject : cacheObjects) {
+					if (cacheObject.getPersistStatus() == PersistStatus.TRANSIENT) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+		});
+	}
+
 	@Override
 	public <T extends IEntity<?>> void handleUpdate(
 			final CacheObject<T> cacheObject,
@@ -137,6 +213,11 @@ public class DelayDbPersistService implements DbPersistService {
 			return;
 		}
 
+		// 入库队列过载
+		if (!this.backpressure.beforeUpdate(this, cacheObject, dbAccessService, cacheConfig, true)) {
+			return;
+		}
+
 		// 改变更新状态
 		cacheObject.setUpdateProcessing(true);
 
@@ -190,6 +271,8 @@ public class DelayDbPersistService implements DbPersistService {
 				}
 				// 持久化
 				dbAccessService.delete(cacheObject.getEntity());
+				// 设置状态为已删除
+				cacheObject.setPersistStatus(PersistStatus.DELETED);
 			}
 
 			@Override
@@ -214,6 +297,20 @@ public class DelayDbPersistService implements DbPersistService {
 	 */
 	private void handlePersist(PersistAction persistAction) {
 		updateQueue.add(QueuedAction.valueOf(persistAction));
+		backpressure.onSubmit();
+	}
+
+
+	/**
+	 * 取出持久化任务
+	 * @return
+	 */
+	private QueuedAction pollAction() {
+		QueuedAction updateAction = updateQueue.poll();
+		if (updateAction != null) {
+			backpressure.onComplete();
+		}
+		return updateAction;
 	}
 	
 	
@@ -228,7 +325,7 @@ public class DelayDbPersistService implements DbPersistService {
 
 
 		//循环定时检测入库,失败自动进入重试
-		QueuedAction updateAction = updateQueue.poll();
+		QueuedAction updateAction = this.pollAction();
 
 		while (!Thread.interrupted()) {
 			try {
@@ -257,8 +354,11 @@ public class DelayDbPersistService implements DbPersistService {
 						break;
 					}
 
+					// 未过载时重新提交合并延后的更新
+					backpressure.drainShedUpdates();
+
 					//获取下一个有效的操作元素
-					updateAction = updateQueue.poll();
+					updateAction = this.pollAction();
 
 				} while (true);
 
@@ -290,7 +390,10 @@ public class DelayDbPersistService implements DbPersistService {
 	public void destroy() {
 		// 关闭消费入库线程池
 		ThreadUtils.shundownThreadPool(DB_POOL_SERVICE, true);
-				
+
+		// 提交合并延后的更新
+		this.backpressure.flushShedUpdates();
+
 		int failCount = 0;
 		while (failCount < 3) {
 			try {
@@ -313,11 +416,11 @@ public class DelayDbPersistService implements DbPersistService {
 	 */
 	public void flushAllEntity() {
 		//入库延迟队列中的实体
-		QueuedAction updateAction = this.updateQueue.poll();
+		QueuedAction updateAction = this.pollAction();
 		while (updateAction != null) {
 			//执行入库
 			updateAction.persistAction.run();
-			updateAction = this.updateQueue.poll();
+			updateAction = this.pollAction();
 		}
 
 		//入库正在延迟处理的实体
@@ -347,6 +450,12 @@ public class DelayDbPersistService implements DbPersistService {
 	}
 
 
+	@Override
+	public PersistBackpressure getBackpressure() {
+		return backpressure;
+	}
+
+
 	/**
 	 * 延迟更新操作
 	 * @author Jake
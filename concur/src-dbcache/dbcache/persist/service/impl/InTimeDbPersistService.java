@@ -3,13 +3,19 @@ package dbcache.persist.service.impl;
 import dbcache.conf.impl.CacheConfig;
 import dbcache.CacheObject;
 import dbcache.IEntity;
+import dbcache.persist.CircuitBreaker;
+import dbcache.persist.DeadLetterLog;
+import dbcache.persist.DeadLetterLog.Operation;
 import dbcache.persist.PersistAction;
+import dbcache.persist.PersistBackpressure;
 import dbcache.persist.PersistStatus;
 import dbcache.cache.CacheUnit;
 import dbcache.dbaccess.DbAccessService;
 import dbcache.persist.service.DbPersistService;
 import dbcache.conf.DbRuleService;
+import dbcache.support.jdbc.LazyJsonFields;
 import utils.JsonUtils;
+import utils.collections.concurrent.ConcurrentHashMapV8;
 import utils.thread.NamedThreadFactory;
 import utils.thread.ThreadUtils;
 import utils.thread.SimpleLinkingRunnable;
@@ -17,16 +23,26 @@ import utils.thread.SimpleOrderedThreadPoolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 即时入库实现
+ * <br/>入库失败的实体按指数退避重试,同一实体的多次失败合并为一次重试(入库最新状态)
+ * <br/>同一实体类连续失败时熔断,熔断期间不访问数据库并计为一次失败;重试次数超过上限的实体写入死信日志
  * @author Jake
  * @date 2014年8月13日上午12:27:50
  */
@@ -43,15 +59,75 @@ public class InTimeDbPersistService implements DbPersistService {
 	 */
 	private static final int DEFAULT_DB_POOL_SIZE = Runtime.getRuntime().availableProcessors()/2 + 1;
 
+	/**
+	 * 重试基础间隔(毫秒)
+	 */
+	private static final long RETRY_BASE_MILLIS = 1000;
+
+	/**
+	 * 重试最大间隔(毫秒)
+	 */
+	private static final long RETRY_MAX_MILLIS = 60000;
+
+	/**
+	 * 合并延后的更新检测间隔(毫秒)
+	 */
+	private static final long RETRY_CHECK_MILLIS = 200;
+
+	/**
+	 * 熔断连续失败次数
+	 */
+	private static final int BREAKER_FAILURE_THRESHOLD = 5;
+
+	/**
+	 * 熔断打开时间(毫秒)
+	 */
+	private static final long BREAKER_OPEN_MILLIS = 10000;
+
 	/**
 	 * 入库线程池
 	 */
 	private ExecutorService DB_POOL_SERVICE;
 
 	/**
-	 * 重试实体队列
+	 * 重试实体 {实体缓存对象:重试信息}
+	 */
+	private final ConcurrentMap<CacheObject<?>, RetryEntry> retryMap = new ConcurrentHashMapV8<CacheObject<?>, RetryEntry>();
+
+	/**
+	 * 按重试时间排序的重试队列,已被合并的重试在取出时跳过
+	 */
+	private final DelayQueue<RetryEntry> retryQueue = new DelayQueue<RetryEntry>();
+
+	/**
+	 * 实体类熔断器
+	 */
+	private final ConcurrentMap<Class<?>, CircuitBreaker> circuitBreakers = new ConcurrentHashMapV8<Class<?>, CircuitBreaker>();
+
+	/**
+	 * 重试间隔随机数
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * 死信日志
+	 */
+	private DeadLetterLog deadLetterLog;
+
+	/**
+	 * 已写入死信日志的实体 {实体类#主键:死信信息},重放时按缓存对象当前的状态入库
+	 */
+	private final ConcurrentMap<String, RetryEntry> deadLetters = new ConcurrentHashMapV8<String, RetryEntry>();
+
+	/**
+	 * 入库队列背压控制
 	 */
-	private final ConcurrentLinkedQueue<OrderedPersistAction> retryQueue = new ConcurrentLinkedQueue<OrderedPersistAction>();
+	private PersistBackpressure backpressure;
+
+	/**
+	 * 最大重试次数
+	 */
+	private int maxRetryTimes;
 
 	/**
 	 * 定时检测重试线程
@@ -61,6 +137,10 @@ public class InTimeDbPersistService implements DbPersistService {
 	@Autowired
 	private DbRuleService dbRuleService;
 
+	@Autowired
+	@Qualifier("jdbcDbAccessServiceImpl")
+	private DbAccessService dbAccessService;
+
 
 	@PostConstruct
 	@SuppressWarnings("unchecked")
@@ -81,19 +161,43 @@ public class InTimeDbPersistService implements DbPersistService {
 
 		// 初始化线程池
 		DB_POOL_SERVICE = SimpleOrderedThreadPoolExecutor.newFixedThreadPool(dbPoolSize, threadFactory);
-		
+
+		// 初始化背压控制
+		this.backpressure = PersistBackpressure.valueOf("intime", dbRuleService);
+
+		// 重试配置
+		this.maxRetryTimes = dbRuleService.getRetryMaxTimes();
+		this.deadLetterLog = new DeadLetterLog(dbRuleService.getDeadLetterFile());
+
 		// 初始化检测线程
-		checkRetryThread = new Thread() {
+		checkRetryThread = new Thread(threadGroup, "即时入库重试线程") {
 			public void run() {
 				processRetry();
 			}
 		};
+		checkRetryThread.setDaemon(true);
 		checkRetryThread.start();
 	}
 
 
 	abstract class OrderedPersistAction extends SimpleLinkingRunnable implements PersistAction {
-		
+
+		/** 是否计入待处理任务数 */
+		private boolean pending = false;
+
+		// 提交到线程池
+		void onSubmit() {
+			this.pending = true;
+			backpressure.onSubmit();
+		}
+
+		// 开始执行或提交失败
+		void onComplete() {
+			if (this.pending) {
+				this.pending = false;
+				backpressure.onComplete();
+			}
+		}
 	}
 
 
@@ -102,8 +206,71 @@ public class InTimeDbPersistService implements DbPersistService {
 			final CacheObject<T> cacheObject,
 			final DbAccessService dbAccessService,
 			final CacheConfig<T> cacheConfig) {
+		this.handlePersist(this.createAction(Operation.SAVE, cacheObject, dbAccessService, cacheConfig, 0));
+	}
+
+	@Override
+	public <T extends IEntity<?>> void handleBatchSave(
+			List<CacheObject<T>> cacheObjects,
+			DbAccessService dbAccessService,
+			CacheConfig<T> cacheConfig) {
+
+		// 即时入库按实体顺序执行,逐个提交以保证后续更新在创建之后
+		for (CacheObject<T> cacheObject : cacheObjects) {
+			this.handleSave(cacheObject, dbAccessService, cacheConfig);
+		}
+	}
+
+	@Override
+	public <T extends IEntity<?>> void handleUpdate(
+			final CacheObject<T> cacheObject,
+			final DbAccessService dbAccessService,
+			final CacheConfig<T> cacheConfig) {
+
+		// 改变更新状态
+		if (cacheObject.isUpdateProcessing()) {
+			return;
+		}
+		// 入库队列过载
+		if (!this.backpressure.beforeUpdate(this, cacheObject, dbAccessService, cacheConfig, true)) {
+			return;
+		}
+
+		// 改变更新状态
+		cacheObject.setUpdateProcessing(true);
+
+		this.handlePersist(this.createAction(Operation.UPDATE, cacheObject, dbAccessService, cacheConfig, 0));
+	}
 
-		this.handlePersist(new OrderedPersistAction() {
+
+	@Override
+	public void handleDelete(
+			final CacheObject<?> cacheObject,
+			final DbAccessService dbAccessService,
+			final Object key,
+			final CacheUnit cacheUnit) {
+		this.handlePersist(this.createAction(Operation.DELETE, cacheObject, dbAccessService, null, 0));
+	}
+
+
+	/**
+	 * 创建入库任务
+	 * @param operation 操作类型
+	 * @param cacheObject 实体缓存对象
+	 * @param dbAccessService 数据库存取服务
+	 * @param cacheConfig 实体配置(删除时为null)
+	 * @param retryTimes 已重试次数
+	 * @return
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private OrderedPersistAction createAction(
+			final Operation operation,
+			final CacheObject cacheObject,
+			final DbAccessService dbAccessService,
+			final CacheConfig cacheConfig,
+			final int retryTimes) {
+
+		return new OrderedPersistAction() {
 
 			@Override
 			public AtomicReference<SimpleLinkingRunnable> getLastSimpleLinkingRunnable() {
@@ -113,28 +280,75 @@ public class InTimeDbPersistService implements DbPersistService {
 			@Override
 			public void run() {
 
+				this.onComplete();
+
+				if (operation == Operation.UPDATE) {
+					// 改变更新状态
+					cacheObject.setUpdateProcessing(false);
+				}
+
 				// 判断是否有效
 				if (!this.valid()) {
 					return;
 				}
 
-				Object entity = cacheObject.getEntity();
+				// 熔断中不访问数据库,计为一次失败进入重试,熔断持续时最终写入死信日志
+				CircuitBreaker circuitBreaker = getCircuitBreaker(cacheObject.getEntity().getClass());
+				if (!circuitBreaker.allowRequest()) {
+					addRetry(operation, cacheObject, dbAccessService, cacheConfig, retryTimes + 1);
+					return;
+				}
 
-				// 持久化前操作
-				cacheObject.doBeforePersist(cacheConfig);
+				try {
+					this.doPersist();
+				} catch (RuntimeException e) {
+					circuitBreaker.onFailure();
+					throw e;
+				}
+				circuitBreaker.onSuccess();
+			}
 
-				// 持久化
-				dbAccessService.save(entity);
+			// 持久化
+			private void doPersist() {
+				Object entity = cacheObject.getEntity();
+				switch (operation) {
+					case SAVE:
+						// 持久化前操作
+						cacheObject.doBeforePersist(cacheConfig);
+						dbAccessService.save(entity);
+						// 设置状态为持久化
+						cacheObject.setPersistStatus(PersistStatus.PERSIST);
+						break;
 
-				// 设置状态为持久化
-				cacheObject.setPersistStatus(PersistStatus.PERSIST);
+					case UPDATE:
+						// 持久化前的操作
+						cacheObject.doBeforePersist(cacheConfig);
+						// 保存未成功(重试中或已写入死信日志),改为保存
+						if (cacheObject.getPersistStatus() == PersistStatus.TRANSIENT) {
+							dbAccessService.save(entity);
+							cacheObject.setPersistStatus(PersistStatus.PERSIST);
+						// 重试或写入死信后修改记录可能已被消费,使用全量更新
+						} else if (cacheConfig.isEnableDynamicUpdate() && retryTimes == 0 && !cacheObject.isDeadLetter()) {
+							dbAccessService.update(entity, cacheObject.getModifiedFields());
+						} else {
+							dbAccessService.update(entity);
+						}
+						break;
 
+					case DELETE:
+						dbAccessService.delete(entity);
+						// 设置状态为已删除
+						cacheObject.setPersistStatus(PersistStatus.DELETED);
+						break;
+				}
+				// 死信日志中的数据已过期
+				cacheObject.setDeadLetter(false);
 			}
-			
+
 			@Override
 			public void onException(Throwable t) {
-				cacheObject.setUpdateProcessing(false);
-				retryQueue.add(this);
+				logger.error("执行入库时产生异常! 如果是主键冲突异常可忽略!" + this.getPersistInfo(), t);
+				addRetry(operation, cacheObject, dbAccessService, cacheConfig, retryTimes + 1);
 			}
 
 			@Override
@@ -147,169 +361,247 @@ public class InTimeDbPersistService implements DbPersistService {
 
 				return JsonUtils.object2JsonString(cacheObject.getEntity());
 			}
-			
+
 			@Override
 			public boolean valid() {
-				return cacheObject.getPersistStatus() == PersistStatus.TRANSIENT;
+				switch (operation) {
+					case SAVE:
+						return cacheObject.getPersistStatus() == PersistStatus.TRANSIENT;
+					case DELETE:
+						return cacheObject.getPersistStatus() == PersistStatus.PERSIST;
+					default:
+						return true;
+				}
 			}
 
-		});
-
-		
+		};
 	}
 
-	@Override
-	public <T extends IEntity<?>> void handleUpdate(
-			final CacheObject<T> cacheObject,
-			final DbAccessService dbAccessService,
-			final CacheConfig<T> cacheConfig) {
 
-		// 改变更新状态
-		if (cacheObject.isUpdateProcessing()) {
-			return;
+	/**
+	 * 获取实体类熔断器
+	 * @param clazz 实体类
+	 * @return
+	 */
+	private CircuitBreaker getCircuitBreaker(Class<?> clazz) {
+		CircuitBreaker circuitBreaker = this.circuitBreakers.get(clazz);
+		if (circuitBreaker == null) {
+			circuitBreaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS);
+			CircuitBreaker old = this.circuitBreakers.putIfAbsent(clazz, circuitBreaker);
+			if (old != null) {
+				circuitBreaker = old;
+			}
 		}
-		// 改变更新状态
-		cacheObject.setUpdateProcessing(true);
-		
-		this.handlePersist(new OrderedPersistAction() {
+		return circuitBreaker;
+	}
 
-			@Override
-			public AtomicReference<SimpleLinkingRunnable> getLastSimpleLinkingRunnable() {
-				return cacheObject.getLastLinkingRunnable();
-			}
 
-			@Override
-			public void run() {
-				
-				// 改变更新状态
-				cacheObject.setUpdateProcessing(false);
+	/**
+	 * 添加重试,与该实体已有的重试合并
+	 * @param operation 操作类型
+	 * @param cacheObject 实体缓存对象
+	 * @param dbAccessService 数据库存取服务
+	 * @param cacheConfig 实体配置
+	 * @param retryTimes 已重试次数
+	 */
+	private void addRetry(Operation operation, CacheObject<?> cacheObject,
+						  DbAccessService dbAccessService, CacheConfig<?> cacheConfig, int retryTimes) {
 
-				// 持久化前的操作
-				cacheObject.doBeforePersist(cacheConfig);
+		RetryEntry retryEntry = new RetryEntry(operation, cacheObject, dbAccessService, cacheConfig,
+				retryTimes, System.currentTimeMillis() + this.getRetryDelay(retryTimes));
 
-				//持久化
-				if (cacheConfig.isEnableDynamicUpdate()) {
-					dbAccessService.update(cacheObject.getEntity(), cacheObject.getModifiedFields());
-				} else {
-					dbAccessService.update(cacheObject.getEntity());
-				}
+		// 超过重试次数写入死信日志
+		if (retryTimes > this.maxRetryTimes) {
+			this.writeDeadLetter(retryEntry);
+			return;
+		}
 
+		for (;;) {
+			RetryEntry old = this.retryMap.putIfAbsent(cacheObject, retryEntry);
+			if (old == null) {
+				this.retryQueue.add(retryEntry);
+				return;
 			}
-
-			@Override
-			public void onException(Throwable t) {
-				cacheObject.setUpdateProcessing(false);
-				retryQueue.add(this);
+			RetryEntry merged = old.merge(retryEntry);
+			if (this.retryMap.replace(cacheObject, old, merged)) {
+				this.retryQueue.add(merged);
+				return;
 			}
+		}
+	}
 
-			@Override
-			public String getPersistInfo() {
-				return JsonUtils.object2JsonString(cacheObject.getEntity());
-			}
 
-			@Override
-			public boolean valid() {
-				return true;
-			}
+	/**
+	 * 计算重试间隔(指数退避,随机抖动)
+	 * @param retryTimes 已重试次数
+	 * @return 毫秒
+	 */
+	private long getRetryDelay(int retryTimes) {
+		long delay = RETRY_BASE_MILLIS << Math.min(retryTimes, 16);
+		if (delay > RETRY_MAX_MILLIS) {
+			delay = RETRY_MAX_MILLIS;
+		}
+		long half = delay / 2;
+		return half + (long) (this.random.nextDouble() * half);
+	}
 
-		});
 
+	/**
+	 * 写入死信日志
+	 * <br/>缓存对象标记为死信,不再固定在缓存中,之后的入库成功时清除标记
+	 * @param retryEntry 失败的入库
+	 */
+	private void writeDeadLetter(RetryEntry retryEntry) {
+		Operation operation = retryEntry.operation;
+		CacheObject<?> cacheObject = retryEntry.cacheObject;
+		if (operation == Operation.SAVE && cacheObject.getPersistStatus() != PersistStatus.TRANSIENT) {
+			return;
+		}
+		if (operation == Operation.DELETE && cacheObject.getPersistStatus() != PersistStatus.PERSIST) {
+			return;
+		}
+
+		Object entity = cacheObject.getEntity();
+		// 未解析的延迟属性需先解析才能编码
+		LazyJsonFields.valueOf(entity.getClass()).loadAll(entity);
+		logger.error("入库重试失败,写入死信日志[{}]:{}", operation, JsonUtils.object2JsonString(entity));
+		this.deadLetterLog.append(operation, entity);
+
+		cacheObject.setDeadLetter(true);
+		String key = getDeadLetterKey(entity);
+		RetryEntry old = this.deadLetters.put(key, retryEntry);
+		if (old != null && old.cacheObject == cacheObject) {
+			this.deadLetters.put(key, old.merge(retryEntry));
+		}
 	}
 
 
-	@Override
-	public void handleDelete(
-			final CacheObject<?> cacheObject,
-			final DbAccessService dbAccessService,
-			final Object key,
-			final CacheUnit cacheUnit) {
+	/**
+	 * 获取死信实体的key
+	 * @param entity 实体
+	 * @return 实体类#主键
+	 */
+	private static String getDeadLetterKey(Object entity) {
+		return entity.getClass().getName() + "#" + ((IEntity<?>) entity).getId();
+	}
 
-		this.handlePersist(new OrderedPersistAction() {
 
-			@Override
-			public AtomicReference<SimpleLinkingRunnable> getLastSimpleLinkingRunnable() {
-				return cacheObject.getLastLinkingRunnable();
-			}
+	// 处理失败任务
+	private void processRetry() {
+		long lastDrainTime = 0;
+		while (!Thread.interrupted()) {
+			try {
+				// 等待最早到期的重试
+				RetryEntry retryEntry = retryQueue.poll(RETRY_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+				if (retryEntry != null && retryMap.remove(retryEntry.cacheObject, retryEntry)) {
+					handlePersist(retryEntry.createAction());
+				}
 
-			@Override
-			public void run() {
-				// 判断是否有效
-				if (!this.valid()) {
-					return;
+				// 未过载时重新提交合并延后的更新
+				long now = System.currentTimeMillis();
+				if (now - lastDrainTime >= RETRY_CHECK_MILLIS) {
+					lastDrainTime = now;
+					backpressure.drainShedUpdates();
 				}
-				// 持久化
-				dbAccessService.delete(cacheObject.getEntity());
-			}
-			
-			@Override
-			public void onException(Throwable t) {
-				cacheObject.setUpdateProcessing(false);
-				retryQueue.add(this);
+			} catch (InterruptedException e) {
+				break;
+			} catch (Exception e) {
+				logger.error("处理入库重试时产生异常!", e);
 			}
+		}
+	}
 
+
+	/**
+	 * 重新入库死信日志中的实体
+	 * <br/>实体仍在内存中时按缓存对象当前的状态入库,写入死信后已成功入库的跳过;
+	 * 不在内存中(如重启后)按死信日志中的数据入库
+	 * @return 成功重放的条数
+	 */
+	public int replayDeadLetters() {
+		final DeadLetterLog.Replayer dbReplayer = new DeadLetterLog.DbReplayer(this.dbAccessService);
+		int count = this.deadLetterLog.replay(new DeadLetterLog.Replayer() {
 			@Override
-			public String getPersistInfo() {
-				return JsonUtils.object2JsonString(cacheObject.getEntity());
+			public void replay(Operation operation, Object entity) throws Exception {
+				RetryEntry retryEntry = deadLetters.get(getDeadLetterKey(entity));
+				if (retryEntry != null) {
+					replayCached(retryEntry);
+				} else {
+					dbReplayer.replay(operation, entity);
+				}
 			}
+		});
 
-
-			@Override
-			public boolean valid() {
-				return cacheObject.getPersistStatus() == PersistStatus.PERSIST;
+		// 移除已入库的
+		for (Map.Entry<String, RetryEntry> entry : this.deadLetters.entrySet()) {
+			if (!entry.getValue().cacheObject.isDeadLetter()) {
+				this.deadLetters.remove(entry.getKey(), entry.getValue());
 			}
+		}
+		return count;
+	}
 
 
-		});
+	/**
+	 * 按缓存对象当前的状态重新入库
+	 * @param retryEntry 死信信息
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void replayCached(RetryEntry retryEntry) {
+		CacheObject cacheObject = retryEntry.cacheObject;
+		if (!cacheObject.isDeadLetter()) {
+			return;
+		}
 
-	}
-	
-	
-	// 处理失败任务
-	private void processRetry() {
-		// 定时检测失败操作
-		final long delayWaitTimmer = dbRuleService.getDelayWaitTimmer();//延迟入库时间(毫秒)
-		OrderedPersistAction action = null;
-		while (!Thread.interrupted()) {
-			try {
-				action = retryQueue.poll();
-				while (action != null) {
-					handlePersist(action);
-					if (Thread.interrupted()) {
-						break;
-					}
-					action = retryQueue.poll();
-				}
-			} catch (Exception e) {
-				if (action != null) {
-					logger.error("执行入库时产生异常! 如果是主键冲突异常可忽略!" + action.getPersistInfo(), e);
-				} else {
-					logger.error("执行批量入库时产生异常! 如果是主键冲突异常可忽略!", e);
-				}
-				e.printStackTrace();
-			}
-			try {
-				Thread.sleep(delayWaitTimmer);
-			} catch (InterruptedException e1) {
-				// ignore
+		Object entity = cacheObject.getEntity();
+		DbAccessService dbAccessService = retryEntry.dbAccessService;
+		if (retryEntry.operation == Operation.DELETE) {
+			if (cacheObject.getPersistStatus() == PersistStatus.PERSIST) {
+				dbAccessService.delete(entity);
+				cacheObject.setPersistStatus(PersistStatus.DELETED);
 			}
+		} else if (cacheObject.getPersistStatus() == PersistStatus.TRANSIENT) {
+			cacheObject.doBeforePersist(retryEntry.cacheConfig);
+			dbAccessService.save(entity);
+			cacheObject.setPersistStatus(PersistStatus.PERSIST);
+		} else {
+			cacheObject.doBeforePersist(retryEntry.cacheConfig);
+			dbAccessService.update(entity);
 		}
+		cacheObject.setDeadLetter(false);
 	}
-	
+
 
 	@Override
 	public void destroy() {
 		// 中断重试线程
 		checkRetryThread.interrupt();
-		
-		// 清空重试队列
-		OrderedPersistAction action = retryQueue.poll();
-		while (action != null) {
-			handlePersist(action);
-			action = retryQueue.poll();
-		}
+
+		// 提交合并延后的更新
+		this.backpressure.flushShedUpdates();
 
 		// 关闭消费入库线程池
 		ThreadUtils.shundownThreadPool(DB_POOL_SERVICE, false);
+
+		// 同步执行剩余的重试,仍然失败的写入死信日志
+		List<RetryEntry> retryEntries = new ArrayList<RetryEntry>(retryMap.values());
+		retryMap.clear();
+		retryQueue.clear();
+		for (RetryEntry retryEntry : retryEntries) {
+			try {
+				this.handleTask(retryEntry.createAction());
+			} catch (Exception e) {
+				logger.error("关闭时执行入库重试失败!", e);
+				this.writeDeadLetter(retryEntry);
+			}
+		}
+		// 熔断中未执行的
+		for (RetryEntry retryEntry : retryMap.values()) {
+			this.writeDeadLetter(retryEntry);
+		}
+		retryMap.clear();
+
+		this.deadLetterLog.close();
 	}
 
 
@@ -325,7 +617,25 @@ public class InTimeDbPersistService implements DbPersistService {
 
 	@Override
 	public void logHadNotPersistEntity() {
+		for (RetryEntry retryEntry : retryMap.values()) {
+			logger.error("未入库的实体[{}]:{}", retryEntry.operation,
+					JsonUtils.object2JsonString(retryEntry.cacheObject.getEntity()));
+		}
+	}
+
 
+	@Override
+	public PersistBackpressure getBackpressure() {
+		return backpressure;
+	}
+
+
+	/**
+	 * 获取重试实体数量
+	 * @return
+	 */
+	public int getRetrySize() {
+		return this.retryMap.size();
 	}
 
 
@@ -336,13 +646,19 @@ public class InTimeDbPersistService implements DbPersistService {
 	private void handlePersist(OrderedPersistAction persistAction) {
 
 		try {
+			persistAction.onSubmit();
 			DB_POOL_SERVICE.execute(persistAction);
 		} catch (RejectedExecutionException ex) {
 			logger.error("提交任务到更新队列被拒绝,使用同步处理:RejectedExecutionException");
 
-			this.handleTask(persistAction);
+			try {
+				this.handleTask(persistAction);
+			} catch (Exception e) {
+				persistAction.onException(e);
+			}
 
 		} catch (Exception ex) {
+			persistAction.onComplete();
 			persistAction.onException(ex);
 
 			logger.error("提交任务到更新队列产生异常", ex);
@@ -358,4 +674,80 @@ public class InTimeDbPersistService implements DbPersistService {
 	}
 
 
+	/**
+	 * 重试信息
+	 */
+	class RetryEntry implements Delayed {
+
+		/** 操作类型 */
+		final Operation operation;
+
+		/** 实体缓存对象 */
+		final CacheObject<?> cacheObject;
+
+		/** 数据库存取服务 */
+		final DbAccessService dbAccessService;
+
+		/** 实体配置 */
+		final CacheConfig<?> cacheConfig;
+
+		/** 已重试次数 */
+		final int retryTimes;
+
+		/** 下次重试时间 */
+		final long nextRetryTime;
+
+		RetryEntry(Operation operation, CacheObject<?> cacheObject, DbAccessService dbAccessService,
+				   CacheConfig<?> cacheConfig, int retryTimes, long nextRetryTime) {
+			this.operation = operation;
+			this.cacheObject = cacheObject;
+			this.dbAccessService = dbAccessService;
+			this.cacheConfig = cacheConfig;
+			this.retryTimes = retryTimes;
+			this.nextRetryTime = nextRetryTime;
+		}
+
+		/**
+		 * 合并同一实体的重试,删除优先于保存,保存优先于更新
+		 * @param other 新的重试
+		 * @return
+		 */
+		RetryEntry merge(RetryEntry other) {
+			Operation operation = this.operation;
+			if (operation == Operation.UPDATE || other.operation == Operation.DELETE) {
+				operation = other.operation;
+			}
+			return new RetryEntry(operation,
+					other.cacheObject,
+					other.dbAccessService,
+					other.cacheConfig != null ? other.cacheConfig : this.cacheConfig,
+					Math.max(this.retryTimes, other.retryTimes),
+					Math.max(this.nextRetryTime, other.nextRetryTime));
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.nextRetryTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			long diff = this.nextRetryTime - ((RetryEntry) o).nextRetryTime;
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+
+		/**
+		 * 创建重试任务,保存已完成时改为更新
+		 * @return
+		 */
+		OrderedPersistAction createAction() {
+			Operation operation = this.operation;
+			if (operation == Operation.SAVE && this.cacheObject.getPersistStatus() == PersistStatus.PERSIST) {
+				operation = Operation.UPDATE;
+			}
+			return InTimeDbPersistService.this.createAction(operation, this.cacheObject,
+					this.dbAccessService, this.cacheConfig, Math.max(this.retryTimes, 1));
+		}
+	}
+
 }
@@ -0,0 +1,473 @@
+package dbcache.persist.service.impl;
+
+import com.lmax.disruptor.*;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import dbcache.CacheObject;
+import dbcache.IEntity;
+import dbcache.cache.CacheUnit;
+import dbcache.conf.DbRuleService;
+import dbcache.conf.impl.CacheConfig;
+import dbcache.dbaccess.DbAccessService;
+import dbcache.persist.PersistBackpressure;
+import dbcache.persist.PersistStatus;
+import dbcache.persist.service.DbBatchAccessService;
+import dbcache.persist.service.DbPersistService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import utils.JsonUtils;
+import utils.thread.NamedThreadFactory;
+import utils.thread.ThreadUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * RingBuffer入库实现类
+ * <br/>使用预分配的Disruptor环形队列传递入库事件,提交入库时不创建任务对象;
+ * 单个消费线程按批(消费到队列末尾或达到批量上限)分类批量入库
+ * <br/>此方式DynamicUpdate的实体按修改属性单条更新
+ * <br/>不能支持到Hibernate入库方式
+ */
+@Component("ringBufferDbPersistService")
+public class RingBufferDbPersistService implements DbPersistService {
+
+	/**
+	 * logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(RingBufferDbPersistService.class);
+
+	/** 保存 */
+	private static final int SAVE = 1;
+
+	/** 更新 */
+	private static final int UPDATE = 2;
+
+	/** 删除 */
+	private static final int DELETE = 3;
+
+	/** 单次批量入库最大数量 */
+	private static final int MAX_BATCH_SIZE = 1000;
+
+	/** 关闭时等待处理完毕的时间(秒) */
+	private static final int SHUTDOWN_WAIT_SECONDS = 60;
+
+
+	@Autowired
+	private DbRuleService dbRuleService;
+
+	@Autowired
+	@Qualifier("jdbcDbAccessServiceImpl")
+	private DbBatchAccessService dbAccessService;
+
+	/**
+	 * 入库线程池
+	 */
+	private ExecutorService DB_POOL_SERVICE;
+
+	private Disruptor<PersistEvent> disruptor;
+
+	private RingBuffer<PersistEvent> ringBuffer;
+
+	/**
+	 * 已处理的序号
+	 */
+	private final Sequence processedSequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+
+	/**
+	 * 分类批量任务
+	 */
+	private final BatchTasks batchTasks = new BatchTasks();
+
+	/**
+	 * 是否已关闭
+	 */
+	private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+
+	@SuppressWarnings("unchecked")
+	@PostConstruct
+	public void init() {
+		// 初始化入库线程
+		ThreadGroup threadGroup = new ThreadGroup("缓存模块");
+		NamedThreadFactory threadFactory = new NamedThreadFactory(threadGroup, "RingBuffer入库线程池");
+		DB_POOL_SERVICE = Executors.newSingleThreadExecutor(threadFactory);
+
+		this.disruptor = new Disruptor<PersistEvent>(new EventFactory<PersistEvent>() {
+			@Override
+			public PersistEvent newInstance() {
+				return new PersistEvent();
+			}
+		}, dbRuleService.getRingBufferSize(), DB_POOL_SERVICE, ProducerType.MULTI,
+				createWaitStrategy(dbRuleService.getRingBufferWaitStrategy()));
+
+		this.disruptor.handleEventsWith(new PersistEventHandler());
+		this.ringBuffer = this.disruptor.start();
+	}
+
+
+	/**
+	 * 创建等待策略
+	 * @param name blocking|lite|sleeping|yielding|busyspin
+	 * @return
+	 */
+	static WaitStrategy createWaitStrategy(String name) {
+		if (name == null || "blocking".equalsIgnoreCase(name)) {
+			return new BlockingWaitStrategy();
+		} else if ("lite".equalsIgnoreCase(name)) {
+			return new LiteBlockingWaitStrategy();
+		} else if ("sleeping".equalsIgnoreCase(name)) {
+			return new SleepingWaitStrategy();
+		} else if ("yielding".equalsIgnoreCase(name)) {
+			return new YieldingWaitStrategy();
+		} else if ("busyspin".equalsIgnoreCase(name)) {
+			return new BusySpinWaitStrategy();
+		}
+		throw new IllegalArgumentException("不支持的RingBuffer等待策略:" + name);
+	}
+
+
+	@Override
+	public <T extends IEntity<?>> void handleSave(
+			CacheObject<T> cacheObject,
+			DbAccessService dbAccessService,
+			CacheConfig<T> cacheConfig) {
+		this.publish(SAVE, cacheObject, cacheConfig);
+	}
+
+
+	@Override
+	public <T extends IEntity<?>> void handleBatchSave(
+			List<CacheObject<T>> cacheObjects,
+			DbAccessService dbAccessService,
+			CacheConfig<T> cacheConfig) {
+
+		// 一次申请多个槽位,超过队列大小时分段发布
+		int bufferSize = ringBuffer.getBufferSize();
+		int size = cacheObjects.size();
+		for (int from = 0; from < size; from += bufferSize) {
+			int n = Math.min(bufferSize, size - from);
+			long hi = ringBuffer.next(n);
+			long lo = hi - n + 1;
+			try {
+				for (long sequence = lo; sequence <= hi; sequence++) {
+					PersistEvent event = ringBuffer.get(sequence);
+					event.type = SAVE;
+					event.cacheObject = cacheObjects.get(from + (int) (sequence - lo));
+					event.cacheConfig = cacheConfig;
+				}
+			} finally {
+				ringBuffer.publish(lo, hi);
+			}
+		}
+	}
+
+
+	@Override
+	public <T extends IEntity<?>> void handleUpdate(
+			CacheObject<T> cacheObject,
+			DbAccessService dbAccessService,
+			CacheConfig<T> cacheConfig) {
+
+		// 改变更新状态
+		if (cacheObject.isUpdateProcessing()) {
+			return;
+		}
+
+		// 改变更新状态
+		cacheObject.setUpdateProcessing(true);
+
+		this.publish(UPDATE, cacheObject, cacheConfig);
+	}
+
+
+	@Override
+	public void handleDelete(
+			CacheObject<?> cacheObject,
+			DbAccessService dbAccessService,
+			Object key,
+			CacheUnit cacheUnit) {
+		this.publish(DELETE, cacheObject, null);
+	}
+
+
+	// 发布入库事件,队列满时等待
+	private void publish(int type, CacheObject<?> cacheObject, CacheConfig<?> cacheConfig) {
+		long sequence = ringBuffer.next();
+		try {
+			PersistEvent event = ringBuffer.get(sequence);
+			event.type = type;
+			event.cacheObject = cacheObject;
+			event.cacheConfig = cacheConfig;
+		} finally {
+			ringBuffer.publish(sequence);
+		}
+	}
+
+
+	// 批量入库操作
+	protected void flushBatchTask() {
+
+		// 保存
+		for (Entry<Class<?>, List<Object>> entry : this.batchTasks.saveBatchQueue.entrySet()) {
+			List<Object> list = entry.getValue();
+			if (list.isEmpty()) {
+				continue;
+			}
+			try {
+				this.dbAccessService.save(entry.getKey(), list);
+			} catch (Exception e) {
+				logger.error("执行批量入库时产生异常! 如果是主键冲突异常可忽略!", e);
+			}
+			list.clear();
+		}
+
+		// 更新
+		for (Entry<Class<?>, List<Object>> entry : this.batchTasks.updateBatchQueue.entrySet()) {
+			List<Object> list = entry.getValue();
+			if (list.isEmpty()) {
+				continue;
+			}
+			try {
+				this.dbAccessService.update(entry.getKey(), list);
+			} catch (Exception e) {
+				logger.error("执行批量更新时产生异常!", e);
+			}
+			list.clear();
+		}
+
+		// 删除
+		for (Entry<Class<?>, List<Object>> entry : this.batchTasks.deleteBatchQueue.entrySet()) {
+			List<Object> list = entry.getValue();
+			if (list.isEmpty()) {
+				continue;
+			}
+			List<CacheObject<?>> deletedList = this.batchTasks.deleteObjects.get(entry.getKey());
+			try {
+				this.dbAccessService.delete(entry.getKey(), list);
+				// 设置状态为已删除
+				for (CacheObject<?> cacheObject : deletedList) {
+					cacheObject.setPersistStatus(PersistStatus.DELETED);
+				}
+			} catch (Exception e) {
+				logger.error("执行批量删除时产生异常!", e);
+			}
+			list.clear();
+			deletedList.clear();
+		}
+
+		this.batchTasks.size = 0;
+	}
+
+
+	// 处理单个入库事件
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void processEvent(PersistEvent event) {
+		CacheObject cacheObject = event.cacheObject;
+		CacheConfig cacheConfig = event.cacheConfig;
+
+		switch (event.type) {
+			case SAVE:
+				// 判断是否有效
+				if (cacheObject.getPersistStatus() != PersistStatus.TRANSIENT) {
+					return;
+				}
+				// 持久化前操作
+				cacheObject.doBeforePersist(cacheConfig);
+				// 添加持久化任务到批量任务队列
+				batchTasks.addSaveTask(cacheObject);
+				// 设置更新状态
+				cacheObject.setPersistStatus(PersistStatus.PERSIST);
+				break;
+
+			case UPDATE:
+				// 改变更新状态
+				cacheObject.setUpdateProcessing(false);
+				// 持久化前的操作
+				cacheObject.doBeforePersist(cacheConfig);
+				if (cacheConfig.isEnableDynamicUpdate()) {
+					// 单条更新前先执行已收集的批量任务,保证先插入后更新
+					if (batchTasks.size > 0) {
+						flushBatchTask();
+					}
+					try {
+						dbAccessService.update(cacheObject.getEntity(), cacheObject.getModifiedFields());
+					} catch (Exception e) {
+						logger.error("执行入库时产生异常!" + JsonUtils.object2JsonString(cacheObject.getEntity()), e);
+					}
+				} else {
+					// 添加持久化任务到批量任务队列
+					batchTasks.addUpdateTask(cacheObject);
+				}
+				break;
+
+			case DELETE:
+				// 判断是否有效
+				if (cacheObject.getPersistStatus() != PersistStatus.PERSIST) {
+					return;
+				}
+				// 添加持久化任务到批量任务队列
+				batchTasks.addDeleteTask(cacheObject);
+				break;
+		}
+	}
+
+
+	@Override
+	public void destroy() {
+		if (!shutdown.compareAndSet(false, true)) {
+			return;
+		}
+
+		// 等待队列中的事件处理完毕
+		try {
+			this.disruptor.shutdown(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			logger.error("等待RingBuffer入库超时!", e);
+			this.disruptor.halt();
+		}
+
+		// 关闭消费入库线程池
+		ThreadUtils.shundownThreadPool(DB_POOL_SERVICE, false);
+	}
+
+
+	@Override
+	public void logHadNotPersistEntity() {
+		long cursor = ringBuffer.getCursor();
+		for (long sequence = processedSequence.get() + 1; sequence <= cursor; sequence++) {
+			CacheObject<?> cacheObject = ringBuffer.get(sequence).cacheObject;
+			if (cacheObject != null) {
+				logger.error("检测到可能未入库对象! " + JsonUtils.object2JsonString(cacheObject.getEntity()));
+			}
+		}
+	}
+
+
+	@Override
+	public ExecutorService getThreadPool() {
+		return DB_POOL_SERVICE;
+	}
+
+
+	/**
+	 * RingBuffer容量固定,队列满时提交线程等待,不需要额外的背压控制
+	 * @return null
+	 */
+	@Override
+	public PersistBackpressure getBackpressure() {
+		return null;
+	}
+
+
+	/**
+	 * 获取RingBuffer剩余容量
+	 * @return
+	 */
+	public long getRemainingCapacity() {
+		return ringBuffer.remainingCapacity();
+	}
+
+
+	/**
+	 * 入库事件处理
+	 */
+	class PersistEventHandler implements EventHandler<PersistEvent> {
+
+		@Override
+		public void onEvent(PersistEvent event, long sequence, boolean endOfBatch) throws Exception {
+			try {
+				processEvent(event);
+			} catch (Exception e) {
+				logger.error("执行入库时产生异常!", e);
+			}
+
+			if (endOfBatch || batchTasks.size >= MAX_BATCH_SIZE) {
+				flushBatchTask();
+
+				// 入库后再释放引用,未入库的事件保留实体供logHadNotPersistEntity输出
+				for (long processed = processedSequence.get() + 1; processed <= sequence; processed++) {
+					PersistEvent processedEvent = ringBuffer.get(processed);
+					processedEvent.cacheObject = null;
+					processedEvent.cacheConfig = null;
+				}
+				processedSequence.set(sequence);
+			}
+		}
+	}
+
+
+	/**
+	 * 入库事件(预分配,循环使用)
+	 */
+	static class PersistEvent {
+
+		int type;
+
+		CacheObject<?> cacheObject;
+
+		CacheConfig<?> cacheConfig;
+
+	}
+
+
+	/**
+	 * 分类批量任务
+	 */
+	static class BatchTasks {
+
+		final Map<Class<?>, List<Object>> saveBatchQueue = new HashMap<Class<?>, List<Object>>();
+
+		final Map<Class<?>, List<Object>> updateBatchQueue = new HashMap<Class<?>, List<Object>>();
+
+		final Map<Class<?>, List<Object>> deleteBatchQueue = new HashMap<Class<?>, List<Object>>();
+
+		/** 删除任务的缓存对象,删除入库后设置状态 */
+		final Map<Class<?>, List<CacheObject<?>>> deleteObjects = new HashMap<Class<?>, List<CacheObject<?>>>();
+
+		int size;
+
+		// 添加插入数据任务
+		void addSaveTask(CacheObject<?> object) {
+			getList(saveBatchQueue, object).add(object.getEntity());
+		}
+
+		// 添加更新数据任务
+		void addUpdateTask(CacheObject<?> object) {
+			getList(updateBatchQueue, object).add(object.getEntity());
+		}
+
+		// 添加删除数据任务
+		void addDeleteTask(CacheObject<?> object) {
+			getList(deleteBatchQueue, object).add(object.getEntity());
+			Class<?> clazz = object.getEntity().getClass();
+			List<CacheObject<?>> list = deleteObjects.get(clazz);
+			if (list == null) {
+				list = new ArrayList<CacheObject<?>>();
+				deleteObjects.put(clazz, list);
+			}
+			list.add(object);
+		}
+
+		private List<Object> getList(Map<Class<?>, List<Object>> batchQueue, CacheObject<?> object) {
+			size++;
+			List<Object> list = batchQueue.get(object.getEntity().getClass());
+			if (list == null) {
+				list = new ArrayList<Object>();
+				batchQueue.put(object.getEntity().getClass(), list);
+			}
+			return list;
+		}
+
+	}
+
+}
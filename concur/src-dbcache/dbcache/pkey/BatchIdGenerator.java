@@ -0,0 +1,19 @@
+package dbcache.pkey;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 支持批量生成的主键id生成器接口
+ * <br/>一次分配连续的一段id,批量新建实体时使用
+ */
+public interface BatchIdGenerator<PK extends Serializable> extends IdGenerator<PK> {
+
+	/**
+	 * 批量生成id
+	 * @param count 数量
+	 * @return List<PK>
+	 */
+	List<PK> generateIds(int count);
+
+}
@@ -1,11 +1,13 @@
 package dbcache.pkey;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * int主键id生成器
  */
-public class IntGenerator implements IdGenerator<Integer> {
+public class IntGenerator implements BatchIdGenerator<Integer> {
 	
 	private final AtomicInteger idGenerator;
 	
@@ -28,4 +30,15 @@ public class IntGenerator implements IdGenerator<Integer> {
 		return idGenerator.incrementAndGet();
 	}
 
+
+	@Override
+	public List<Integer> generateIds(int count) {
+		int last = idGenerator.addAndGet(count);
+		List<Integer> ids = new ArrayList<Integer>(count);
+		for (int id = last - count + 1; id <= last; id++) {
+			ids.add(id);
+		}
+		return ids;
+	}
+
 }
@@ -1,12 +1,14 @@
 package dbcache.pkey;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * Long主键id生成器
  */
-public class LongGenerator implements IdGenerator<Long> {
+public class LongGenerator implements BatchIdGenerator<Long> {
 	
 	private final AtomicLong idGenerator;
 	
@@ -30,4 +32,15 @@ public class LongGenerator implements IdGenerator<Long> {
 		return idGenerator.incrementAndGet();
 	}
 
+
+	@Override
+	public List<Long> generateIds(int count) {
+		long last = idGenerator.addAndGet(count);
+		List<Long> ids = new ArrayList<Long>(count);
+		for (long id = last - count + 1; id <= last; id++) {
+			ids.add(id);
+		}
+		return ids;
+	}
+
 }
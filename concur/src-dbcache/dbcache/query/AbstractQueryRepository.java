@@ -0,0 +1,37 @@
+package dbcache.query;
+
+/**
+ * 查询接口实现基类
+ * <br/>QueryRepositoryFactory生成的实现类继承此类,接口方法按序号转发到对应的QueryMethod
+ */
+public abstract class AbstractQueryRepository {
+
+	/**
+	 * 查询方法列表
+	 */
+	private final QueryMethod[] queryMethods;
+
+	protected AbstractQueryRepository(QueryMethod[] queryMethods) {
+		this.queryMethods = queryMethods;
+	}
+
+	/**
+	 * 执行查询方法
+	 * @param index 方法序号
+	 * @param args 参数
+	 * @return
+	 */
+	protected final Object execute(int index, Object[] args) {
+		return queryMethods[index].execute(args);
+	}
+
+	/**
+	 * 清除所有缓存的查询结果
+	 */
+	public void clearQueryCache() {
+		for (QueryMethod queryMethod : queryMethods) {
+			queryMethod.clearCache();
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+package dbcache.query;
+
+import dbcache.index.IndexChangeListener;
+
+/**
+ * 索引变化时使依赖该实体的查询缓存失效
+ */
+@SuppressWarnings("rawtypes")
+class QueryCacheIndexListener implements IndexChangeListener {
+
+	// 实体类
+	private final Class<?> entityClass;
+
+	QueryCacheIndexListener(Class<?> entityClass) {
+		this.entityClass = entityClass;
+	}
+
+	@Override
+	public void onIndexCreate(String name, Object value, Comparable key) {
+		QueryCacheVersions.touch(entityClass);
+	}
+
+	@Override
+	public void onIndexRemove(String name, Object value, Comparable key) {
+		QueryCacheVersions.touch(entityClass);
+	}
+
+	@Override
+	public void onIndexChange(String name, Object oldValue, Object newValue, Comparable key) {
+		QueryCacheVersions.touch(entityClass);
+	}
+
+}
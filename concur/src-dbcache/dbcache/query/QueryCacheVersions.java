@@ -0,0 +1,48 @@
+package dbcache.query;
+
+import utils.collections.concurrent.ConcurrentHashMapV8;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实体数据版本号
+ * <br/>查询结果缓存记录查询前的版本号,实体变更(入库、索引变化)时版本号递增,版本不一致的缓存结果视为失效
+ * <br/>只有被缓存查询依赖的实体类才会记录版本号
+ */
+public class QueryCacheVersions {
+
+	/**
+	 * 实体类 - 版本号
+	 */
+	private static final ConcurrentMap<Class<?>, AtomicLong> VERSIONS = new ConcurrentHashMapV8<Class<?>, AtomicLong>();
+
+
+	/**
+	 * 注册需要记录版本号的实体类
+	 * @param clazz 实体类
+	 * @return 版本号
+	 */
+	static AtomicLong register(Class<?> clazz) {
+		AtomicLong version = VERSIONS.get(clazz);
+		if (version != null) {
+			return version;
+		}
+		version = new AtomicLong();
+		AtomicLong old = VERSIONS.putIfAbsent(clazz, version);
+		return old != null ? old : version;
+	}
+
+
+	/**
+	 * 实体变更
+	 * @param clazz 实体类
+	 */
+	public static void touch(Class<?> clazz) {
+		AtomicLong version = VERSIONS.get(clazz);
+		if (version != null) {
+			version.incrementAndGet();
+		}
+	}
+
+}
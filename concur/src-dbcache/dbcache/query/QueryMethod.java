@@ -0,0 +1,419 @@
+package dbcache.query;
+
+import dbcache.DbCacheService;
+import dbcache.IEntity;
+import dbcache.anno.Cached;
+import dbcache.anno.Query;
+import dbcache.conf.DbConfigFactory;
+import dbcache.support.jdbc.JdbcCursor;
+import dbcache.support.jdbc.JdbcSupport;
+import utils.collections.concurrent.ConcurrentLRUHashMap;
+
+import javax.persistence.Entity;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 查询方法信息
+ * <br/>创建时解析SQL和返回值映射方式,执行时不再解析注解和泛型信息
+ */
+public class QueryMethod {
+
+	/**
+	 * 结果类型
+	 */
+	enum ResultKind {
+
+		/** 实体列表 */
+		ENTITY_LIST,
+
+		/** 对象列表(Object[]、List或单列值) */
+		OBJECT_LIST,
+
+		/** 单个实体 */
+		ENTITY,
+
+		/** 单个值 */
+		SCALAR,
+
+		/** 实体游标 */
+		ENTITY_CURSOR,
+
+		/** 更新语句 */
+		UPDATE
+	}
+
+	// 无参数查询的缓存key
+	private static final Object EMPTY_KEY = new Object();
+
+	private final JdbcSupport jdbcSupport;
+
+	private final Method method;
+
+	private final String sql;
+
+	private final ResultKind resultKind;
+
+	// 结果元素类型
+	private final Class<?> elementType;
+
+	// 方法返回类型
+	private final Class<?> returnType;
+
+	// 依赖实体的版本号
+	private final AtomicLong[] versions;
+
+	private final Class<?>[] entities;
+
+	// 查询结果缓存
+	private final Map<Object, CachedResult> resultCache;
+
+	// 缓存实体查询时用于按主键获取实体
+	@SuppressWarnings("rawtypes")
+	private final DbCacheService entityService;
+
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	QueryMethod(JdbcSupport jdbcSupport, DbConfigFactory configFactory, Method method) {
+		Query query = method.getAnnotation(Query.class);
+		if (query == null) {
+			throw new IllegalArgumentException("方法未定义@Query注解:" + method);
+		}
+
+		this.jdbcSupport = jdbcSupport;
+		this.method = method;
+		this.sql = query.value().trim();
+		this.returnType = method.getReturnType();
+
+		// 解析返回值
+		boolean select = isSelect(this.sql);
+		Class<?> returnType = method.getReturnType();
+		if (!select) {
+			if (returnType != void.class && returnType != boolean.class && returnType != Boolean.class) {
+				throw new IllegalArgumentException("更新语句返回值只能为void或boolean:" + method);
+			}
+			this.resultKind = ResultKind.UPDATE;
+			this.elementType = null;
+		} else if (returnType == List.class || returnType == Collection.class) {
+			this.elementType = getElementType(method);
+			this.resultKind = isEntity(this.elementType) ? ResultKind.ENTITY_LIST : ResultKind.OBJECT_LIST;
+		} else if (returnType == JdbcCursor.class) {
+			this.elementType = getElementType(method);
+			if (!isEntity(this.elementType)) {
+				throw new IllegalArgumentException("JdbcCursor只支持实体类型:" + method);
+			}
+			this.resultKind = ResultKind.ENTITY_CURSOR;
+		} else if (isEntity(returnType)) {
+			this.elementType = returnType;
+			this.resultKind = ResultKind.ENTITY;
+		} else if (returnType != void.class) {
+			this.elementType = wrap(returnType);
+			this.resultKind = ResultKind.SCALAR;
+		} else {
+			throw new IllegalArgumentException("查询语句不能没有返回值:" + method);
+		}
+
+		// 依赖的实体
+		Class<?>[] entities = query.entities();
+		if (entities.length == 0 && this.elementType != null && isEntity(this.elementType)) {
+			entities = new Class<?>[] { this.elementType };
+		}
+		this.entities = entities;
+		this.versions = new AtomicLong[entities.length];
+		for (int i = 0; i < entities.length; i++) {
+			this.versions[i] = QueryCacheVersions.register(entities[i]);
+		}
+
+		if (query.cache()) {
+			if (this.resultKind == ResultKind.UPDATE || this.resultKind == ResultKind.ENTITY_CURSOR) {
+				throw new IllegalArgumentException("更新语句和游标查询不能缓存结果:" + method);
+			}
+			if (entities.length == 0) {
+				throw new IllegalArgumentException("缓存查询需要指定依赖的实体类@Query(entities):" + method);
+			}
+			this.resultCache = new ConcurrentLRUHashMap<Object, CachedResult>(Math.max(1, query.cacheSize() / 16) + 1);
+		} else {
+			this.resultCache = null;
+		}
+
+		// 缓存的结果由所有调用者共享,实体结果只缓存主键,返回实体缓存中的实体,修改经过实体缓存入库
+		if (this.resultCache != null && (this.resultKind == ResultKind.ENTITY_LIST || this.resultKind == ResultKind.ENTITY)) {
+			if (!this.elementType.isAnnotationPresent(Cached.class) || !IEntity.class.isAssignableFrom(this.elementType)) {
+				throw new IllegalArgumentException("缓存实体查询只支持@Cached实体:" + method);
+			}
+			this.entityService = configFactory.getDbCacheServiceBean((Class) this.elementType);
+		} else {
+			this.entityService = null;
+		}
+	}
+
+
+	/**
+	 * 执行查询
+	 * @param args 参数
+	 * @return
+	 */
+	public Object execute(Object[] args) {
+		if (this.resultCache == null) {
+			return this.doExecute(args);
+		}
+
+		Object key = args == null || args.length == 0 ? EMPTY_KEY : new ArgsKey(args);
+		CachedResult cached = this.resultCache.get(key);
+		if (cached != null && cached.isValid(this.versions)) {
+			return this.fromCacheValue(cached.result);
+		}
+
+		// 查询前记录版本号
+		long[] versions = new long[this.versions.length];
+		for (int i = 0; i < versions.length; i++) {
+			versions[i] = this.versions[i].get();
+		}
+		Object value = this.toCacheValue(this.doExecute(args));
+		this.resultCache.put(key, new CachedResult(versions, value));
+		return this.fromCacheValue(value);
+	}
+
+
+	// 转换为缓存的结果,实体只保留主键
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Object toCacheValue(Object result) {
+		if (this.entityService == null) {
+			return result instanceof List ? Collections.unmodifiableList((List<?>) result) : result;
+		}
+		if (result == null) {
+			return null;
+		}
+		if (this.resultKind == ResultKind.ENTITY) {
+			return ((IEntity) result).getId();
+		}
+		List<?> entities = (List<?>) result;
+		List ids = new ArrayList(entities.size());
+		for (Object entity : entities) {
+			ids.add(((IEntity) entity).getId());
+		}
+		return ids;
+	}
+
+
+	// 从缓存的结果获取返回值,实体从实体缓存获取
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Object fromCacheValue(Object value) {
+		if (this.entityService == null || value == null) {
+			return value;
+		}
+		if (this.resultKind == ResultKind.ENTITY) {
+			return this.entityService.get((Comparable) value);
+		}
+		List<?> ids = (List<?>) value;
+		List entities = new ArrayList(ids.size());
+		for (Object id : ids) {
+			Object entity = this.entityService.get((Comparable) id);
+			// 已删除的实体
+			if (entity != null) {
+				entities.add(entity);
+			}
+		}
+		return entities;
+	}
+
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Object doExecute(Object[] args) {
+		switch (this.resultKind) {
+			case ENTITY_LIST:
+				return jdbcSupport.listEntityBySql(this.elementType, this.sql, args);
+			case OBJECT_LIST:
+				return jdbcSupport.listBySql(this.elementType, this.sql, args);
+			case ENTITY_CURSOR:
+				return jdbcSupport.stream(this.elementType, this.sql, args);
+			case ENTITY: {
+				List list = jdbcSupport.listEntityBySql(this.elementType, this.sql, args);
+				return list == null || list.isEmpty() ? null : list.get(0);
+			}
+			case SCALAR: {
+				List list = jdbcSupport.listBySql(this.elementType, this.sql, args);
+				Object value = list == null || list.isEmpty() ? null : list.get(0);
+				return convert(value, this.returnType);
+			}
+			case UPDATE: {
+				boolean result = jdbcSupport.executeQuery(this.sql, args);
+				for (Class<?> entity : this.entities) {
+					jdbcSupport.touchQueryCache(entity);
+				}
+				return this.returnType == void.class ? null : Boolean.valueOf(result);
+			}
+		}
+		throw new IllegalStateException("unknown result kind " + this.resultKind);
+	}
+
+
+	/**
+	 * 清除缓存的查询结果
+	 */
+	public void clearCache() {
+		if (this.resultCache != null) {
+			this.resultCache.clear();
+		}
+	}
+
+	public boolean isCached() {
+		return resultCache != null;
+	}
+
+	public Class<?>[] getEntities() {
+		return entities;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+
+	// 转换单列值到返回类型
+	private static Object convert(Object value, Class<?> type) {
+		if (value == null) {
+			if (!type.isPrimitive()) {
+				return null;
+			}
+			value = type == boolean.class ? Boolean.FALSE : Integer.valueOf(0);
+		}
+		Class<?> wrapType = wrap(type);
+		if (wrapType.isInstance(value)) {
+			return value;
+		}
+		if (value instanceof Number) {
+			Number number = (Number) value;
+			if (wrapType == Long.class) {
+				return number.longValue();
+			} else if (wrapType == Integer.class) {
+				return number.intValue();
+			} else if (wrapType == Short.class) {
+				return number.shortValue();
+			} else if (wrapType == Byte.class) {
+				return number.byteValue();
+			} else if (wrapType == Double.class) {
+				return number.doubleValue();
+			} else if (wrapType == Float.class) {
+				return number.floatValue();
+			} else if (wrapType == Boolean.class) {
+				return number.intValue() != 0;
+			}
+		}
+		if (wrapType == String.class) {
+			return value.toString();
+		}
+		return wrapType.cast(value);
+	}
+
+	private static Class<?> wrap(Class<?> type) {
+		if (!type.isPrimitive()) {
+			return type;
+		} else if (type == int.class) {
+			return Integer.class;
+		} else if (type == long.class) {
+			return Long.class;
+		} else if (type == boolean.class) {
+			return Boolean.class;
+		} else if (type == short.class) {
+			return Short.class;
+		} else if (type == byte.class) {
+			return Byte.class;
+		} else if (type == double.class) {
+			return Double.class;
+		} else if (type == float.class) {
+			return Float.class;
+		} else if (type == char.class) {
+			return Character.class;
+		}
+		return type;
+	}
+
+	private static boolean isSelect(String sql) {
+		String lower = sql.toLowerCase();
+		return lower.startsWith("select") || lower.startsWith("with") || lower.startsWith("(");
+	}
+
+	private static boolean isEntity(Class<?> clazz) {
+		return clazz.isAnnotationPresent(Entity.class);
+	}
+
+	// 获取返回值泛型参数
+	private static Class<?> getElementType(Method method) {
+		Type type = method.getGenericReturnType();
+		if (type instanceof ParameterizedType) {
+			Type arg = ((ParameterizedType) type).getActualTypeArguments()[0];
+			if (arg instanceof Class) {
+				return (Class<?>) arg;
+			}
+			if (arg instanceof ParameterizedType) {
+				return (Class<?>) ((ParameterizedType) arg).getRawType();
+			}
+		}
+		throw new IllegalArgumentException("无法获取返回值的元素类型:" + method);
+	}
+
+
+	/**
+	 * 缓存的查询结果
+	 */
+	static class CachedResult {
+
+		final long[] versions;
+
+		final Object result;
+
+		CachedResult(long[] versions, Object result) {
+			this.versions = versions;
+			this.result = result;
+		}
+
+		boolean isValid(AtomicLong[] currentVersions) {
+			for (int i = 0; i < versions.length; i++) {
+				if (versions[i] != currentVersions[i].get()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+
+	/**
+	 * 查询参数缓存key
+	 */
+	static class ArgsKey {
+
+		private final Object[] args;
+
+		private final int hash;
+
+		ArgsKey(Object[] args) {
+			this.args = args.clone();
+			this.hash = Arrays.deepHashCode(this.args);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof ArgsKey && Arrays.deepEquals(args, ((ArgsKey) obj).args);
+		}
+	}
+
+}
@@ -0,0 +1,225 @@
+package dbcache.query;
+
+import dbcache.DbCacheInitError;
+import dbcache.anno.Cached;
+import dbcache.anno.Query;
+import dbcache.conf.DbConfigFactory;
+import dbcache.conf.impl.CacheConfig;
+import dbcache.support.jdbc.JdbcSupport;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import utils.collections.concurrent.ConcurrentHashMapV8;
+import utils.enhance.asm.AsmAccessHelper;
+import utils.enhance.asm.util.AsmUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 查询接口实现生成工厂
+ * <br/>使用ASM为带@Query方法的接口生成实现类,方法调用转发到预先解析好的QueryMethod
+ */
+@Component
+public class QueryRepositoryFactory implements Opcodes {
+
+	/**
+	 * logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(QueryRepositoryFactory.class);
+
+	/** 代理类类名 */
+	public static final String SUFIX = "$EnhancedByAsmQuery";
+
+	/** 分隔符 */
+	public static final String SPLITER = "_";
+
+	/** 构造方法名常量 */
+	private static final String INIT = "<init>";
+
+	private static final String BASE_NAME = AsmUtils.toAsmCls(AbstractQueryRepository.class.getName());
+
+	private static final String CONSTRUCTOR_DESC = "([" + Type.getDescriptor(QueryMethod.class) + ")V";
+
+	/** 序号生成器 */
+	private static final AtomicLong id = new AtomicLong(0);
+
+	@Autowired
+	private JdbcSupport jdbcSupport;
+
+	@Autowired
+	private DbConfigFactory configFactory;
+
+	/**
+	 * 查询接口 - 实现
+	 */
+	private final ConcurrentMap<Class<?>, Object> repositoryMap = new ConcurrentHashMapV8<Class<?>, Object>();
+
+	/**
+	 * 已注册索引监听的实体类
+	 */
+	private final Set<Class<?>> listenedClasses = new HashSet<Class<?>>();
+
+
+	/**
+	 * 判断是否为查询接口
+	 * @param clazz 类型
+	 * @return
+	 */
+	public static boolean isQueryRepository(Class<?> clazz) {
+		if (!clazz.isInterface()) {
+			return false;
+		}
+		for (Method method : clazz.getMethods()) {
+			if (method.isAnnotationPresent(Query.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * 获取查询接口实现
+	 * @param repositoryClass 查询接口
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getRepository(Class<T> repositoryClass) {
+		Object repository = this.repositoryMap.get(repositoryClass);
+		if (repository != null) {
+			return (T) repository;
+		}
+
+		synchronized (this) {
+			repository = this.repositoryMap.get(repositoryClass);
+			if (repository != null) {
+				return (T) repository;
+			}
+			repository = this.createRepository(repositoryClass);
+			this.repositoryMap.put(repositoryClass, repository);
+		}
+		return (T) repository;
+	}
+
+
+	// 创建查询接口实现
+	private Object createRepository(Class<?> repositoryClass) {
+		if (!repositoryClass.isInterface() || !Modifier.isPublic(repositoryClass.getModifiers())) {
+			throw new IllegalArgumentException("查询接口必须为public interface:" + repositoryClass.getName());
+		}
+
+		Method[] methods = repositoryClass.getMethods();
+		QueryMethod[] queryMethods = new QueryMethod[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			queryMethods[i] = new QueryMethod(this.jdbcSupport, this.configFactory, methods[i]);
+			this.listenIndexChange(queryMethods[i]);
+		}
+
+		final String enhancedClassName = repositoryClass.getName() + SUFIX + SPLITER + id.incrementAndGet();
+		final String enhancedAsmName = AsmUtils.toAsmCls(enhancedClassName);
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, enhancedAsmName, null, BASE_NAME,
+				new String[] { AsmUtils.toAsmCls(repositoryClass.getName()) });
+
+		// 构造方法
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, INIT, CONSTRUCTOR_DESC, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitMethodInsn(INVOKESPECIAL, BASE_NAME, INIT, CONSTRUCTOR_DESC, false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(2, 2);
+		mv.visitEnd();
+
+		// 接口方法 return (R) execute(index, new Object[] {args...})
+		for (int i = 0; i < methods.length; i++) {
+			Method method = methods[i];
+			Class<?>[] exceptionTypes = method.getExceptionTypes();
+			String[] exceptions = new String[exceptionTypes.length];
+			for (int j = 0; j < exceptionTypes.length; j++) {
+				exceptions[j] = Type.getInternalName(exceptionTypes[j]);
+			}
+
+			mv = cw.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, exceptions);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitLdcInsn(Integer.valueOf(i));
+
+			Type[] argTypes = Type.getArgumentTypes(method);
+			mv.visitLdcInsn(Integer.valueOf(argTypes.length));
+			mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+			int slot = 1;
+			for (int j = 0; j < argTypes.length; j++) {
+				mv.visitInsn(DUP);
+				mv.visitLdcInsn(Integer.valueOf(j));
+				mv.visitVarInsn(AsmUtils.loadCode(argTypes[j]), slot);
+				AsmUtils.withBoxingType(mv, argTypes[j]);
+				mv.visitInsn(AASTORE);
+				slot += argTypes[j].getSize();
+			}
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE_NAME, "execute", "(I[Ljava/lang/Object;)Ljava/lang/Object;", false);
+
+			Type returnType = Type.getReturnType(method);
+			if (returnType.getSort() == Type.VOID) {
+				mv.visitInsn(POP);
+				mv.visitInsn(RETURN);
+			} else if (returnType.getSort() == Type.OBJECT || returnType.getSort() == Type.ARRAY) {
+				mv.visitTypeInsn(CHECKCAST, returnType.getInternalName());
+				mv.visitInsn(ARETURN);
+			} else {
+				AsmUtils.withUnBoxingType(mv, returnType);
+				mv.visitInsn(AsmUtils.rtCode(returnType));
+			}
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+
+		byte[] byteCodes = cw.toByteArray();
+		try {
+			Class<?> enhancedClass = AsmAccessHelper.classLoader.defineClass(enhancedClassName, byteCodes);
+			return enhancedClass.getConstructor(QueryMethod[].class).newInstance(new Object[] { queryMethods });
+		} catch (Exception e) {
+			logger.error("无法创建查询接口实现:" + repositoryClass.getName(), e);
+			throw new DbCacheInitError("无法创建查询接口实现:" + repositoryClass.getName(), e);
+		}
+	}
+
+
+	/**
+	 * 缓存查询依赖的实体索引变化时使结果失效
+	 * @param queryMethod 查询方法
+	 */
+	private void listenIndexChange(QueryMethod queryMethod) {
+		if (!queryMethod.isCached()) {
+			return;
+		}
+		for (Class<?> entity : queryMethod.getEntities()) {
+			this.listenIndexChange(entity);
+		}
+	}
+
+	private void listenIndexChange(Class<?> entity) {
+		if (!entity.isAnnotationPresent(Cached.class) || !this.listenedClasses.add(entity)) {
+			return;
+		}
+		CacheConfig<?> cacheConfig = this.configFactory.getCacheConfig(entity);
+		if (cacheConfig == null) {
+			return;
+		}
+		cacheConfig.getIndexChangeListener().add(new QueryCacheIndexListener(entity));
+		cacheConfig.setHasIndexListeners(true);
+	}
+
+}
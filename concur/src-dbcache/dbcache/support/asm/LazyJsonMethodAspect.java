@@ -0,0 +1,239 @@
+package dbcache.support.asm;
+
+import dbcache.support.jdbc.LazyJsonFields;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.springframework.stereotype.Component;
+import utils.enhance.asm.AsmAccessHelper;
+import utils.enhance.asm.util.AsmUtils;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 延迟解析json属性的切面
+ * <br/>在读取或修改延迟解析属性的方法(包括间接调用)前解析原始值
+ * <br/>只给该属性赋值的set方法不解析,正常返回后丢弃原始值
+ * @see dbcache.anno.JsonType#lazy()
+ */
+@Component
+public class LazyJsonMethodAspect extends AbstractAsmMethodProxyAspect {
+
+	/** 延迟解析属性处理对象的属性名 */
+	private static final String LAZY_JSON_FIELDS = "lazyJsonFields";
+
+	/** 解析方法 */
+	private static final String LOAD_METHOD = "load";
+
+	/** 丢弃原始值方法 */
+	private static final String DISCARD_METHOD = "discard";
+
+	/** 处理方法描述 */
+	private static final String HANDLE_METHOD_DESC = "(Ljava/lang/Object;I)V";
+
+	/** 类信息缓存 实体类 - 延迟解析属性信息 */
+	private final ConcurrentHashMap<Class<?>, ClassLazyJsonMetaData> CLASS_LAZY_JSON_INFO = new ConcurrentHashMap<Class<?>, ClassLazyJsonMetaData>();
+
+
+	@Override
+	public void initClassMetaInfo(Class<?> clazz, String enhancedClassName) {
+
+		LazyJsonFields lazyJsonFields = LazyJsonFields.valueOf(clazz);
+		if (lazyJsonFields.size() == 0) {
+			return;
+		}
+
+		ClassLazyJsonMetaData metaData = new ClassLazyJsonMetaData();
+		metaData.enhancedClassName = enhancedClassName;
+
+		// 读取属性的方法
+		Map<Method, List<String>> getFieldsMethods = AsmAccessHelper.getGetFieldsCallHierarchyMethodMap(clazz);
+		for (Map.Entry<Method, List<String>> methodEntry : getFieldsMethods.entrySet()) {
+			for (String field : methodEntry.getValue()) {
+				int index = lazyJsonFields.indexOf(field);
+				if (index >= 0) {
+					getIndexSet(metaData.loadMethods, methodEntry.getKey()).add(index);
+				}
+			}
+		}
+
+		// 修改属性的方法
+		Map<Method, String> simpleSetters = AsmAccessHelper.getSimpleSetterMethodMap(clazz);
+		Map<Method, List<String>> putFieldsMethods = AsmAccessHelper.getPutFieldsCallHierarchyMethodMap(clazz);
+		for (Map.Entry<Method, List<String>> methodEntry : putFieldsMethods.entrySet()) {
+			Method method = methodEntry.getKey();
+			for (String field : methodEntry.getValue()) {
+				int index = lazyJsonFields.indexOf(field);
+				if (index < 0) {
+					continue;
+				}
+				if (field.equals(simpleSetters.get(method))) {
+					// 无条件赋值,不需要解析
+					getIndexSet(metaData.discardMethods, method).add(index);
+				} else {
+					// 可能是条件赋值或在赋值前抛出异常,先解析原始值,避免属性留空后入库覆盖原值
+					getIndexSet(metaData.loadMethods, method).add(index);
+				}
+			}
+		}
+
+		//存储到缓存
+		CLASS_LAZY_JSON_INFO.putIfAbsent(clazz, metaData);
+	}
+
+	//获取方法对应的属性序号集合
+	private TreeSet<Integer> getIndexSet(Map<Method, TreeSet<Integer>> methodsMap, Method method) {
+		TreeSet<Integer> indexes = methodsMap.get(method);
+		if (indexes == null) {
+			indexes = new TreeSet<Integer>();
+			methodsMap.put(method, indexes);
+		}
+		return indexes;
+	}
+
+
+	@Override
+	public void doInitClass(ConstructorBuilder constructorBuilder) {
+		if (!CLASS_LAZY_JSON_INFO.containsKey(constructorBuilder.getOriginalClass())) {
+			return;
+		}
+
+		// 增加延迟解析属性处理对象
+		constructorBuilder.appendField(LazyJsonFields.class, LAZY_JSON_FIELDS);
+
+		// 构造时通过LazyJsonFields.valueOf(实体类)获取
+		constructorBuilder.appendParameter(new ConstructorBuilder.ParameterInit() {
+
+			@Override
+			public int parameterIndexOfgetProxyEntity() {
+				return -1;
+			}
+
+			@Override
+			Class<?> parameterType() {
+				return void.class;
+			}
+
+			@Override
+			public void onConstruct(
+					ClassWriter classWriter,
+					MethodVisitor mvInit,
+					Class<?> originalClass,
+					String enhancedClassName,
+					int localIndex) {
+				mvInit.visitVarInsn(Opcodes.ALOAD, 0);
+				mvInit.visitLdcInsn(Type.getType(originalClass));
+				mvInit.visitMethodInsn(INVOKESTATIC,
+						AsmUtils.toAsmCls(LazyJsonFields.class.getName()),
+						"valueOf",
+						"(Ljava/lang/Class;)" + Type.getDescriptor(LazyJsonFields.class), false);
+				mvInit.visitFieldInsn(Opcodes.PUTFIELD,
+						AsmUtils.toAsmCls(enhancedClassName),
+						LAZY_JSON_FIELDS,
+						Type.getDescriptor(LazyJsonFields.class));
+			}
+		});
+	}
+
+
+	@Override
+	public int doBefore(Class<?> entityClass, MethodVisitor mWriter, Method method, int locals, String name, int acc, String desc) {
+
+		//获取类信息
+		ClassLazyJsonMetaData metaData = CLASS_LAZY_JSON_INFO.get(entityClass);
+		if (metaData == null) {
+			return locals;
+		}
+
+		TreeSet<Integer> loadIndexes = metaData.loadMethods.get(method);
+		if (loadIndexes != null) {
+			this.invokeHandleMethod(entityClass, metaData, mWriter, LOAD_METHOD, loadIndexes);
+		}
+
+		return locals;
+	}
+
+
+	@Override
+	public int doAfter(Class<?> entityClass, MethodVisitor mWriter, Method method, int locals, String name, int acc, String desc) {
+
+		//获取类信息
+		ClassLazyJsonMetaData metaData = CLASS_LAZY_JSON_INFO.get(entityClass);
+		if (metaData == null) {
+			return locals;
+		}
+
+		// 属性已赋值后再丢弃原始值,入库线程看不到原始值时新值已经可见
+		TreeSet<Integer> discardIndexes = metaData.discardMethods.get(method);
+		if (discardIndexes != null) {
+			this.invokeHandleMethod(entityClass, metaData, mWriter, DISCARD_METHOD, discardIndexes);
+		}
+
+		return locals;
+	}
+
+	// this.lazyJsonFields.load/discard(this.obj, index)
+	private void invokeHandleMethod(Class<?> entityClass, ClassLazyJsonMetaData metaData,
+									MethodVisitor mWriter, String methodName, TreeSet<Integer> indexes) {
+		for (Integer index : indexes) {
+			mWriter.visitVarInsn(Opcodes.ALOAD, 0);
+			mWriter.visitFieldInsn(
+					Opcodes.GETFIELD,
+					AsmUtils.toAsmCls(metaData.enhancedClassName),
+					LAZY_JSON_FIELDS,
+					Type.getDescriptor(LazyJsonFields.class));
+			mWriter.visitVarInsn(Opcodes.ALOAD, 0);
+			mWriter.visitFieldInsn(
+					Opcodes.GETFIELD,
+					AsmUtils.toAsmCls(metaData.enhancedClassName),
+					EntityClassProxyAdapter.REAL_OBJECT,
+					Type.getDescriptor(entityClass));
+			mWriter.visitLdcInsn(index);
+			mWriter.visitMethodInsn(INVOKEVIRTUAL,
+					AsmUtils.toAsmCls(LazyJsonFields.class.getName()),
+					methodName,
+					HANDLE_METHOD_DESC, false);
+		}
+	}
+
+
+	@Override
+	public boolean needOverride(Class<?> entityClass, Method method) {
+		//获取类信息
+		ClassLazyJsonMetaData metaData = CLASS_LAZY_JSON_INFO.get(entityClass);
+		if (metaData == null) {
+			return false;
+		}
+		return metaData.loadMethods.containsKey(method) || metaData.discardMethods.containsKey(method);
+	}
+
+
+	/**
+	 * 类延迟解析属性信息
+	 */
+	static class ClassLazyJsonMetaData {
+
+		/**
+		 * 代理类类名
+		 */
+		String enhancedClassName;
+
+		/**
+		 * 读取属性的方法 - 属性序号
+		 */
+		final Map<Method, TreeSet<Integer>> loadMethods = new LinkedHashMap<Method, TreeSet<Integer>>();
+
+		/**
+		 * 只给属性赋值的set方法 - 属性序号
+		 */
+		final Map<Method, TreeSet<Integer>> discardMethods = new LinkedHashMap<Method, TreeSet<Integer>>();
+
+	}
+
+}
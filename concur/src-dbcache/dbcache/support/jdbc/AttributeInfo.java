@@ -55,6 +55,11 @@ public class AttributeInfo<T> {
 	 */
 	private Class<?> type;
 
+	/**
+	 * 实体属性
+	 */
+	private Field field;
+
 	/**
 	 * 是否为json属性
 	 */
@@ -65,6 +70,16 @@ public class AttributeInfo<T> {
 	 */
 	private Type targetType;
 
+	/**
+	 * 延迟加载的json属性
+	 */
+	private LazyJsonFields lazyJsonFields;
+
+	/**
+	 * 延迟加载属性序号
+	 */
+	private int lazyIndex = -1;
+
 
 	/**
 	 * 获取实例
@@ -83,11 +98,17 @@ public class AttributeInfo<T> {
 		columnInfo.attrSetter = AsmAccessHelper.createFieldSetter(field.getName(), clazz, field);
 		columnInfo.index = index;
 		columnInfo.type = field.getDeclaringClass();
+		columnInfo.field = field;
 		columnInfo.targetType = field.getGenericType();
 
 		// 处理Json转换注解
-		if (field.isAnnotationPresent(JsonType.class)) {
+		JsonType jsonTypeAnno = field.getAnnotation(JsonType.class);
+		if (jsonTypeAnno != null) {
 			columnInfo.jsonType = true;
+			if (jsonTypeAnno.lazy()) {
+				columnInfo.lazyJsonFields = LazyJsonFields.valueOf(clazz);
+				columnInfo.lazyIndex = columnInfo.lazyJsonFields.indexOf(field.getName());
+			}
 		}
 
 		return columnInfo;
@@ -126,6 +147,13 @@ public class AttributeInfo<T> {
 	 */
 	public Object getPersistValue(T object) {
 		if (jsonType) {
+			// 未解析过的属性直接使用原始值
+			if (lazyIndex >= 0) {
+				Object rawValue = lazyJsonFields.getRawValue(object, lazyIndex);
+				if (rawValue != null) {
+					return rawValue;
+				}
+			}
 			Object objectValue = this.getValue(object);
 			if (objectValue != null) {
 				return JSON.toJSONString(objectValue);
@@ -151,6 +179,9 @@ public class AttributeInfo<T> {
 	 */
 	public void setFromPersistValue(T object, Object value) {
 		if (jsonType) {
+			if (lazyIndex >= 0) {
+				lazyJsonFields.discard(object, lazyIndex);
+			}
 			if (value == null) {
 				this.setValue(object, null);
 			} else {
@@ -162,6 +193,20 @@ public class AttributeInfo<T> {
 		this.setValue(object, value);
 	}
 
+	/**
+	 * 从持久化字段值延迟设置属性值,只保存原始值
+	 * @param object 实体
+	 * @param value 属性值
+	 * @see LazyJsonFields
+	 */
+	public void setLazyPersistValue(T object, Object value) {
+		if (lazyIndex < 0) {
+			this.setFromPersistValue(object, value);
+			return;
+		}
+		lazyJsonFields.setRawValue(object, lazyIndex, value);
+	}
+
 	public String getColumnName() {
 		return columnName;
 	}
@@ -202,10 +247,18 @@ public class AttributeInfo<T> {
 		this.type = type;
 	}
 
+	public Field getField() {
+		return field;
+	}
+
 	public boolean isJsonType() {
 		return jsonType;
 	}
 
+	public boolean isLazyJsonType() {
+		return lazyIndex >= 0;
+	}
+
 	public Type getTargetType() {
 		return targetType;
 	}
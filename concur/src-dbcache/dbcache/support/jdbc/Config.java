@@ -1,18 +1,25 @@
 package dbcache.support.jdbc;
 
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 public class Config {
 
+	private static final Logger logger = LoggerFactory.getLogger(Config.class);
+
 	Dialect dialect = Dialect.getDefaultDialect();
 
 	private String name;
@@ -25,6 +32,7 @@ public class Config {
 	private boolean devMode = false;
 
 	private final ThreadLocal<Connection> threadLocal = new ThreadLocal<Connection>();
+	private final ThreadLocal<List<TransactionSynchronization>> synchronizations = new ThreadLocal<List<TransactionSynchronization>>();
 
 	Config(){}
 
@@ -127,8 +135,54 @@ public class Config {
 		threadLocal.set(connection);
 	}
 
+	/**
+	 * 移除事务连接
+	 * <br/>事务的发起方未调用{@link #afterCompletion(boolean)}时,事务结果未知,未触发的完成回调按回滚触发
+	 */
 	public final void removeThreadLocalConnection() {
 		threadLocal.remove();
+		List<TransactionSynchronization> list = synchronizations.get();
+		if (list != null) {
+			logger.error("事务连接已移除但完成回调未触发,按回滚处理:" + list.size());
+			this.afterCompletion(false);
+		}
+	}
+
+	/**
+	 * 注册当前线程事务的完成回调
+	 * @param synchronization 回调
+	 * @throws IllegalStateException 当前线程不在事务中时抛出
+	 */
+	public final void registerSynchronization(TransactionSynchronization synchronization) {
+		if (threadLocal.get() == null) {
+			throw new IllegalStateException("当前线程不在事务中");
+		}
+		List<TransactionSynchronization> list = synchronizations.get();
+		if (list == null) {
+			list = new ArrayList<TransactionSynchronization>();
+			synchronizations.set(list);
+		}
+		list.add(synchronization);
+	}
+
+	/**
+	 * 事务提交或回滚后由事务的发起方调用,按注册顺序触发完成回调
+	 * <br/>需在{@link #removeThreadLocalConnection()}之前调用
+	 * @param committed true 已提交; false 已回滚
+	 */
+	public final void afterCompletion(boolean committed) {
+		List<TransactionSynchronization> list = synchronizations.get();
+		synchronizations.remove();
+		if (list == null) {
+			return;
+		}
+		for (TransactionSynchronization synchronization : list) {
+			try {
+				synchronization.afterCompletion(committed);
+			} catch (RuntimeException e) {
+				logger.error("事务完成回调异常", e);
+			}
+		}
 	}
 
 	/**
@@ -140,7 +194,20 @@ public class Config {
 			threadLocal.set(conn);
 			return conn;
 		}
-		return showSql ? new SqlReporter(dataSource.getConnection()).getConnection() : dataSource.getConnection();
+		conn = dataSource.getConnection();
+		return showSql ? new SqlReporter(conn).getConnection() : conn;
+	}
+
+	/**
+	 * 创建PreparedStatement,SqlProfiler采样命中时返回计时代理
+	 * <br/>采样按语句决定,未命中的语句和连接都不被代理
+	 * @param conn 连接
+	 * @param sql Sql语句
+	 * @return
+	 * @throws SQLException
+	 */
+	public final PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+		return SqlReporter.profile(conn.prepareStatement(sql), sql);
 	}
 
 	/**
@@ -195,4 +262,4 @@ public class Config {
 			if (conn != null)
 				try {conn.close();} catch (SQLException e) {throw new IllegalStateException(e);}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
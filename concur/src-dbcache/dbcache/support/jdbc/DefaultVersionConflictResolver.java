@@ -0,0 +1,29 @@
+package dbcache.support.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.JsonUtils;
+
+/**
+ * 默认的版本冲突处理器
+ * <br/>以缓存为准覆盖数据库,并记录冲突日志;记录已被删除时放弃更新,不重新保存
+ */
+public class DefaultVersionConflictResolver implements VersionConflictResolver {
+
+	/**
+	 * logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(DefaultVersionConflictResolver.class);
+
+	@Override
+	public boolean resolve(Object entity, Object dbEntity) {
+		if (dbEntity == null) {
+			logger.error("实体版本冲突,数据库中记录已被删除,放弃更新[cache:" + JsonUtils.object2JsonString(entity) + "]");
+			return false;
+		}
+		logger.error("实体版本冲突,以缓存数据覆盖[cache:" + JsonUtils.object2JsonString(entity)
+				+ ", db:" + (dbEntity != null ? JsonUtils.object2JsonString(dbEntity) : null) + "]");
+		return true;
+	}
+
+}
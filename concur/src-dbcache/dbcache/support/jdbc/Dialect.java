@@ -19,7 +19,9 @@ package dbcache.support.jdbc;
 
 import dbcache.support.jdbc.dialect.MysqlDialect;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.List;
@@ -30,6 +32,11 @@ import java.util.List;
  */
 public abstract class Dialect {
 
+	/**
+	 * 流式查询每次读取的行数
+	 */
+	public static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+
 	public abstract String forTableInfoBuilderDoBuildTableInfo(TableInfo tInfo, String tableName);
 	public abstract void forModelSave(TableInfo tableInfo, StringBuilder sql);
 	public abstract String forModelDeleteById(TableInfo tInfo);
@@ -44,6 +51,24 @@ public abstract class Dialect {
 	public boolean isOracle() {
 		return false;
 	}
+
+	/**
+	 * 追加版本号条件,用于乐观锁更新
+	 * @param columnName 版本号字段名
+	 * @param sql 更新语句
+	 */
+	public void forVersionCondition(String columnName, StringBuilder sql) {
+		sql.append(" and ").append(columnName).append(" = ?");
+	}
+
+	/**
+	 * 查询全部主键
+	 * @param tInfo 表信息
+	 * @return
+	 */
+	public String forModelSelectPrimaryKeys(TableInfo tInfo) {
+		return "select " + tInfo.getPrimaryKey().trim() + " from " + tInfo.getTableName();
+	}
 	
 
 	public void fillStatement(PreparedStatement pst, List<Object> paras) throws SQLException {
@@ -62,6 +87,27 @@ public abstract class Dialect {
 		}
 	}
 	
+	/**
+	 * 创建流式查询语句,结果集按批读取而不是一次全部加载到内存
+	 * @param conn 连接
+	 * @param sql SQL语句
+	 * @return
+	 * @throws SQLException
+	 */
+	public PreparedStatement forStreamingQuery(Connection conn, String sql) throws SQLException {
+		PreparedStatement pst = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		pst.setFetchSize(DEFAULT_STREAM_FETCH_SIZE);
+		return pst;
+	}
+
+	/**
+	 * 流式查询是否需要在事务中执行(关闭自动提交)
+	 * @return
+	 */
+	public boolean isStreamingInTransaction() {
+		return false;
+	}
+
 	public String getDefaultPrimaryKey() {
 		return "id";
 	}
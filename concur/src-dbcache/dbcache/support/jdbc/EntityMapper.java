@@ -0,0 +1,135 @@
+package dbcache.support.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 实体与Jdbc结果集/参数的映射器
+ * <br/>由EntityMapperFactory按实体类生成子类,可直接访问的基本类型及String属性直接调用
+ * ResultSet.getXxx/PreparedStatement.setXxx,其余属性回退到AttributeInfo处理
+ */
+public abstract class EntityMapper {
+
+	/**
+	 * 属性列表(与查询字段顺序一致)
+	 */
+	@SuppressWarnings("rawtypes")
+	protected final AttributeInfo[] attributes;
+
+	/**
+	 * 实例化的类(代理类或实体类)
+	 */
+	protected final Class<?> instanceClass;
+
+	/**
+	 * 延迟加载的json属性序号
+	 */
+	private final int[] lazyAttributes;
+
+	@SuppressWarnings("rawtypes")
+	protected EntityMapper(AttributeInfo[] attributes, Class<?> instanceClass) {
+		this.attributes = attributes;
+		this.instanceClass = instanceClass;
+
+		int count = 0;
+		for (AttributeInfo attributeInfo : attributes) {
+			if (attributeInfo.isLazyJsonType()) {
+				count++;
+			}
+		}
+		this.lazyAttributes = new int[count];
+		for (int i = 0, j = 0; i < attributes.length; i++) {
+			if (attributes[i].isLazyJsonType()) {
+				this.lazyAttributes[j++] = i;
+			}
+		}
+	}
+
+	/**
+	 * 创建实体实例
+	 * @return
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 */
+	public Object newInstance() throws InstantiationException, IllegalAccessException {
+		return instanceClass.newInstance();
+	}
+
+	/**
+	 * 从结果集当前行读取所有属性
+	 * @param rs 结果集
+	 * @param entity 实体
+	 * @throws SQLException
+	 */
+	public void read(ResultSet rs, Object entity) throws SQLException {
+		this.readAttributes(rs, entity);
+		for (int attributeIndex : lazyAttributes) {
+			this.readObject(rs, attributeIndex + 1, attributeIndex, entity);
+		}
+	}
+
+	/**
+	 * 从结果集当前行读取所有属性,延迟加载的json属性只保存原始值
+	 * @param rs 结果集
+	 * @param entity 实体
+	 * @throws SQLException
+	 * @see LazyJsonFields
+	 */
+	@SuppressWarnings("unchecked")
+	public void readLazy(ResultSet rs, Object entity) throws SQLException {
+		this.readAttributes(rs, entity);
+		for (int attributeIndex : lazyAttributes) {
+			AttributeInfo<Object> attributeInfo = attributes[attributeIndex];
+			attributeInfo.setLazyPersistValue(entity,
+					ModelInfo.getRsVal(rs, attributeIndex + 1, attributeInfo.getSqlType(), attributeInfo));
+		}
+	}
+
+	/**
+	 * 从结果集当前行读取延迟加载的json属性以外的属性
+	 * @param rs 结果集
+	 * @param entity 实体
+	 * @throws SQLException
+	 */
+	protected abstract void readAttributes(ResultSet rs, Object entity) throws SQLException;
+
+	/**
+	 * 绑定单个属性参数
+	 * @param pst PreparedStatement
+	 * @param parameterIndex 参数序号(从1开始)
+	 * @param attributeIndex 属性序号(从0开始)
+	 * @param entity 实体
+	 * @throws SQLException
+	 */
+	public abstract void bind(PreparedStatement pst, int parameterIndex, int attributeIndex, Object entity) throws SQLException;
+
+	/**
+	 * 通用方式读取属性
+	 * @param rs 结果集
+	 * @param columnIndex 字段序号(从1开始)
+	 * @param attributeIndex 属性序号(从0开始)
+	 * @param entity 实体
+	 * @throws SQLException
+	 */
+	@SuppressWarnings("unchecked")
+	protected void readObject(ResultSet rs, int columnIndex, int attributeIndex, Object entity) throws SQLException {
+		AttributeInfo<Object> attributeInfo = attributes[attributeIndex];
+		attributeInfo.setFromPersistValue(entity,
+				ModelInfo.getRsVal(rs, columnIndex, attributeInfo.getSqlType(), attributeInfo));
+	}
+
+	/**
+	 * 通用方式绑定属性参数
+	 * @param pst PreparedStatement
+	 * @param parameterIndex 参数序号(从1开始)
+	 * @param attributeIndex 属性序号(从0开始)
+	 * @param entity 实体
+	 * @throws SQLException
+	 */
+	@SuppressWarnings("unchecked")
+	protected void bindObject(PreparedStatement pst, int parameterIndex, int attributeIndex, Object entity) throws SQLException {
+		pst.setObject(parameterIndex, attributes[attributeIndex].getPersistValue(entity));
+	}
+
+}
@@ -0,0 +1,403 @@
+package dbcache.support.jdbc;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.enhance.asm.AsmAccessHelper;
+import utils.enhance.asm.AsmClassLoader;
+import utils.enhance.asm.util.AsmUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 使用ASM生成实体映射器
+ * <br/>生成的readAttributes方法按字段顺序调用ResultSet.getXxx并直接写入实体属性(PUTFIELD),
+ * bind方法按属性序号tableswitch后直接读取实体属性(GETFIELD)并使用PreparedStatement.setXxx绑定
+ * <br/>不调用实体的get/set方法;映射器无法直接访问的属性(非public等)回退到AttributeInfo的属性访问器
+ */
+public class EntityMapperFactory implements Opcodes {
+
+	/**
+	 * logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(EntityMapperFactory.class);
+
+	/** 代理类类名 */
+	public static final String SUFIX = "$EnhancedByAsmMapper";
+
+	/** 分隔符 */
+	public static final String SPLITER = "_";
+
+	/** 构造方法名常量 */
+	private static final String INIT = "<init>";
+
+	/** 序号生成器 */
+	private static final AtomicLong id = new AtomicLong(0);
+
+	private static final String MAPPER_NAME = AsmUtils.toAsmCls(EntityMapper.class.getName());
+
+	private static final String RS_NAME = AsmUtils.toAsmCls(ResultSet.class.getName());
+
+	private static final String PST_NAME = AsmUtils.toAsmCls(PreparedStatement.class.getName());
+
+	private static final String RS_DESC = Type.getDescriptor(ResultSet.class);
+
+	private static final String PST_DESC = Type.getDescriptor(PreparedStatement.class);
+
+	private static final String CONSTRUCTOR_DESC = "([" + Type.getDescriptor(AttributeInfo.class) + "Ljava/lang/Class;)V";
+
+
+	/**
+	 * 创建实体映射器
+	 * @param clzz 实体类
+	 * @param instanceClass 实例化的类(代理类或实体类)
+	 * @param columnInfos 属性列表
+	 * @return
+	 */
+	@SuppressWarnings("rawtypes")
+	public static EntityMapper createEntityMapper(Class<?> clzz, Class<?> instanceClass, List<AttributeInfo> columnInfos) {
+		AttributeInfo[] attributes = columnInfos.toArray(new AttributeInfo[columnInfos.size()]);
+		try {
+			return generate(clzz, instanceClass, attributes);
+		} catch (Throwable e) {
+			logger.error("无法生成实体映射器:" + clzz.getName() + ", 使用默认映射器", e);
+			return new DefaultEntityMapper(attributes, instanceClass);
+		}
+	}
+
+
+	@SuppressWarnings("rawtypes")
+	private static EntityMapper generate(Class<?> clzz, Class<?> instanceClass, AttributeInfo[] attributes) throws Exception {
+
+		final String enhancedClassName = EntityMapper.class.getName()
+				+ SUFIX + SPLITER + clzz.getSimpleName() + SPLITER + id.incrementAndGet();
+		final String enhancedAsmName = AsmUtils.toAsmCls(enhancedClassName);
+		final boolean publicClass = Modifier.isPublic(clzz.getModifiers());
+		final String owner = AsmUtils.toAsmCls(clzz.getName());
+
+		// 类型化访问的属性
+		FieldAccess[] accesses = new FieldAccess[attributes.length];
+		for (int i = 0; i < attributes.length; i++) {
+			accesses[i] = publicClass ? FieldAccess.valueOf(attributes[i]) : null;
+		}
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		// 使用1.5版本,分支处无需生成StackMapTable
+		cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, enhancedAsmName, null, MAPPER_NAME, null);
+
+		// 构造方法
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, INIT, CONSTRUCTOR_DESC, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitMethodInsn(INVOKESPECIAL, MAPPER_NAME, INIT, CONSTRUCTOR_DESC, false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(3, 3);
+		mv.visitEnd();
+
+		// newInstance
+		if (Modifier.isPublic(instanceClass.getModifiers()) && hasPublicConstructor(instanceClass)) {
+			String instanceName = AsmUtils.toAsmCls(instanceClass.getName());
+			mv = cw.visitMethod(ACC_PUBLIC, "newInstance", "()Ljava/lang/Object;", null, null);
+			mv.visitCode();
+			mv.visitTypeInsn(NEW, instanceName);
+			mv.visitInsn(DUP);
+			mv.visitMethodInsn(INVOKESPECIAL, instanceName, INIT, "()V", false);
+			mv.visitInsn(ARETURN);
+			mv.visitMaxs(2, 1);
+			mv.visitEnd();
+		}
+
+		// readAttributes(ResultSet rs, Object entity)
+		mv = cw.visitMethod(ACC_PROTECTED, "readAttributes", "(" + RS_DESC + "Ljava/lang/Object;)V", null,
+				new String[] { AsmUtils.toAsmCls(SQLException.class.getName()) });
+		mv.visitCode();
+		if (publicClass) {
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitTypeInsn(CHECKCAST, owner);
+			mv.visitVarInsn(ASTORE, 3);
+		}
+		for (int i = 0; i < attributes.length; i++) {
+			FieldAccess access = accesses[i];
+			int columnIndex = i + 1;
+			if (attributes[i].isLazyJsonType()) {
+				continue;
+			}
+			if (access == null) {
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitVarInsn(ALOAD, 1);
+				pushInt(mv, columnIndex);
+				pushInt(mv, i);
+				mv.visitVarInsn(ALOAD, 2);
+				mv.visitMethodInsn(INVOKEVIRTUAL, MAPPER_NAME, "readObject", "(" + RS_DESC + "IILjava/lang/Object;)V", false);
+				continue;
+			}
+
+			Type primitive = access.primitiveType;
+			if (access.wrapper) {
+				// 读取基本类型值, wasNull时设置null
+				mv.visitVarInsn(ALOAD, 1);
+				pushInt(mv, columnIndex);
+				mv.visitMethodInsn(INVOKEINTERFACE, RS_NAME, "get" + access.jdbcName, "(I)" + primitive.getDescriptor(), true);
+				mv.visitVarInsn(primitive.getOpcode(ISTORE), 4);
+
+				mv.visitVarInsn(ALOAD, 3);
+				Label valueLabel = new Label();
+				Label setLabel = new Label();
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitMethodInsn(INVOKEINTERFACE, RS_NAME, "wasNull", "()Z", true);
+				mv.visitJumpInsn(IFEQ, valueLabel);
+				mv.visitInsn(ACONST_NULL);
+				mv.visitJumpInsn(GOTO, setLabel);
+				mv.visitLabel(valueLabel);
+				mv.visitVarInsn(primitive.getOpcode(ILOAD), 4);
+				mv.visitMethodInsn(INVOKESTATIC, access.propertyType.getInternalName(), "valueOf",
+						"(" + primitive.getDescriptor() + ")" + access.propertyType.getDescriptor(), false);
+				mv.visitLabel(setLabel);
+			} else {
+				mv.visitVarInsn(ALOAD, 3);
+				mv.visitVarInsn(ALOAD, 1);
+				pushInt(mv, columnIndex);
+				mv.visitMethodInsn(INVOKEINTERFACE, RS_NAME, "get" + access.jdbcName, "(I)" + access.propertyType.getDescriptor(), true);
+			}
+			mv.visitFieldInsn(PUTFIELD, access.owner, access.field.getName(), access.propertyType.getDescriptor());
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// bind(PreparedStatement pst, int parameterIndex, int attributeIndex, Object entity)
+		mv = cw.visitMethod(ACC_PUBLIC, "bind", "(" + PST_DESC + "IILjava/lang/Object;)V", null,
+				new String[] { AsmUtils.toAsmCls(SQLException.class.getName()) });
+		mv.visitCode();
+		if (publicClass) {
+			mv.visitVarInsn(ALOAD, 4);
+			mv.visitTypeInsn(CHECKCAST, owner);
+			mv.visitVarInsn(ASTORE, 5);
+		}
+		Label defaultLabel = new Label();
+		if (attributes.length > 0) {
+			Label[] labels = new Label[attributes.length];
+			for (int i = 0; i < labels.length; i++) {
+				labels[i] = new Label();
+			}
+			mv.visitVarInsn(ILOAD, 3);
+			mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
+
+			for (int i = 0; i < attributes.length; i++) {
+				mv.visitLabel(labels[i]);
+				FieldAccess access = accesses[i];
+				if (access == null) {
+					visitBindObject(mv);
+					continue;
+				}
+				Type primitive = access.primitiveType;
+				if (access.wrapper) {
+					// null值使用setNull
+					Label notNullLabel = new Label();
+					mv.visitVarInsn(ALOAD, 5);
+					mv.visitFieldInsn(GETFIELD, access.owner, access.field.getName(), access.propertyType.getDescriptor());
+					mv.visitVarInsn(ASTORE, 6);
+					mv.visitVarInsn(ALOAD, 6);
+					mv.visitJumpInsn(IFNONNULL, notNullLabel);
+					mv.visitVarInsn(ALOAD, 1);
+					mv.visitVarInsn(ILOAD, 2);
+					pushInt(mv, access.nullSqlType);
+					mv.visitMethodInsn(INVOKEINTERFACE, PST_NAME, "setNull", "(II)V", true);
+					mv.visitInsn(RETURN);
+					mv.visitLabel(notNullLabel);
+					mv.visitVarInsn(ALOAD, 1);
+					mv.visitVarInsn(ILOAD, 2);
+					mv.visitVarInsn(ALOAD, 6);
+					mv.visitMethodInsn(INVOKEVIRTUAL, access.propertyType.getInternalName(),
+							primitive.getClassName() + "Value", "()" + primitive.getDescriptor(), false);
+				} else {
+					mv.visitVarInsn(ALOAD, 1);
+					mv.visitVarInsn(ILOAD, 2);
+					mv.visitVarInsn(ALOAD, 5);
+					mv.visitFieldInsn(GETFIELD, access.owner, access.field.getName(), access.propertyType.getDescriptor());
+				}
+				mv.visitMethodInsn(INVOKEINTERFACE, PST_NAME, "set" + access.jdbcName,
+						"(I" + (access.wrapper ? primitive : access.propertyType).getDescriptor() + ")V", true);
+				mv.visitInsn(RETURN);
+			}
+		}
+		mv.visitLabel(defaultLabel);
+		visitBindObject(mv);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		byte[] byteCodes = cw.toByteArray();
+
+		// 与代理类使用相同的类加载器,以便直接实例化代理类
+		AsmClassLoader classLoader = instanceClass.getClassLoader() instanceof AsmClassLoader ?
+				(AsmClassLoader) instanceClass.getClassLoader() : AsmAccessHelper.classLoader;
+		Class<?> enhancedClass = classLoader.defineClass(enhancedClassName, byteCodes);
+
+		Constructor<?> constructor = enhancedClass.getConstructor(AttributeInfo[].class, Class.class);
+		return (EntityMapper) constructor.newInstance(attributes, instanceClass);
+	}
+
+
+	// 调用bindObject并返回
+	private static void visitBindObject(MethodVisitor mv) {
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ILOAD, 2);
+		mv.visitVarInsn(ILOAD, 3);
+		mv.visitVarInsn(ALOAD, 4);
+		mv.visitMethodInsn(INVOKEVIRTUAL, MAPPER_NAME, "bindObject", "(" + PST_DESC + "IILjava/lang/Object;)V", false);
+		mv.visitInsn(RETURN);
+	}
+
+	private static void pushInt(MethodVisitor mv, int value) {
+		if (value >= -1 && value <= 5) {
+			mv.visitInsn(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mv.visitIntInsn(SIPUSH, value);
+		} else {
+			mv.visitLdcInsn(Integer.valueOf(value));
+		}
+	}
+
+	private static boolean hasPublicConstructor(Class<?> clzz) {
+		try {
+			return Modifier.isPublic(clzz.getConstructor().getModifiers());
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * 可类型化访问的属性
+	 */
+	static class FieldAccess {
+
+		// 实体属性
+		Field field;
+
+		// 声明属性的类(内部名称)
+		String owner;
+
+		// 属性类型
+		Type propertyType;
+
+		// 对应的基本类型(String为null)
+		Type primitiveType;
+
+		// 是否为包装类型
+		boolean wrapper;
+
+		// Jdbc方法名后缀 getXxx/setXxx
+		String jdbcName;
+
+		// setNull使用的sql类型
+		int nullSqlType;
+
+		/**
+		 * 获取属性的类型化访问信息
+		 * @param attributeInfo 属性信息
+		 * @return 无法类型化访问或映射器无法直接访问属性时返回null
+		 */
+		@SuppressWarnings("rawtypes")
+		static FieldAccess valueOf(AttributeInfo attributeInfo) {
+			int sqlType = attributeInfo.getSqlType();
+			if (attributeInfo.isJsonType() || sqlType == Types.BLOB || sqlType == Types.CLOB || sqlType == Types.NCLOB) {
+				return null;
+			}
+
+			// 映射器与实体不在同一个包中,只能直接访问public类的public非final属性
+			Field field = attributeInfo.getField();
+			int modifiers = field.getModifiers();
+			if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)
+					|| !Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+				return null;
+			}
+
+			Class<?> type = field.getType();
+			Class<?> primitive = type.isPrimitive() ? type : toPrimitive(type);
+			String jdbcName;
+			if (type == String.class) {
+				jdbcName = "String";
+			} else if (primitive == null || primitive == char.class || primitive == void.class) {
+				return null;
+			} else {
+				String name = primitive.getName();
+				jdbcName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+			}
+
+			FieldAccess access = new FieldAccess();
+			access.field = field;
+			access.owner = Type.getInternalName(field.getDeclaringClass());
+			access.propertyType = Type.getType(type);
+			access.primitiveType = primitive != null ? Type.getType(primitive) : null;
+			access.wrapper = primitive != null && !type.isPrimitive();
+			access.jdbcName = jdbcName;
+			access.nullSqlType = sqlType != 0 ? sqlType : Types.NULL;
+			return access;
+		}
+
+		private static Class<?> toPrimitive(Class<?> type) {
+			if (type == Integer.class) {
+				return int.class;
+			} else if (type == Long.class) {
+				return long.class;
+			} else if (type == Short.class) {
+				return short.class;
+			} else if (type == Byte.class) {
+				return byte.class;
+			} else if (type == Boolean.class) {
+				return boolean.class;
+			} else if (type == Float.class) {
+				return float.class;
+			} else if (type == Double.class) {
+				return double.class;
+			}
+			return null;
+		}
+	}
+
+
+	/**
+	 * 默认映射器,生成失败时使用
+	 */
+	static class DefaultEntityMapper extends EntityMapper {
+
+		@SuppressWarnings("rawtypes")
+		DefaultEntityMapper(AttributeInfo[] attributes, Class<?> instanceClass) {
+			super(attributes, instanceClass);
+		}
+
+		@Override
+		protected void readAttributes(ResultSet rs, Object entity) throws SQLException {
+			for (int i = 0; i < attributes.length; i++) {
+				if (!attributes[i].isLazyJsonType()) {
+					this.readObject(rs, i + 1, i, entity);
+				}
+			}
+		}
+
+		@Override
+		public void bind(PreparedStatement pst, int parameterIndex, int attributeIndex, Object entity) throws SQLException {
+			this.bindObject(pst, parameterIndex, attributeIndex, entity);
+		}
+	}
+
+}
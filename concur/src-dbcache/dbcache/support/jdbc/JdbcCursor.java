@@ -0,0 +1,272 @@
+package dbcache.support.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.thread.NamedThreadFactory;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 流式查询游标
+ * <br/>结果集按批从数据库读取,遍历结束或出现异常时自动关闭,提前结束遍历需手动调用close()
+ */
+public class JdbcCursor<T> implements Iterator<T>, Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(JdbcCursor.class);
+
+	// 并行处理结束标记
+	private static final Object END = new Object();
+
+	private final Config config;
+
+	private final Connection conn;
+
+	private final PreparedStatement pst;
+
+	private final ResultSet rs;
+
+	private final RowMapper<T> rowMapper;
+
+	// 是否需要恢复自动提交
+	private final boolean restoreAutoCommit;
+
+	// 行号
+	private int rowNum;
+
+	// 是否已移动到下一行
+	private boolean fetched;
+
+	private boolean closed;
+
+	JdbcCursor(Config config, Connection conn, PreparedStatement pst, ResultSet rs,
+			   RowMapper<T> rowMapper, boolean restoreAutoCommit) {
+		this.config = config;
+		this.conn = conn;
+		this.pst = pst;
+		this.rs = rs;
+		this.rowMapper = rowMapper;
+		this.restoreAutoCommit = restoreAutoCommit;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		}
+		if (fetched) {
+			return true;
+		}
+		try {
+			fetched = rs.next();
+		} catch (SQLException e) {
+			this.close();
+			throw new JdbcExecuteException(e);
+		}
+		if (!fetched) {
+			this.close();
+		}
+		return fetched;
+	}
+
+	@Override
+	public T next() {
+		if (!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		fetched = false;
+		try {
+			return rowMapper.mapRow(rs, rowNum++);
+		} catch (RuntimeException e) {
+			this.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove");
+	}
+
+	/**
+	 * 遍历处理所有行
+	 * @param handler 行处理回调
+	 * @return 处理的行数
+	 */
+	public int forEach(RowHandler<? super T> handler) {
+		int count = 0;
+		try {
+			while (this.hasNext()) {
+				handler.handle(this.next());
+				count++;
+			}
+		} catch (JdbcExecuteException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new JdbcExecuteException(e);
+		} finally {
+			this.close();
+		}
+		return count;
+	}
+
+	/**
+	 * 读取线程遍历结果集,多个处理线程并行处理
+	 * <br/>重用实体的游标不能并行处理
+	 * @param handler 行处理回调(需线程安全)
+	 * @param threads 处理线程数
+	 * @param queueSize 读取与处理之间的缓冲队列大小
+	 * @return 处理的行数
+	 */
+	public int parallelForEach(final RowHandler<? super T> handler, int threads, int queueSize) {
+		if (rowMapper instanceof EntityRowMapper && ((EntityRowMapper<?>) rowMapper).isReuseEntity()) {
+			this.close();
+			throw new IllegalStateException("重用实体的游标不能并行处理");
+		}
+		if (threads <= 1) {
+			return this.forEach(handler);
+		}
+
+		final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(queueSize);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final AtomicInteger count = new AtomicInteger();
+
+		ThreadGroup threadGroup = new ThreadGroup("JdbcCursor");
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new NamedThreadFactory(threadGroup, "Row Handler"));
+		try {
+			for (int i = 0; i < threads; i++) {
+				executor.execute(new Runnable() {
+					@SuppressWarnings("unchecked")
+					@Override
+					public void run() {
+						try {
+							Object row;
+							while ((row = queue.take()) != END) {
+								if (error.get() == null) {
+									handler.handle((T) row);
+									count.incrementAndGet();
+								}
+							}
+						} catch (Throwable e) {
+							error.compareAndSet(null, e);
+						}
+					}
+				});
+			}
+
+			// 读取线程
+			while (error.get() == null && this.hasNext()) {
+				Object row = this.next();
+				while (!queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+					if (error.get() != null) {
+						break;
+					}
+				}
+			}
+		} catch (Throwable e) {
+			error.compareAndSet(null, e);
+		} finally {
+			this.close();
+			executor.shutdown();
+		}
+
+		try {
+			for (int i = 0; i < threads; i++) {
+				while (!queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+					if (executor.isTerminated()) {
+						break;
+					}
+				}
+			}
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			error.compareAndSet(null, e);
+		}
+
+		Throwable e = error.get();
+		if (e instanceof JdbcExecuteException) {
+			throw (JdbcExecuteException) e;
+		} else if (e != null) {
+			throw new JdbcExecuteException(e);
+		}
+		return count.get();
+	}
+
+	/**
+	 * 关闭游标
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (restoreAutoCommit) {
+				conn.commit();
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			logger.error("关闭游标时提交事务异常", e);
+		} finally {
+			config.close(rs, pst, conn);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+
+	/**
+	 * 实体行映射,可重用同一个实体对象
+	 */
+	static class EntityRowMapper<T> implements RowMapper<T> {
+
+		private final EntityMapper mapper;
+
+		private final boolean reuseEntity;
+
+		private T buffer;
+
+		EntityRowMapper(EntityMapper mapper, boolean reuseEntity) {
+			this.mapper = mapper;
+			this.reuseEntity = reuseEntity;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T mapRow(ResultSet rs, int rowNum) {
+			try {
+				T entity = reuseEntity && buffer != null ? buffer : (T) mapper.newInstance();
+				mapper.read(rs, entity);
+				if (reuseEntity) {
+					buffer = entity;
+				}
+				return entity;
+			} catch (Exception e) {
+				throw new JdbcExecuteException(e);
+			}
+		}
+
+		boolean isReuseEntity() {
+			return reuseEntity;
+		}
+	}
+
+}
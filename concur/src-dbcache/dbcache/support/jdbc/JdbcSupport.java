@@ -3,11 +3,14 @@ package dbcache.support.jdbc;
 import dbcache.anno.Shard;
 import dbcache.conf.ShardStrategy;
 import dbcache.pkey.IdGenerator;
+import dbcache.query.QueryCacheVersions;
 import utils.enhance.asm.util.AsmUtils;
 import dbcache.utils.MutableInteger;
 import utils.StringUtils;
 import utils.collections.concurrent.IdentityHashMap;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ReflectionUtils;
@@ -35,6 +38,7 @@ import java.util.concurrent.atomic.AtomicIntegerArray;
  * @see javax.persistence.Id
  * @see javax.persistence.Column
  * @see javax.persistence.Transient
+ * @see javax.persistence.Version
  * @see javax.persistence.Entity
  * @see javax.persistence.MappedSuperclass
  * Created by Jake on 2015/1/10.
@@ -42,9 +46,15 @@ import java.util.concurrent.atomic.AtomicIntegerArray;
 @Component
 public class JdbcSupport {
 
+	private static final Logger logger = LoggerFactory.getLogger(JdbcSupport.class);
+
 	@Autowired
     private Config config;
 
+    /** 版本冲突处理器 */
+    @Autowired(required = false)
+    private VersionConflictResolver versionConflictResolver = new DefaultVersionConflictResolver();
+
     /** 实体信息缓存 */
     private final IdentityHashMap<Class<?>, ModelInfo> modelInfoCache = new IdentityHashMap<Class<?>, ModelInfo>();
 
@@ -55,8 +65,21 @@ public class JdbcSupport {
      * @param id 主键
      * @return
      */
-    @SuppressWarnings("unchecked")
 	public <T> T get(final Class<T> clzz, Object id) {
+		return this.get(clzz, id, false);
+	}
+
+
+    /**
+     * 根据主键id获取实体
+     * @param clzz 实体类
+     * @param id 主键
+     * @param lazyJson 延迟解析json属性,实体需通过缓存代理对象访问
+     * @return
+     * @see dbcache.anno.JsonType#lazy()
+     */
+    @SuppressWarnings("unchecked")
+	public <T> T get(final Class<T> clzz, Object id, boolean lazyJson) {
 
     	ModelInfo modelInfo = getOrCreateModelInfo(clzz);
     	String sql = modelInfo.getOrCreateSelectSql(config.dialect);
@@ -67,12 +90,12 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 			config.dialect.fillStatement(pst, id);
 
 			rs = pst.executeQuery();
 			
-			return (T) modelInfo.generateEntity(rs);
+			return (T) modelInfo.generateEntity(rs, lazyJson);
 		} catch (Exception e) {
 			handleException(conn, e);
 		} finally {
@@ -95,10 +118,9 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(saveSql);
+			pst = config.prepareStatement(conn, saveSql);
 
-			Object[] params = modelInfo.getSaveParams(entity);
-			config.dialect.fillStatement(pst, params);
+			modelInfo.bindSaveParams(pst, entity);
 
 			int result = pst.executeUpdate();
 
@@ -107,6 +129,7 @@ public class JdbcSupport {
 			handleException(conn, e);
 		} finally {
 			handleClose(conn, pst);
+			this.touchQueryCache(modelInfo.getClzz());
 		}
     	return false;
     }
@@ -130,11 +153,10 @@ public class JdbcSupport {
 		    ModelInfo modelInfo = getOrCreateModelInfo(clzz);
 		    String updateSql = modelInfo.getOrCreateSaveSql(config.dialect);
 		    	
-			pst = conn.prepareStatement(updateSql);
+			pst = config.prepareStatement(conn, updateSql);
 
 			for (Object entity : entitys) {
-				Object[] params = modelInfo.getSaveParams(entity);
-				config.dialect.fillStatement(pst, params);
+				modelInfo.bindSaveParams(pst, entity);
 				pst.addBatch();
 			}
 			
@@ -144,6 +166,7 @@ public class JdbcSupport {
 			rollbackAndClose(conn, e);
     	} finally {
 			commitAndClose(conn, pst);
+			this.touchQueryCache(clzz);
     	}
     	return new int[0];
     }
@@ -172,10 +195,9 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(saveSql);
+			pst = config.prepareStatement(conn, saveSql);
 
-			Object[] params = modelInfo.getAutoIdSaveParams(entity, category);
-			config.dialect.fillStatement(pst, params);
+			modelInfo.bindAutoIdSaveParams(pst, entity, category);
 
 			int result = pst.executeUpdate();
 
@@ -184,6 +206,7 @@ public class JdbcSupport {
 			handleException(conn, e);
 		} finally {
 			handleClose(conn, pst);
+			this.touchQueryCache(modelInfo.getClzz());
 		}
     	return false;
     }
@@ -195,26 +218,50 @@ public class JdbcSupport {
      * @return
      */
     public boolean update(Object entity) {
+    	return this.update(entity, true);
+    }
+
+
+    /**
+     * 更新实体
+     * @param entity 实体对象
+     * @param resolveConflict 版本冲突时是否交给冲突处理器
+     * @return
+     */
+    private boolean update(Object entity, boolean resolveConflict) {
     	ModelInfo modelInfo = getOrCreateModelInfo(entity.getClass());
     	String updateSql = modelInfo.getOrCreateUpdateSql(config.dialect);
 
     	Connection conn = null;
     	PreparedStatement pst = null;
+    	boolean conflict = false;
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(updateSql);
+			pst = config.prepareStatement(conn, updateSql);
 
-			Object[] params = modelInfo.getUpdateParams(entity);
-			config.dialect.fillStatement(pst, params);
+			modelInfo.bindUpdateParams(pst, entity);
 
 			int result = pst.executeUpdate();
 
-			return result > 0;
+			if (modelInfo.isVersioned()) {
+				if (result > 0) {
+					modelInfo.increaseVersion(entity);
+				} else {
+					conflict = resolveConflict;
+				}
+			}
+			if (!conflict) {
+				return result > 0;
+			}
 		} catch (Exception e) {
 			handleException(conn, e);
 		} finally {
 			handleClose(conn, pst);
+			this.touchQueryCache(modelInfo.getClzz());
+		}
+		if (conflict) {
+			return this.resolveVersionConflict(modelInfo, entity, null);
 		}
     	return false;
     }
@@ -239,25 +286,52 @@ public class JdbcSupport {
     		}
     	}
     	
+    	modelInfo.appendVersionField(modifiedFieldList);
+    	return this.update(modelInfo, entity, modifiedFieldList, true);
+    }
+
+
+    /**
+     * 更新实体的指定属性
+     * @param modelInfo 实体信息
+     * @param entity 实体对象
+     * @param modifiedFieldList 修改过的属性(已包含版本号属性)
+     * @param resolveConflict 是否处理版本冲突
+     * @return
+     */
+    private boolean update(ModelInfo modelInfo, Object entity, List<Integer> modifiedFieldList, boolean resolveConflict) {
     	String updateSql = modelInfo.getOrCreateUpdateSql(modifiedFieldList, config.dialect);
 
     	Connection conn = null;
     	PreparedStatement pst = null;
+    	boolean conflict = false;
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(updateSql);
+			pst = config.prepareStatement(conn, updateSql);
 
-			Object[] params = modelInfo.getUpdateParams(modifiedFieldList, entity);
-			config.dialect.fillStatement(pst, params);
+			modelInfo.bindUpdateParams(pst, modifiedFieldList, entity);
 
 			int result = pst.executeUpdate();
 
-			return result > 0;
+			if (modelInfo.isVersioned()) {
+				if (result > 0) {
+					modelInfo.increaseVersion(entity);
+				} else {
+					conflict = resolveConflict;
+				}
+			}
+			if (!conflict) {
+				return result > 0;
+			}
 		} catch (Exception e) {
 			handleException(conn, e);
 		} finally {
 			handleClose(conn, pst);
+			this.touchQueryCache(modelInfo.getClzz());
+		}
+		if (conflict) {
+			return this.resolveVersionConflict(modelInfo, entity, modifiedFieldList);
 		}
     	return false;
     }
@@ -281,6 +355,7 @@ public class JdbcSupport {
     		list.add(entity);
     	}
 
+    	Map<Class<?>, int[]> resultMap = new HashMap<Class<?>, int[]>();
     	Connection conn = null;
     	try {
     		
@@ -292,14 +367,13 @@ public class JdbcSupport {
 	    		ModelInfo modelInfo = getOrCreateModelInfo(entry.getKey());
 		    	String updateSql = modelInfo.getOrCreateUpdateSql(config.dialect);
 		    	
-				pst = conn.prepareStatement(updateSql);
+				pst = config.prepareStatement(conn, updateSql);
 
 				for (Object entity : entry.getValue()) {
-					Object[] params = modelInfo.getUpdateParams(entity);
-					config.dialect.fillStatement(pst, params);
+					modelInfo.bindUpdateParams(pst, entity);
 					pst.addBatch();
 				}
-				pst.executeBatch();
+				resultMap.put(entry.getKey(), pst.executeBatch());
 				pst.close();
 		    }
 		    
@@ -318,6 +392,14 @@ public class JdbcSupport {
 			handleException(conn, e);
     	} finally {
     		config.close(conn);
+    		for (Class<?> clzz : entityClassMap.keySet()) {
+    			this.touchQueryCache(clzz);
+    		}
+    	}
+
+    	for (Entry<Class<?>, int[]> entry : resultMap.entrySet()) {
+    		this.checkBatchVersions(getOrCreateModelInfo(entry.getKey()),
+    				entityClassMap.get(entry.getKey()), entry.getValue());
     	}
     }
 
@@ -329,6 +411,8 @@ public class JdbcSupport {
      */
     public int[] batchUpdate(final Class<?> clzz, Collection<Object> entitys) {
 
+    	ModelInfo modelInfo = getOrCreateModelInfo(clzz);
+    	int[] result = new int[0];
     	Connection conn = null;
     	PreparedStatement pst = null;
     	try {
@@ -337,25 +421,90 @@ public class JdbcSupport {
 		    conn = config.getConnection();
 		    conn.setAutoCommit(false);
 		    
-		    ModelInfo modelInfo = getOrCreateModelInfo(clzz);
 		    String updateSql = modelInfo.getOrCreateUpdateSql(config.dialect);
 		    	
-			pst = conn.prepareStatement(updateSql);
+			pst = config.prepareStatement(conn, updateSql);
 
 			for (Object entity : entitys) {
-				Object[] params = modelInfo.getUpdateParams(entity);
-				config.dialect.fillStatement(pst, params);
+				modelInfo.bindUpdateParams(pst, entity);
 				pst.addBatch();
 			}
 			
-			return pst.executeBatch();
+			result = pst.executeBatch();
 			
     	} catch (Exception e) {
 			rollbackAndClose(conn, e);
     	} finally {
 			commitAndClose(conn, pst);
+			this.touchQueryCache(clzz);
     	}
-    	return new int[0];
+
+    	this.checkBatchVersions(modelInfo, entitys, result);
+    	return result;
+    }
+
+
+    /**
+     * 根据批量更新的影响行数检查版本冲突
+     * <br/>成功的实体版本号加1,冲突的实体逐个交给冲突处理器
+     * <br/>驱动返回SUCCESS_NO_INFO时无法检测冲突,视为成功
+     * @param modelInfo 实体信息
+     * @param entitys 实体对象(与批量语句顺序一致)
+     * @param result 批量更新影响行数
+     */
+    private void checkBatchVersions(ModelInfo modelInfo, Collection<Object> entitys, int[] result) {
+    	if (!modelInfo.isVersioned() || result.length == 0) {
+    		return;
+    	}
+    	List<Object> conflicts = null;
+    	int i = 0;
+    	for (Object entity : entitys) {
+    		if (i >= result.length) {
+    			break;
+    		}
+    		int count = result[i++];
+    		if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+    			modelInfo.increaseVersion(entity);
+    		} else if (count == 0) {
+    			if (conflicts == null) {
+    				conflicts = new ArrayList<Object>();
+    			}
+    			conflicts.add(entity);
+    		}
+    	}
+    	if (conflicts == null) {
+    		return;
+    	}
+    	for (Object entity : conflicts) {
+    		this.resolveVersionConflict(modelInfo, entity, null);
+    	}
+    }
+
+
+    /**
+     * 处理版本冲突
+     * <br/>冲突处理器同意覆盖时以数据库中的版本号重新更新(与原更新相同的属性),仍冲突则放弃
+     * @param modelInfo 实体信息
+     * @param entity 实体对象
+     * @param modifiedFieldList 原更新的属性,全量更新时为null
+     * @return 是否已覆盖
+     */
+    @SuppressWarnings("unchecked")
+	private boolean resolveVersionConflict(ModelInfo modelInfo, Object entity, List<Integer> modifiedFieldList) {
+    	Object id = modelInfo.getPrimaryKeyInfo().getValue(entity);
+    	Object dbEntity = this.get(modelInfo.getClzz(), id);
+    	if (!this.versionConflictResolver.resolve(entity, dbEntity)) {
+    		return false;
+    	}
+    	// 记录已被删除,重新保存
+    	if (dbEntity == null) {
+    		return this.save(entity);
+    	}
+    	modelInfo.setVersion(entity, modelInfo.getVersion(dbEntity));
+    	if (modifiedFieldList != null) {
+    		return this.update(modelInfo, entity, modifiedFieldList, false);
+    	}
+    	return this.update(entity, false);
     }
 
 	private void commitAndClose(Connection conn, PreparedStatement pst) {
@@ -386,10 +535,9 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(deleteSql);
+			pst = config.prepareStatement(conn, deleteSql);
 
-			Object param = modelInfo.getDeleteParam(entity);
-			config.dialect.fillStatement(pst, param);
+			modelInfo.bindDeleteParam(pst, entity);
 
 			int result = pst.executeUpdate();
 
@@ -398,6 +546,7 @@ public class JdbcSupport {
 			handleException(conn, e);
 		} finally {
 			handleClose(conn, pst);
+			this.touchQueryCache(modelInfo.getClzz());
 		}
     	return false;
     }
@@ -421,11 +570,10 @@ public class JdbcSupport {
 		    ModelInfo modelInfo = getOrCreateModelInfo(clzz);
 		    String updateSql = modelInfo.getOrCreateDeleteSql(config.dialect);
 		    	
-			pst = conn.prepareStatement(updateSql);
+			pst = config.prepareStatement(conn, updateSql);
 
 			for (Object entity : entitys) {
-				Object params = modelInfo.getDeleteParam(entity);
-				config.dialect.fillStatement(pst, params);
+				modelInfo.bindDeleteParam(pst, entity);
 				pst.addBatch();
 			}
 			
@@ -435,6 +583,7 @@ public class JdbcSupport {
 			rollbackAndClose(conn, e);
     	} finally {
 			commitAndClose(conn, pst);
+			this.touchQueryCache(clzz);
     	}
     	return new int[0];
     }
@@ -471,7 +620,7 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 			config.dialect.fillStatement(pst, attrValue);
 
 			rs = pst.executeQuery();
@@ -503,7 +652,7 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 			config.dialect.fillStatement(pst, attrValue);
 
 			rs = pst.executeQuery();
@@ -535,7 +684,7 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 			config.dialect.fillStatement(pst, minValue, maxValue);
 
 			rs = pst.executeQuery();
@@ -568,7 +717,7 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 			config.dialect.fillStatement(pst, params);
 
 			rs = pst.executeQuery();
@@ -583,6 +732,107 @@ public class JdbcSupport {
     }
 
 
+    /**
+     * 流式查询实体
+     * <br/>结果集按批读取, 适用于大量数据的遍历, 使用完毕需关闭游标
+     * @param clzz 实体类
+     * @param sql SQL语句
+     * @param params 参数列表
+     * @param <T> 类泛型
+     * @return 游标
+     */
+    public <T> JdbcCursor<T> stream(final Class<T> clzz, String sql, Object... params) {
+    	return this.stream(clzz, false, sql, params);
+    }
+
+
+    /**
+     * 流式查询实体
+     * <br/>结果集按批读取, 适用于大量数据的遍历, 使用完毕需关闭游标
+     * @param clzz 实体类
+     * @param reuseEntity 是否重用同一个实体对象(每次next()返回同一对象, 调用方不能持有)
+     * @param sql SQL语句
+     * @param params 参数列表
+     * @param <T> 类泛型
+     * @return 游标
+     */
+    public <T> JdbcCursor<T> stream(final Class<T> clzz, boolean reuseEntity, String sql, Object... params) {
+    	ModelInfo modelInfo = getOrCreateModelInfo(clzz);
+    	return this.stream(sql, new JdbcCursor.EntityRowMapper<T>(modelInfo.getOrCreateEntityMapper(), reuseEntity), params);
+    }
+
+
+    /**
+     * 流式查询对象
+     * <br/>结果集按批读取, 适用于大量数据的遍历, 使用完毕需关闭游标
+     * @param sql SQL语句
+     * @param rowMapper 行映射
+     * @param params 参数列表
+     * @param <T> 类泛型
+     * @return 游标
+     */
+    public <T> JdbcCursor<T> stream(String sql, RowMapper<T> rowMapper, Object... params) {
+    	Connection conn = null;
+    	PreparedStatement pst = null;
+    	ResultSet rs = null;
+    	boolean restoreAutoCommit = false;
+    	boolean success = false;
+    	try {
+	    	conn = config.getConnection();
+
+	    	// 游标需要在事务中读取
+	    	if (config.dialect.isStreamingInTransaction() && conn.getAutoCommit()) {
+	    		conn.setAutoCommit(false);
+	    		restoreAutoCommit = true;
+	    	}
+
+			pst = SqlReporter.profile(config.dialect.forStreamingQuery(conn, sql), sql);
+			config.dialect.fillStatement(pst, params);
+
+			rs = pst.executeQuery();
+
+			JdbcCursor<T> cursor = new JdbcCursor<T>(config, conn, pst, rs, rowMapper, restoreAutoCommit);
+			success = true;
+			return cursor;
+		} catch (Exception e) {
+			handleException(conn, e);
+		} finally {
+			if (!success) {
+				try {
+					if (restoreAutoCommit) {
+						conn.setAutoCommit(true);
+					}
+				} catch (SQLException e) {
+					logger.error("流式查询失败后恢复自动提交异常", e);
+				}
+				handleClose(conn, pst, rs);
+			}
+		}
+    	return null;
+    }
+
+
+    /**
+     * 流式查询全部主键
+     * <br/>用于启动时预热,使用完毕需关闭游标
+     * @param clzz 实体类
+     * @return 游标
+     */
+    public JdbcCursor<Object> streamPrimaryKeys(final Class<?> clzz) {
+    	ModelInfo modelInfo = getOrCreateModelInfo(clzz);
+    	return this.stream(modelInfo.getOrCreateSelectPrimaryKeysSql(config.dialect), new RowMapper<Object>() {
+			@Override
+			public Object mapRow(ResultSet rs, int rowNum) {
+				try {
+					return rs.getObject(1);
+				} catch (SQLException e) {
+					throw new JdbcExecuteException(e);
+				}
+			}
+		});
+    }
+
+
     /**
      * 根据Sql查询对象列表
      * @param clzz 查询结果类型
@@ -599,7 +849,7 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 			config.dialect.fillStatement(pst, params);
 
 			rs = pst.executeQuery();
@@ -630,7 +880,7 @@ public class JdbcSupport {
     	try {
 	    	conn = config.getConnection();
 
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 			config.dialect.fillStatement(pst, params);
 
 			rs = pst.executeQuery();
@@ -658,7 +908,7 @@ public class JdbcSupport {
 		try {
 			conn = config.getConnection();
 
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 
 			config.dialect.fillStatement(pst, params);
 
@@ -704,6 +954,20 @@ public class JdbcSupport {
     			}
     			list.add(row);
     		}
+    	} else if (clzz == Long.class) {
+    		while (rs.next()) {
+    			long value = rs.getLong(1);
+    			list.add(rs.wasNull() ? null : Long.valueOf(value));
+    		}
+    	} else if (clzz == Integer.class) {
+    		while (rs.next()) {
+    			int value = rs.getInt(1);
+    			list.add(rs.wasNull() ? null : Integer.valueOf(value));
+    		}
+    	} else if (clzz == String.class) {
+    		while (rs.next()) {
+    			list.add(rs.getString(1));
+    		}
     	} else {
     		while (rs.next()) {
     			list.add(rs.getObject(1));
@@ -747,6 +1011,25 @@ public class JdbcSupport {
 	private void handleClose(Connection conn, PreparedStatement pst, ResultSet rs) {
 		config.close(rs, pst, conn);
 	}
+
+	/**
+	 * 通知查询缓存实体已变更
+	 * <br/>当前线程在事务中时推迟到事务完成后,避免并发查询在提交前以新版本号缓存旧数据
+	 * @param clzz 实体类
+	 * @see QueryCacheVersions
+	 */
+	public void touchQueryCache(final Class<?> clzz) {
+		if (config.getThreadLocalConnection() == null) {
+			QueryCacheVersions.touch(clzz);
+			return;
+		}
+		config.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(boolean committed) {
+				QueryCacheVersions.touch(clzz);
+			}
+		});
+	}
     
 	/**
      * 获取或创建实体信息
@@ -832,6 +1115,17 @@ public class JdbcSupport {
 					tableInfo.setPrimaryKey(columnName);
 				}
 
+				// 版本号
+				boolean isVersion = field.isAnnotationPresent(javax.persistence.Version.class);
+				if (isVersion) {
+					Class<?> type = field.getType();
+					if (type != int.class && type != Integer.class
+							&& type != long.class && type != Long.class) {
+						throw new IllegalArgumentException("版本号属性只支持int/long类型:"
+								+ clzz.getName() + "#" + fieldName);
+					}
+				}
+
 				// 添加字段信息
 				columnTypeMap.put(columnName, field.getType());
 
@@ -849,6 +1143,9 @@ public class JdbcSupport {
 						attributeInfo.setPrimaryKey(true);
 						modelInfo.setPrimaryKeyInfo(attributeInfo);
 					}
+					if (isVersion) {
+						modelInfo.setVersionInfo(attributeInfo);
+					}
 				} catch (Exception e) {
 					e.printStackTrace();
 					throw new IllegalAccessException(
@@ -940,7 +1237,7 @@ public class JdbcSupport {
     	ResultSet rs = null;
     	try {
 	    	conn = config.getConnection();
-			pst = conn.prepareStatement(sql);
+			pst = config.prepareStatement(conn, sql);
 
 			rs = pst.executeQuery();
 			ResultSetMetaData rsmd = rs.getMetaData();
@@ -0,0 +1,214 @@
+package dbcache.support.jdbc;
+
+import com.alibaba.fastjson.JSON;
+import dbcache.DbCacheInitError;
+import dbcache.anno.JsonType;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.ReflectionUtils.FieldCallback;
+import utils.collections.concurrent.ConcurrentHashMapV8;
+import utils.collections.concurrent.ConcurrentReferenceHashMap;
+import utils.collections.concurrent.ConcurrentReferenceHashMap.Option;
+import utils.collections.concurrent.ConcurrentReferenceHashMap.ReferenceType;
+import utils.enhance.asm.AsmAccessHelper;
+import utils.enhance.asm.ValueSetter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 延迟加载的json属性
+ * <br/>加载实体时只保存字段原始值,第一次访问属性时才解析;未解析的属性入库时直接使用原始值
+ * <br/>原始值以实体对象为弱引用key保存,实体回收后自动清除
+ * @see JsonType#lazy()
+ */
+public class LazyJsonFields {
+
+	/**
+	 * 实体类 - 延迟加载的json属性
+	 */
+	private static final ConcurrentMap<Class<?>, LazyJsonFields> CLASS_FIELDS = new ConcurrentHashMapV8<Class<?>, LazyJsonFields>();
+
+	/**
+	 * 属性名
+	 */
+	private final String[] names;
+
+	/**
+	 * 属性设值器
+	 */
+	private final ValueSetter<Object>[] setters;
+
+	/**
+	 * json属性类型
+	 */
+	private final Type[] targetTypes;
+
+	/**
+	 * 实体 - 未解析的原始值
+	 */
+	private final ConcurrentMap<Object, Object>[] rawValues;
+
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private LazyJsonFields(List<Field> fields, Class<?> clazz) throws Exception {
+		int size = fields.size();
+		this.names = new String[size];
+		this.setters = new ValueSetter[size];
+		this.targetTypes = new Type[size];
+		this.rawValues = new ConcurrentMap[size];
+		for (int i = 0; i < size; i++) {
+			Field field = fields.get(i);
+			this.names[i] = field.getName();
+			this.setters[i] = AsmAccessHelper.createFieldSetter(field.getName(), (Class<Object>) clazz, field);
+			this.targetTypes[i] = field.getGenericType();
+			this.rawValues[i] = new ConcurrentReferenceHashMap<Object, Object>(16, 0.75f, 16,
+					ReferenceType.WEAK, ReferenceType.STRONG, EnumSet.of(Option.IDENTITY_COMPARISONS));
+		}
+	}
+
+
+	/**
+	 * 获取实体类的延迟加载json属性
+	 * @param clazz 实体类
+	 * @return
+	 */
+	public static LazyJsonFields valueOf(Class<?> clazz) {
+		LazyJsonFields lazyJsonFields = CLASS_FIELDS.get(clazz);
+		if (lazyJsonFields != null) {
+			return lazyJsonFields;
+		}
+
+		final List<Field> fields = new ArrayList<Field>();
+		ReflectionUtils.doWithFields(clazz, new FieldCallback() {
+			public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
+				if (Modifier.isStatic(field.getModifiers())) {
+					return;
+				}
+				JsonType jsonType = field.getAnnotation(JsonType.class);
+				if (jsonType != null && jsonType.lazy()) {
+					fields.add(field);
+				}
+			}
+		});
+
+		// 代理类只分析实体类本身的方法,父类中的属性无法在访问时解析
+		for (Field field : fields) {
+			if (field.getDeclaringClass() != clazz) {
+				throw new DbCacheInitError("延迟解析的json属性必须声明在实体类中:"
+						+ field.getDeclaringClass().getName() + "#" + field.getName());
+			}
+		}
+
+		try {
+			lazyJsonFields = new LazyJsonFields(fields, clazz);
+		} catch (Exception e) {
+			throw new DbCacheInitError("无法初始化延迟加载属性:" + clazz.getName(), e);
+		}
+		LazyJsonFields old = CLASS_FIELDS.putIfAbsent(clazz, lazyJsonFields);
+		return old != null ? old : lazyJsonFields;
+	}
+
+
+	/**
+	 * 设置未解析的原始值,属性值置为null
+	 * @param entity 实体
+	 * @param index 属性序号
+	 * @param rawValue 原始值
+	 */
+	public void setRawValue(Object entity, int index, Object rawValue) {
+		synchronized (entity) {
+			this.setters[index].set(entity, null);
+			if (rawValue == null) {
+				this.rawValues[index].remove(entity);
+			} else {
+				this.rawValues[index].put(entity, rawValue.toString());
+			}
+		}
+	}
+
+	/**
+	 * 获取未解析的原始值
+	 * @param entity 实体
+	 * @param index 属性序号
+	 * @return 已解析或已重新设值时返回null
+	 */
+	public Object getRawValue(Object entity, int index) {
+		return this.rawValues[index].get(entity);
+	}
+
+	/**
+	 * 解析属性
+	 * <br/>由代理类在访问属性的方法前调用
+	 * @param entity 实体
+	 * @param index 属性序号
+	 */
+	public void load(Object entity, int index) {
+		ConcurrentMap<Object, Object> rawValueMap = this.rawValues[index];
+		if (!rawValueMap.containsKey(entity)) {
+			return;
+		}
+		synchronized (entity) {
+			Object rawValue = rawValueMap.get(entity);
+			if (rawValue == null) {
+				return;
+			}
+			// 先设值再移除原始值,入库线程看不到原始值时属性已经可见
+			this.setters[index].set(entity, JSON.parseObject(rawValue.toString(), this.targetTypes[index]));
+			rawValueMap.remove(entity);
+		}
+	}
+
+	/**
+	 * 解析所有属性
+	 * @param entity 实体
+	 */
+	public void loadAll(Object entity) {
+		for (int i = 0; i < this.names.length; i++) {
+			this.load(entity, i);
+		}
+	}
+
+	/**
+	 * 丢弃未解析的原始值
+	 * <br/>由代理类在只给属性赋值的set方法返回后调用
+	 * @param entity 实体
+	 * @param index 属性序号
+	 */
+	public void discard(Object entity, int index) {
+		ConcurrentMap<Object, Object> rawValueMap = this.rawValues[index];
+		if (!rawValueMap.containsKey(entity)) {
+			return;
+		}
+		synchronized (entity) {
+			rawValueMap.remove(entity);
+		}
+	}
+
+	/**
+	 * 获取属性序号
+	 * @param name 属性名
+	 * @return 不是延迟加载属性时返回-1
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < this.names.length; i++) {
+			if (this.names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 获取延迟加载属性数量
+	 * @return
+	 */
+	public int size() {
+		return this.names.length;
+	}
+
+}
@@ -59,12 +59,27 @@ public class ModelInfo {
     // 查询最大Id语句
     private String selectMaxIdSql;
 
+    // 查询全部主键语句
+    private String selectPrimaryKeysSql;
+
 	// 按字段查询Id语句
     private final Map<String, String> findIdByColumnSqlMap = new HashMap<String, String>();
 
     // 按字段查询语句
     private Map<String, String> findByColumnSqlMap = new HashMap<String, String>();
     
+    // 实体映射器
+    private volatile EntityMapper entityMapper;
+
+    // 主键在属性列表中的位置
+    private int primaryKeyPosition = -1;
+
+    /** 版本号属性信息,未定义@Version时为null */
+    private AttributeInfo<Object> versionInfo;
+
+    /** 版本号属性位置 */
+    private int versionPosition = -1;
+
     // 按字段更新语句
     private final Map<Integer, String> updateByColumnSqlMap = new HashMap<Integer, String>();
 
@@ -129,6 +144,9 @@ public class ModelInfo {
     	}
     	StringBuilder sqlBuilder = new StringBuilder();
     	dialect.forModelUpdate(tableInfo, sqlBuilder);
+    	if (this.versionInfo != null) {
+    		dialect.forVersionCondition(this.versionInfo.getColumnName(), sqlBuilder);
+    	}
 
     	this.updateSql = sqlBuilder.toString();
     	return this.updateSql;
@@ -166,6 +184,9 @@ public class ModelInfo {
     	
 		StringBuilder sqlBuilder = new StringBuilder();
     	dialect.forDbUpdate(tableInfo, modifiedColumns, sqlBuilder);
+    	if (this.versionInfo != null) {
+    		dialect.forVersionCondition(this.versionInfo.getColumnName(), sqlBuilder);
+    	}
 
     	sql = sqlBuilder.toString();
     	if (modifiedFields.size() <= 3) {
@@ -190,6 +211,20 @@ public class ModelInfo {
 	}
 
 
+    /**
+     * 生成查询全部主键语句
+     * @param dialect Dialect
+     * @return
+     */
+    public String getOrCreateSelectPrimaryKeysSql(Dialect dialect) {
+		if (selectPrimaryKeysSql != null) {
+			return selectPrimaryKeysSql;
+		}
+    	this.selectPrimaryKeysSql = dialect.forModelSelectPrimaryKeys(tableInfo);
+    	return this.selectPrimaryKeysSql;
+	}
+
+
     /**
      * 生成按属性查询Id语句
      * @param dialect Dialect
@@ -238,6 +273,27 @@ public class ModelInfo {
     }
 
 
+    /**
+     * 获取实体映射器
+     * @return
+     */
+    public EntityMapper getOrCreateEntityMapper() {
+    	EntityMapper mapper = this.entityMapper;
+    	if (mapper != null) {
+    		return mapper;
+    	}
+    	synchronized (this) {
+    		if (this.entityMapper == null) {
+    			Class<?> instanceClass = this.proxyClzz != null ? this.proxyClzz : this.clzz;
+    			this.primaryKeyPosition = this.columnInfos.indexOf(this.primaryKeyInfo);
+    			this.versionPosition = this.versionInfo != null ? this.columnInfos.indexOf(this.versionInfo) : -1;
+    			this.entityMapper = EntityMapperFactory.createEntityMapper(this.clzz, instanceClass, this.columnInfos);
+    		}
+    		return this.entityMapper;
+    	}
+    }
+
+
     /**
      * 根据结果集生成实体
      * @param rs 查询结果集
@@ -246,16 +302,29 @@ public class ModelInfo {
      * @throws InstantiationException
      * @throws SQLException
      */
-    @SuppressWarnings("unchecked")
 	public Object generateEntity(ResultSet rs) throws InstantiationException, IllegalAccessException, SQLException {
-		if (rs.next()) {
-			Class<?> clzz = this.proxyClzz != null ? this.proxyClzz : this.clzz;
-			Object instance = clzz.newInstance();
+		return this.generateEntity(rs, false);
+	}
+
 
-			int columnIndex = 1;
-			for (AttributeInfo<Object> columnInfo : this.columnInfos) {
-				columnInfo.setFromPersistValue(instance, this.getRsVal(rs, columnIndex, columnInfo.getSqlType(), columnInfo));
-				columnIndex++;
+    /**
+     * 根据结果集生成实体
+     * @param rs 查询结果集
+     * @param lazyJson 延迟解析json属性
+     * @return 实体对象
+     * @throws IllegalAccessException
+     * @throws InstantiationException
+     * @throws SQLException
+     * @see LazyJsonFields
+     */
+	public Object generateEntity(ResultSet rs, boolean lazyJson) throws InstantiationException, IllegalAccessException, SQLException {
+		if (rs.next()) {
+			EntityMapper mapper = this.getOrCreateEntityMapper();
+			Object instance = mapper.newInstance();
+			if (lazyJson) {
+				mapper.readLazy(rs, instance);
+			} else {
+				mapper.read(rs, instance);
 			}
 			return instance;
 		}
@@ -276,15 +345,10 @@ public class ModelInfo {
     public List generateEntityList(ResultSet rs) throws InstantiationException, IllegalAccessException, SQLException  {
     	List list = new ArrayList();
 
+    	EntityMapper mapper = this.getOrCreateEntityMapper();
     	while (rs.next()) {
-			Class<?> clzz = this.proxyClzz != null ? this.proxyClzz : this.clzz;
-			Object instance = clzz.newInstance();
-
-			int columnIndex = 1;
-			for (AttributeInfo<Object> columnInfo : this.columnInfos) {
-				columnInfo.setFromPersistValue(instance, this.getRsVal(rs, columnIndex, columnInfo.getSqlType(), columnInfo));
-				columnIndex++;
-			}
+			Object instance = mapper.newInstance();
+			mapper.read(rs, instance);
 			list.add(instance);
 		}
 
@@ -323,104 +387,210 @@ public class ModelInfo {
 	}
 
     /**
-     * 获取保存的sql参数
+     * 绑定保存的sql参数
+     * @param pst PreparedStatement
      * @param entity 实体
-     * @return
+     * @throws SQLException
      */
-    @SuppressWarnings("unchecked")
-	public Object[] getSaveParams(Object entity) {
-		Object[] sqlParams = new Object[this.columnInfos.size()];
-		int i = 0;
-		for (AttributeInfo<Object> columnInfo : this.columnInfos) {
-			sqlParams[i] = columnInfo.getPersistValue(entity);
-			i++;
-		}
-		return sqlParams;
-	}
+    public void bindSaveParams(PreparedStatement pst, Object entity) throws SQLException {
+    	this.initVersion(entity);
+    	EntityMapper mapper = this.getOrCreateEntityMapper();
+    	for (int i = 0, size = this.columnInfos.size(); i < size; i++) {
+    		mapper.bind(pst, i + 1, i, entity);
+    	}
+    }
 
 
-	/**
-     * 获取保存的sql参数
+    /**
+     * 绑定保存的sql参数,主键为空时使用Id生成器
+     * @param pst PreparedStatement
      * @param entity 实体
      * @param category 分段类别
-     * @return
+     * @throws SQLException
      */
     @SuppressWarnings("unchecked")
-	public Object[] getAutoIdSaveParams(Object entity, int category) {
-    	Object[] sqlParams = new Object[this.columnInfos.size()];
-		int i = 0;Object columnVal;
-		for (AttributeInfo<Object> columnInfo : this.columnInfos) {
-			columnVal = columnInfo.getPersistValue(entity);
-			if (columnInfo.isPrimaryKey() && columnVal == null) {
-				// 获取Id生成器
-				IdGenerator<?> idGenerator = this.idGenerators.get(category);
-				if (idGenerator != null) {
-					sqlParams[i] = idGenerator.generateId();
-				}
-			} else {
-				sqlParams[i] = columnVal;
-			}
-			i++;
-		}
-		return sqlParams;
-	}
+	public void bindAutoIdSaveParams(PreparedStatement pst, Object entity, int category) throws SQLException {
+    	this.initVersion(entity);
+    	EntityMapper mapper = this.getOrCreateEntityMapper();
+    	int i = 0;
+    	for (AttributeInfo<Object> columnInfo : this.columnInfos) {
+    		if (columnInfo.isPrimaryKey() && columnInfo.getPersistValue(entity) == null) {
+    			// 获取Id生成器
+    			IdGenerator<?> idGenerator = this.idGenerators.get(category);
+    			pst.setObject(i + 1, idGenerator != null ? idGenerator.generateId() : null);
+    		} else {
+    			mapper.bind(pst, i + 1, i, entity);
+    		}
+    		i++;
+    	}
+    }
+
+
+    /**
+     * 绑定更新的sql参数
+     * @param pst PreparedStatement
+     * @param entity 实体
+     * @throws SQLException
+     */
+    public void bindUpdateParams(PreparedStatement pst, Object entity) throws SQLException {
+    	EntityMapper mapper = this.getOrCreateEntityMapper();
+    	int parameterIndex = 1;
+    	for (int i = 0, size = this.columnInfos.size(); i < size; i++) {
+    		if (i == this.versionPosition) {
+    			pst.setObject(parameterIndex++, this.nextVersion(entity));
+    		} else if (!this.columnInfos.get(i).isPrimaryKey()) {
+    			mapper.bind(pst, parameterIndex++, i, entity);
+    		}
+    	}
+    	mapper.bind(pst, parameterIndex, this.primaryKeyPosition, entity);
+    	if (this.versionInfo != null) {
+    		pst.setObject(parameterIndex + 1, this.getVersion(entity));
+    	}
+    }
+
+
+    /**
+     * 绑定更新的sql参数
+     * @param pst PreparedStatement
+     * @param modifiedFields 修改过的属性序号
+     * @param entity 实体
+     * @throws SQLException
+     */
+    @SuppressWarnings("rawtypes")
+	public void bindUpdateParams(PreparedStatement pst, List<Integer> modifiedFields, Object entity) throws SQLException {
+    	if (modifiedFields.size() == 0) {
+    		this.bindUpdateParams(pst, entity);
+    		return;
+    	}
+    	EntityMapper mapper = this.getOrCreateEntityMapper();
+    	int parameterIndex = 1;
+    	for (Integer fieldIndex : modifiedFields) {
+    		AttributeInfo attributeInfo = this.columnInfos.get(fieldIndex);
+    		if (fieldIndex == this.versionPosition) {
+    			pst.setObject(parameterIndex++, this.nextVersion(entity));
+    		} else if (attributeInfo != null && !attributeInfo.isPrimaryKey()) {
+    			mapper.bind(pst, parameterIndex++, fieldIndex, entity);
+    		}
+    	}
+    	mapper.bind(pst, parameterIndex, this.primaryKeyPosition, entity);
+    	if (this.versionInfo != null) {
+    		pst.setObject(parameterIndex + 1, this.getVersion(entity));
+    	}
+    }
+
+
+    /**
+     * 是否定义了版本号属性
+     * @return
+     * @see javax.persistence.Version
+     */
+    public boolean isVersioned() {
+    	return this.versionInfo != null;
+    }
 
 
     /**
-     * 获取更新的sql参数
+     * 动态更新时加入版本号属性
+     * @param modifiedFields 修改过的属性序号
+     */
+    public void appendVersionField(List<Integer> modifiedFields) {
+    	if (this.versionInfo == null || modifiedFields.size() == 0) {
+    		return;
+    	}
+    	int position = this.columnInfos.indexOf(this.versionInfo);
+    	if (!modifiedFields.contains(position)) {
+    		modifiedFields.add(position);
+    	}
+    }
+
+
+    /**
+     * 获取版本号,为null时返回0
      * @param entity 实体
      * @return
      */
-    @SuppressWarnings("unchecked")
-	public Object[] getUpdateParams(Object entity) {
-    	Object[] sqlParams = new Object[this.columnInfos.size()];
-		int i = 0;
-		for (AttributeInfo<Object> columnInfo : this.columnInfos) {
-			if (!columnInfo.isPrimaryKey()) {
-				sqlParams[i] = columnInfo.getPersistValue(entity);
-				i++;
-			}
-		}
-		sqlParams[this.columnInfos.size() - 1] = primaryKeyInfo.getPersistValue(entity);
-		return sqlParams;
-	}
+    public Object getVersion(Object entity) {
+    	Object version = this.versionInfo.getValue(entity);
+    	if (version == null) {
+    		return this.toVersion(0L);
+    	}
+    	return version;
+    }
 
 
-	/**
-    * 获取更新的sql参数
-    * @param entity 实体
-    * @param modifiedFields 修改过的属性数组(线程安全)
-    * @return
-    */
-	@SuppressWarnings("unchecked")
-	public Object[] getUpdateParams(List<Integer> modifiedFields, Object entity) {
-		if (modifiedFields.size() == 0) {
-			return this.getUpdateParams(entity);
-		}
+    /**
+     * 设置版本号
+     * @param entity 实体
+     * @param version 版本号
+     */
+    public void setVersion(Object entity, Object version) {
+    	this.versionInfo.setValue(entity, this.toVersion(((Number) version).longValue()));
+    }
 
-	   	Object[] sqlParams = new Object[modifiedFields.size() + 1];
-		
-	   	int i = 0;
-	   	for (Integer fieldIndex : modifiedFields) {
-			AttributeInfo attributeInfo = this.columnInfos.get(fieldIndex);
-			if (attributeInfo != null && !attributeInfo.isPrimaryKey()) {
-				sqlParams[i++] = attributeInfo.getPersistValue(entity);
-			}
-		}
-	   	
-		sqlParams[modifiedFields.size()] = primaryKeyInfo.getPersistValue(entity);
-		return sqlParams;
-	}
-   
-   
-   
+
+    /**
+     * 保存前初始化为null的版本号
+     * @param entity 实体
+     */
+    public void initVersion(Object entity) {
+    	if (this.versionInfo != null && this.versionInfo.getValue(entity) == null) {
+    		this.versionInfo.setValue(entity, this.toVersion(0L));
+    	}
+    }
+
+
+    /**
+     * 更新成功后版本号加1
+     * @param entity 实体
+     */
+    public void increaseVersion(Object entity) {
+    	this.versionInfo.setValue(entity, this.nextVersion(entity));
+    }
+
+
+    // 下一个版本号
+    private Object nextVersion(Object entity) {
+    	return this.toVersion(((Number) this.getVersion(entity)).longValue() + 1);
+    }
+
+
+    // 转换成版本号属性的类型
+    private Object toVersion(long version) {
+    	Class<?> type = this.versionInfo.getField().getType();
+    	if (type == long.class || type == Long.class) {
+    		return version;
+    	}
+    	return (int) version;
+    }
+
+
+    /**
+     * 绑定删除的sql参数
+     * @param pst PreparedStatement
+     * @param entity 实体
+     * @throws SQLException
+     */
+    public void bindDeleteParam(PreparedStatement pst, Object entity) throws SQLException {
+    	this.getOrCreateEntityMapper().bind(pst, 1, this.primaryKeyPosition, entity);
+    }
+
+
+    /**
+     * 按sql类型读取字段值
+     * @param rs 查询结果集
+     * @param i 字段序号
+     * @param type sql类型
+     * @param columnInfo 属性信息
+     * @return
+     * @throws SQLException
+     */
     @SuppressWarnings("rawtypes")
-	private Object getRsVal(ResultSet rs, int i, int type, AttributeInfo columnInfo) throws SQLException {
+	static Object getRsVal(ResultSet rs, int i, int type, AttributeInfo columnInfo) throws SQLException {
     	Object value = null;
     	if (columnInfo.getType() == java.util.Date.class) {
-    		java.sql.Date typeDate = rs.getDate(i);
-    		if (typeDate != null) {
-    			value = new Date(typeDate.getTime());
+    		Timestamp timestamp = rs.getTimestamp(i);
+    		if (timestamp != null) {
+    			value = new Date(timestamp.getTime());
     		}
 		} else if (type < Types.BLOB)
 			value = rs.getObject(i);
@@ -475,15 +645,6 @@ public class ModelInfo {
 	}
 
 
-    /**
-     * 获取删除的sql参数
-     * @param entity 实体
-     * @return
-     */
-	public Object getDeleteParam(Object entity) {
-		return primaryKeyInfo.getPersistValue(entity);
-	}
-
 	/**
 	 * 设置实体类
 	 *
@@ -493,8 +654,13 @@ public class ModelInfo {
 		this.clzz = clzz;
 	}
 
+	public Class<?> getClzz() {
+		return clzz;
+	}
+
 	public void setProxyClzz(Class<?> proxyClzz) {
 		this.proxyClzz = proxyClzz;
+		this.entityMapper = null;
 	}
 
 	public void setTableInfo(TableInfo tableInfo) {
@@ -509,12 +675,22 @@ public class ModelInfo {
 		this.primaryKeyInfo = primaryKeyInfo;
 	}
 
+	public AttributeInfo<Object> getVersionInfo() {
+		return versionInfo;
+	}
+
+	public void setVersionInfo(AttributeInfo<Object> versionInfo) {
+		this.versionInfo = versionInfo;
+		this.entityMapper = null;
+	}
+
 	@SuppressWarnings("rawtypes")
 	public void setAttrTypeMap(Map<String, AttributeInfo> attrTypeMap) {
 		this.attrTypeMap = attrTypeMap;
 		this.findByColumnSqlMap = new HashMap<String, String>(
 				attrTypeMap.size());
 		this.columnInfos = new ArrayList<AttributeInfo>(attrTypeMap.values());
+		this.entityMapper = null;
 	}
 
 	public Map<Integer, IdGenerator<?>> getIdGenerators() {
@@ -0,0 +1,15 @@
+package dbcache.support.jdbc;
+
+/**
+ * 流式查询的行处理回调
+ */
+public interface RowHandler<T> {
+
+	/**
+	 * 处理一行数据
+	 * @param row 行对象
+	 * @throws Exception
+	 */
+	void handle(T row) throws Exception;
+
+}
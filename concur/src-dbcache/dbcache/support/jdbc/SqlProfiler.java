@@ -0,0 +1,446 @@
+package dbcache.support.jdbc;
+
+import utils.collections.concurrent.ConcurrentHashMapV8;
+import utils.collections.concurrent.LongAdder;
+import utils.collections.concurrent.LongMaxUpdater;
+import utils.collections.concurrent.ThreadLocalRandom8;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sql执行耗时采样统计
+ * <br/>按Sql模板(字面量替换为?)统计执行耗时分布、影响行数、批量大小,并记录最近的慢Sql
+ * <br/>每条语句单独决定是否采样,只有采样命中的PreparedStatement和ResultSet被代理计时,连接和未命中的语句没有额外开销
+ */
+public class SqlProfiler {
+
+	/**
+	 * 默认采样率 1/N
+	 */
+	public static final int DEFAULT_SAMPLE_RATE = 16;
+
+	/**
+	 * 默认慢Sql阀值(毫秒)
+	 */
+	public static final long DEFAULT_SLOW_MILLIS = 200;
+
+	/**
+	 * 最多统计的Sql模板数量,超出部分合并统计
+	 */
+	private static final int MAX_TEMPLATES = 256;
+
+	/**
+	 * 超出模板数量限制时使用的统计Key
+	 */
+	private static final String OVERFLOW_TEMPLATE = "<other>";
+
+	/**
+	 * 慢Sql环形缓冲区大小(2的幂)
+	 */
+	private static final int SLOW_BUFFER_SIZE = 128;
+
+	// 采样率 1/N, 0为关闭
+	private static volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+
+	// 慢Sql阀值(微秒)
+	private static volatile long slowMicros = DEFAULT_SLOW_MILLIS * 1000;
+
+	// Sql模板 - 统计信息
+	private static final ConcurrentMap<String, SqlStat> STATS = new ConcurrentHashMapV8<String, SqlStat>();
+
+	// 慢Sql环形缓冲区
+	private static final AtomicReferenceArray<SlowSql> SLOW_BUFFER = new AtomicReferenceArray<SlowSql>(SLOW_BUFFER_SIZE);
+
+	private static final AtomicLong SLOW_CURSOR = new AtomicLong();
+
+
+	/**
+	 * 设置采样率
+	 * @param rate 每rate条语句采样一条, 1为全部采样, 0为关闭
+	 */
+	public static void setSampleRate(int rate) {
+		if (rate < 0) {
+			throw new IllegalArgumentException("sample rate must >= 0");
+		}
+		sampleRate = rate;
+	}
+
+	public static int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * 设置慢Sql阀值
+	 * @param millis 毫秒
+	 */
+	public static void setSlowMillis(long millis) {
+		slowMicros = millis * 1000;
+	}
+
+	public static boolean isEnabled() {
+		return sampleRate > 0;
+	}
+
+	/**
+	 * 是否采样当前语句
+	 * @return
+	 */
+	static boolean sample() {
+		int rate = sampleRate;
+		if (rate <= 0) {
+			return false;
+		}
+		return rate == 1 || ThreadLocalRandom8.current().nextInt(rate) == 0;
+	}
+
+	/**
+	 * 获取Sql模板的统计信息
+	 * @param sql Sql语句
+	 * @return
+	 */
+	static SqlStat getOrCreateStat(String sql) {
+		String template = toTemplate(sql);
+		SqlStat stat = STATS.get(template);
+		if (stat != null) {
+			return stat;
+		}
+		if (STATS.size() >= MAX_TEMPLATES) {
+			template = OVERFLOW_TEMPLATE;
+			stat = STATS.get(template);
+			if (stat != null) {
+				return stat;
+			}
+		}
+		stat = new SqlStat(template);
+		SqlStat old = STATS.putIfAbsent(template, stat);
+		return old != null ? old : stat;
+	}
+
+	/**
+	 * 记录一次执行
+	 * @param stat 统计信息
+	 * @param sql 原始Sql
+	 * @param nanos 耗时(纳秒)
+	 * @param rows 影响行数, 未知为-1
+	 * @param batchSize 批量大小, 非批量为0
+	 */
+	static void record(SqlStat stat, String sql, long nanos, int rows, int batchSize) {
+		long micros = nanos / 1000;
+		stat.record(micros, rows, batchSize);
+		if (micros >= slowMicros) {
+			long seq = SLOW_CURSOR.getAndIncrement();
+			SLOW_BUFFER.set((int) (seq & (SLOW_BUFFER_SIZE - 1)), new SlowSql(sql, micros, rows, batchSize));
+		}
+	}
+
+	/**
+	 * 将Sql中的数字和字符串字面量替换为?
+	 * @param sql Sql语句
+	 * @return
+	 */
+	static String toTemplate(String sql) {
+		if (sql == null) {
+			return "null";
+		}
+		StringBuilder sb = null;
+		int len = sql.length();
+		for (int i = 0; i < len; i++) {
+			char c = sql.charAt(i);
+			int end = -1;
+			if (c == '\'') {
+				end = i + 1;
+				while (end < len) {
+					if (sql.charAt(end) == '\'') {
+						if (end + 1 < len && sql.charAt(end + 1) == '\'') {
+							end += 2;
+							continue;
+						}
+						break;
+					}
+					end++;
+				}
+				end = Math.min(end + 1, len);
+			} else if (c >= '0' && c <= '9' && (i == 0 || !isIdentifierChar(sql.charAt(i - 1)))) {
+				end = i + 1;
+				while (end < len && (Character.isDigit(sql.charAt(end)) || sql.charAt(end) == '.')) {
+					end++;
+				}
+			}
+			if (end < 0) {
+				if (sb != null) {
+					sb.append(c);
+				}
+				continue;
+			}
+			if (sb == null) {
+				sb = new StringBuilder(len);
+				sb.append(sql, 0, i);
+			}
+			sb.append('?');
+			i = end - 1;
+		}
+		return sb == null ? sql : sb.toString();
+	}
+
+	private static boolean isIdentifierChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '`' || c == '"';
+	}
+
+	/**
+	 * 获取统计信息快照
+	 * @return Sql模板 - 统计描述
+	 */
+	public static Map<String, String> getStatInfo() {
+		Map<String, String> infoMap = new LinkedHashMap<String, String>();
+		for (SqlStat stat : STATS.values()) {
+			infoMap.put(stat.getTemplate(), stat.toString());
+		}
+		return infoMap;
+	}
+
+	/**
+	 * 获取写语句(insert/update/delete/replace)影响的总行数
+	 * <br/>采样率为1时为精确值,用于计算写放大
+	 * @return
+	 */
+	public static long getWriteRows() {
+		long rows = 0;
+		for (SqlStat stat : STATS.values()) {
+			if (isWriteTemplate(stat.getTemplate())) {
+				rows += stat.getRows();
+			}
+		}
+		return rows;
+	}
+
+	// 是否写语句模板
+	private static boolean isWriteTemplate(String template) {
+		int i = 0;
+		while (i < template.length() && Character.isWhitespace(template.charAt(i))) {
+			i++;
+		}
+		return template.regionMatches(true, i, "insert", 0, 6)
+				|| template.regionMatches(true, i, "update", 0, 6)
+				|| template.regionMatches(true, i, "delete", 0, 6)
+				|| template.regionMatches(true, i, "replace", 0, 7);
+	}
+
+	/**
+	 * 获取最近的慢Sql
+	 * @return 按发生顺序排列
+	 */
+	public static List<String> getSlowSqlInfo() {
+		List<String> result = new ArrayList<String>(SLOW_BUFFER_SIZE);
+		long cursor = SLOW_CURSOR.get();
+		long start = Math.max(0, cursor - SLOW_BUFFER_SIZE);
+		for (long seq = start; seq < cursor; seq++) {
+			SlowSql slowSql = SLOW_BUFFER.get((int) (seq & (SLOW_BUFFER_SIZE - 1)));
+			if (slowSql != null) {
+				result.add(slowSql.toString());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 清空统计信息
+	 */
+	public static void reset() {
+		STATS.clear();
+		for (int i = 0; i < SLOW_BUFFER_SIZE; i++) {
+			SLOW_BUFFER.set(i, null);
+		}
+	}
+
+
+	/**
+	 * 单个Sql模板的统计信息
+	 */
+	public static class SqlStat {
+
+		private final String template;
+
+		private final LatencyHistogram histogram = new LatencyHistogram();
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder totalMicros = new LongAdder();
+
+		private final LongMaxUpdater maxMicros = new LongMaxUpdater();
+
+		private final LongAdder rows = new LongAdder();
+
+		private final LongAdder batches = new LongAdder();
+
+		private final LongAdder batchedStatements = new LongAdder();
+
+		private final LongAdder errors = new LongAdder();
+
+		SqlStat(String template) {
+			this.template = template;
+		}
+
+		void record(long micros, int rows, int batchSize) {
+			this.histogram.record(micros);
+			this.count.increment();
+			this.totalMicros.add(micros);
+			this.maxMicros.update(micros);
+			this.addRows(rows);
+			if (batchSize > 0) {
+				this.batches.increment();
+				this.batchedStatements.add(batchSize);
+			}
+		}
+
+		void addRows(int rows) {
+			if (rows > 0) {
+				this.rows.add(rows);
+			}
+		}
+
+		void recordError() {
+			this.errors.increment();
+		}
+
+		public String getTemplate() {
+			return template;
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getRows() {
+			return rows.sum();
+		}
+
+		/**
+		 * 获取耗时百分位(微秒)
+		 * @param percentile 0 ~ 100
+		 * @return
+		 */
+		public long getPercentile(double percentile) {
+			return histogram.getPercentile(percentile);
+		}
+
+		@Override
+		public String toString() {
+			long count = this.count.sum();
+			long batches = this.batches.sum();
+			return "count=" + count
+					+ ", avgUs=" + (count > 0 ? totalMicros.sum() / count : 0)
+					+ ", p50Us=" + histogram.getPercentile(50)
+					+ ", p99Us=" + histogram.getPercentile(99)
+					+ ", p999Us=" + histogram.getPercentile(99.9)
+					+ ", maxUs=" + maxMicros.max()
+					+ ", rows=" + rows.sum()
+					+ ", batches=" + batches
+					+ ", avgBatchSize=" + (batches > 0 ? batchedStatements.sum() / batches : 0)
+					+ ", errors=" + errors.sum();
+		}
+	}
+
+
+	/**
+	 * 对数线性分桶的耗时直方图(HdrHistogram风格)
+	 * <br/>小于16的值精确计数,其余值按2的幂分段,每段16个线性子桶,相对误差不超过1/16
+	 */
+	static class LatencyHistogram {
+
+		private static final int SUB_BITS = 4;
+
+		private static final int SUB_COUNT = 1 << SUB_BITS;
+
+		private static final int BUCKETS = SUB_COUNT + (64 - SUB_BITS) * SUB_COUNT;
+
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+		void record(long value) {
+			counts.incrementAndGet(indexOf(value < 0 ? 0 : value));
+		}
+
+		static int indexOf(long value) {
+			if (value < SUB_COUNT) {
+				return (int) value;
+			}
+			int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+			int sub = (int) (value >>> shift) - SUB_COUNT;
+			return SUB_COUNT + shift * SUB_COUNT + sub;
+		}
+
+		static long highestValueOf(int index) {
+			if (index < SUB_COUNT) {
+				return index;
+			}
+			int shift = (index - SUB_COUNT) / SUB_COUNT;
+			int sub = (index - SUB_COUNT) % SUB_COUNT;
+			return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+		}
+
+		long getPercentile(double percentile) {
+			long[] snapshot = new long[BUCKETS];
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				snapshot[i] = counts.get(i);
+				total += snapshot[i];
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += snapshot[i];
+				if (seen >= target) {
+					return highestValueOf(i);
+				}
+			}
+			return highestValueOf(BUCKETS - 1);
+		}
+	}
+
+
+	/**
+	 * 慢Sql记录
+	 */
+	static class SlowSql {
+
+		private final String sql;
+
+		private final long micros;
+
+		private final int rows;
+
+		private final int batchSize;
+
+		private final long time = System.currentTimeMillis();
+
+		private final String thread = Thread.currentThread().getName();
+
+		SlowSql(String sql, long micros, int rows, int batchSize) {
+			this.sql = sql;
+			this.micros = micros;
+			this.rows = rows;
+			this.batchSize = batchSize;
+		}
+
+		@Override
+		public String toString() {
+			return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(time))
+					+ " [" + thread + "] " + micros + "us"
+					+ (rows >= 0 ? ", rows=" + rows : "")
+					+ (batchSize > 0 ? ", batchSize=" + batchSize : "")
+					+ " : " + sql;
+		}
+	}
+
+}
@@ -5,33 +5,49 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * SqlReporter.
+ * <br/>showSql开启时打印Sql; SqlProfiler采样命中的PreparedStatement由{@link #profile(PreparedStatement, String)}代理统计执行耗时
  */
 public class SqlReporter implements InvocationHandler {
-	
+
 	private final Connection conn;
 	private static boolean loggerOn = false;
 	private static final Logger log = LoggerFactory.getLogger(SqlReporter.class);
-	
+
 	SqlReporter(Connection conn) {
 		this.conn = conn;
 	}
-	
+
 	public static void setLogger(boolean on) {
 		SqlReporter.loggerOn = on;
 	}
-	
+
 	@SuppressWarnings("rawtypes")
 	Connection getConnection() {
 		Class clazz = conn.getClass();
-		return (Connection)Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{Connection.class}, this);
+		return (Connection)Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{Connection.class}, this);
+	}
+
+	/**
+	 * 按采样率决定是否代理PreparedStatement
+	 * @param statement PreparedStatement
+	 * @param sql Sql语句
+	 * @return 采样命中时返回计时代理,否则原样返回
+	 */
+	static PreparedStatement profile(PreparedStatement statement, String sql) {
+		if (!SqlProfiler.sample()) {
+			return statement;
+		}
+		return new ProfiledStatement(statement, sql).getStatement();
 	}
-	
+
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 		try {
 			if (method.getName().equals("prepareStatement")) {
@@ -46,4 +62,116 @@ public class SqlReporter implements InvocationHandler {
 			throw e.getTargetException();
 		}
 	}
+
+
+	/**
+	 * 采样命中的PreparedStatement代理
+	 */
+	static class ProfiledStatement implements InvocationHandler {
+
+		private final PreparedStatement statement;
+		private final String sql;
+		private final SqlProfiler.SqlStat stat;
+		private int batchSize;
+
+		ProfiledStatement(PreparedStatement statement, String sql) {
+			this.statement = statement;
+			this.sql = sql;
+			this.stat = SqlProfiler.getOrCreateStat(sql);
+		}
+
+		PreparedStatement getStatement() {
+			return (PreparedStatement) Proxy.newProxyInstance(statement.getClass().getClassLoader(),
+					new Class<?>[]{PreparedStatement.class}, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("addBatch")) {
+				batchSize++;
+			} else if (name.equals("clearBatch")) {
+				batchSize = 0;
+			} else if (name.startsWith("execute")) {
+				return this.invokeExecute(method, args, name);
+			}
+			try {
+				return method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+
+		private Object invokeExecute(Method method, Object[] args, String name) throws Throwable {
+			int batch = name.equals("executeBatch") ? batchSize : 0;
+			long start = System.nanoTime();
+			Object result;
+			try {
+				result = method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				stat.recordError();
+				throw e.getTargetException();
+			}
+			long nanos = System.nanoTime() - start;
+
+			int rows = -1;
+			if (result instanceof Integer) {
+				rows = (Integer) result;
+			} else if (result instanceof int[]) {
+				rows = 0;
+				for (int count : (int[]) result) {
+					if (count > 0) {
+						rows += count;
+					}
+				}
+				batchSize = 0;
+			}
+			SqlProfiler.record(stat, sql, nanos, rows, batch);
+
+			if (result instanceof ResultSet) {
+				return new ProfiledResultSet((ResultSet) result, stat).getResultSet();
+			}
+			return result;
+		}
+	}
+
+
+	/**
+	 * 采样命中的ResultSet代理, 关闭时累计读取行数
+	 */
+	static class ProfiledResultSet implements InvocationHandler {
+
+		private final ResultSet resultSet;
+		private final SqlProfiler.SqlStat stat;
+		private int rows;
+		private boolean closed;
+
+		ProfiledResultSet(ResultSet resultSet, SqlProfiler.SqlStat stat) {
+			this.resultSet = resultSet;
+			this.stat = stat;
+		}
+
+		ResultSet getResultSet() {
+			return (ResultSet) Proxy.newProxyInstance(resultSet.getClass().getClassLoader(),
+					new Class<?>[]{ResultSet.class}, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result;
+			try {
+				result = method.invoke(resultSet, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+			String name = method.getName();
+			if (name.equals("next")) {
+				if (Boolean.TRUE.equals(result)) {
+					rows++;
+				}
+			} else if (name.equals("close") && !closed) {
+				closed = true;
+				stat.addRows(rows);
+			}
+			return result;
+		}
+	}
 }
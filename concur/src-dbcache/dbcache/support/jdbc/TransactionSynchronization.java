@@ -0,0 +1,17 @@
+package dbcache.support.jdbc;
+
+/**
+ * 事务完成回调
+ * <br/>通过{@link Config#registerSynchronization(TransactionSynchronization)}注册到当前线程的事务,
+ * 由事务的发起方在提交或回滚后调用{@link Config#afterCompletion(boolean)}触发
+ * <br/>发起方未触发就移除事务连接时,{@link Config#removeThreadLocalConnection()}按回滚触发
+ */
+public interface TransactionSynchronization {
+
+	/**
+	 * 事务完成后调用
+	 * @param committed true 已提交; false 已回滚
+	 */
+	void afterCompletion(boolean committed);
+
+}
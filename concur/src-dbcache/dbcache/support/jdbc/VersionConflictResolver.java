@@ -0,0 +1,19 @@
+package dbcache.support.jdbc;
+
+/**
+ * 乐观锁版本冲突处理器
+ * <br/>实体定义了{@link javax.persistence.Version}属性时,更新语句附带版本号条件,影响行数为0即为冲突
+ * <br/>注册为Spring Bean即可替换默认的处理方式{@link DefaultVersionConflictResolver}
+ */
+public interface VersionConflictResolver {
+
+	/**
+	 * 处理版本冲突
+	 * <br/>可以将数据库中的修改合并到缓存实体后返回true
+	 * @param entity 缓存中的实体
+	 * @param dbEntity 数据库中的当前实体,记录已不存在时为null
+	 * @return true 以缓存实体覆盖数据库(记录已不存在时重新保存); false 放弃本次更新
+	 */
+	boolean resolve(Object entity, Object dbEntity);
+
+}
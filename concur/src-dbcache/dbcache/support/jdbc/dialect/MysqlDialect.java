@@ -19,6 +19,10 @@ package dbcache.support.jdbc.dialect;
 import dbcache.support.jdbc.Dialect;
 import dbcache.support.jdbc.TableInfo;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Collection;
 
 
@@ -103,6 +107,16 @@ public class MysqlDialect extends Dialect {
 		sql.append(" where `").append(tableInfo.getPrimaryKey()).append("` = ?");
 	}
 	
+	@Override
+	public void forVersionCondition(String columnName, StringBuilder sql) {
+		sql.append(" and `").append(columnName).append("` = ?");
+	}
+
+	@Override
+	public String forModelSelectPrimaryKeys(TableInfo tInfo) {
+		return "select `" + tInfo.getPrimaryKey().trim() + "` from `" + tInfo.getTableName() + "`";
+	}
+	
 	public String forModelFindById(TableInfo tInfo) {
 		StringBuilder sql = new StringBuilder("select ");
 		boolean first = true;
@@ -173,5 +187,13 @@ public class MysqlDialect extends Dialect {
 		return sql;
 	}
 
+	@Override
+	public PreparedStatement forStreamingQuery(Connection conn, String sql) throws SQLException {
+		PreparedStatement pst = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		// MySQL驱动只有fetchSize为Integer.MIN_VALUE时才逐行读取结果
+		pst.setFetchSize(Integer.MIN_VALUE);
+		return pst;
+	}
+
 
 }
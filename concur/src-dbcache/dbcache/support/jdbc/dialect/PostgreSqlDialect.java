@@ -103,6 +103,16 @@ public class PostgreSqlDialect extends Dialect {
 		sql.append(" where \"").append(tableInfo.getPrimaryKey()).append("\" = ?");
 	}
 	
+	@Override
+	public void forVersionCondition(String columnName, StringBuilder sql) {
+		sql.append(" and \"").append(columnName).append("\" = ?");
+	}
+
+	@Override
+	public String forModelSelectPrimaryKeys(TableInfo tInfo) {
+		return "select \"" + tInfo.getPrimaryKey().trim() + "\" from \"" + tInfo.getTableName() + "\"";
+	}
+	
 	public String forModelFindById(TableInfo tInfo) {
 		StringBuilder sql = new StringBuilder("select ");
 		boolean first = true;
@@ -173,5 +183,11 @@ public class PostgreSqlDialect extends Dialect {
 		return sql;
 	}
 
+	@Override
+	public boolean isStreamingInTransaction() {
+		// PostgreSQL只有关闭自动提交时fetchSize才会使用游标读取
+		return true;
+	}
+
 
 }
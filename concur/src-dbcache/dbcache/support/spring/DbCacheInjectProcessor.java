@@ -7,6 +7,7 @@ import dbcache.IEntity;
 import dbcache.conf.DbConfigFactory;
 import dbcache.conf.impl.CacheConfig;
 import dbcache.index.IndexChangeListener;
+import dbcache.query.QueryRepositoryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.FormattingTuple;
@@ -40,6 +41,9 @@ public class DbCacheInjectProcessor extends InstantiationAwareBeanPostProcessorA
 	@Autowired
 	private DbConfigFactory configFactory;
 
+	@Autowired
+	private QueryRepositoryFactory queryRepositoryFactory;
+
 
 	@Override
 	public Object postProcessAfterInitialization(final Object bean, final String beanName)
@@ -49,6 +53,7 @@ public class DbCacheInjectProcessor extends InstantiationAwareBeanPostProcessorA
 		ReflectionUtils.doWithFields(bean.getClass(), new FieldCallback() {
 			public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
 				processDbCacheService(bean, beanName, field);
+				processQueryRepository(bean, field);
 			}
 		});
 
@@ -106,6 +111,21 @@ public class DbCacheInjectProcessor extends InstantiationAwareBeanPostProcessorA
 	}
 
 
+	/**
+	 * 处理查询接口属性
+	 * @param bean bean
+	 * @param field field
+	 */
+	private void processQueryRepository(Object bean, Field field) {
+		if (!QueryRepositoryFactory.isQueryRepository(field.getType())) {
+			return;
+		}
+
+		// 注入查询接口实现
+		ReflectionUtility.inject(bean, field, this.queryRepositoryFactory.getRepository(field.getType()));
+	}
+
+
 	/**
 	 * 收集EntityLoadEventListener bean
 	 * @param bean
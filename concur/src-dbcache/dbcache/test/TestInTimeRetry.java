@@ -0,0 +1,208 @@
+package dbcache.test;
+
+import dbcache.CacheObject;
+import dbcache.IEntity;
+import dbcache.conf.DbRuleService;
+import dbcache.dbaccess.DbAccessService;
+import dbcache.persist.DeadLetterLog;
+import dbcache.persist.DeadLetterLog.Operation;
+import dbcache.persist.PersistStatus;
+import dbcache.persist.service.impl.InTimeDbPersistService;
+import org.junit.Assert;
+import utils.thread.SimpleLinkingRunnable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 即时入库重试
+ * <br/>入库失败按次数重试,熔断期间的重试同样计数,超过次数写入死信日志,死信可重新入库
+ * <br/>保存写入死信后的更新改为保存,重放时跳过已入库的死信
+ */
+public class TestInTimeRetry {
+
+    private static final int MAX_RETRY_TIMES = 2;
+
+    public static class RetryEntity implements IEntity<Long> {
+
+        private Long id;
+
+        private String name;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        File deadLetterFile = File.createTempFile("dbcache-deadletter", ".log");
+        deadLetterFile.delete();
+
+        List<Object> saved = new ArrayList<Object>();
+        boolean[] fail = { true };
+
+        InTimeDbPersistService persistService = new InTimeDbPersistService();
+        setField(persistService, "dbRuleService", createRuleService(deadLetterFile.getPath()));
+        setField(persistService, "dbAccessService", createDbAccessService(saved, fail));
+        persistService.init();
+
+        // 重试次数用完后写入死信日志
+        CacheObject<RetryEntity> cacheObject = createCacheObject(1L);
+        persistService.handleSave(cacheObject, createDbAccessService(saved, fail), null);
+        waitDeadLetters(deadLetterFile, 1, 15000);
+        Assert.assertEquals(0, persistService.getRetrySize());
+        Assert.assertTrue(cacheObject.isDeadLetter());
+        Assert.assertEquals(PersistStatus.TRANSIENT, cacheObject.getPersistStatus());
+
+        // 保存写入死信后的更新改为保存
+        fail[0] = false;
+        persistService.handleUpdate(cacheObject, createDbAccessService(saved, fail), null);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cacheObject.getPersistStatus() != PersistStatus.PERSIST) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        Assert.assertFalse(cacheObject.isDeadLetter());
+        Assert.assertEquals(1, saved.size());
+        fail[0] = true;
+
+        // 连续失败触发熔断,熔断期间的重试也计数,不会在熔断打开时间内无限重试
+        long start = System.currentTimeMillis();
+        for (long id = 2; id <= 4; id++) {
+            persistService.handleSave(createCacheObject(id), createDbAccessService(saved, fail), null);
+        }
+        waitDeadLetters(deadLetterFile, 4, 9000);
+        Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+        Assert.assertEquals(0, persistService.getRetrySize());
+        Assert.assertEquals(1, saved.size());
+
+        // 重新入库死信,实体1已入库不再保存
+        fail[0] = false;
+        Assert.assertEquals(4, persistService.replayDeadLetters());
+        Assert.assertEquals(4, saved.size());
+        Assert.assertEquals(1L, ((RetryEntity) saved.get(0)).getId().longValue());
+        Assert.assertFalse(deadLetterFile.exists() && countLines(deadLetterFile) > 0);
+
+        persistService.destroy();
+        deadLetterFile.delete();
+
+        // 不在内存中的按死信日志中的数据入库
+        DeadLetterLog deadLetterLog = new DeadLetterLog(deadLetterFile.getPath());
+        deadLetterLog.append(Operation.SAVE, createCacheObject(5L).getEntity());
+        Assert.assertEquals(1, deadLetterLog.replay(createDbAccessService(saved, fail)));
+        Assert.assertEquals("name5", ((RetryEntity) saved.get(4)).getName());
+        deadLetterLog.close();
+        deadLetterFile.delete();
+        System.out.println("OK");
+    }
+
+
+    private static CacheObject<RetryEntity> createCacheObject(long id) {
+        RetryEntity entity = new RetryEntity();
+        entity.setId(id);
+        entity.setName("name" + id);
+        CacheObject<RetryEntity> cacheObject = new CacheObject<RetryEntity>(entity, RetryEntity.class, entity, new AtomicIntegerArray(2));
+        cacheObject.setLastLinkingRunnable(new AtomicReference<SimpleLinkingRunnable>());
+        return cacheObject;
+    }
+
+    // 等待死信日志达到指定条数
+    private static void waitDeadLetters(File file, int count, long timeoutMillis) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (countLines(file) < count) {
+            Assert.assertTrue("重试未在限定时间内结束", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(count, countLines(file));
+    }
+
+    private static int countLines(File file) throws Exception {
+        if (!file.exists()) {
+            return 0;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            int count = 0;
+            while (reader.readLine() != null) {
+                count++;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static DbRuleService createRuleService(final String deadLetterFile) {
+        return (DbRuleService) Proxy.newProxyInstance(TestInTimeRetry.class.getClassLoader(),
+                new Class<?>[] { DbRuleService.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("getDbPoolSize")) {
+                            return 1;
+                        } else if (name.equals("getRetryMaxTimes")) {
+                            return MAX_RETRY_TIMES;
+                        } else if (name.equals("getDeadLetterFile")) {
+                            return deadLetterFile;
+                        } else if (name.equals("getBackpressureMode")) {
+                            return "block";
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static DbAccessService createDbAccessService(final List<Object> saved, final boolean[] fail) {
+        return (DbAccessService) Proxy.newProxyInstance(TestInTimeRetry.class.getClassLoader(),
+                new Class<?>[] { DbAccessService.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (fail[0]) {
+                            throw new IllegalStateException("db down");
+                        }
+                        if (method.getName().equals("save")) {
+                            saved.add(args[0]);
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == boolean.class) {
+            return false;
+        }
+        return null;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+}
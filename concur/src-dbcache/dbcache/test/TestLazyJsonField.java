@@ -0,0 +1,155 @@
+package dbcache.test;
+
+import dbcache.DbCacheInitError;
+import dbcache.IEntity;
+import dbcache.anno.JsonType;
+import dbcache.support.asm.ChainedMethodProxyAspect;
+import dbcache.support.asm.EnhancedClassInfo;
+import dbcache.support.asm.EntityAsmFactory;
+import dbcache.support.asm.LazyJsonMethodAspect;
+import dbcache.support.asm.ModifiedFieldMethodAspect;
+import dbcache.support.jdbc.LazyJsonFields;
+import org.junit.Assert;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 延迟解析json属性
+ * <br/>只有无条件赋值的set方法可以不解析原始值,条件赋值和赋值前抛出异常时原始值不能丢失;
+ * 父类中的延迟解析属性在初始化时拒绝
+ */
+public class TestLazyJsonField {
+
+    private static final String RAW = "{\"a\":1}";
+
+    @javax.persistence.Entity
+    public static class LazyEntity implements IEntity<Long> {
+
+        private Long id;
+
+        @JsonType(lazy = true)
+        private Map<String, Integer> items;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public Map<String, Integer> getItems() {
+            return items;
+        }
+
+        public void setItems(Map<String, Integer> items) {
+            this.items = items;
+        }
+
+        // 条件赋值
+        public void setItemsIf(boolean set, Map<String, Integer> items) {
+            if (set) {
+                this.items = items;
+            }
+        }
+
+        // 赋值前抛出异常
+        public void setItemsChecked(Map<String, Integer> items) {
+            if (items == null) {
+                throw new IllegalArgumentException("items");
+            }
+            this.items = items;
+        }
+    }
+
+
+    @javax.persistence.MappedSuperclass
+    public static class LazyBase {
+
+        @JsonType(lazy = true)
+        private Map<String, Integer> baseItems;
+
+        public Map<String, Integer> getBaseItems() {
+            return baseItems;
+        }
+
+        public void setBaseItems(Map<String, Integer> baseItems) {
+            this.baseItems = baseItems;
+        }
+    }
+
+
+    @javax.persistence.Entity
+    public static class LazySubEntity extends LazyBase {
+    }
+
+
+    private static EnhancedClassInfo<LazyEntity> classInfo;
+
+    private static LazyJsonFields lazyJsonFields;
+
+
+    public static void main(String[] args) throws Exception {
+        classInfo = EntityAsmFactory.getEntityEnhancedClassInfo(LazyEntity.class,
+                new ChainedMethodProxyAspect(new LazyJsonMethodAspect(), new ModifiedFieldMethodAspect()));
+        lazyJsonFields = LazyJsonFields.valueOf(LazyEntity.class);
+
+        // 读取时解析
+        LazyEntity entity = new LazyEntity();
+        LazyEntity proxy = createProxy(entity);
+        Assert.assertNull(entity.getItems());
+        Assert.assertEquals(Integer.valueOf(1), proxy.getItems().get("a"));
+        Assert.assertNull(lazyJsonFields.getRawValue(entity, 0));
+
+        // set方法赋值后丢弃原始值
+        entity = new LazyEntity();
+        proxy = createProxy(entity);
+        Map<String, Integer> items = new HashMap<String, Integer>();
+        proxy.setItems(items);
+        Assert.assertSame(items, entity.getItems());
+        Assert.assertNull(lazyJsonFields.getRawValue(entity, 0));
+
+        // 条件不成立时属性保持原值
+        entity = new LazyEntity();
+        proxy = createProxy(entity);
+        proxy.setItemsIf(false, items);
+        Assert.assertEquals(Integer.valueOf(1), entity.getItems().get("a"));
+
+        // 条件成立时使用新值
+        entity = new LazyEntity();
+        proxy = createProxy(entity);
+        proxy.setItemsIf(true, items);
+        Assert.assertSame(items, entity.getItems());
+        Assert.assertNull(lazyJsonFields.getRawValue(entity, 0));
+
+        // 赋值前抛出异常时属性保持原值
+        entity = new LazyEntity();
+        proxy = createProxy(entity);
+        try {
+            proxy.setItemsChecked(null);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+        }
+        Assert.assertEquals(Integer.valueOf(1), entity.getItems().get("a"));
+
+        // 父类中的延迟解析属性
+        try {
+            LazyJsonFields.valueOf(LazySubEntity.class);
+            Assert.fail();
+        } catch (DbCacheInitError e) {
+        }
+
+        System.out.println("OK");
+    }
+
+
+    // 创建原始值未解析的代理实体
+    private static LazyEntity createProxy(LazyEntity entity) throws Exception {
+        lazyJsonFields.setRawValue(entity, 0, RAW);
+        return classInfo.getConstructorBuilder().getProxyEntity(
+                classInfo.getProxyClass(), entity, null, new AtomicIntegerArray(2));
+    }
+
+}
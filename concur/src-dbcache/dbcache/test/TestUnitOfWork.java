@@ -0,0 +1,231 @@
+package dbcache.test;
+
+import dbcache.CacheObject;
+import dbcache.IEntity;
+import dbcache.UnitOfWork;
+import dbcache.cache.CacheUnit;
+import dbcache.conf.impl.CacheConfig;
+import dbcache.dbaccess.DbAccessService;
+import dbcache.persist.DeadLetterLog.Operation;
+import dbcache.persist.PersistStatus;
+import dbcache.persist.service.DbPersistService;
+import dbcache.support.jdbc.Config;
+import org.junit.Assert;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多实体工作单元
+ * <br/>提交成功更新实体状态,失败回滚并转交原入库服务;加入外层事务时在外层事务完成后处理,
+ * 外层事务未触发完成回调时按回滚处理;未提交不入库
+ */
+public class TestUnitOfWork {
+
+    public static class UnitEntity implements IEntity<Long> {
+
+        private Long id;
+
+        public UnitEntity(long id) {
+            this.id = id;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+    }
+
+
+    /** 数据库执行记录 */
+    private static final List<String> dbCalls = new ArrayList<String>();
+
+    /** 连接事务记录 */
+    private static final List<String> txCalls = new ArrayList<String>();
+
+    /** 转交入库服务记录 */
+    private static final List<String> fallbackCalls = new ArrayList<String>();
+
+    /** 入库失败的实体id */
+    private static long failId = -1;
+
+
+    public static void main(String[] args) throws Exception {
+        Config config = new Config("test", createDataSource(), null, false, false, null);
+        DbAccessService dbAccessService = createDbAccessService();
+        DbPersistService dbPersistService = createDbPersistService();
+
+        // 提交成功
+        CacheObject<UnitEntity> created = createCacheObject(1L, PersistStatus.TRANSIENT);
+        CacheObject<UnitEntity> updated = createCacheObject(2L, PersistStatus.PERSIST);
+        CacheObject<UnitEntity> deleted = createCacheObject(3L, PersistStatus.PERSIST);
+        UnitOfWork unitOfWork = createUnitOfWork(config);
+        add(unitOfWork, Operation.SAVE, created, dbAccessService, dbPersistService);
+        add(unitOfWork, Operation.UPDATE, updated, dbAccessService, dbPersistService);
+        add(unitOfWork, Operation.UPDATE, updated, dbAccessService, dbPersistService);
+        add(unitOfWork, Operation.DELETE, deleted, dbAccessService, dbPersistService);
+        Assert.assertEquals(3, unitOfWork.size());
+        Assert.assertTrue(unitOfWork.commit());
+        Assert.assertEquals("[save1, update2, delete3]", dbCalls.toString());
+        Assert.assertEquals("[commit]", txCalls.toString());
+        Assert.assertEquals(PersistStatus.PERSIST, created.getPersistStatus());
+        Assert.assertEquals(PersistStatus.PERSIST, updated.getPersistStatus());
+        Assert.assertEquals(PersistStatus.DELETED, deleted.getPersistStatus());
+        Assert.assertTrue(fallbackCalls.isEmpty());
+        try {
+            unitOfWork.commit();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+        }
+        clear();
+
+        // 入库失败回滚,转交原入库服务
+        created = createCacheObject(4L, PersistStatus.TRANSIENT);
+        updated = createCacheObject(5L, PersistStatus.PERSIST);
+        failId = 5L;
+        unitOfWork = createUnitOfWork(config);
+        add(unitOfWork, Operation.SAVE, created, dbAccessService, dbPersistService);
+        add(unitOfWork, Operation.UPDATE, updated, dbAccessService, dbPersistService);
+        Assert.assertFalse(unitOfWork.commit());
+        Assert.assertEquals("[rollback]", txCalls.toString());
+        Assert.assertEquals("[handleSave4, handleUpdate5]", fallbackCalls.toString());
+        Assert.assertEquals(PersistStatus.TRANSIENT, created.getPersistStatus());
+        Assert.assertNull(config.getThreadLocalConnection());
+        failId = -1;
+        clear();
+
+        // 加入外层事务,外层提交后才更新状态
+        Connection outer = config.getDataSource().getConnection();
+        config.setThreadLocalConnection(outer);
+        created = createCacheObject(6L, PersistStatus.TRANSIENT);
+        unitOfWork = createUnitOfWork(config);
+        add(unitOfWork, Operation.SAVE, created, dbAccessService, dbPersistService);
+        Assert.assertTrue(unitOfWork.commit());
+        Assert.assertEquals("[save6]", dbCalls.toString());
+        Assert.assertTrue(txCalls.isEmpty());
+        Assert.assertEquals(PersistStatus.TRANSIENT, created.getPersistStatus());
+        config.afterCompletion(true);
+        config.removeThreadLocalConnection();
+        Assert.assertEquals(PersistStatus.PERSIST, created.getPersistStatus());
+        Assert.assertTrue(fallbackCalls.isEmpty());
+        clear();
+
+        // 外层事务回滚,转交原入库服务
+        config.setThreadLocalConnection(outer);
+        created = createCacheObject(7L, PersistStatus.TRANSIENT);
+        unitOfWork = createUnitOfWork(config);
+        add(unitOfWork, Operation.SAVE, created, dbAccessService, dbPersistService);
+        Assert.assertTrue(unitOfWork.commit());
+        config.afterCompletion(false);
+        config.removeThreadLocalConnection();
+        Assert.assertEquals(PersistStatus.TRANSIENT, created.getPersistStatus());
+        Assert.assertEquals("[handleSave7]", fallbackCalls.toString());
+        clear();
+
+        // 外层事务未触发完成回调,移除事务连接时按回滚处理
+        config.setThreadLocalConnection(outer);
+        created = createCacheObject(9L, PersistStatus.TRANSIENT);
+        unitOfWork = createUnitOfWork(config);
+        add(unitOfWork, Operation.SAVE, created, dbAccessService, dbPersistService);
+        Assert.assertTrue(unitOfWork.commit());
+        config.removeThreadLocalConnection();
+        Assert.assertEquals(PersistStatus.TRANSIENT, created.getPersistStatus());
+        Assert.assertEquals("[handleSave9]", fallbackCalls.toString());
+        clear();
+
+        // 未提交的工作单元不入库
+        unitOfWork = createUnitOfWork(config);
+        add(unitOfWork, Operation.SAVE, createCacheObject(8L, PersistStatus.TRANSIENT), dbAccessService, dbPersistService);
+        Assert.assertFalse(unitOfWork.isCommitted());
+        Assert.assertTrue(dbCalls.isEmpty());
+        Assert.assertTrue(fallbackCalls.isEmpty());
+
+        System.out.println("OK");
+    }
+
+
+    private static void clear() {
+        dbCalls.clear();
+        txCalls.clear();
+        fallbackCalls.clear();
+    }
+
+    private static CacheObject<UnitEntity> createCacheObject(long id, PersistStatus persistStatus) {
+        UnitEntity entity = new UnitEntity(id);
+        CacheObject<UnitEntity> cacheObject = new CacheObject<UnitEntity>(entity, UnitEntity.class, entity, null);
+        cacheObject.setPersistStatus(persistStatus);
+        return cacheObject;
+    }
+
+    // 工作单元由DbService创建,测试中直接构造
+    private static UnitOfWork createUnitOfWork(Config config) throws Exception {
+        Constructor<UnitOfWork> constructor = UnitOfWork.class.getDeclaredConstructor(Config.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(config);
+    }
+
+    private static void add(UnitOfWork unitOfWork, Operation operation, CacheObject<UnitEntity> cacheObject,
+                            DbAccessService dbAccessService, DbPersistService dbPersistService) throws Exception {
+        Method method = UnitOfWork.class.getDeclaredMethod("add", Operation.class, CacheObject.class, CacheConfig.class,
+                DbAccessService.class, DbPersistService.class, Object.class, CacheUnit.class);
+        method.setAccessible(true);
+        method.invoke(unitOfWork, operation, cacheObject, CacheConfig.valueOf(UnitEntity.class),
+                dbAccessService, dbPersistService, cacheObject.getEntity().getId(), null);
+    }
+
+    private static DataSource createDataSource() {
+        final Connection connection = (Connection) Proxy.newProxyInstance(TestUnitOfWork.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("commit") || name.equals("rollback")) {
+                            txCalls.add(name);
+                        } else if (name.equals("getAutoCommit")) {
+                            return true;
+                        }
+                        return null;
+                    }
+                });
+        return (DataSource) Proxy.newProxyInstance(TestUnitOfWork.class.getClassLoader(),
+                new Class<?>[] { DataSource.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return method.getName().equals("getConnection") ? connection : null;
+                    }
+                });
+    }
+
+    private static DbAccessService createDbAccessService() {
+        return (DbAccessService) Proxy.newProxyInstance(TestUnitOfWork.class.getClassLoader(),
+                new Class<?>[] { DbAccessService.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        UnitEntity entity = (UnitEntity) args[0];
+                        if (entity.getId() == failId) {
+                            throw new IllegalStateException("db error");
+                        }
+                        dbCalls.add(method.getName() + entity.getId());
+                        return null;
+                    }
+                });
+    }
+
+    private static DbPersistService createDbPersistService() {
+        return (DbPersistService) Proxy.newProxyInstance(TestUnitOfWork.class.getClassLoader(),
+                new Class<?>[] { DbPersistService.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        CacheObject<?> cacheObject = (CacheObject<?>) args[0];
+                        fallbackCalls.add(method.getName() + cacheObject.getEntity().getId());
+                        return null;
+                    }
+                });
+    }
+
+}
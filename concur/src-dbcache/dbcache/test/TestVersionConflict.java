@@ -0,0 +1,221 @@
+package dbcache.test;
+
+import dbcache.support.jdbc.Config;
+import dbcache.support.jdbc.DefaultVersionConflictResolver;
+import dbcache.support.jdbc.JdbcSupport;
+import dbcache.support.jdbc.VersionConflictResolver;
+import dbcache.support.jdbc.dialect.MysqlDialect;
+import org.junit.Assert;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 乐观锁版本冲突
+ * <br/>影响行数为0时交给冲突处理器,同意覆盖时以数据库版本号按原更新的属性重新更新一次,记录已删除时重新保存
+ * <br/>默认的冲突处理器不重新保存已删除的记录
+ */
+public class TestVersionConflict {
+
+    @Entity
+    public static class VersionEntity {
+
+        @Id
+        private Long id;
+
+        private String name;
+
+        @Version
+        private int version;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public void setVersion(int version) {
+            this.version = version;
+        }
+    }
+
+
+    /** 执行的更新sql */
+    private static final List<String> sqls = new ArrayList<String>();
+
+    /** 每次执行更新的影响行数 */
+    private static final LinkedList<Integer> updateResults = new LinkedList<Integer>();
+
+    /** 数据库中的实体 */
+    private static VersionEntity dbEntity;
+
+    /** 冲突处理器是否同意覆盖 */
+    private static boolean overwrite;
+
+    /** 冲突处理器收到的数据库实体 */
+    private static final List<Object> resolved = new ArrayList<Object>();
+
+
+    public static void main(String[] args) throws Exception {
+        JdbcSupport jdbcSupport = new JdbcSupport() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T get(Class<T> clzz, Object id) {
+                return (T) dbEntity;
+            }
+        };
+        setField(jdbcSupport, "config", new Config("test", createDataSource(), new MysqlDialect(), false, false, null));
+        setField(jdbcSupport, "versionConflictResolver", new VersionConflictResolver() {
+            public boolean resolve(Object entity, Object dbEntity) {
+                resolved.add(dbEntity);
+                return overwrite;
+            }
+        });
+
+        // 更新成功,版本号加1
+        VersionEntity entity = createEntity(3);
+        updateResults.add(1);
+        Assert.assertTrue(jdbcSupport.update(entity));
+        Assert.assertEquals(4, entity.getVersion());
+        Assert.assertTrue(sqls.get(0).startsWith("update"));
+        Assert.assertTrue(resolved.isEmpty());
+        clear();
+
+        // 冲突,放弃本次更新
+        dbEntity = createEntity(7);
+        overwrite = false;
+        updateResults.add(0);
+        Assert.assertFalse(jdbcSupport.update(entity));
+        Assert.assertEquals(4, entity.getVersion());
+        Assert.assertEquals(1, sqls.size());
+        Assert.assertSame(dbEntity, resolved.get(0));
+        clear();
+
+        // 冲突,以数据库版本号覆盖
+        overwrite = true;
+        updateResults.add(0);
+        updateResults.add(1);
+        Assert.assertTrue(jdbcSupport.update(entity));
+        Assert.assertEquals(8, entity.getVersion());
+        Assert.assertEquals(2, sqls.size());
+        clear();
+
+        // 覆盖时再次冲突不再重试
+        updateResults.add(0);
+        updateResults.add(0);
+        Assert.assertFalse(jdbcSupport.update(entity));
+        Assert.assertEquals(2, sqls.size());
+        Assert.assertEquals(1, resolved.size());
+        clear();
+
+        // 记录已被删除,重新保存
+        dbEntity = null;
+        updateResults.add(0);
+        updateResults.add(1);
+        Assert.assertTrue(jdbcSupport.update(entity));
+        Assert.assertEquals(2, sqls.size());
+        Assert.assertTrue(sqls.get(1).startsWith("insert"));
+        Assert.assertNull(resolved.get(0));
+        clear();
+
+        // 按修改属性更新冲突,以相同的属性重新更新
+        dbEntity = createEntity(12);
+        AtomicIntegerArray modifiedFields = new AtomicIntegerArray(3);
+        modifiedFields.set(1, 1);
+        updateResults.add(0);
+        updateResults.add(1);
+        Assert.assertTrue(jdbcSupport.update(entity, modifiedFields));
+        Assert.assertEquals(13, entity.getVersion());
+        Assert.assertEquals(2, sqls.size());
+        Assert.assertEquals(sqls.get(0), sqls.get(1));
+        clear();
+
+        // 默认处理器不重新保存已删除的记录
+        setField(jdbcSupport, "versionConflictResolver", new DefaultVersionConflictResolver());
+        dbEntity = null;
+        updateResults.add(0);
+        Assert.assertFalse(jdbcSupport.update(entity));
+        Assert.assertEquals(1, sqls.size());
+
+        System.out.println("OK");
+    }
+
+
+    private static void clear() {
+        sqls.clear();
+        updateResults.clear();
+        resolved.clear();
+    }
+
+    private static VersionEntity createEntity(int version) {
+        VersionEntity entity = new VersionEntity();
+        entity.setId(1L);
+        entity.setName("name");
+        entity.setVersion(version);
+        return entity;
+    }
+
+    // 模拟数据库连接,记录执行的sql并按顺序返回更新影响行数
+    private static DataSource createDataSource() {
+        final String[] lastSql = new String[1];
+        final InvocationHandler[] handler = new InvocationHandler[1];
+        handler[0] = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("prepareStatement")) {
+                    lastSql[0] = ((String) args[0]).toLowerCase();
+                } else if (name.equals("executeUpdate")) {
+                    sqls.add(lastSql[0]);
+                    return updateResults.removeFirst();
+                } else if (name.equals("getColumnType")) {
+                    int index = (Integer) args[0];
+                    return index == 1 ? Types.BIGINT : index == 2 ? Types.VARCHAR : Types.INTEGER;
+                }
+                Class<?> returnType = method.getReturnType();
+                if (returnType.isInterface()) {
+                    return Proxy.newProxyInstance(TestVersionConflict.class.getClassLoader(),
+                            new Class<?>[] { returnType }, handler[0]);
+                } else if (returnType == boolean.class) {
+                    return false;
+                } else if (returnType == int.class) {
+                    return 0;
+                }
+                return null;
+            }
+        };
+        return (DataSource) Proxy.newProxyInstance(TestVersionConflict.class.getClassLoader(),
+                new Class<?>[] { DataSource.class }, handler[0]);
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = JdbcSupport.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+}
@@ -7,6 +7,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.stereotype.Component;
 
+import dbcache.support.jdbc.JdbcCursor;
 import dbcache.support.jdbc.JdbcSupport;
 import dbcache.support.jdbc.RowMapper;
 
@@ -97,6 +98,33 @@ public class JdbcUtil implements ApplicationContextAware {
     public static <T> List<T> listBySql(String sql, RowMapper<T> rowMapper, Object... params) {
     	return jdbcSupport.listBySql(sql, rowMapper, params);
     }
+
+
+
+    /**
+     * 流式查询实体, 使用完毕需关闭游标
+     * @param clzz 实体类
+     * @param sql SQL语句
+     * @param params 参数列表
+     * @param <T> 类泛型
+     * @return 游标
+     */
+    public static <T> JdbcCursor<T> stream(final Class<T> clzz, String sql, Object... params) {
+    	return jdbcSupport.stream(clzz, sql, params);
+    }
+
+
+    /**
+     * 流式查询对象, 使用完毕需关闭游标
+     * @param sql SQL语句
+     * @param rowMapper 行映射
+     * @param params 参数列表
+     * @param <T> 类泛型
+     * @return 游标
+     */
+    public static <T> JdbcCursor<T> stream(String sql, RowMapper<T> rowMapper, Object... params) {
+    	return jdbcSupport.stream(sql, rowMapper, params);
+    }
 	
 
 }
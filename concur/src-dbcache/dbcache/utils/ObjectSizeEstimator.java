@@ -0,0 +1,128 @@
+package dbcache.utils;
+
+import utils.collections.concurrent.ConcurrentHashMapV8;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 实体占用内存估算
+ * <br/>按64位JVM开启压缩指针估算:对象头12字节,引用4字节,按8字节对齐
+ * <br/>只计算实体本身及其String,byte[]属性,其他引用类型的属性只计算引用
+ */
+public class ObjectSizeEstimator {
+
+	/** 对象头 */
+	private static final int OBJECT_HEADER = 12;
+
+	/** 数组头 */
+	private static final int ARRAY_HEADER = 16;
+
+	/** 引用 */
+	private static final int REFERENCE = 4;
+
+	/** String对象(不含char[]) */
+	private static final int STRING_SHALLOW = 24;
+
+	/** 类信息缓存 {类:类信息} */
+	private static final ConcurrentMap<Class<?>, ClassInfo> CLASS_INFO_MAP = new ConcurrentHashMapV8<Class<?>, ClassInfo>();
+
+
+	/**
+	 * 类信息
+	 */
+	private static class ClassInfo {
+
+		/** 实例浅大小 */
+		private final long shallowSize;
+
+		/** String,byte[]属性 */
+		private final Field[] valueFields;
+
+		ClassInfo(long shallowSize, Field[] valueFields) {
+			this.shallowSize = shallowSize;
+			this.valueFields = valueFields;
+		}
+	}
+
+
+	/**
+	 * 估算对象占用的字节数
+	 * @param object 对象
+	 * @return 字节数, null为0
+	 */
+	public static long estimate(Object object) {
+		if (object == null) {
+			return 0;
+		}
+		ClassInfo classInfo = getClassInfo(object.getClass());
+		long size = classInfo.shallowSize;
+		for (Field field : classInfo.valueFields) {
+			try {
+				Object value = field.get(object);
+				if (value instanceof String) {
+					size += STRING_SHALLOW + align(ARRAY_HEADER + 2L * ((String) value).length());
+				} else if (value instanceof byte[]) {
+					size += align(ARRAY_HEADER + ((byte[]) value).length);
+				}
+			} catch (IllegalAccessException e) {
+				// 忽略无法访问的属性
+			}
+		}
+		return size;
+	}
+
+
+	private static ClassInfo getClassInfo(Class<?> clazz) {
+		ClassInfo classInfo = CLASS_INFO_MAP.get(clazz);
+		if (classInfo != null) {
+			return classInfo;
+		}
+
+		long size = OBJECT_HEADER;
+		List<Field> valueFields = new ArrayList<Field>();
+		for (Class<?> cls = clazz; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+			for (Field field : cls.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				Class<?> type = field.getType();
+				size += sizeOf(type);
+				if (type == String.class || type == byte[].class) {
+					field.setAccessible(true);
+					valueFields.add(field);
+				}
+			}
+		}
+
+		classInfo = new ClassInfo(align(size), valueFields.toArray(new Field[valueFields.size()]));
+		ClassInfo prev = CLASS_INFO_MAP.putIfAbsent(clazz, classInfo);
+		return prev != null ? prev : classInfo;
+	}
+
+
+	private static int sizeOf(Class<?> type) {
+		if (type == long.class || type == double.class) {
+			return 8;
+		}
+		if (type == int.class || type == float.class) {
+			return 4;
+		}
+		if (type == short.class || type == char.class) {
+			return 2;
+		}
+		if (type == byte.class || type == boolean.class) {
+			return 1;
+		}
+		return REFERENCE;
+	}
+
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+}
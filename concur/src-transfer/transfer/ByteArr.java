@@ -11,7 +11,7 @@ class ByteArr {
 
     ByteArr next;
 
-    private final int length;
+    final int length;
 
     public ByteArr(int initLen) {
         this.byteArray = new byte[initLen];
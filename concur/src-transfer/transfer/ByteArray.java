@@ -89,10 +89,25 @@ public class ByteArray implements Inputable {
 
     @Override
     public ByteArray getByteArray(int length) {
+        if (this.curIndex + length > this.endIndex) {
+            throw new EOFBytesException();
+        }
         return new ByteArray(byteArr, this.curIndex, this.curIndex += length);
     }
 
 
+    /**
+     * 跳过字节
+     * @param length 跳过的长度
+     */
+    public void skip(int length) {
+        if (this.curIndex + length > this.endIndex) {
+            throw new EOFBytesException();
+        }
+        this.curIndex += length;
+    }
+
+
     public byte[] getByteArr() {
         return byteArr;
     }
@@ -105,4 +120,8 @@ public class ByteArray implements Inputable {
         return endIndex;
     }
 
+    public int getCurIndex() {
+        return curIndex;
+    }
+
 }
@@ -1,5 +1,10 @@
 package transfer;
 
+import java.io.IOException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
+
 /**
  * 可变长度字节缓冲
  * Created by Jake on 2015/2/23.
@@ -8,7 +13,22 @@ public class ByteBuffer implements Outputable {
 
     static final int EXPAND_STEP_SIZE = 256;
 
-    private final ByteArr rootByteArray;
+    /**
+     * 复用时保留的最大长度,避免个别大消息长期占用内存
+     */
+    static final int MAX_RETAIN_SIZE = 64 * 1024;
+
+    /**
+     * 线程复用的编码缓冲
+     */
+    private static final ThreadLocal<ByteBuffer> LOCAL_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return new ByteBuffer();
+        }
+    };
+
+    private ByteArr rootByteArray;
 
     ByteArr curByteArray;
 
@@ -23,6 +43,56 @@ public class ByteBuffer implements Outputable {
         this.curByteArray = this.rootByteArray;
     }
 
+
+    /**
+     * 是否已被借出
+     */
+    private boolean borrowed;
+
+
+    /**
+     * 借出当前线程的复用缓冲
+     * <br/>重入(缓冲已被借出)时返回新的缓冲
+     * @param initLen 新缓冲的初始长度
+     * @return
+     */
+    static ByteBuffer borrow(int initLen) {
+        ByteBuffer buffer = LOCAL_BUFFER.get();
+        if (buffer.borrowed) {
+            return new ByteBuffer(initLen);
+        }
+        buffer.borrowed = true;
+        return buffer;
+    }
+
+
+    /**
+     * 归还复用缓冲
+     */
+    void release() {
+        if (this.borrowed) {
+            this.reset();
+            this.borrowed = false;
+        }
+    }
+
+
+    /**
+     * 重置缓冲以便复用
+     * <br/>已扩展为多段时,按本次写入长度合并为单段,之后同等大小的消息不再扩展
+     */
+    public void reset() {
+        if (this.rootByteArray.next != null && this.offset <= MAX_RETAIN_SIZE) {
+            int retainLength = Integer.highestOneBit(this.offset - 1) << 1;
+            this.rootByteArray = new ByteArr(retainLength > MAX_RETAIN_SIZE ? MAX_RETAIN_SIZE : retainLength);
+        } else {
+            this.rootByteArray.offset = 0;
+            this.rootByteArray.next = null;
+        }
+        this.curByteArray = this.rootByteArray;
+        this.offset = 0;
+    }
+
     @Override
     public void putByte(byte byte1) {
         this.curByteArray.checkBounds(this)
@@ -89,6 +159,68 @@ public class ByteBuffer implements Outputable {
     }
 
 
+    /**
+     * 获取分段缓冲视图
+     * <br/>每个字节数组段包装为一个java.nio.ByteBuffer,不拷贝,用于GatheringByteChannel.write
+     * <br/>返回后继续写入不会反映到已返回的视图
+     * @return
+     */
+    public java.nio.ByteBuffer[] toByteBuffers() {
+        int count = 0;
+        ByteArr curBytesArr = this.rootByteArray;
+        do {
+            count++;
+        } while ((curBytesArr = curBytesArr.next) != null);
+
+        java.nio.ByteBuffer[] buffers = new java.nio.ByteBuffer[count];
+        curBytesArr = this.rootByteArray;
+        int i = 0;
+        do {
+            buffers[i++] = java.nio.ByteBuffer.wrap(curBytesArr.byteArray, 0, curBytesArr.offset);
+        } while ((curBytesArr = curBytesArr.next) != null);
+
+        return buffers;
+    }
+
+
+    /**
+     * 聚集写入通道
+     * <br/>直到全部字节写完才返回,只支持阻塞模式的通道;
+     * 非阻塞通道请使用{@link #toByteBuffers()}并保留未写完的缓冲区,在通道可写时继续写入
+     * @param channel 目标通道
+     * @return 写入的字节数
+     * @throws IOException
+     * @throws IllegalBlockingModeException 通道为非阻塞模式时抛出
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+        java.nio.ByteBuffer[] buffers = this.toByteBuffers();
+        long written = 0;
+        int index = 0;
+        while (index < buffers.length) {
+            written += channel.write(buffers, index, buffers.length - index);
+            while (index < buffers.length && !buffers[index].hasRemaining()) {
+                index++;
+            }
+        }
+        return written;
+    }
+
+
+    /**
+     * 写入输出接口
+     * @param outputable 输出接口
+     */
+    public void writeTo(Outputable outputable) {
+        ByteArr curBytesArr = this.rootByteArray;
+        do {
+            outputable.putBytes(curBytesArr.byteArray, 0, curBytesArr.offset);
+        } while ((curBytesArr = curBytesArr.next) != null);
+    }
+
+
     /**
      * 长度
      * @return
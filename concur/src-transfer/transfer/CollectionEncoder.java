@@ -0,0 +1,133 @@
+package transfer;
+
+import transfer.core.SerialContext;
+import transfer.def.Types;
+import transfer.serializer.Serializer;
+import transfer.utils.BitUtils;
+
+/**
+ * 集合流式编码器
+ * <br/>先写入集合头,再逐个写入元素,不需要在内存中保留整个集合或编码结果
+ * <br/>编码格式与集合编码相同,可使用Transfer#iterator或Persister#iterator迭代解码
+ * <br/>非线程安全
+ * @see Transfer#collectionEncoder(Outputable, int)
+ * @see Persister#collectionEncoder(Outputable, int)
+ */
+public abstract class CollectionEncoder {
+
+    /**
+     * 输出接口
+     */
+    private final Outputable outputable;
+
+    /**
+     * 集合大小
+     */
+    private final int size;
+
+    /**
+     * 指定的元素编码器
+     */
+    private final Serializer elementSerializer;
+
+    /**
+     * 编码上下文
+     */
+    private final SerialContext context = new SerialContext();
+
+    /**
+     * 已写入的元素数量
+     */
+    private int count;
+
+    // 相邻元素类型相同时复用编码器
+    private Class<?> lastElementClass;
+
+    private Serializer lastElementSerializer;
+
+
+    /**
+     * 写入集合头
+     * @param outputable 输出接口
+     * @param size 集合大小
+     * @param elementSerializer 元素编码器,为null时按元素类型获取
+     */
+    CollectionEncoder(Outputable outputable, int size, Serializer elementSerializer) {
+        if (size < 0) {
+            throw new IllegalArgumentException("集合大小不能小于0:" + size);
+        }
+        this.outputable = outputable;
+        this.size = size;
+        this.elementSerializer = elementSerializer;
+
+        outputable.putByte(Types.COLLECTION);
+        BitUtils.putInt(outputable, size);
+    }
+
+
+    /**
+     * 获取元素编码器
+     * @param elementClass 元素类型
+     * @return
+     */
+    abstract Serializer getSerializer(Class<?> elementClass);
+
+
+    /**
+     * 写入元素
+     * @param element 元素
+     * @return this
+     * @throws IllegalStateException 超出集合大小时抛出
+     */
+    public CollectionEncoder write(Object element) {
+        if (this.count == this.size) {
+            throw new IllegalStateException("超出集合大小:" + this.size);
+        }
+        this.count++;
+
+        if (element == null) {
+            Serializer.NULL_SERIALIZER.serialze(this.outputable, null, this.context);
+            return this;
+        }
+
+        Serializer serializer = this.elementSerializer;
+        if (serializer == null) {
+            if (element.getClass() != this.lastElementClass) {
+                this.lastElementClass = element.getClass();
+                this.lastElementSerializer = this.getSerializer(this.lastElementClass);
+            }
+            serializer = this.lastElementSerializer;
+        }
+        serializer.serialze(this.outputable, element, this.context);
+        return this;
+    }
+
+
+    /**
+     * 结束编码
+     * <br/>输出接口为StreamOutput时刷出缓冲
+     * @throws IllegalStateException 写入的元素数量与集合大小不一致时抛出
+     */
+    public void finish() {
+        if (this.count != this.size) {
+            throw new IllegalStateException("写入元素数量(" + this.count + ")与集合大小(" + this.size + ")不一致");
+        }
+        if (this.outputable instanceof StreamOutput) {
+            ((StreamOutput) this.outputable).flush();
+        }
+    }
+
+
+    /**
+     * 获取已写入的元素数量
+     * @return
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+}
@@ -0,0 +1,67 @@
+package transfer;
+
+import transfer.exceptions.EOFBytesException;
+
+/**
+ * java.nio.ByteBuffer读取适配
+ * <br/>直接从网络或文件缓冲解码,读取位置随解码推进
+ * <br/>堆内缓冲的getByteArray直接引用底层数组,堆外缓冲需拷贝到新的字节数组
+ */
+public class NioBufferInput implements Inputable {
+
+    /**
+     * 源缓冲
+     */
+    private final java.nio.ByteBuffer buffer;
+
+
+    /**
+     * @param buffer 源缓冲,读取position到limit之间的字节
+     */
+    public NioBufferInput(java.nio.ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+
+    @Override
+    public byte getByte() {
+        if (!this.buffer.hasRemaining()) {
+            throw new EOFBytesException();
+        }
+        return this.buffer.get();
+    }
+
+
+    @Override
+    public void getBytes(byte[] bytes) {
+        if (this.buffer.remaining() < bytes.length) {
+            throw new EOFBytesException();
+        }
+        this.buffer.get(bytes);
+    }
+
+
+    @Override
+    public ByteArray getByteArray(int length) {
+        if (this.buffer.remaining() < length) {
+            throw new EOFBytesException();
+        }
+
+        // 堆内缓冲,不拷贝
+        if (this.buffer.hasArray()) {
+            int start = this.buffer.arrayOffset() + this.buffer.position();
+            this.buffer.position(this.buffer.position() + length);
+            return new ByteArray(this.buffer.array(), start, start + length);
+        }
+
+        byte[] bytes = new byte[length];
+        this.buffer.get(bytes);
+        return new ByteArray(bytes);
+    }
+
+
+    public java.nio.ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+}
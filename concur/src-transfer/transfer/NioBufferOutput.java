@@ -0,0 +1,46 @@
+package transfer;
+
+/**
+ * java.nio.ByteBuffer写入适配
+ * <br/>直接编码到网络或文件缓冲(可为堆外内存),不经过中间字节数组拷贝
+ * <br/>缓冲容量不足时抛出java.nio.BufferOverflowException,由调用方预留足够空间
+ */
+public class NioBufferOutput implements Outputable {
+
+    /**
+     * 目标缓冲
+     */
+    private final java.nio.ByteBuffer buffer;
+
+
+    /**
+     * @param buffer 目标缓冲,从当前position开始写入
+     */
+    public NioBufferOutput(java.nio.ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+
+    @Override
+    public void putByte(byte byte1) {
+        this.buffer.put(byte1);
+    }
+
+
+    @Override
+    public void putBytes(byte[] bytes) {
+        this.buffer.put(bytes);
+    }
+
+
+    @Override
+    public void putBytes(byte[] bytes, int start, int length) {
+        this.buffer.put(bytes, start, length);
+    }
+
+
+    public java.nio.ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+}
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import transfer.core.ByteMeta;
 import transfer.core.DeserialContext;
 import transfer.core.SerialContext;
+import transfer.def.CompressMode;
 import transfer.def.PersistConfig;
 import transfer.def.Types;
 import transfer.deserializer.CollectionDeSerializer;
@@ -12,6 +13,7 @@ import transfer.deserializer.Deserializer;
 import transfer.deserializer.EntryDeserializer;
 import transfer.deserializer.MapDeSerializer;
 import transfer.serializer.Serializer;
+import transfer.utils.CompressUtils;
 import transfer.utils.TypeUtils;
 
 import java.lang.reflect.Type;
@@ -61,9 +63,13 @@ public class Persister {
             return buffer.getByteArray();
         }
 
-        ByteBuffer buffer = new ByteBuffer(bytesLength);
-        encode(buffer, object);
-        return buffer.getByteArray();
+        ByteBuffer buffer = ByteBuffer.borrow(bytesLength);
+        try {
+            encode(buffer, object);
+            return new ByteArray(buffer.toBytes());
+        } finally {
+            buffer.release();
+        }
     }
 
 
@@ -92,9 +98,65 @@ public class Persister {
             return buffer.getByteArray();
         }
 
-        ByteBuffer buffer = new ByteBuffer(bytesLength);
-        encode(buffer, object, type);
-        return buffer.getByteArray();
+        ByteBuffer buffer = ByteBuffer.borrow(bytesLength);
+        try {
+            encode(buffer, object, type);
+            return new ByteArray(buffer.toBytes());
+        } finally {
+            buffer.release();
+        }
+    }
+
+
+    /**
+     * 编码并压缩
+     * <br/>编码长度未达到压缩阈值时不压缩,解码时根据帧头自动识别
+     * @param object 目标对象
+     * @param compressMode 压缩方式
+     * @see PersistConfig#setCompressThreshold(int)
+     */
+    public static ByteArray encode(Object object, CompressMode compressMode) {
+        if (object == null) {
+            return encode(object, 1);
+        }
+
+        ByteBuffer buffer = ByteBuffer.borrow(128);
+        try {
+            encode(buffer, object);
+            return compress(buffer, compressMode);
+        } finally {
+            buffer.release();
+        }
+    }
+
+
+    /**
+     * 编码并压缩
+     * <br/>编码长度未达到压缩阈值时不压缩,解码时根据帧头自动识别
+     * @param object 目标对象
+     * @param type 指定预编译目标对象的类型
+     * @param compressMode 压缩方式
+     * @see PersistConfig#setCompressThreshold(int)
+     */
+    public static ByteArray encode(Object object, Type type, CompressMode compressMode) {
+        if (object == null) {
+            return encode(object, 1);
+        }
+
+        ByteBuffer buffer = ByteBuffer.borrow(128);
+        try {
+            encode(buffer, object, type);
+            return compress(buffer, compressMode);
+        } finally {
+            buffer.release();
+        }
+    }
+
+
+    // 压缩缓冲中的编码
+    private static ByteArray compress(ByteBuffer buffer, CompressMode compressMode) {
+        ByteArray byteArray = buffer.getByteArray();
+        return new ByteArray(CompressUtils.compress(byteArray.getByteArr(), byteArray.getStartIndex(), buffer.length(), compressMode));
     }
 
 
@@ -110,7 +172,12 @@ public class Persister {
         }
 
         Serializer serializer = PersistConfig.getSerializer(object.getClass());
-        serializer.serialze(outputable, object, new SerialContext());
+        SerialContext context = SerialContext.borrow();
+        try {
+            serializer.serialze(outputable, object, context);
+        } finally {
+            context.release();
+        }
     }
 
 
@@ -134,7 +201,12 @@ public class Persister {
             serializer = getCompiledSerializer(type);
         }
 
-        serializer.serialze(outputable, object, new SerialContext());
+        SerialContext context = SerialContext.borrow();
+        try {
+            serializer.serialze(outputable, object, context);
+        } finally {
+            context.release();
+        }
     }
 
 
@@ -181,6 +253,49 @@ public class Persister {
     }
 
 
+    /**
+     * 集合流式编码
+     * <br/>写入集合头后返回编码器,逐个写入元素,最后调用CollectionEncoder#finish()
+     * <br/>配合StreamOutput可边编码边写出,适用于很大的集合
+     * @param outputable 输出接口
+     * @param size 集合大小
+     * @return
+     */
+    public static CollectionEncoder collectionEncoder(Outputable outputable, int size) {
+        return new CollectionEncoder(outputable, size, null) {
+            @Override
+            Serializer getSerializer(Class<?> elementClass) {
+                return PersistConfig.getSerializer(elementClass);
+            }
+        };
+    }
+
+
+    /**
+     * 集合流式编码
+     * <br/>写入集合头后返回编码器,逐个写入元素,最后调用CollectionEncoder#finish()
+     * @param outputable 输出接口
+     * @param size 集合大小
+     * @param elementType 元素类型,将使用预编译的编码器
+     * @return
+     */
+    public static CollectionEncoder collectionEncoder(Outputable outputable, int size, Type elementType) {
+        Serializer elementSerializer;
+        if (logger.isDebugEnabled()) {
+            elementSerializer = PersistConfig.getSerializer(elementType);
+        } else {
+            elementSerializer = getCompiledSerializer(elementType);
+        }
+
+        return new CollectionEncoder(outputable, size, elementSerializer) {
+            @Override
+            Serializer getSerializer(Class<?> elementClass) {
+                return PersistConfig.getSerializer(elementClass);
+            }
+        };
+    }
+
+
     /**
      * 解码
      * @param inputable 输入接口
@@ -189,8 +304,17 @@ public class Persister {
      */
     public static <T> T decode(Inputable inputable) {
         byte flag = inputable.getByte();
+        if (CompressUtils.isCompressed(flag)) {
+            inputable = CompressUtils.decompress(inputable, flag);
+            flag = inputable.getByte();
+        }
         Deserializer deserializer = PersistConfig.getDeserializer(Object.class, flag);
-        return deserializer.deserialze(inputable, Object.class, flag, new DeserialContext());
+        DeserialContext context = DeserialContext.borrow();
+        try {
+            return deserializer.deserialze(inputable, Object.class, flag, context);
+        } finally {
+            context.release();
+        }
     }
 
 
@@ -211,7 +335,16 @@ public class Persister {
 
 
         byte flag = inputable.getByte();
-        return deserializer.deserialze(inputable, clazz, flag, new DeserialContext());
+        if (CompressUtils.isCompressed(flag)) {
+            inputable = CompressUtils.decompress(inputable, flag);
+            flag = inputable.getByte();
+        }
+        DeserialContext context = DeserialContext.borrow();
+        try {
+            return deserializer.deserialze(inputable, clazz, flag, context);
+        } finally {
+            context.release();
+        }
     }
 
 
@@ -243,7 +376,16 @@ public class Persister {
         }
 
         byte flag = inputable.getByte();
-        return deserializer.deserialze(inputable, typeReference.getType(), flag, new DeserialContext());
+        if (CompressUtils.isCompressed(flag)) {
+            inputable = CompressUtils.decompress(inputable, flag);
+            flag = inputable.getByte();
+        }
+        DeserialContext context = DeserialContext.borrow();
+        try {
+            return deserializer.deserialze(inputable, typeReference.getType(), flag, context);
+        } finally {
+            context.release();
+        }
     }
 
 
@@ -340,7 +482,7 @@ public class Persister {
      * @return
      */
     public static <T extends Collection<E>, E> Iterator<E> iterator(byte[] bytes, TypeReference<T> typeReference) {
-        return iterator(new ByteArray(bytes), typeReference);
+        return iterator(CompressUtils.toInput(bytes), typeReference);
     }
 
 
@@ -394,7 +536,7 @@ public class Persister {
      * @return
      */
     public static <T extends Map<K, V>, K, V> Iterator<Map.Entry<K, V>> iteratorMap(byte[] bytes, TypeReference<T> typeReference) {
-        return iteratorMap(new ByteArray(bytes), typeReference);
+        return iteratorMap(CompressUtils.toInput(bytes), typeReference);
     }
 
 
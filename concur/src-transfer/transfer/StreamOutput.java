@@ -0,0 +1,141 @@
+package transfer;
+
+import transfer.exceptions.OutputStreamException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 输出流写入适配
+ * <br/>写入固定大小的分块缓冲,写满时刷出到OutputStream或WritableByteChannel,内存占用与消息大小无关
+ * <br/>写入完成后需调用flush(),写入失败时抛出OutputStreamException
+ */
+public class StreamOutput implements Outputable {
+
+    static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * 目标输出流
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * 目标通道
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * 分块缓冲
+     */
+    private final byte[] chunk;
+
+    /**
+     * 通道写入视图
+     */
+    private final java.nio.ByteBuffer chunkBuffer;
+
+    /**
+     * 缓冲写入位置
+     */
+    private int offset;
+
+
+    public StreamOutput(OutputStream outputStream) {
+        this(outputStream, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param outputStream 目标输出流
+     * @param chunkSize 分块大小
+     */
+    public StreamOutput(OutputStream outputStream, int chunkSize) {
+        this.outputStream = outputStream;
+        this.channel = null;
+        this.chunk = new byte[chunkSize];
+        this.chunkBuffer = null;
+    }
+
+    public StreamOutput(WritableByteChannel channel) {
+        this(channel, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param channel 目标通道(阻塞模式)
+     * @param chunkSize 分块大小
+     */
+    public StreamOutput(WritableByteChannel channel, int chunkSize) {
+        this.outputStream = null;
+        this.channel = channel;
+        this.chunk = new byte[chunkSize];
+        this.chunkBuffer = java.nio.ByteBuffer.wrap(this.chunk);
+    }
+
+
+    @Override
+    public void putByte(byte byte1) {
+        if (this.offset == this.chunk.length) {
+            this.flushChunk();
+        }
+        this.chunk[this.offset++] = byte1;
+    }
+
+
+    @Override
+    public void putBytes(byte[] bytes) {
+        this.putBytes(bytes, 0, bytes.length);
+    }
+
+
+    @Override
+    public void putBytes(byte[] bytes, int start, int length) {
+        while (length > 0) {
+            if (this.offset == this.chunk.length) {
+                this.flushChunk();
+            }
+            int copyLength = Math.min(length, this.chunk.length - this.offset);
+            System.arraycopy(bytes, start, this.chunk, this.offset, copyLength);
+            this.offset += copyLength;
+            start += copyLength;
+            length -= copyLength;
+        }
+    }
+
+
+    /**
+     * 刷出缓冲中的字节
+     */
+    public void flush() {
+        this.flushChunk();
+        if (this.outputStream != null) {
+            try {
+                this.outputStream.flush();
+            } catch (IOException e) {
+                throw new OutputStreamException(e);
+            }
+        }
+    }
+
+
+    // 写出分块缓冲
+    private void flushChunk() {
+        if (this.offset == 0) {
+            return;
+        }
+        try {
+            if (this.outputStream != null) {
+                this.outputStream.write(this.chunk, 0, this.offset);
+            } else {
+                this.chunkBuffer.clear();
+                this.chunkBuffer.limit(this.offset);
+                while (this.chunkBuffer.hasRemaining()) {
+                    this.channel.write(this.chunkBuffer);
+                }
+            }
+        } catch (IOException e) {
+            throw new OutputStreamException(e);
+        }
+        this.offset = 0;
+    }
+
+}
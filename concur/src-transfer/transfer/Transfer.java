@@ -3,7 +3,9 @@ package transfer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import transfer.core.ByteMeta;
+import transfer.core.ClassInfo;
 import transfer.core.DeserialContext;
+import transfer.core.LazyFieldIndex;
 import transfer.core.SerialContext;
 import transfer.def.TransferConfig;
 import transfer.def.Types;
@@ -11,9 +13,13 @@ import transfer.deserializer.CollectionDeSerializer;
 import transfer.deserializer.Deserializer;
 import transfer.deserializer.EntryDeserializer;
 import transfer.deserializer.MapDeSerializer;
+import transfer.exceptions.IllegalClassTypeException;
+import transfer.exceptions.IllegalTypeException;
 import transfer.serializer.Serializer;
+import transfer.utils.BitUtils;
 import transfer.utils.TypeUtils;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.Iterator;
@@ -59,9 +65,13 @@ public class Transfer {
             return buffer.getByteArray();
         }
 
-        ByteBuffer buffer = new ByteBuffer(bytesLength);
-        encode(buffer, object);
-        return buffer.getByteArray();
+        ByteBuffer buffer = ByteBuffer.borrow(bytesLength);
+        try {
+            encode(buffer, object);
+            return new ByteArray(buffer.toBytes());
+        } finally {
+            buffer.release();
+        }
     }
 
 
@@ -90,9 +100,13 @@ public class Transfer {
             return buffer.getByteArray();
         }
 
-        ByteBuffer buffer = new ByteBuffer(bytesLength);
-        encode(buffer, object, type);
-        return buffer.getByteArray();
+        ByteBuffer buffer = ByteBuffer.borrow(bytesLength);
+        try {
+            encode(buffer, object, type);
+            return new ByteArray(buffer.toBytes());
+        } finally {
+            buffer.release();
+        }
     }
 
     
@@ -108,7 +122,12 @@ public class Transfer {
         }
         
         Serializer serializer = TransferConfig.getSerializer(object.getClass());
-        serializer.serialze(outputable, object, new SerialContext());
+        SerialContext context = SerialContext.borrow();
+        try {
+            serializer.serialze(outputable, object, context);
+        } finally {
+            context.release();
+        }
     }
     
     
@@ -132,7 +151,12 @@ public class Transfer {
             serializer = getCompiledSerializer(type);
         }
 
-        serializer.serialze(outputable, object, new SerialContext());
+        SerialContext context = SerialContext.borrow();
+        try {
+            serializer.serialze(outputable, object, context);
+        } finally {
+            context.release();
+        }
     }
 
 
@@ -179,6 +203,49 @@ public class Transfer {
     }
 
 
+    /**
+     * 集合流式编码
+     * <br/>写入集合头后返回编码器,逐个写入元素,最后调用CollectionEncoder#finish()
+     * <br/>配合StreamOutput可边编码边写出,适用于很大的集合
+     * @param outputable 输出接口
+     * @param size 集合大小
+     * @return
+     */
+    public static CollectionEncoder collectionEncoder(Outputable outputable, int size) {
+        return new CollectionEncoder(outputable, size, null) {
+            @Override
+            Serializer getSerializer(Class<?> elementClass) {
+                return TransferConfig.getSerializer(elementClass);
+            }
+        };
+    }
+
+
+    /**
+     * 集合流式编码
+     * <br/>写入集合头后返回编码器,逐个写入元素,最后调用CollectionEncoder#finish()
+     * @param outputable 输出接口
+     * @param size 集合大小
+     * @param elementType 元素类型,将使用预编译的编码器
+     * @return
+     */
+    public static CollectionEncoder collectionEncoder(Outputable outputable, int size, Type elementType) {
+        Serializer elementSerializer;
+        if (logger.isDebugEnabled()) {
+            elementSerializer = TransferConfig.getSerializer(elementType);
+        } else {
+            elementSerializer = getCompiledSerializer(elementType);
+        }
+
+        return new CollectionEncoder(outputable, size, elementSerializer) {
+            @Override
+            Serializer getSerializer(Class<?> elementClass) {
+                return TransferConfig.getSerializer(elementClass);
+            }
+        };
+    }
+
+
     /**
      * 解码
      * @param inputable 输入接口
@@ -188,7 +255,12 @@ public class Transfer {
     public static <T> T decode(Inputable inputable) {
         byte flag = inputable.getByte();
         Deserializer deserializer = TransferConfig.getDeserializer(Object.class, flag);
-        return deserializer.deserialze(inputable, Object.class, flag, new DeserialContext());
+        DeserialContext context = DeserialContext.borrow();
+        try {
+            return deserializer.deserialze(inputable, Object.class, flag, context);
+        } finally {
+            context.release();
+        }
     }
     
     
@@ -209,7 +281,12 @@ public class Transfer {
 
         
         byte flag = inputable.getByte();
-        return deserializer.deserialze(inputable, clazz, flag, new DeserialContext());
+        DeserialContext context = DeserialContext.borrow();
+        try {
+            return deserializer.deserialze(inputable, clazz, flag, context);
+        } finally {
+            context.release();
+        }
     }
 
 
@@ -225,6 +302,61 @@ public class Transfer {
     }
 
 
+    /**
+     * 延迟解码
+     * <br/>返回传输类的视图,属性在首次调用getter时才解码,适合只读取少量属性的大对象
+     * <br/>视图引用byteArray的字节数组,使用期间不能修改;视图非线程安全
+     * <br/>传输类无法生成视图时(如final类)使用完整解码
+     * @param byteArray 输入字节数组
+     * @param clazz 传输类
+     * @param <T> 解码后的类型
+     * @return
+     * @see transfer.core.LazyView
+     */
+    public static <T> T decodeLazy(ByteArray byteArray, Class<T> clazz) {
+        Constructor<?> constructor = TransferConfig.getLazyViewConstructor(clazz);
+        if (constructor == null) {
+            return decode(byteArray, clazz);
+        }
+
+        byte flag = byteArray.getByte();
+        if (flag == Types.NULL) {
+            return null;
+        }
+
+        byte typeFlag = TransferConfig.getType(flag);
+        if (typeFlag != Types.OBJECT) {
+            throw new IllegalTypeException(new DeserialContext(), typeFlag, Types.OBJECT, clazz);
+        }
+
+        ClassInfo classInfo = TransferConfig.getOrCreateClassInfo(clazz);
+        int classId = BitUtils.getInt(byteArray);
+        if (classId != classInfo.getClassId()) {
+            throw new IllegalClassTypeException(new DeserialContext(), classId, clazz);
+        }
+
+        LazyFieldIndex index = new LazyFieldIndex(classInfo, byteArray.getByteArr(), byteArray.getCurIndex(), byteArray.getEndIndex());
+        try {
+            return clazz.cast(constructor.newInstance(index));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("create lazy view error, class " + clazz.getName(), e);
+        }
+    }
+
+
+    /**
+     * 延迟解码
+     * @param bytes 输入字节数组
+     * @param clazz 传输类
+     * @param <T> 解码后的类型
+     * @return
+     * @see Transfer#decodeLazy(ByteArray, Class)
+     */
+    public static <T> T decodeLazy(byte[] bytes, Class<T> clazz) {
+        return decodeLazy(new ByteArray(bytes), clazz);
+    }
+
+
     /**
      * 解码
      * @param inputable 输入接口
@@ -241,7 +373,12 @@ public class Transfer {
         }
     	
         byte flag = inputable.getByte();
-        return deserializer.deserialze(inputable, typeReference.getType(), flag, new DeserialContext());
+        DeserialContext context = DeserialContext.borrow();
+        try {
+            return deserializer.deserialze(inputable, typeReference.getType(), flag, context);
+        } finally {
+            context.release();
+        }
     }
 
 
@@ -0,0 +1,22 @@
+package transfer.anno;
+
+import java.lang.annotation.*;
+
+/**
+ * 属性标签注解
+ * <br/>指定持久化编码时属性的稳定编号,属性改名后保留编号即可读取旧数据
+ * <br/>未注解的属性按属性名计算编号
+ * @see transfer.Persister
+ */
+@Target({ ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Tag {
+
+    /**
+     * 属性编号,同一个类中唯一
+     * @return int 编号(1 - 65535)
+     */
+    int value();
+
+}
@@ -0,0 +1,181 @@
+package transfer.compile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import transfer.anno.Transferable;
+import transfer.def.TransferConfig;
+import transfer.deserializer.ObjectDeSerializer;
+import transfer.exceptions.CompileError;
+import transfer.serializer.ObjectSerializer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 构建时预生成编解码器
+ * <br/>扫描编译输出目录中的@Transferable类,使用与运行时相同的Asm工厂生成编解码器.class文件和索引文件
+ * <br/>启动时调用TransferConfig#loadPrecompiledCodecs(ClassLoader)加载,不再在首次编解码时生成字节码
+ * <br/>在process-classes阶段执行: mvn -P aot-codecs process-classes, 或
+ * java -cp ... transfer.compile.AotCodecGenerator 编译输出目录 [包名前缀...]
+ * <br/>运行时通过TransferConfig#registerSerializer等注册的自定义编解码器不会被预生成的代码使用
+ */
+public class AotCodecGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(AotCodecGenerator.class);
+
+    /**
+     * 编解码器索引文件 {传输类=编码器类,解码器类}
+     */
+    public static final String CODEC_INDEX = "META-INF/transfer-codecs.properties";
+
+    /**
+     * 预生成编码器类名后缀
+     */
+    private static final String SERIALIZER_SUFFIX = "_Serializer_Aot";
+
+    /**
+     * 预生成解码器类名后缀
+     */
+    private static final String DESERIALIZER_SUFFIX = "_Deserializer_Aot";
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: AotCodecGenerator <classesDir> [packagePrefix...]");
+            System.exit(1);
+        }
+
+        File classesDir = new File(args[0]);
+        String[] packagePrefixes = new String[args.length - 1];
+        System.arraycopy(args, 1, packagePrefixes, 0, packagePrefixes.length);
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<Class<?>> classes = scan(classesDir, packagePrefixes, classLoader);
+        int count = generate(classesDir, classes);
+        logger.info("预生成编解码器: " + count + "/" + classes.size() + " -> " + classesDir);
+    }
+
+
+    /**
+     * 扫描目录中的@Transferable类(枚举除外)
+     * @param classesDir 编译输出目录
+     * @param packagePrefixes 包名前缀,为空时扫描全部
+     * @param classLoader 类加载器
+     * @return
+     */
+    public static List<Class<?>> scan(File classesDir, String[] packagePrefixes, ClassLoader classLoader) {
+        List<String> classNames = new ArrayList<String>();
+        listClassNames(classesDir, "", classNames);
+
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (String className : classNames) {
+            if (!matchPackage(className, packagePrefixes)
+                    || className.endsWith(SERIALIZER_SUFFIX) || className.endsWith(DESERIALIZER_SUFFIX)) {
+                continue;
+            }
+
+            Class<?> clazz;
+            try {
+                clazz = Class.forName(className, false, classLoader);
+            } catch (Throwable e) {
+                // 缺少依赖的类不是传输类
+                continue;
+            }
+
+            if (clazz.isAnnotationPresent(Transferable.class) && !clazz.isEnum()) {
+                classes.add(clazz);
+            }
+        }
+        return classes;
+    }
+
+
+    /**
+     * 生成编解码器和索引文件
+     * @param classesDir 输出目录
+     * @param classes 传输类
+     * @return 生成成功的数量
+     * @throws IOException
+     */
+    public static int generate(File classesDir, List<Class<?>> classes) throws IOException {
+
+        // 先注册全部传输类,属性中引用的传输类需要类Id
+        for (Class<?> clazz : classes) {
+            TransferConfig.registerClass(clazz, clazz.getAnnotation(Transferable.class).id());
+        }
+
+        Map<String, String> index = new TreeMap<String, String>();
+        for (Class<?> clazz : classes) {
+            String serializerName = clazz.getName() + SERIALIZER_SUFFIX;
+            String deserializerName = clazz.getName() + DESERIALIZER_SUFFIX;
+            byte[] serializerBytes;
+            byte[] deserializerBytes;
+            try {
+                serializerBytes = AsmSerializerFactory.createSerializerClassBytes(serializerName, clazz, ObjectSerializer.getInstance());
+                deserializerBytes = AsmDeserializerFactory.createDeserializerClassBytes(deserializerName, clazz, ObjectDeSerializer.getInstance());
+            } catch (CompileError e) {
+                logger.warn("无法预生成编解码器: " + clazz.getName() + ", " + e.getMessage() + ", 将在运行时编译");
+                continue;
+            }
+
+            writeFile(new File(classesDir, serializerName.replace('.', '/') + ".class"), serializerBytes);
+            writeFile(new File(classesDir, deserializerName.replace('.', '/') + ".class"), deserializerBytes);
+            index.put(clazz.getName(), serializerName + "," + deserializerName);
+        }
+
+        StringBuilder content = new StringBuilder("# generated by transfer.compile.AotCodecGenerator\n");
+        for (Map.Entry<String, String> entry : index.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        writeFile(new File(classesDir, CODEC_INDEX), content.toString().getBytes("ISO-8859-1"));
+
+        return index.size();
+    }
+
+
+    // 递归列出类名
+    private static void listClassNames(File dir, String packageName, List<String> classNames) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listClassNames(file, packageName + file.getName() + ".", classNames);
+            } else if (file.getName().endsWith(".class")) {
+                classNames.add(packageName + file.getName().substring(0, file.getName().length() - 6));
+            }
+        }
+    }
+
+
+    private static boolean matchPackage(String className, String[] packagePrefixes) {
+        if (packagePrefixes == null || packagePrefixes.length == 0) {
+            return true;
+        }
+        for (String packagePrefix : packagePrefixes) {
+            if (className.startsWith(packagePrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -2,13 +2,21 @@ package transfer.compile;
 
 import org.objectweb.asm.*;
 import org.objectweb.asm.util.CheckClassAdapter;
+import transfer.core.ClassInfo;
+import transfer.core.FieldInfo;
 import transfer.deserializer.Deserializer;
 import transfer.exceptions.CompileError;
 import transfer.utils.TypeUtils;
 import utils.enhance.asm.AsmClassLoader;
 import utils.enhance.asm.util.AsmUtils;
 
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -27,6 +35,21 @@ public class AsmDeserializerFactory implements Opcodes {
      * 预编译解码器的自增ID
      */
     private static final AtomicInteger DESERIALIZER_ID_GENERATOR = new AtomicInteger(0);
+
+    /**
+     * 延迟解码视图的自增ID
+     */
+    private static final AtomicInteger LAZY_VIEW_ID_GENERATOR = new AtomicInteger(0);
+
+    /**
+     * 延迟解码视图的属性索引字段名
+     */
+    private static final String LAZY_INDEX_FIELD = "lazyIndex$";
+
+    /**
+     * 属性索引类名
+     */
+    private static final String LAZY_INDEX_CLASS = "transfer/core/LazyFieldIndex";
     
     
     /**
@@ -72,7 +95,7 @@ public class AsmDeserializerFactory implements Opcodes {
      * @param outerDeserializer 最外层解码器
      * @return
      */
-	private static byte[] createDeserializerClassBytes(String className,
+	static byte[] createDeserializerClassBytes(String className,
 			Type type, Deserializer outerDeserializer) {
 		ClassWriter cwr = new ClassWriter(ClassWriter.COMPUTE_MAXS);
 		ClassVisitor cw = new CheckClassAdapter(cwr, false);
@@ -116,6 +139,154 @@ public class AsmDeserializerFactory implements Opcodes {
 		return cwr.toByteArray();
 	}
 
-	
-	
+
+	/**
+	 * 生成延迟解码视图类
+	 * <br/>视图继承传输类,覆盖属性的getter在首次访问时解码该属性,覆盖setter标记属性已设值
+	 * <br/>传输类须为public非final类,有public或protected的无参构造方法,属性getter/setter不能为final
+	 * @param clazz 传输类
+	 * @param classInfo 类信息
+	 * @return 视图类,构造方法参数为LazyFieldIndex
+	 * @see transfer.core.LazyFieldIndex
+	 */
+	public static Class<?> compileLazyView(Class<?> clazz, ClassInfo classInfo) {
+
+		int modifiers = clazz.getModifiers();
+		if (!Modifier.isPublic(modifiers) || Modifier.isFinal(modifiers)
+				|| Modifier.isAbstract(modifiers) || clazz.isInterface()) {
+			throw new CompileError("无法生成延迟解码视图:" + clazz.getName());
+		}
+
+		try {
+			Constructor<?> constructor = clazz.getDeclaredConstructor();
+			if (!Modifier.isPublic(constructor.getModifiers()) && !Modifier.isProtected(constructor.getModifiers())) {
+				throw new CompileError("无法生成延迟解码视图,无参构造方法不可访问:" + clazz.getName());
+			}
+		} catch (NoSuchMethodException e) {
+			throw new CompileError(e);
+		}
+
+		String asmClassName = clazz.getName() + "_LazyView_" + LAZY_VIEW_ID_GENERATOR.incrementAndGet();
+		byte[] bytes = createLazyViewClassBytes(asmClassName, clazz, classInfo);
+
+		AsmUtils.writeClazz(asmClassName, bytes);
+
+		try {
+			return classLoader.defineClass(asmClassName, bytes);
+		} catch (Exception e) {
+			throw new CompileError(e);
+		}
+	}
+
+
+	/**
+	 * 构造延迟解码视图字节码
+	 * @param className 视图asm类名
+	 * @param clazz 传输类
+	 * @param classInfo 类信息
+	 * @return
+	 */
+	@SuppressWarnings("rawtypes")
+	private static byte[] createLazyViewClassBytes(String className, Class<?> clazz, ClassInfo classInfo) {
+
+		String viewClassName = AsmUtils.toAsmCls(className);
+		String superClassName = AsmUtils.toAsmCls(clazz.getName());
+		String indexDesc = "L" + LAZY_INDEX_CLASS + ";";
+
+		ClassWriter cwr = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		ClassVisitor cw = new CheckClassAdapter(cwr, false);
+		MethodVisitor mv;
+
+		cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, viewClassName, null, superClassName, new String[] { "transfer/core/LazyView" });
+
+		cw.visitField(ACC_PRIVATE + ACC_TRANSIENT, LAZY_INDEX_FIELD, indexDesc, null, null).visitEnd();
+
+		{
+			mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + indexDesc + ")V", null, null);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitMethodInsn(INVOKESPECIAL, superClassName, "<init>", "()V", false);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitFieldInsn(PUTFIELD, viewClassName, LAZY_INDEX_FIELD, indexDesc);
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(2, 2);
+			mv.visitEnd();
+		}
+
+		List<FieldInfo> fieldInfos = classInfo.getFieldInfos();
+		for (int i = 0; i < fieldInfos.size(); i++) {
+			FieldInfo fieldInfo = fieldInfos.get(i);
+
+			PropertyDescriptor propertyDescriptor;
+			try {
+				propertyDescriptor = new PropertyDescriptor(fieldInfo.getFieldName(), clazz);
+			} catch (IntrospectionException e) {
+				throw new CompileError(e);
+			}
+
+			Method getter = propertyDescriptor.getReadMethod();
+			Method setter = propertyDescriptor.getWriteMethod();
+			if (getter == null || setter == null
+					|| Modifier.isFinal(getter.getModifiers()) || Modifier.isFinal(setter.getModifiers())) {
+				throw new CompileError("无法生成延迟解码视图,属性getter/setter不可覆盖:" + fieldInfo.getName());
+			}
+
+			// getter: 首次访问时解码
+			String getterDesc = org.objectweb.asm.Type.getMethodDescriptor(getter);
+			mv = cw.visitMethod(ACC_PUBLIC, getter.getName(), getterDesc, null, null);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, viewClassName, LAZY_INDEX_FIELD, indexDesc);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitLdcInsn(i);
+			mv.visitMethodInsn(INVOKESTATIC, LAZY_INDEX_CLASS, "load", "(" + indexDesc + "Ljava/lang/Object;I)V", false);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitMethodInsn(INVOKESPECIAL, superClassName, getter.getName(), getterDesc, false);
+			mv.visitInsn(AsmUtils.rtCode(org.objectweb.asm.Type.getReturnType(getter)));
+			mv.visitMaxs(3, 1);
+			mv.visitEnd();
+
+			// setter: 标记已设值
+			String setterDesc = org.objectweb.asm.Type.getMethodDescriptor(setter);
+			mv = cw.visitMethod(ACC_PUBLIC, setter.getName(), setterDesc, null, null);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, viewClassName, LAZY_INDEX_FIELD, indexDesc);
+			mv.visitLdcInsn(i);
+			mv.visitMethodInsn(INVOKESTATIC, LAZY_INDEX_CLASS, "loaded", "(" + indexDesc + "I)V", false);
+			mv.visitVarInsn(ALOAD, 0);
+			int slot = 1;
+			for (org.objectweb.asm.Type argType : org.objectweb.asm.Type.getArgumentTypes(setter)) {
+				mv.visitVarInsn(AsmUtils.loadCode(argType), slot);
+				slot += argType.getSize();
+			}
+			mv.visitMethodInsn(INVOKESPECIAL, superClassName, setter.getName(), setterDesc, false);
+			org.objectweb.asm.Type setterReturnType = org.objectweb.asm.Type.getReturnType(setter);
+			if (setterReturnType == org.objectweb.asm.Type.VOID_TYPE) {
+				mv.visitInsn(RETURN);
+			} else {
+				mv.visitInsn(AsmUtils.rtCode(setterReturnType));
+			}
+			mv.visitMaxs(slot + 1, slot);
+			mv.visitEnd();
+		}
+
+		{
+			mv = cw.visitMethod(ACC_PUBLIC, "loadFields", "()V", null, null);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, viewClassName, LAZY_INDEX_FIELD, indexDesc);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitMethodInsn(INVOKESTATIC, LAZY_INDEX_CLASS, "loadAll", "(" + indexDesc + "Ljava/lang/Object;)V", false);
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(2, 1);
+			mv.visitEnd();
+		}
+
+		cw.visitEnd();
+
+		return cwr.toByteArray();
+	}
+
 }
@@ -78,7 +78,7 @@ public class AsmSerializerFactory implements Opcodes {
      * @param outerSerializer 最外层编码器
      * @return
      */
-    private static byte[] createSerializerClassBytes(String className, Type type, Serializer outerSerializer) {
+    static byte[] createSerializerClassBytes(String className, Type type, Serializer outerSerializer) {
 
         ClassWriter cwr = new ClassWriter(ClassWriter.COMPUTE_MAXS);
         ClassVisitor cw = new CheckClassAdapter(cwr, false);
@@ -1,5 +1,7 @@
 package transfer.core;
 
+import transfer.utils.IntegerMap;
+
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +32,12 @@ public class ClassInfo {
      */
     private Map<String, FieldInfo> fieldInfoMap;
 
+    /**
+     * 属性标签Map
+     */
+    @SuppressWarnings("rawtypes")
+    private volatile IntegerMap<FieldInfo> tagFieldInfoMap;
+
     /**
      * 获取实例
      * @param clazz 类
@@ -64,6 +72,40 @@ public class ClassInfo {
         return fieldInfoMap.get(fieldName);
     }
 
+    /**
+     * 根据标签获取属性信息
+     * @param tag 属性标签
+     * @return 不存在时返回null
+     */
+    @SuppressWarnings("rawtypes")
+    public FieldInfo getFieldInfoByTag(int tag) {
+        return this.getTagFieldInfoMap().get(tag);
+    }
+
+    /**
+     * 获取属性标签Map
+     * @return
+     * @throws IllegalStateException 属性标签重复时抛出
+     */
+    @SuppressWarnings("rawtypes")
+    public IntegerMap<FieldInfo> getTagFieldInfoMap() {
+        IntegerMap<FieldInfo> tagFieldInfoMap = this.tagFieldInfoMap;
+        if (tagFieldInfoMap != null) {
+            return tagFieldInfoMap;
+        }
+
+        tagFieldInfoMap = new IntegerMap<FieldInfo>(Integer.highestOneBit(Math.max(fieldInfos.size(), 1)) << 1);
+        for (FieldInfo fieldInfo : fieldInfos) {
+            FieldInfo oldFieldInfo = tagFieldInfoMap.get(fieldInfo.getTag());
+            if (oldFieldInfo != null) {
+                throw new IllegalStateException("属性标签重复:" + oldFieldInfo.getName() + ", " + fieldInfo.getName());
+            }
+            tagFieldInfoMap.put(fieldInfo.getTag(), fieldInfo);
+        }
+        this.tagFieldInfoMap = tagFieldInfoMap;
+        return tagFieldInfoMap;
+    }
+
     public int getClassId() {
         return classId;
     }
@@ -10,14 +10,54 @@ import java.lang.reflect.Type;
  */
 public class DeserialContext {
 
+    /**
+     * 线程复用的解码上下文
+     */
+    private static final ThreadLocal<DeserialContext> LOCAL_CONTEXT = new ThreadLocal<DeserialContext>() {
+        @Override
+        protected DeserialContext initialValue() {
+            return new DeserialContext();
+        }
+    };
+
     private IntegerMap referenceMap;
 
     private ParseStackTrace stackTrace;
 
+    /**
+     * 是否已被借出
+     */
+    private boolean borrowed;
+
     public IntegerMap getReferenceMap() {
         return referenceMap;
     }
 
+
+    /**
+     * 借出当前线程的复用上下文
+     * <br/>重入(上下文已被借出)时返回新的上下文;迭代解码的上下文跨越多次调用,不应使用复用上下文
+     * @return
+     */
+    public static DeserialContext borrow() {
+        DeserialContext context = LOCAL_CONTEXT.get();
+        if (context.borrowed) {
+            return new DeserialContext();
+        }
+        context.borrowed = true;
+        return context;
+    }
+
+
+    /**
+     * 归还复用上下文
+     */
+    public void release() {
+        this.referenceMap = null;
+        this.stackTrace = null;
+        this.borrowed = false;
+    }
+
     /**
      * 输出解析堆栈
      * (当出现异常时,可以定位解析异常的位置)
@@ -1,5 +1,6 @@
 package transfer.core;
 
+import transfer.anno.Tag;
 import utils.enhance.asm.AsmAccessHelper;
 import utils.enhance.asm.ValueGetter;
 import utils.enhance.asm.ValueSetter;
@@ -14,6 +15,12 @@ import java.lang.reflect.Type;
  */
 public class FieldInfo<T> {
 
+    /**
+     * 注解指定的最大属性标签
+     * <br/>按属性名计算的标签均大于此值,两者不会重复
+     */
+    public static final int MAX_ANNOTATED_TAG = 0xFFFF;
+
     /**
      * 属性信息所属类
      */
@@ -49,6 +56,11 @@ public class FieldInfo<T> {
      */
     private Type type;
 
+    /**
+     * 属性标签
+     */
+    private int tag;
+
 
     /**
      * 获取实例
@@ -64,8 +76,23 @@ public class FieldInfo<T> {
         fieldInfo.fieldName = field.getName();
         fieldInfo.type = field.getGenericType();
         fieldInfo.field = field;
+        fieldInfo.tag = getTag(field);
         return fieldInfo;
     }
+
+
+    // 获取属性标签,未注解时按属性名计算
+    private static int getTag(Field field) {
+        Tag tag = field.getAnnotation(Tag.class);
+        if (tag == null) {
+            return (field.getName().hashCode() & 0x7FFFFFFF) | (MAX_ANNOTATED_TAG + 1);
+        }
+        if (tag.value() < 1 || tag.value() > MAX_ANNOTATED_TAG) {
+            throw new IllegalArgumentException("属性标签超出范围(1 - " + MAX_ANNOTATED_TAG + "):"
+                    + field.getDeclaringClass().getName() + "#" + field.getName());
+        }
+        return tag.value();
+    }
     
     public Class<T> getClazz() {
         return clazz;
@@ -116,4 +143,8 @@ public class FieldInfo<T> {
     public Field getField() {
         return field;
     }
+
+    public int getTag() {
+        return tag;
+    }
 }
@@ -0,0 +1,200 @@
+package transfer.core;
+
+import transfer.ByteArray;
+import transfer.def.TransferConfig;
+import transfer.def.Types;
+import transfer.deserializer.Deserializer;
+import transfer.exceptions.UnsupportDeserializerTypeException;
+import transfer.utils.BitUtils;
+
+import java.util.List;
+
+/**
+ * 延迟解码视图的属性索引
+ * <br/>首次访问属性时扫描一遍字节,记录各属性的起始位置,之后按需解码单个属性
+ * <br/>非线程安全,视图只应在一个线程中使用;视图引用原始字节数组,使用期间不能修改
+ */
+public class LazyFieldIndex {
+
+    /**
+     * 类信息
+     */
+    private final ClassInfo classInfo;
+
+    /**
+     * 原始字节数组
+     */
+    private final byte[] bytes;
+
+    /**
+     * 第一个属性的起始位置
+     */
+    private final int fieldStartIndex;
+
+    /**
+     * 结束位置
+     */
+    private final int endIndex;
+
+    /**
+     * 属性已解码(或已被设值)标记
+     */
+    private final boolean[] loaded;
+
+    /**
+     * 各属性的起始位置
+     */
+    private int[] fieldIndexes;
+
+
+    /**
+     * @param classInfo 类信息
+     * @param bytes 原始字节数组
+     * @param fieldStartIndex 第一个属性的起始位置
+     * @param endIndex 结束位置 不包括
+     */
+    public LazyFieldIndex(ClassInfo classInfo, byte[] bytes, int fieldStartIndex, int endIndex) {
+        this.classInfo = classInfo;
+        this.bytes = bytes;
+        this.fieldStartIndex = fieldStartIndex;
+        this.endIndex = endIndex;
+        this.loaded = new boolean[classInfo.getFieldInfos().size()];
+    }
+
+
+    /**
+     * 解码属性并设值到视图(视图getter调用)
+     * <br/>视图构造期间index为null,不做处理;解码失败时属性保持未解码,下次访问重新解码
+     * @param index 属性索引
+     * @param target 视图对象
+     * @param fieldIndex 属性序号
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void load(LazyFieldIndex index, Object target, int fieldIndex) {
+        if (index == null || index.loaded[fieldIndex]) {
+            return;
+        }
+        FieldInfo fieldInfo = index.classInfo.getFieldInfos().get(fieldIndex);
+        fieldInfo.setField(target, index.decode(fieldInfo, fieldIndex));
+        index.loaded[fieldIndex] = true;
+    }
+
+
+    /**
+     * 标记属性已被设值,之后不再解码(视图setter调用)
+     * @param index 属性索引
+     * @param fieldIndex 属性序号
+     */
+    public static void loaded(LazyFieldIndex index, int fieldIndex) {
+        if (index != null) {
+            index.loaded[fieldIndex] = true;
+        }
+    }
+
+
+    /**
+     * 解码全部属性
+     * @param index 属性索引
+     * @param target 视图对象
+     */
+    public static void loadAll(LazyFieldIndex index, Object target) {
+        if (index == null) {
+            return;
+        }
+        for (int i = 0; i < index.loaded.length; i++) {
+            load(index, target, i);
+        }
+    }
+
+
+    // 解码单个属性
+    private Object decode(FieldInfo<?> fieldInfo, int fieldIndex) {
+        if (this.fieldIndexes == null) {
+            this.fieldIndexes = this.buildIndexes();
+        }
+
+        ByteArray inputable = new ByteArray(this.bytes, this.fieldIndexes[fieldIndex], this.endIndex);
+        byte flag = inputable.getByte();
+        Deserializer deserializer = TransferConfig.getDeserializer(fieldInfo.getType(), flag);
+        return deserializer.deserialze(inputable, fieldInfo.getType(), flag, new DeserialContext());
+    }
+
+
+    // 扫描属性起始位置
+    @SuppressWarnings("rawtypes")
+    private int[] buildIndexes() {
+        List<FieldInfo> fieldInfos = this.classInfo.getFieldInfos();
+        int[] indexes = new int[fieldInfos.size()];
+        ByteArray inputable = new ByteArray(this.bytes, this.fieldStartIndex, this.endIndex);
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = inputable.getCurIndex();
+            skip(inputable, inputable.getByte());
+        }
+        return indexes;
+    }
+
+
+    // 跳过一个值(不含标记字节)
+    private static void skip(ByteArray inputable, byte flag) {
+        // NULL标记不区分类型
+        if (flag == Types.NULL) {
+            return;
+        }
+        switch (TransferConfig.getType(flag)) {
+            case Types.BOOLEAN:
+                break;
+            case Types.NUMBER:
+            case Types.DATE_TIME:
+                skipVarInt(inputable);
+                break;
+            case Types.DECIMAL:
+                byte extraFlag = TransferConfig.getExtra(flag);
+                if (extraFlag == TransferConfig.FLOAT || extraFlag == TransferConfig.DOUBLE) {
+                    skipVarInt(inputable);
+                }
+                break;
+            case Types.ENUM:
+                skipVarInt(inputable);
+                skipVarInt(inputable);
+                break;
+            case Types.STRING:
+            case Types.BYTE_ARRAY:
+                inputable.skip(BitUtils.getInt(inputable));
+                break;
+            case Types.ARRAY:
+            case Types.COLLECTION:
+                for (int size = BitUtils.getInt(inputable); size > 0; size--) {
+                    skip(inputable, inputable.getByte());
+                }
+                break;
+            case Types.PACKED_ARRAY:
+                for (int size = BitUtils.getInt(inputable); size > 0; size--) {
+                    skipVarInt(inputable);
+                }
+                break;
+            case Types.MAP:
+                for (int size = BitUtils.getInt(inputable); size > 0; size--) {
+                    skip(inputable, inputable.getByte());
+                    skip(inputable, inputable.getByte());
+                }
+                break;
+            case Types.OBJECT:
+                Class<?> clazz = TransferConfig.getClass(BitUtils.getInt(inputable));
+                int fieldCount = TransferConfig.getOrCreateClassInfo(clazz).getFieldInfos().size();
+                for (int i = 0; i < fieldCount; i++) {
+                    skip(inputable, inputable.getByte());
+                }
+                break;
+            default:
+                throw new UnsupportDeserializerTypeException(flag);
+        }
+    }
+
+
+    // 跳过变长整数
+    private static void skipVarInt(ByteArray inputable) {
+        while (inputable.getByte() < 0) {
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package transfer.core;
+
+/**
+ * 延迟解码视图
+ * <br/>由Transfer#decodeLazy返回的对象实现此接口,属性在首次调用getter时解码
+ * @see transfer.Transfer#decodeLazy(transfer.ByteArray, Class)
+ */
+public interface LazyView {
+
+    /**
+     * 解码全部尚未解码的属性
+     * <br/>直接访问属性(而非getter)的方法(如equals,hashCode)调用前需先调用此方法
+     */
+    void loadFields();
+
+}
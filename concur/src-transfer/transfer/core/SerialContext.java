@@ -8,10 +8,49 @@ import transfer.utils.IdentityHashMap;
  */
 public class SerialContext {
 
+    /**
+     * 线程复用的编码上下文
+     */
+    private static final ThreadLocal<SerialContext> LOCAL_CONTEXT = new ThreadLocal<SerialContext>() {
+        @Override
+        protected SerialContext initialValue() {
+            return new SerialContext();
+        }
+    };
+
     private IdentityHashMap referenceMap;
 
+    /**
+     * 是否已被借出
+     */
+    private boolean borrowed;
+
     public IdentityHashMap getReferenceMap() {
         return referenceMap;
     }
 
+
+    /**
+     * 借出当前线程的复用上下文
+     * <br/>重入(上下文已被借出)时返回新的上下文
+     * @return
+     */
+    public static SerialContext borrow() {
+        SerialContext context = LOCAL_CONTEXT.get();
+        if (context.borrowed) {
+            return new SerialContext();
+        }
+        context.borrowed = true;
+        return context;
+    }
+
+
+    /**
+     * 归还复用上下文
+     */
+    public void release() {
+        this.referenceMap = null;
+        this.borrowed = false;
+    }
+
 }
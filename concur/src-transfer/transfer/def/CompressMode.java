@@ -0,0 +1,48 @@
+package transfer.def;
+
+/**
+ * 存储压缩方式
+ * <br/>压缩帧格式: COMPRESSED|压缩方式, 原始长度, 压缩后长度, 压缩数据
+ * @see transfer.Persister#encode(Object, CompressMode)
+ */
+public enum CompressMode {
+
+    /**
+     * 不压缩
+     */
+    NONE((byte) 0x00),
+
+    /**
+     * LZ4块压缩(纯Java实现)
+     */
+    LZ4((byte) 0x01);
+
+
+    /**
+     * 帧头中的压缩方式标记
+     */
+    private final byte flag;
+
+    CompressMode(byte flag) {
+        this.flag = flag;
+    }
+
+    public byte getFlag() {
+        return flag;
+    }
+
+    /**
+     * 根据帧头标记获取压缩方式
+     * @param flag 压缩方式标记
+     * @return 不支持时返回null
+     */
+    public static CompressMode valueOf(byte flag) {
+        for (CompressMode mode : values()) {
+            if (mode.flag == flag) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+}
@@ -40,6 +40,8 @@ public class PersistConfig {
 	private static final Logger logger = LoggerFactory.getLogger(PersistConfig.class);
     /** 是否使用自增ID */
     private static boolean useAutoIncrementId = false;
+    /** 压缩阈值,编码长度达到此值才压缩 */
+    private static int compressThreshold = 512;
     /** 传输类自增ID */
     private static final AtomicInteger CLASS_ID_GENERTOR = new AtomicInteger(1);
     
@@ -101,8 +103,8 @@ public class PersistConfig {
             repeatRegisterSerializers = serializers.put(clazz, EnumSerializer.getInstance());
             repeatRegisterDeSerializers = typedDeserializers.put(clazz, EnumDeserializer.getInstance());
         } else {
-            repeatRegisterSerializers = serializers.put(clazz, ObjectSerializer.getInstance());
-            repeatRegisterDeSerializers = typedDeserializers.put(clazz, ObjectDeSerializer.getInstance());
+            repeatRegisterSerializers = serializers.put(clazz, TagObjectSerializer.getInstance());
+            repeatRegisterDeSerializers = typedDeserializers.put(clazz, TagObjectDeSerializer.getInstance());
         }
 
         if (repeatRegisterSerializers || repeatRegisterDeSerializers) {
@@ -262,7 +264,7 @@ public class PersistConfig {
         } else if (Map.Entry.class.isAssignableFrom(clazz)) {
             deserializer =  EntryDeserializer.getInstance();
         } else {
-            deserializer = ObjectDeSerializer.getInstance();
+            deserializer = TagObjectDeSerializer.getInstance();
             // 注册类型
             autoRegisterClass(clazz);
         }
@@ -391,12 +393,12 @@ public class PersistConfig {
 	        
         	Serializer serializer;
         	try {
-        		serializer = AsmSerializerFactory.compileSerializer(clazz, ObjectSerializer.getInstance());// 自定义传输类
+        		serializer = AsmSerializerFactory.compileSerializer(clazz, TagObjectSerializer.getInstance());// 自定义传输类
         		serializers.put(clazz, serializer);
         		
         	} catch (CompileError e) {
         		logger.warn("无法预编译: " + e.getMessage() + ", 将使用默认编码器");
-        		serializer = ObjectSerializer.getInstance();
+        		serializer = TagObjectSerializer.getInstance();
         		serializers.put(clazz, serializer);
         	}
         	return serializer;
@@ -441,12 +443,12 @@ public class PersistConfig {
 	        
 	        Deserializer deserializer;
         	try {
-        		deserializer = AsmDeserializerFactory.compileDeserializer(clazz, ObjectDeSerializer.getInstance());// 自定义传输类
+        		deserializer = AsmDeserializerFactory.compileDeserializer(clazz, TagObjectDeSerializer.getInstance());// 自定义传输类
         		compiledDeserializers.put(clazz, deserializer);
         		
         	} catch (CompileError e) {
         		logger.warn("无法预编译: " + e.getMessage() + ", 将使用默认解码器");
-        		deserializer = ObjectDeSerializer.getInstance();
+        		deserializer = TagObjectDeSerializer.getInstance();
         		compiledDeserializers.put(clazz, deserializer);
         	}
         	return deserializer;
@@ -497,7 +499,7 @@ public class PersistConfig {
         }
 
         
-        int classId = TransferConfig.getClassId(clazz);
+        int classId = getClassId(clazz);
         // 枚举类型
         if (clazz.isEnum()) {
             classInfo = EnumInfo.valueOf(clazz, classId);
@@ -531,6 +533,8 @@ public class PersistConfig {
             });
 
             classInfo = ClassInfo.valueOf(clazz, classId, fieldInfos, fieldInfoMap);
+            // 校验属性标签
+            classInfo.getTagFieldInfoMap();
             classInfoMap.put(clazz, classInfo);
         }
 
@@ -595,6 +599,21 @@ public class PersistConfig {
 	}
 
 
+    /**
+     * 设置压缩阈值
+     * <br/>指定压缩方式编码时,编码长度达到此值才压缩,默认512字节
+     * @param compressThreshold 压缩阈值
+     * @see transfer.Persister#encode(Object, CompressMode)
+     */
+    public static void setCompressThreshold(int compressThreshold) {
+        PersistConfig.compressThreshold = compressThreshold;
+    }
+
+    public static int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+
     /**
      * 输出int值
      * @param outputable
@@ -660,6 +679,9 @@ public class PersistConfig {
         typedDeserializers.put(ConcurrentSkipListSet.class, CollectionDeSerializer.getInstance());
         typedDeserializers.put(byte[].class, ByteArrayDeSerializer.getInstance());
         typedDeserializers.put(Byte[].class, ByteArrayDeSerializer.getInstance());
+        typedDeserializers.put(int[].class, PrimitiveArrayDeSerializer.getInstance());
+        typedDeserializers.put(long[].class, PrimitiveArrayDeSerializer.getInstance());
+        typedDeserializers.put(short[].class, PrimitiveArrayDeSerializer.getInstance());
         typedDeserializers.put(Map.class, MapDeSerializer.getInstance());
         typedDeserializers.put(HashMap.class, MapDeSerializer.getInstance());
         typedDeserializers.put(ConcurrentHashMap.class, MapDeSerializer.getInstance());
@@ -702,6 +724,9 @@ public class PersistConfig {
         serializers.put(boolean.class, BooleanSerializer.getInstance());
         serializers.put(byte[].class, ByteArraySerializer.getInstance());
         serializers.put(Byte[].class, ByteArraySerializer.getInstance());
+        serializers.put(int[].class, PrimitiveArraySerializer.getInstance());
+        serializers.put(long[].class, PrimitiveArraySerializer.getInstance());
+        serializers.put(short[].class, PrimitiveArraySerializer.getInstance());
         serializers.put(Number.class, NumberSerializer.getInstance());
         serializers.put(short.class, NumberSerializer.getInstance());
         serializers.put(Short.class, NumberSerializer.getInstance());
@@ -8,11 +8,13 @@ import transfer.ByteArray;
 import transfer.Outputable;
 import transfer.anno.Ignore;
 import transfer.anno.Transferable;
+import transfer.compile.AotCodecGenerator;
 import transfer.compile.AsmDeserializerFactory;
 import transfer.compile.AsmSerializerFactory;
 import transfer.core.ClassInfo;
 import transfer.core.EnumInfo;
 import transfer.core.FieldInfo;
+import transfer.core.LazyFieldIndex;
 import transfer.deserializer.*;
 import transfer.exceptions.CompileError;
 import transfer.exceptions.UnsupportClassException;
@@ -20,11 +22,13 @@ import transfer.exceptions.UnsupportDeserializerTypeException;
 import transfer.exceptions.UnsupportSerializerTypeException;
 import transfer.serializer.*;
 import transfer.utils.*;
-import transfer.utils.IdentityHashMap;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.net.URL;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -46,17 +50,35 @@ public class TransferConfig {
 
     private static final ByteMap<Deserializer> deserializers = new ByteMap<Deserializer>();
 
-    private static final IdentityHashMap<Type, Deserializer> typedDeserializers = new IdentityHashMap<Type, Deserializer>();
+    private static final CopyOnWriteIdentityHashMap<Type, Deserializer> typedDeserializers = new CopyOnWriteIdentityHashMap<Type, Deserializer>();
     
-    private static final IdentityHashMap<Type, Deserializer> compiledDeserializers = new IdentityHashMap<Type, Deserializer>();
+    private static final CopyOnWriteIdentityHashMap<Type, Deserializer> compiledDeserializers = new CopyOnWriteIdentityHashMap<Type, Deserializer>();
 
-    private static final IdentityHashMap<Type, Serializer> serializers = new IdentityHashMap<Type, Serializer>();
+    private static final CopyOnWriteIdentityHashMap<Type, Serializer> serializers = new CopyOnWriteIdentityHashMap<Type, Serializer>();
 
-    private static final IdentityHashMap<Class, ClassInfo> classInfoMap = new IdentityHashMap<Class, ClassInfo>();
+    private static final CopyOnWriteIdentityHashMap<Type, Serializer> compiledSerializers = new CopyOnWriteIdentityHashMap<Type, Serializer>();
 
-    private static final IntegerMap<Class> classIdMap = new IntegerMap<Class>();
+    private static final CopyOnWriteIdentityHashMap<Class<?>, ClassInfo> classInfoMap = new CopyOnWriteIdentityHashMap<Class<?>, ClassInfo>();
 
-    private static final IdentityHashMap<Class, Integer> idClassMap = new IdentityHashMap<Class, Integer>();
+    private static final CopyOnWriteIntegerMap<Class<?>> classIdMap = new CopyOnWriteIntegerMap<Class<?>>();
+
+    private static final CopyOnWriteIdentityHashMap<Class<?>, Integer> idClassMap = new CopyOnWriteIdentityHashMap<Class<?>, Integer>();
+
+    private static final CopyOnWriteIdentityHashMap<Class<?>, Constructor<?>> lazyViewConstructors = new CopyOnWriteIdentityHashMap<Class<?>, Constructor<?>>();
+
+    /** 预编译锁 {类型:锁},同一类型只编译一次 */
+    private static final ConcurrentHashMap<Type, Object> compileLocks = new ConcurrentHashMap<Type, Object>();
+
+    /** 冻结后可注册的最大类Id */
+    private static final int MAX_FROZEN_CLASS_ID = 0xFFFF;
+
+    /** 是否已冻结注册表 */
+    private static volatile boolean frozen = false;
+
+    /** 冻结后的注册类 [类Id:类] */
+    private static volatile Class<?>[] frozenClasses;
+
+    private static final ConcurrentHashSet<Class<?>> unsupportLazyViews = new ConcurrentHashSet<Class<?>>();
 
 
     // 1111 0000 类型
@@ -74,6 +96,11 @@ public class TransferConfig {
     public static final byte FLOAT = 0x00;// float 4字节
     public static final byte DOUBLE = 0x01;// double 8字节
 
+    // PackedArray元素类型标记
+    public static final byte PACKED_INT = 0x00;// int zigzag 1-5字节
+    public static final byte PACKED_LONG = 0x01;// long zigzag 1-10字节
+    public static final byte PACKED_SHORT = 0x02;// short zigzag 1-3字节
+
     // 0000 1000
     private static final byte FLAG_NEGATIVE = (byte) 0x08;
     // 0000 0000
@@ -92,8 +119,7 @@ public class TransferConfig {
             logger.warn("注册解析类Id重复: " + clazz + ",Id: " + id + " , (" + oldClass + ")");
         }
 
-        classIdMap.put(id, clazz);
-        idClassMap.put(clazz, id);
+        putClassId(clazz, id);
 
         boolean repeatRegisterSerializers,repeatRegisterDeSerializers;
         if (clazz.isEnum() || (clazz.getSuperclass() != null && clazz.getSuperclass().isEnum())) { // 枚举类型
@@ -276,6 +302,118 @@ public class TransferConfig {
     }
 
 
+    // 添加类Id映射,冻结后只允许已有的映射
+    private static void putClassId(Class<?> clazz, int id) {
+        if (frozen) {
+            if (classIdMap.get(id) == clazz) {
+                return;
+            }
+            throw new IllegalStateException("注册表已冻结,不能注册类:" + clazz + ",Id:" + id);
+        }
+        classIdMap.put(id, clazz);
+        idClassMap.put(clazz, id);
+    }
+
+
+    /**
+     * 冻结注册表
+     * <br/>在启动完成(注册和预编译完毕)后调用,之后不能再注册新的类
+     * <br/>冻结后根据类Id获取注册类为数组下标访问
+     */
+    public static synchronized void freeze() {
+        if (frozen) {
+            return;
+        }
+        frozen = true;
+
+        int maxClassId = classIdMap.maxKey();
+        if (maxClassId > MAX_FROZEN_CLASS_ID) {
+            logger.warn("类Id超过" + MAX_FROZEN_CLASS_ID + ",冻结后仍使用Map查找类");
+            return;
+        }
+        Class<?>[] classes = new Class<?>[maxClassId + 1];
+        int count = 0;
+        for (int i = 0;i < classes.length;i++) {
+            classes[i] = classIdMap.get(i);
+            if (classes[i] != null) {
+                count++;
+            }
+        }
+        // 存在负数Id
+        if (count != classIdMap.size()) {
+            logger.warn("类Id小于0,冻结后仍使用Map查找类");
+            return;
+        }
+        frozenClasses = classes;
+    }
+
+
+    /**
+     * 加载构建时预生成的编解码器
+     * <br/>读取类路径中的编解码器索引,注册传输类和编解码器,之后这些类的编解码不再生成字节码
+     * <br/>应在冻结注册表之前调用,加载失败的类仍在运行时编译
+     * @param classLoader 类加载器
+     * @return 加载的传输类数量
+     * @see transfer.compile.AotCodecGenerator
+     */
+    public static int loadPrecompiledCodecs(ClassLoader classLoader) {
+
+        Enumeration<URL> urls;
+        try {
+            urls = classLoader.getResources(AotCodecGenerator.CODEC_INDEX);
+        } catch (IOException e) {
+            logger.warn("无法读取预生成编解码器索引: " + e.getMessage());
+            return 0;
+        }
+
+        int count = 0;
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            Properties index = new Properties();
+            try {
+                InputStream in = url.openStream();
+                try {
+                    index.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                logger.warn("无法读取预生成编解码器索引: " + url + ", " + e.getMessage());
+                continue;
+            }
+
+            for (String className : index.stringPropertyNames()) {
+                String[] codecNames = index.getProperty(className).split(",");
+                try {
+                    Class<?> clazz = Class.forName(className, true, classLoader);
+                    Serializer serializer = (Serializer) Class.forName(codecNames[0], true, classLoader).newInstance();
+                    Deserializer deserializer = (Deserializer) Class.forName(codecNames[1], true, classLoader).newInstance();
+
+                    registerClass(clazz, clazz.getAnnotation(Transferable.class).id());
+                    serializers.put(clazz, serializer);
+                    compiledSerializers.put(clazz, serializer);
+                    compiledDeserializers.put(clazz, deserializer);
+                    count++;
+                } catch (Exception e) {
+                    logger.warn("无法加载预生成编解码器: " + className + ", 将在运行时编译", e);
+                } catch (LinkageError e) {
+                    logger.warn("无法加载预生成编解码器: " + className + ", 将在运行时编译", e);
+                }
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * 是否已冻结注册表
+     * @return
+     */
+    public static boolean isFrozen() {
+        return frozen;
+    }
+
+
     // 自动注册类型
     private static void autoRegisterClass(Class<?> clazz) {
         // 获取唯一标识
@@ -365,10 +503,30 @@ public class TransferConfig {
     
     /**
      * 预编译编码器
+     * <br/>同一类型只编译一次,并发调用时等待编译完成
      * @param type
      * @return 
      */
     public static Serializer preCompileSerializer(Type type) {
+
+        Serializer serializer = compiledSerializers.get(type);
+        if (serializer != null) {
+            return serializer;
+        }
+
+        synchronized (getCompileLock(type)) {
+            serializer = compiledSerializers.get(type);
+            if (serializer == null) {
+                serializer = doPreCompileSerializer(type);
+                compiledSerializers.put(type, serializer);
+            }
+            return serializer;
+        }
+    }
+
+
+    // 预编译编码器
+    private static Serializer doPreCompileSerializer(Type type) {
     	
     	Class<?> clazz = TypeUtils.getRawClass(type);
     	
@@ -379,8 +537,7 @@ public class TransferConfig {
             
 			int classId = transferable.id();
 			
-	        classIdMap.put(classId, clazz);
-	        idClassMap.put(clazz, classId);
+	        putClassId(clazz, classId);
 		
 	        if (clazz.isEnum() || (clazz.getSuperclass() != null && clazz.getSuperclass().isEnum())) { // 枚举类型
 	            serializers.put(clazz, EnumSerializer.getInstance());
@@ -415,10 +572,44 @@ public class TransferConfig {
     
     /**
      * 预编译解码器
+     * <br/>同一类型只编译一次,并发调用时等待编译完成
      * @param type
      * @return 
      */
     public static Deserializer preCompileDeserializer(Type type) {
+
+        Deserializer deserializer = compiledDeserializers.get(type);
+        if (deserializer != null) {
+            return deserializer;
+        }
+
+        synchronized (getCompileLock(type)) {
+            deserializer = compiledDeserializers.get(type);
+            if (deserializer == null) {
+                deserializer = doPreCompileDeserializer(type);
+                compiledDeserializers.put(type, deserializer);
+            }
+            return deserializer;
+        }
+    }
+
+
+    // 获取类型的预编译锁
+    private static Object getCompileLock(Type type) {
+        Object lock = compileLocks.get(type);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = compileLocks.putIfAbsent(type, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+
+    // 预编译解码器
+    private static Deserializer doPreCompileDeserializer(Type type) {
     	
     	Class<?> clazz = TypeUtils.getRawClass(type);
     	
@@ -429,8 +620,7 @@ public class TransferConfig {
             
 			int classId = transferable.id();
 			
-	        classIdMap.put(classId, clazz);
-	        idClassMap.put(clazz, classId);
+	        putClassId(clazz, classId);
 		
 	        if (clazz.isEnum() || (clazz.getSuperclass() != null && clazz.getSuperclass().isEnum())) { // 枚举类型
 	        	compiledDeserializers.put(clazz, EnumDeserializer.getInstance());
@@ -463,13 +653,63 @@ public class TransferConfig {
 	}
     
     
+    /**
+     * 获取延迟解码视图的构造方法
+     * <br/>首次调用时生成视图类,无法生成时返回null,应使用完整解码
+     * <br/>同一类型只生成一次,并发调用时等待生成完成
+     * @param clazz 传输类
+     * @return 构造方法,参数为LazyFieldIndex
+     * @see transfer.Transfer#decodeLazy(ByteArray, Class)
+     */
+    public static Constructor<?> getLazyViewConstructor(Class<?> clazz) {
+
+        Constructor<?> constructor = lazyViewConstructors.get(clazz);
+        if (constructor != null) {
+            return constructor;
+        }
+
+        synchronized (getCompileLock(clazz)) {
+            constructor = lazyViewConstructors.get(clazz);
+            if (constructor != null || unsupportLazyViews.contains(clazz)) {
+                return constructor;
+            }
+            return doCompileLazyView(clazz);
+        }
+    }
+
+
+    // 生成延迟解码视图
+    private static Constructor<?> doCompileLazyView(Class<?> clazz) {
+
+        Constructor<?> constructor = null;
+
+        // 注册类型
+        getDeserializer(clazz);
+        ClassInfo classInfo = getOrCreateClassInfo(clazz);
+        try {
+            Class<?> viewClass = AsmDeserializerFactory.compileLazyView(clazz, classInfo);
+            constructor = viewClass.getConstructor(LazyFieldIndex.class);
+            // 视图按传输类编码
+            serializers.put(viewClass, ObjectAsmProxySerializer.getInstance());
+            lazyViewConstructors.put(clazz, constructor);
+        } catch (CompileError e) {
+            logger.warn("无法生成延迟解码视图: " + e.getMessage() + ", 将使用完整解码");
+            unsupportLazyViews.add(clazz);
+        } catch (NoSuchMethodException e) {
+            logger.warn("无法生成延迟解码视图: " + e.getMessage() + ", 将使用完整解码");
+            unsupportLazyViews.add(clazz);
+        }
+        return constructor;
+    }
+
+
     /**
      * 获取编码器
      * @param type 类型
      * @return
      */
     public static Serializer getCompiledSerializer(Type type) {
-    	return serializers.get(type);
+    	return compiledSerializers.get(type);
     }
     
     
@@ -500,7 +740,6 @@ public class TransferConfig {
         // 枚举类型
         if (clazz.isEnum()) {
             classInfo = EnumInfo.valueOf(clazz, classId);
-            classInfoMap.put(clazz, classInfo);
         } else {
             final List<FieldInfo> fieldInfos = new ArrayList<FieldInfo>();
             final Map<String, FieldInfo> fieldInfoMap = new HashMap<String, FieldInfo>();
@@ -530,10 +769,11 @@ public class TransferConfig {
             });
 
             classInfo = ClassInfo.valueOf(clazz, classId, fieldInfos, fieldInfoMap);
-            classInfoMap.put(clazz, classInfo);
         }
 
-        return classInfo;
+        // 并发创建时使用先添加的实例
+        ClassInfo oldClassInfo = classInfoMap.putIfAbsent(clazz, classInfo);
+        return oldClassInfo != null ? oldClassInfo : classInfo;
     }
 
 
@@ -563,7 +803,13 @@ public class TransferConfig {
      * @return
      */
     public static Class<?> getClass(int id) {
-        Class<?> result = classIdMap.get(id);
+        Class<?>[] frozenClasses = TransferConfig.frozenClasses;
+        Class<?> result;
+        if (frozenClasses != null) {
+            result = id >= 0 && id < frozenClasses.length ? frozenClasses[id] : null;
+        } else {
+            result = classIdMap.get(id);
+        }
         if (result == null) {
             throw new UnsupportClassException(id);
         }
@@ -594,14 +840,34 @@ public class TransferConfig {
 	}
 
 
+    /**
+     * 设置短字符串驻留缓存大小
+     * <br/>开启后解码时重复出现的短ASCII字符串复用同一实例,默认关闭
+     * @param size 缓存槽数量, 0为关闭
+     * @see transfer.utils.Utf8Utils#setInternCacheSize(int)
+     */
+    public static void setStringInternCacheSize(int size) {
+        Utf8Utils.setInternCacheSize(size);
+    }
+
+
     /**
      * 输出int值
      * @param outputable
      * @param number
      */
     public static void putIntVal(Outputable outputable, Number number) {
+        putIntVal(outputable, number.intValue());
+    }
+
+
+    /**
+     * 输出int值
+     * @param outputable
+     * @param value
+     */
+    public static void putIntVal(Outputable outputable, int value) {
 
-        int value = number.intValue();
         if (value >= 0) {
             outputable.putByte((byte) (Types.NUMBER | FLAG_NOT_NEGATIVE | TransferConfig.VARINT));
         } else {
@@ -619,8 +885,17 @@ public class TransferConfig {
      * @param number
      */
     public static void putLongVal(Outputable outputable, Number number) {
+        putLongVal(outputable, number.longValue());
+    }
+
+
+    /**
+     * 输出long值
+     * @param outputable
+     * @param value
+     */
+    public static void putLongVal(Outputable outputable, long value) {
 
-        long value = number.longValue();
         if (value >= 0) {
             outputable.putByte((byte) (Types.NUMBER | FLAG_NOT_NEGATIVE | TransferConfig.VARLONG));
         } else {
@@ -637,6 +912,7 @@ public class TransferConfig {
         deserializers.put(Types.OBJECT, ObjectDeSerializer.getInstance());
         deserializers.put(Types.ARRAY, ArrayDeSerializer.getInstance());
         deserializers.put(Types.COLLECTION, CollectionDeSerializer.getInstance());
+        deserializers.put(Types.PACKED_ARRAY, PrimitiveArrayDeSerializer.getInstance());
         deserializers.put(Types.BYTE_ARRAY, ByteArrayDeSerializer.getInstance());
         deserializers.put(Types.MAP, MapDeSerializer.getInstance());
         deserializers.put(Types.NULL, NullDeserializer.getInstance());
@@ -659,6 +935,9 @@ public class TransferConfig {
         typedDeserializers.put(ConcurrentSkipListSet.class, CollectionDeSerializer.getInstance());
         typedDeserializers.put(byte[].class, ByteArrayDeSerializer.getInstance());
         typedDeserializers.put(Byte[].class, ByteArrayDeSerializer.getInstance());
+        typedDeserializers.put(int[].class, PrimitiveArrayDeSerializer.getInstance());
+        typedDeserializers.put(long[].class, PrimitiveArrayDeSerializer.getInstance());
+        typedDeserializers.put(short[].class, PrimitiveArrayDeSerializer.getInstance());
         typedDeserializers.put(Map.class, MapDeSerializer.getInstance());
         typedDeserializers.put(HashMap.class, MapDeSerializer.getInstance());
         typedDeserializers.put(ConcurrentHashMap.class, MapDeSerializer.getInstance());
@@ -701,6 +980,9 @@ public class TransferConfig {
         serializers.put(boolean.class, BooleanSerializer.getInstance());
         serializers.put(byte[].class, ByteArraySerializer.getInstance());
         serializers.put(Byte[].class, ByteArraySerializer.getInstance());
+        serializers.put(int[].class, PrimitiveArraySerializer.getPackedInstance());
+        serializers.put(long[].class, PrimitiveArraySerializer.getPackedInstance());
+        serializers.put(short[].class, PrimitiveArraySerializer.getPackedInstance());
         serializers.put(Number.class, NumberSerializer.getInstance());
         serializers.put(short.class, NumberSerializer.getInstance());
         serializers.put(Short.class, NumberSerializer.getInstance());
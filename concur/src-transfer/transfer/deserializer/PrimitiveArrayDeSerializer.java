@@ -0,0 +1,225 @@
+package transfer.deserializer;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import transfer.Inputable;
+import transfer.compile.AsmDeserializerContext;
+import transfer.core.DeserialContext;
+import transfer.def.TransferConfig;
+import transfer.def.Types;
+import transfer.exceptions.CompileError;
+import transfer.exceptions.IllegalTypeException;
+import transfer.utils.BitUtils;
+import transfer.utils.TypeUtils;
+
+import java.lang.reflect.Type;
+
+/**
+ * 基本类型数组解析器(int[] long[] short[])
+ * <br/>读取ArraySerializer格式的数字数组和紧凑格式{@link Types#PACKED_ARRAY},元素直接写入基本类型数组,不经过装箱和解析器查找
+ * <br/>紧凑格式只能解析为基本类型数组,未指定类型时按编码的元素类型解析
+ */
+public class PrimitiveArrayDeSerializer implements Deserializer, Opcodes {
+
+    // 0000 0111 数字类型
+    private static final byte NUMBER_MASK = (byte) 0x07;
+
+    // 0000 1000
+    private static final byte FLAG_NEGATIVE = (byte) 0x08;
+
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T deserialze(Inputable inputable, Type type, byte flag, DeserialContext context) {
+
+        if (type == int[].class) {
+            return (T) getIntArray(inputable, type, flag, context);
+        } else if (type == long[].class) {
+            return (T) getLongArray(inputable, type, flag, context);
+        } else if (type == short[].class) {
+            return (T) getShortArray(inputable, type, flag, context);
+        }
+        if (TransferConfig.getType(flag) == Types.PACKED_ARRAY) {
+            switch (TransferConfig.getExtra(flag)) {
+                case TransferConfig.PACKED_LONG:
+                    return (T) getLongArray(inputable, type, flag, context);
+                case TransferConfig.PACKED_SHORT:
+                    return (T) getShortArray(inputable, type, flag, context);
+                default:
+                    return (T) getIntArray(inputable, type, flag, context);
+            }
+        }
+        return ArrayDeSerializer.getInstance().deserialze(inputable, type, flag, context);
+    }
+
+
+    /**
+     * 读取int数组
+     * @param inputable 输入接口
+     * @param type 类型
+     * @param flag 数组标记
+     * @param context 解码上下文
+     * @return
+     */
+    public static int[] getIntArray(Inputable inputable, Type type, byte flag, DeserialContext context) {
+        int[] array = new int[readSize(inputable, type, flag, context)];
+        if (TransferConfig.getType(flag) == Types.PACKED_ARRAY) {
+            byte extraFlag = TransferConfig.getExtra(flag);
+            for (int i = 0; i < array.length; i++) {
+                array[i] = (int) readPackedVal(inputable, extraFlag);
+            }
+            return array;
+        }
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (int) readLongVal(inputable, type, context);
+        }
+        return array;
+    }
+
+
+    /**
+     * 读取long数组
+     * @param inputable 输入接口
+     * @param type 类型
+     * @param flag 数组标记
+     * @param context 解码上下文
+     * @return
+     */
+    public static long[] getLongArray(Inputable inputable, Type type, byte flag, DeserialContext context) {
+        long[] array = new long[readSize(inputable, type, flag, context)];
+        if (TransferConfig.getType(flag) == Types.PACKED_ARRAY) {
+            byte extraFlag = TransferConfig.getExtra(flag);
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readPackedVal(inputable, extraFlag);
+            }
+            return array;
+        }
+        for (int i = 0; i < array.length; i++) {
+            array[i] = readLongVal(inputable, type, context);
+        }
+        return array;
+    }
+
+
+    /**
+     * 读取short数组
+     * @param inputable 输入接口
+     * @param type 类型
+     * @param flag 数组标记
+     * @param context 解码上下文
+     * @return
+     */
+    public static short[] getShortArray(Inputable inputable, Type type, byte flag, DeserialContext context) {
+        short[] array = new short[readSize(inputable, type, flag, context)];
+        if (TransferConfig.getType(flag) == Types.PACKED_ARRAY) {
+            byte extraFlag = TransferConfig.getExtra(flag);
+            for (int i = 0; i < array.length; i++) {
+                array[i] = (short) readPackedVal(inputable, extraFlag);
+            }
+            return array;
+        }
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (short) readLongVal(inputable, type, context);
+        }
+        return array;
+    }
+
+
+    // 校验数组标记并读取数组大小
+    private static int readSize(Inputable inputable, Type type, byte flag, DeserialContext context) {
+        context.nextStackTrace(type);
+
+        byte typeFlag = TransferConfig.getType(flag);
+        if (typeFlag != Types.ARRAY && typeFlag != Types.COLLECTION && typeFlag != Types.PACKED_ARRAY) {
+            throw new IllegalTypeException(context, typeFlag, Types.ARRAY, type);
+        }
+        return BitUtils.getInt(inputable);
+    }
+
+
+    // 读取紧凑数组元素(zigzag变长整数)
+    private static long readPackedVal(Inputable inputable, byte extraFlag) {
+        if (extraFlag == TransferConfig.PACKED_LONG) {
+            long value = BitUtils.getLong(inputable);
+            return (value >>> 1) ^ -(value & 1);
+        }
+        int value = BitUtils.getInt(inputable);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    // 读取数字元素,空元素为0
+    private static long readLongVal(Inputable inputable, Type type, DeserialContext context) {
+        byte flag = inputable.getByte();
+        if (flag == Types.NULL) {
+            return 0;
+        }
+
+        byte typeFlag = TransferConfig.getType(flag);
+        if (typeFlag != Types.NUMBER) {
+            throw new IllegalTypeException(context, typeFlag, Types.NUMBER, type);
+        }
+
+        byte extraFlag = TransferConfig.getExtra(flag);
+        long value;
+        if ((extraFlag & NUMBER_MASK) == TransferConfig.VARINT) {
+            value = BitUtils.getInt(inputable);
+        } else {
+            value = BitUtils.getLong(inputable);
+        }
+        return (extraFlag & FLAG_NEGATIVE) > 0 ? -value : value;
+    }
+
+
+    @Override
+    public void compile(Type type, MethodVisitor mv,
+            AsmDeserializerContext context) {
+
+        Class<?> arrayClass = TypeUtils.getRawClass(type);
+        String methodName;
+        if (arrayClass == int[].class) {
+            methodName = "getIntArray";
+        } else if (arrayClass == long[].class) {
+            methodName = "getLongArray";
+        } else if (arrayClass == short[].class) {
+            methodName = "getShortArray";
+        } else {
+            throw new CompileError("不支持的预编译类型:" + type);
+        }
+
+        mv.visitCode();
+
+//      if (flag == Types.NULL) {
+//   		return null;
+//  	}
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitInsn(ICONST_1);
+        Label l1 = new Label();
+        mv.visitJumpInsn(IF_ICMPNE, l1);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(l1);
+
+        mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitMethodInsn(INVOKESTATIC, "transfer/deserializer/PrimitiveArrayDeSerializer", methodName,
+                "(Ltransfer/Inputable;Ljava/lang/reflect/Type;BLtransfer/core/DeserialContext;)"
+                        + org.objectweb.asm.Type.getDescriptor(arrayClass), false);
+        mv.visitInsn(ARETURN);
+
+        mv.visitMaxs(4, 5);
+        mv.visitEnd();
+
+    }
+
+    private static final PrimitiveArrayDeSerializer instance = new PrimitiveArrayDeSerializer();
+
+    public static PrimitiveArrayDeSerializer getInstance() {
+        return instance;
+    }
+
+}
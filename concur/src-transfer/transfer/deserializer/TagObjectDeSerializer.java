@@ -1,6 +1,8 @@
 package transfer.deserializer;
 
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import transfer.Inputable;
 import transfer.compile.AsmDeserializerContext;
 import transfer.core.ClassInfo;
@@ -9,20 +11,33 @@ import transfer.core.FieldInfo;
 import transfer.core.ParseStackTrace;
 import transfer.def.PersistConfig;
 import transfer.def.Types;
+import transfer.exceptions.CompileError;
 import transfer.exceptions.IllegalClassTypeException;
 import transfer.exceptions.IllegalTypeException;
 import transfer.exceptions.UnsupportDeserializerTypeException;
+import transfer.serializer.TagObjectSerializer;
 import transfer.utils.BitUtils;
 import transfer.utils.TypeUtils;
+import utils.enhance.asm.util.AsmUtils;
 
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * 带标签的对象解析器
+ * <br/>未知标签的属性按长度跳过,缺少的属性保留构造方法中的默认值
+ * <br/>兼容旧版格式: 声明类型为具体类时按属性顺序解析,否则按属性名标签解析
+ * @see transfer.serializer.TagObjectSerializer
  * Created by Jake on 2015/2/23.
  */
-public class TagObjectDeSerializer implements Deserializer {
+public class TagObjectDeSerializer implements Deserializer, Opcodes {
 
     /**
      * 属性名解析器
@@ -30,24 +45,32 @@ public class TagObjectDeSerializer implements Deserializer {
     private static final ShortStringDeserializer STRING_DESERIALIZER = ShortStringDeserializer.getInstance();
 
 
+    @SuppressWarnings("unchecked")
     @Override
     public <T> T deserialze(Inputable inputable, Type type, byte flag, DeserialContext context) {
 
-        ParseStackTrace stack = context.nextStackTrace(type);
-
         byte typeFlag = PersistConfig.getType(flag);
         if (typeFlag != Types.OBJECT) {
             throw new IllegalTypeException(context, typeFlag, Types.OBJECT, type);
         }
 
-        // 读取对象类型
-        int classId = BitUtils.getInt(inputable);
         Class<?> rawClass = TypeUtils.getRawClass(type);
-        if (type == null 
-        		|| type == Object.class
-        		|| rawClass.isInterface()
-				|| Modifier.isAbstract(rawClass.getModifiers()) && !rawClass.isArray()) {
+        boolean undeclared = type == null
+                || type == Object.class
+                || rawClass.isInterface()
+                || Modifier.isAbstract(rawClass.getModifiers()) && !rawClass.isArray();
+
+        boolean tagged = PersistConfig.getExtra(flag) == TagObjectSerializer.TAGGED;
+        if (!tagged && !undeclared) {
+            // 旧版按属性顺序编码的对象
+            return ObjectDeSerializer.getInstance().deserialze(inputable, type, flag, context);
+        }
 
+        ParseStackTrace stack = context.nextStackTrace(type);
+
+        // 读取对象类型
+        int classId = BitUtils.getInt(inputable);
+        if (undeclared) {
             rawClass = PersistConfig.getClass(classId);
         }
 
@@ -72,7 +95,58 @@ public class TagObjectDeSerializer implements Deserializer {
             throw new IllegalArgumentException("create instane error, class " + rawClass.getName());
         }
 
+        if (tagged) {
+            this.readTaggedFields(inputable, object, classInfo, stack, context);
+        } else {
+            this.readNamedFields(inputable, object, classInfo, stack, context);
+        }
+
+        return (T) object;
+    }
+
+
+    // 按属性标签读取属性
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void readTaggedFields(Inputable inputable, Object object, ClassInfo classInfo,
+                                  ParseStackTrace stack, DeserialContext context) {
+
+        Type fieldType;
+        Object fieldValue;
+        FieldInfo fieldInfo;
+        Deserializer fieldDeserializer;
+
+        // 读取属性数量
+        int fieldNum = BitUtils.getInt(inputable);
+
+        for (int i = 0;i < fieldNum;i++) {
+            stack.setIndex(i);
+
+            int tag = BitUtils.getInt(inputable);
+            int length = BitUtils.getInt(inputable);
+
+            fieldInfo = classInfo.getFieldInfoByTag(tag);
+            if (fieldInfo == null) {// 略过不存在的属性
+                inputable.getByteArray(length);
+                continue;
+            }
+
+            context.next(stack, "field [" + fieldInfo.getName() + "]");
+
+            byte fieldFlag = inputable.getByte();
+            fieldType = fieldInfo.getType();
+
+            fieldDeserializer = PersistConfig.getDeserializer(fieldType, fieldFlag);
+            fieldValue = fieldDeserializer.deserialze(inputable, fieldType, fieldFlag, context);
+
+            fieldInfo.setField(object, fieldValue);
+        }
+    }
+
 
+    // 按属性名读取属性(旧版格式)
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void readNamedFields(Inputable inputable, Object object, ClassInfo classInfo,
+                                 ParseStackTrace stack, DeserialContext context) {
 
         Type fieldType;
         String fieldName;
@@ -84,13 +158,13 @@ public class TagObjectDeSerializer implements Deserializer {
         int fieldNum = BitUtils.getInt(inputable);
 
         for (int i = 0;i < fieldNum;i++) {
-            stack.setIndex(fieldNum);
+            stack.setIndex(i);
             context.next(stack, "field name", String.class);
 
             fieldName = STRING_DESERIALIZER.deserialze(inputable, String.class, inputable.getByte(), context);
             fieldInfo = classInfo.getFieldInfo(fieldName);
 
-            context.next(stack, "field [" + fieldInfo != null?fieldInfo.getName():"" + "]");
+            context.next(stack, "field [" + (fieldInfo != null ? fieldInfo.getName() : fieldName) + "]");
 
             byte fieldFlag = inputable.getByte();
             fieldType = fieldInfo != null ? fieldInfo.getType() : Object.class;
@@ -101,19 +175,243 @@ public class TagObjectDeSerializer implements Deserializer {
             if (fieldInfo == null) {// 略过不存在的属性
                 continue;
             }
-            
-            fieldInfo.setField(object, fieldValue);
 
+            fieldInfo.setField(object, fieldValue);
         }
-
-        return (T) object;
     }
 
     
+    @SuppressWarnings("rawtypes")
     @Override
-	public void compile(Type type, MethodVisitor mw,
+	public void compile(Type type, MethodVisitor mv,
 			AsmDeserializerContext context) {
-    	
+
+        Class<?> rawClass;
+        if (type == null || type == Object.class) {
+            throw new CompileError("不支持编译类型:" + type);
+        } else {
+            rawClass = TypeUtils.getRawClass(type);
+        }
+
+        if (rawClass == null || rawClass == Object.class) {
+            throw new CompileError("不支持编译类型:" + type);
+        }
+
+        ClassInfo classInfo = PersistConfig.getOrCreateClassInfo(rawClass);
+        if (classInfo == null) {
+            throw new UnsupportDeserializerTypeException(rawClass);
+        }
+
+        // 按标签排序,用于lookupswitch
+        List<FieldInfo> fieldInfos = new ArrayList<FieldInfo>(classInfo.getFieldInfos());
+        Collections.sort(fieldInfos, new Comparator<FieldInfo>() {
+            @Override
+            public int compare(FieldInfo o1, FieldInfo o2) {
+                return o1.getTag() < o2.getTag() ? -1 : (o1.getTag() == o2.getTag() ? 0 : 1);
+            }
+        });
+
+        mv.visitCode();
+
+//      if (flag == Types.NULL) {
+//   		return null;
+//  	}
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitInsn(ICONST_1);
+        Label l1 = new Label();
+        mv.visitJumpInsn(IF_ICMPNE, l1);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(l1);
+
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitMethodInsn(INVOKESTATIC, "transfer/def/PersistConfig", "getType", "(B)B", false);
+        mv.visitVarInsn(ISTORE, 5);
+
+        mv.visitVarInsn(ILOAD, 5);
+        mv.visitIntInsn(BIPUSH, Types.OBJECT);
+        Label l2 = new Label();
+        mv.visitJumpInsn(IF_ICMPEQ, l2);
+        mv.visitTypeInsn(NEW, "transfer/exceptions/IllegalTypeException");
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitVarInsn(ILOAD, 5);
+        mv.visitIntInsn(BIPUSH, Types.OBJECT);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKESPECIAL, "transfer/exceptions/IllegalTypeException", "<init>", "(Ltransfer/core/DeserialContext;BBLjava/lang/reflect/Type;)V", false);
+        mv.visitInsn(ATHROW);
+        mv.visitLabel(l2);
+
+        // 旧版格式使用运行时解析
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitMethodInsn(INVOKESTATIC, "transfer/def/PersistConfig", "getExtra", "(B)B", false);
+        mv.visitInsn(ICONST_0 + TagObjectSerializer.TAGGED);
+        Label l3 = new Label();
+        mv.visitJumpInsn(IF_ICMPEQ, l3);
+        mv.visitMethodInsn(INVOKESTATIC, "transfer/deserializer/TagObjectDeSerializer", "getInstance", "()Ltransfer/deserializer/TagObjectDeSerializer;", false);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "transfer/deserializer/TagObjectDeSerializer", "deserialze", "(Ltransfer/Inputable;Ljava/lang/reflect/Type;BLtransfer/core/DeserialContext;)Ljava/lang/Object;", false);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(l3);
+
+        // 校验类Id
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESTATIC, "transfer/utils/BitUtils", "getInt", "(Ltransfer/Inputable;)I", false);
+        mv.visitVarInsn(ISTORE, 6);
+
+        mv.visitVarInsn(ILOAD, 6);
+        mv.visitLdcInsn(Integer.valueOf(classInfo.getClassId()));
+        Label l4 = new Label();
+        mv.visitJumpInsn(IF_ICMPEQ, l4);
+        mv.visitTypeInsn(NEW, "transfer/exceptions/IllegalClassTypeException");
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitVarInsn(ILOAD, 6);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKESPECIAL, "transfer/exceptions/IllegalClassTypeException", "<init>", "(Ltransfer/core/DeserialContext;ILjava/lang/reflect/Type;)V", false);
+        mv.visitInsn(ATHROW);
+        mv.visitLabel(l4);
+
+        // new Entity()
+        mv.visitTypeInsn(NEW, AsmUtils.toAsmCls(rawClass.getName()));
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, AsmUtils.toAsmCls(rawClass.getName()), "<init>", "()V", false);
+        mv.visitVarInsn(ASTORE, 7);
+
+        // 属性数量
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESTATIC, "transfer/utils/BitUtils", "getInt", "(Ltransfer/Inputable;)I", false);
+        mv.visitVarInsn(ISTORE, 8);
+
+        // for (int i = 0;i < fieldNum;i++)
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 9);
+        Label loopCond = new Label();
+        Label loopNext = new Label();
+        Label loopEnd = new Label();
+        mv.visitLabel(loopCond);
+        mv.visitVarInsn(ILOAD, 9);
+        mv.visitVarInsn(ILOAD, 8);
+        mv.visitJumpInsn(IF_ICMPGE, loopEnd);
+
+        // 属性标签和值长度
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESTATIC, "transfer/utils/BitUtils", "getInt", "(Ltransfer/Inputable;)I", false);
+        mv.visitVarInsn(ISTORE, 10);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESTATIC, "transfer/utils/BitUtils", "getInt", "(Ltransfer/Inputable;)I", false);
+        mv.visitVarInsn(ISTORE, 11);
+
+        int[] tags = new int[fieldInfos.size()];
+        Label[] caseLabels = new Label[fieldInfos.size()];
+        for (int i = 0;i < tags.length;i++) {
+            tags[i] = fieldInfos.get(i).getTag();
+            caseLabels[i] = new Label();
+        }
+        Label skipLabel = new Label();
+
+        mv.visitVarInsn(ILOAD, 10);
+        mv.visitLookupSwitchInsn(skipLabel, tags, caseLabels);
+
+        Type fieldType;
+        Deserializer fieldDeserializer;
+        for (int i = 0;i < tags.length;i++) {
+            FieldInfo fieldInfo = fieldInfos.get(i);
+            fieldType = fieldInfo.getType();
+
+            mv.visitLabel(caseLabels[i]);
+
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEINTERFACE, "transfer/Inputable", "getByte", "()B", true);
+            mv.visitVarInsn(ISTORE, 12);
+
+            Class<?> fieldRawClass = TypeUtils.getRawClass(fieldType);
+            if (fieldType == null || fieldType == Object.class
+                    || fieldRawClass.isInterface()
+                    || Modifier.isAbstract(fieldRawClass.getModifiers())
+                    && !fieldRawClass.isArray()
+                    && !fieldRawClass.isPrimitive()) {// 使用默认解析器
+
+                mv.visitLdcInsn(org.objectweb.asm.Type.getType(Object.class));
+                mv.visitVarInsn(ILOAD, 12);
+                mv.visitMethodInsn(INVOKESTATIC, "transfer/def/PersistConfig", "getDeserializer", "(Ljava/lang/reflect/Type;B)Ltransfer/deserializer/Deserializer;", false);
+
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitLdcInsn(org.objectweb.asm.Type.getType(Object.class));
+                mv.visitVarInsn(ILOAD, 12);
+                mv.visitVarInsn(ALOAD, 4);
+                mv.visitMethodInsn(INVOKEINTERFACE, "transfer/deserializer/Deserializer", "deserialze", "(Ltransfer/Inputable;Ljava/lang/reflect/Type;BLtransfer/core/DeserialContext;)Ljava/lang/Object;", true);
+
+            } else {
+
+                // 使用预编译解析方法
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 1);
+                if (fieldRawClass.isPrimitive()) {
+                    AsmUtils.loadPrimitiveType(mv, fieldRawClass);
+                } else {
+                    mv.visitLdcInsn(org.objectweb.asm.Type.getType(fieldRawClass));
+                }
+                mv.visitVarInsn(ILOAD, 12);
+                mv.visitVarInsn(ALOAD, 4);
+
+                fieldDeserializer = PersistConfig.getDeserializer(fieldType, Types.UNKOWN);
+                // 执行属性预编译
+                MethodVisitor mv1 = context.invokeNextDeserialize(fieldInfo.getFieldName(), mv);
+                fieldDeserializer.compile(fieldType, mv1, context);
+            }
+            mv.visitVarInsn(ASTORE, 13);
+
+            // 设置属性
+            PropertyDescriptor propertyDescriptor;
+            try {
+                propertyDescriptor = new PropertyDescriptor(fieldInfo.getFieldName(), rawClass);
+            } catch (IntrospectionException e) {
+                throw new CompileError(e);
+            }
+
+            //获取set方法
+            final Method setMethod = propertyDescriptor.getWriteMethod();
+            final org.objectweb.asm.Type[] mat = org.objectweb.asm.Type.getArgumentTypes(setMethod);
+            final Class<?>[] mpt = setMethod.getParameterTypes();
+            final org.objectweb.asm.Type mrt = org.objectweb.asm.Type.getType(setMethod);
+
+            mv.visitVarInsn(ALOAD, 7);
+            mv.visitVarInsn(ALOAD, 13);
+
+            if (mpt[0].isPrimitive()) {
+                // unBoxing
+                AsmUtils.withUnBoxingType(mv, mat[0]);
+            } else if(mpt[0] != Object.class) {
+                mv.visitTypeInsn(CHECKCAST, AsmUtils.toAsmCls(mpt[0].getName()));
+            }
+
+            mv.visitMethodInsn(INVOKEVIRTUAL,
+                    AsmUtils.toAsmCls(rawClass.getName()), setMethod.getName(),
+                    mrt.toString(), false);
+            mv.visitJumpInsn(GOTO, loopNext);
+        }
+
+        // 略过不存在的属性
+        mv.visitLabel(skipLabel);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ILOAD, 11);
+        mv.visitMethodInsn(INVOKEINTERFACE, "transfer/Inputable", "getByteArray", "(I)Ltransfer/ByteArray;", true);
+        mv.visitInsn(POP);
+
+        mv.visitLabel(loopNext);
+        mv.visitIincInsn(9, 1);
+        mv.visitJumpInsn(GOTO, loopCond);
+
+        mv.visitLabel(loopEnd);
+        mv.visitVarInsn(ALOAD, 7);
+        mv.visitInsn(ARETURN);
+
+        mv.visitMaxs(6, 14);
+        mv.visitEnd();
 	}
 
     private static final TagObjectDeSerializer instance = new TagObjectDeSerializer();
@@ -0,0 +1,16 @@
+package transfer.exceptions;
+
+import java.io.IOException;
+
+/**
+ * 写入输出流失败
+ */
+public class OutputStreamException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OutputStreamException(IOException cause) {
+        super(cause);
+    }
+
+}
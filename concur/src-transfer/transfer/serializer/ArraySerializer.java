@@ -37,9 +37,16 @@ public class ArraySerializer implements Serializer, Opcodes {
 		// 设置数组大小
 		BitUtils.putInt(outputable, length);
 		
+		// 相邻元素类型相同时复用编码器
+		Object[] objects = object instanceof Object[] ? (Object[]) object : null;
+		Class<?> elementClass = null;
+		Serializer elementSerializer = null;
 	    for (int i = 0; i < length; i ++) {
-	        Object obj = Array.get(object, i);
-			Serializer elementSerializer = TransferConfig.getSerializer(obj.getClass());
+	        Object obj = objects != null ? objects[i] : Array.get(object, i);
+			if (obj.getClass() != elementClass) {
+				elementClass = obj.getClass();
+				elementSerializer = TransferConfig.getSerializer(elementClass);
+			}
 			elementSerializer.serialze(outputable, obj, context);
 		}
 
@@ -37,8 +37,14 @@ public class CollectionSerializer implements Serializer, Opcodes {
 		// 设置集合大小
 		BitUtils.putInt(outputable, collection.size());
 
+		// 相邻元素类型相同时复用编码器(如List<Integer>)
+		Class<?> elementClass = null;
+		Serializer elementSerializer = null;
 		for (Object element : collection) {
-			Serializer elementSerializer = TransferConfig.getSerializer(element.getClass());
+			if (element.getClass() != elementClass) {
+				elementClass = element.getClass();
+				elementSerializer = TransferConfig.getSerializer(elementClass);
+			}
 			elementSerializer.serialze(outputable, element, context);
 		}
 
@@ -0,0 +1,204 @@
+package transfer.serializer;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import transfer.Outputable;
+import transfer.compile.AsmSerializerContext;
+import transfer.core.SerialContext;
+import transfer.def.TransferConfig;
+import transfer.def.Types;
+import transfer.exceptions.CompileError;
+import transfer.utils.BitUtils;
+import transfer.utils.TypeUtils;
+
+import java.lang.reflect.Type;
+
+/**
+ * 基本类型数组编码器(int[] long[] short[])
+ * <br/>{@link #getInstance()}与ArraySerializer输出相同的字节格式,循环中直接写入元素,不经过装箱和编码器查找,用于Persist
+ * <br/>{@link #getPackedInstance()}输出紧凑格式{@link Types#PACKED_ARRAY}:元素使用zigzag变长整数,不带类型标记,用于Transfer
+ */
+public class PrimitiveArraySerializer implements Serializer, Opcodes {
+
+	/** 是否输出紧凑格式 */
+	private final boolean packed;
+
+	private PrimitiveArraySerializer(boolean packed) {
+		this.packed = packed;
+	}
+
+	@Override
+	public void serialze(Outputable outputable, Object object,
+			SerialContext context) {
+
+		if (object == null) {
+			NULL_SERIALIZER.serialze(outputable, null, context);
+			return;
+		}
+
+		if (this.packed) {
+			if (object instanceof int[]) {
+				putPackedIntArray(outputable, (int[]) object);
+			} else if (object instanceof long[]) {
+				putPackedLongArray(outputable, (long[]) object);
+			} else if (object instanceof short[]) {
+				putPackedShortArray(outputable, (short[]) object);
+			} else {
+				ArraySerializer.getInstance().serialze(outputable, object, context);
+			}
+		} else if (object instanceof int[]) {
+			putIntArray(outputable, (int[]) object);
+		} else if (object instanceof long[]) {
+			putLongArray(outputable, (long[]) object);
+		} else if (object instanceof short[]) {
+			putShortArray(outputable, (short[]) object);
+		} else {
+			ArraySerializer.getInstance().serialze(outputable, object, context);
+		}
+	}
+
+
+	/**
+	 * 输出int数组
+	 * @param outputable
+	 * @param array
+	 */
+	public static void putIntArray(Outputable outputable, int[] array) {
+		outputable.putByte(Types.ARRAY);
+		BitUtils.putInt(outputable, array.length);
+		for (int i = 0; i < array.length; i++) {
+			TransferConfig.putIntVal(outputable, array[i]);
+		}
+	}
+
+
+	/**
+	 * 输出long数组
+	 * @param outputable
+	 * @param array
+	 */
+	public static void putLongArray(Outputable outputable, long[] array) {
+		outputable.putByte(Types.ARRAY);
+		BitUtils.putInt(outputable, array.length);
+		for (int i = 0; i < array.length; i++) {
+			TransferConfig.putLongVal(outputable, array[i]);
+		}
+	}
+
+
+	/**
+	 * 输出short数组
+	 * @param outputable
+	 * @param array
+	 */
+	public static void putShortArray(Outputable outputable, short[] array) {
+		outputable.putByte(Types.ARRAY);
+		BitUtils.putInt(outputable, array.length);
+		for (int i = 0; i < array.length; i++) {
+			TransferConfig.putIntVal(outputable, array[i]);
+		}
+	}
+
+
+	/**
+	 * 输出紧凑格式的int数组
+	 * @param outputable
+	 * @param array
+	 */
+	public static void putPackedIntArray(Outputable outputable, int[] array) {
+		outputable.putByte((byte) (Types.PACKED_ARRAY | TransferConfig.PACKED_INT));
+		BitUtils.putInt(outputable, array.length);
+		for (int i = 0; i < array.length; i++) {
+			BitUtils.putInt(outputable, (array[i] << 1) ^ (array[i] >> 31));
+		}
+	}
+
+
+	/**
+	 * 输出紧凑格式的long数组
+	 * @param outputable
+	 * @param array
+	 */
+	public static void putPackedLongArray(Outputable outputable, long[] array) {
+		outputable.putByte((byte) (Types.PACKED_ARRAY | TransferConfig.PACKED_LONG));
+		BitUtils.putInt(outputable, array.length);
+		for (int i = 0; i < array.length; i++) {
+			BitUtils.putLong(outputable, (array[i] << 1) ^ (array[i] >> 63));
+		}
+	}
+
+
+	/**
+	 * 输出紧凑格式的short数组
+	 * @param outputable
+	 * @param array
+	 */
+	public static void putPackedShortArray(Outputable outputable, short[] array) {
+		outputable.putByte((byte) (Types.PACKED_ARRAY | TransferConfig.PACKED_SHORT));
+		BitUtils.putInt(outputable, array.length);
+		for (int i = 0; i < array.length; i++) {
+			BitUtils.putInt(outputable, (array[i] << 1) ^ (array[i] >> 31));
+		}
+	}
+
+
+	@Override
+	public void compile(Type type, MethodVisitor mv,
+			AsmSerializerContext context) {
+
+		Class<?> arrayClass = TypeUtils.getRawClass(type);
+		String methodName;
+		if (arrayClass == int[].class) {
+			methodName = this.packed ? "putPackedIntArray" : "putIntArray";
+		} else if (arrayClass == long[].class) {
+			methodName = this.packed ? "putPackedLongArray" : "putLongArray";
+		} else if (arrayClass == short[].class) {
+			methodName = this.packed ? "putPackedShortArray" : "putShortArray";
+		} else {
+			throw new CompileError("不支持的预编译类型:" + type);
+		}
+		String arrayDesc = org.objectweb.asm.Type.getDescriptor(arrayClass);
+
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 2);
+		Label l1 = new Label();
+		mv.visitJumpInsn(IFNONNULL, l1);
+
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitInsn(ICONST_1);
+		mv.visitMethodInsn(INVOKEINTERFACE, "transfer/Outputable", "putByte",
+				"(B)V", true);
+
+		mv.visitInsn(RETURN);
+		mv.visitLabel(l1);
+
+		mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitTypeInsn(CHECKCAST, arrayDesc);
+		mv.visitMethodInsn(INVOKESTATIC, "transfer/serializer/PrimitiveArraySerializer", methodName,
+				"(Ltransfer/Outputable;" + arrayDesc + ")V", false);
+
+		mv.visitInsn(RETURN);
+
+		mv.visitMaxs(2, 4);
+		mv.visitEnd();
+
+	}
+
+	private static final PrimitiveArraySerializer instance = new PrimitiveArraySerializer(false);
+
+	private static final PrimitiveArraySerializer packedInstance = new PrimitiveArraySerializer(true);
+
+	public static PrimitiveArraySerializer getInstance() {
+		return instance;
+	}
+
+	public static PrimitiveArraySerializer getPackedInstance() {
+		return packedInstance;
+	}
+
+}
@@ -1,6 +1,8 @@
 package transfer.serializer;
 
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import transfer.ByteBuffer;
 import transfer.Outputable;
 import transfer.compile.AsmSerializerContext;
 import transfer.core.ClassInfo;
@@ -14,13 +16,29 @@ import transfer.utils.TypeUtils;
 import java.lang.reflect.Type;
 
 /**
- * 带标签的对象编码器 Created by Jake on 2015/2/23.
+ * 带标签的对象编码器
+ * <br/>格式: OBJECT|TAGGED, 类Id, 属性个数, [属性标签, 值长度, 属性值]...
+ * <br/>属性值带长度前缀,解码时可跳过未知标签的属性
+ * @see transfer.anno.Tag
+ * Created by Jake on 2015/2/23.
  */
-public class TagObjectSerializer implements Serializer {
+public class TagObjectSerializer implements Serializer, Opcodes {
 
-	// 标签编码器
-	private static final ShortStringSerializer STRING_SERIALIZER = ShortStringSerializer
-			.getInstance();
+	/**
+	 * 带标签格式的附加信息
+	 * <br/>旧版格式为0
+	 */
+	public static final byte TAGGED = 0x01;
+
+	/**
+	 * 属性值缓冲栈,嵌套对象每层使用一个缓冲
+	 */
+	private static final ThreadLocal<FieldBufferStack> LOCAL_FIELD_BUFFERS = new ThreadLocal<FieldBufferStack>() {
+		@Override
+		protected FieldBufferStack initialValue() {
+			return new FieldBufferStack();
+		}
+	};
 
 	@Override
 	public void serialze(Outputable outputable, Object object,
@@ -33,31 +51,88 @@ public class TagObjectSerializer implements Serializer {
 
 		Class<?> clazz = object.getClass();
 		ClassInfo classInfo = PersistConfig.getOrCreateClassInfo(clazz);
-		outputable.putByte(Types.OBJECT);
+		outputable.putByte((byte) (Types.OBJECT | TAGGED));
 
 		// 添加类Id
 		BitUtils.putInt(outputable, classInfo.getClassId());
 		// 添加属性个数
 		BitUtils.putInt(outputable, classInfo.getFieldInfos().size());
-		for (FieldInfo fieldInfo : classInfo.getFieldInfos()) {
-			// 添加属性标签
-			STRING_SERIALIZER.serialze(outputable, fieldInfo.getFieldName(), context);
-			// 序列化属性值
-			Serializer fieldSerializer = PersistConfig.getSerializer(TypeUtils.getRawClass(fieldInfo.getType()));
 
-			Object fieldValue = fieldInfo.getField(object);
-			fieldSerializer.serialze(outputable, fieldValue, context);
+		FieldBufferStack bufferStack = LOCAL_FIELD_BUFFERS.get();
+		ByteBuffer fieldBuffer = bufferStack.push();
+		try {
+			for (FieldInfo fieldInfo : classInfo.getFieldInfos()) {
+				// 添加属性标签
+				BitUtils.putInt(outputable, fieldInfo.getTag());
 
+				// 序列化属性值
+				Serializer fieldSerializer = PersistConfig.getSerializer(TypeUtils.getRawClass(fieldInfo.getType()));
+				Object fieldValue = fieldInfo.getField(object);
+				fieldSerializer.serialze(fieldBuffer, fieldValue, context);
+
+				// 添加值长度和属性值
+				BitUtils.putInt(outputable, fieldBuffer.length());
+				fieldBuffer.writeTo(outputable);
+				fieldBuffer.reset();
+			}
+		} finally {
+			bufferStack.pop();
 		}
 
 	}
 
 	@Override
-	public void compile(Type type, MethodVisitor mw,
+	public void compile(Type type, MethodVisitor mv,
 			AsmSerializerContext context) {
 
+		// 属性值需先写入缓冲才能得到长度,直接调用运行时编码
+		mv.visitCode();
+		mv.visitMethodInsn(INVOKESTATIC, "transfer/serializer/TagObjectSerializer", "getInstance",
+				"()Ltransfer/serializer/TagObjectSerializer;", false);
+		mv.visitVarInsn(ALOAD, 1);
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitVarInsn(ALOAD, 3);
+		mv.visitMethodInsn(INVOKEVIRTUAL, "transfer/serializer/TagObjectSerializer", "serialze",
+				"(Ltransfer/Outputable;Ljava/lang/Object;Ltransfer/core/SerialContext;)V", false);
+		mv.visitInsn(RETURN);
+
+		mv.visitMaxs(4, 4);
+		mv.visitEnd();
 	}
 
+
+	/**
+	 * 属性值缓冲栈
+	 */
+	private static class FieldBufferStack {
+
+		private ByteBuffer[] buffers = new ByteBuffer[4];
+
+		private int depth;
+
+		// 进入下一层对象
+		ByteBuffer push() {
+			if (depth == buffers.length) {
+				ByteBuffer[] newBuffers = new ByteBuffer[depth << 1];
+				System.arraycopy(buffers, 0, newBuffers, 0, depth);
+				buffers = newBuffers;
+			}
+			ByteBuffer buffer = buffers[depth];
+			if (buffer == null) {
+				buffer = buffers[depth] = new ByteBuffer();
+			}
+			depth++;
+			return buffer;
+		}
+
+		// 返回上一层对象
+		void pop() {
+			buffers[--depth].reset();
+		}
+
+	}
+
+
 	private static final TagObjectSerializer instance = new TagObjectSerializer();
 
 	public static TagObjectSerializer getInstance() {
@@ -0,0 +1,108 @@
+package transfer.test;
+
+import org.junit.Assert;
+import transfer.ByteArray;
+import transfer.ByteBuffer;
+import transfer.Transfer;
+import transfer.core.DeserialContext;
+import transfer.core.SerialContext;
+import transfer.def.TransferConfig;
+import transfer.def.Types;
+import transfer.deserializer.Deserializer;
+import transfer.serializer.PrimitiveArraySerializer;
+
+/**
+ * Transfer基本类型数组的紧凑格式
+ * <br/>int[] long[] short[]按zigzag变长整数紧凑编码,旧的逐元素编码的数据仍可解码
+ */
+public class TestPackedArray {
+
+    public static class ArrayEntity {
+
+        private int[] ints;
+
+        private long[] longs;
+
+        private short[] shorts;
+
+        public int[] getInts() {
+            return ints;
+        }
+
+        public void setInts(int[] ints) {
+            this.ints = ints;
+        }
+
+        public long[] getLongs() {
+            return longs;
+        }
+
+        public void setLongs(long[] longs) {
+            this.longs = longs;
+        }
+
+        public short[] getShorts() {
+            return shorts;
+        }
+
+        public void setShorts(short[] shorts) {
+            this.shorts = shorts;
+        }
+    }
+
+
+    public static void main(String[] args) {
+        TransferConfig.registerClass(ArrayEntity.class, 21);
+
+        int[] ints = { 0, 1, -1, 63, -64, 1000, Integer.MAX_VALUE, Integer.MIN_VALUE };
+        long[] longs = { 0L, -2L, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE };
+        short[] shorts = { 0, -1, Short.MAX_VALUE, Short.MIN_VALUE };
+
+        // 紧凑格式
+        byte[] bytes = Transfer.encode(ints).toBytes();
+        Assert.assertEquals((byte) (Types.PACKED_ARRAY | TransferConfig.PACKED_INT), bytes[0]);
+        Assert.assertArrayEquals(ints, Transfer.decode(bytes, int[].class));
+        Assert.assertArrayEquals(longs, Transfer.decode(Transfer.encode(longs).toBytes(), long[].class));
+        Assert.assertArrayEquals(shorts, Transfer.decode(Transfer.encode(shorts).toBytes(), short[].class));
+
+        // 小数值每个元素1字节,不带类型标记
+        Assert.assertEquals(2 + 4, Transfer.encode(new int[] { 1, -1, 2, -2 }).toBytes().length);
+
+        // 未指定类型时按元素类型解析
+        Assert.assertArrayEquals(longs, (long[]) Transfer.decode(new ByteArray(Transfer.encode(longs).toBytes())));
+
+        // 旧的逐元素编码的数据
+        ByteBuffer buffer = new ByteBuffer();
+        PrimitiveArraySerializer.getInstance().serialze(buffer, ints, new SerialContext());
+        Assert.assertArrayEquals(ints, Transfer.decode(buffer.toBytes(), int[].class));
+
+        // 实体属性,运行时与预编译
+        ArrayEntity entity = new ArrayEntity();
+        entity.setInts(ints);
+        entity.setLongs(longs);
+        entity.setShorts(shorts);
+        bytes = Transfer.encode(entity).toBytes();
+        assertEntity(Transfer.decode(bytes, ArrayEntity.class));
+
+        buffer = new ByteBuffer();
+        TransferConfig.preCompileSerializer(ArrayEntity.class).serialze(buffer, entity, new SerialContext());
+        Assert.assertArrayEquals(bytes, buffer.toBytes());
+
+        Deserializer deserializer = TransferConfig.preCompileDeserializer(ArrayEntity.class);
+        ByteArray byteArray = new ByteArray(bytes);
+        byte flag = byteArray.getByte();
+        ArrayEntity compiled = deserializer.deserialze(byteArray, ArrayEntity.class, flag, new DeserialContext());
+        assertEntity(compiled);
+        Assert.assertEquals(bytes.length, byteArray.getCurIndex());
+
+        System.out.println("OK");
+    }
+
+
+    private static void assertEntity(ArrayEntity entity) {
+        Assert.assertArrayEquals(new int[] { 0, 1, -1, 63, -64, 1000, Integer.MAX_VALUE, Integer.MIN_VALUE }, entity.getInts());
+        Assert.assertArrayEquals(new long[] { 0L, -2L, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE }, entity.getLongs());
+        Assert.assertArrayEquals(new short[] { 0, -1, Short.MAX_VALUE, Short.MIN_VALUE }, entity.getShorts());
+    }
+
+}
@@ -0,0 +1,243 @@
+package transfer.test;
+
+import org.junit.Assert;
+import transfer.ByteArray;
+import transfer.ByteBuffer;
+import transfer.Persister;
+import transfer.anno.Tag;
+import transfer.core.DeserialContext;
+import transfer.core.SerialContext;
+import transfer.def.PersistConfig;
+import transfer.def.TransferConfig;
+import transfer.deserializer.Deserializer;
+import transfer.serializer.ObjectSerializer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Persister带标签的对象格式
+ * <br/>旧的按位置编码的数据仍可解码;按标签解码时新增属性保持默认值,删除的属性被跳过
+ */
+public class TestTaggedPersister {
+
+    public static class Inner {
+
+        @Tag(1)
+        private int x;
+
+        @Tag(2)
+        private String s;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public String getS() {
+            return s;
+        }
+
+        public void setS(String s) {
+            this.s = s;
+        }
+    }
+
+
+    /** 第一个版本 */
+    public static class EntityV1 {
+
+        @Tag(1)
+        private int id;
+
+        @Tag(2)
+        private String name;
+
+        @Tag(3)
+        private long removed;
+
+        @Tag(4)
+        private Inner inner;
+
+        private List<Integer> list;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public long getRemoved() {
+            return removed;
+        }
+
+        public void setRemoved(long removed) {
+            this.removed = removed;
+        }
+
+        public Inner getInner() {
+            return inner;
+        }
+
+        public void setInner(Inner inner) {
+            this.inner = inner;
+        }
+
+        public List<Integer> getList() {
+            return list;
+        }
+
+        public void setList(List<Integer> list) {
+            this.list = list;
+        }
+    }
+
+
+    /** 第二个版本: 删除了标签3,标签2改名,新增标签9 */
+    public static class EntityV2 {
+
+        @Tag(1)
+        private int id;
+
+        @Tag(2)
+        private String title;
+
+        @Tag(4)
+        private Inner inner;
+
+        @Tag(9)
+        private int added = 77;
+
+        private List<Integer> list;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public Inner getInner() {
+            return inner;
+        }
+
+        public void setInner(Inner inner) {
+            this.inner = inner;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public void setAdded(int added) {
+            this.added = added;
+        }
+
+        public List<Integer> getList() {
+            return list;
+        }
+
+        public void setList(List<Integer> list) {
+            this.list = list;
+        }
+    }
+
+
+    public static void main(String[] args) {
+        PersistConfig.registerClass(Inner.class, 11);
+        PersistConfig.registerClass(EntityV1.class, 10);
+
+        Inner inner = new Inner();
+        inner.setX(-3);
+        inner.setS("in");
+
+        EntityV1 entity = new EntityV1();
+        entity.setId(5);
+        entity.setName("hello");
+        entity.setRemoved(123456789L);
+        entity.setInner(inner);
+        entity.setList(Arrays.asList(1, 2, 3));
+        byte[] bytes = Persister.encode(entity).toBytes();
+
+        // 同版本解码
+        EntityV1 v1 = Persister.decode(bytes, EntityV1.class);
+        Assert.assertEquals(5, v1.getId());
+        Assert.assertEquals("hello", v1.getName());
+        Assert.assertEquals(123456789L, v1.getRemoved());
+        Assert.assertEquals(-3, v1.getInner().getX());
+        Assert.assertEquals(Arrays.asList(1, 2, 3), v1.getList());
+
+        v1 = decodeCompiled(bytes, EntityV1.class);
+        Assert.assertEquals("hello", v1.getName());
+        Assert.assertEquals("in", v1.getInner().getS());
+
+        // 预编译编码与运行时编码结果一致
+        ByteBuffer buffer = new ByteBuffer();
+        PersistConfig.preCompileSerializer(EntityV1.class).serialze(buffer, entity, new SerialContext());
+        Assert.assertArrayEquals(bytes, buffer.toBytes());
+
+        // 新版本解码旧数据
+        PersistConfig.registerClass(EntityV2.class, 10);
+        EntityV2 v2 = Persister.decode(bytes, EntityV2.class);
+        assertEvolved(v2);
+        assertEvolved(decodeCompiled(bytes, EntityV2.class));
+
+        // 旧的按位置编码的数据
+        TransferConfig.registerClass(Inner.class, 11);
+        buffer = new ByteBuffer();
+        ObjectSerializer.getInstance().serialze(buffer, inner, new SerialContext());
+        byte[] legacyBytes = buffer.toBytes();
+
+        Inner legacy = Persister.decode(legacyBytes, Inner.class);
+        Assert.assertEquals(-3, legacy.getX());
+        Assert.assertEquals("in", legacy.getS());
+
+        legacy = decodeCompiled(legacyBytes, Inner.class);
+        Assert.assertEquals(-3, legacy.getX());
+        Assert.assertEquals("in", legacy.getS());
+
+        System.out.println("OK");
+    }
+
+
+    private static void assertEvolved(EntityV2 v2) {
+        Assert.assertEquals(5, v2.getId());
+        Assert.assertEquals("hello", v2.getTitle());
+        Assert.assertEquals(77, v2.getAdded());
+        Assert.assertEquals("in", v2.getInner().getS());
+        Assert.assertEquals(3, v2.getList().size());
+    }
+
+    // 使用预编译解码器解码
+    private static <T> T decodeCompiled(byte[] bytes, Class<T> clazz) {
+        Deserializer deserializer = PersistConfig.preCompileDeserializer(clazz);
+        ByteArray byteArray = new ByteArray(bytes);
+        byte flag = byteArray.getByte();
+        T result = deserializer.deserialze(byteArray, clazz, flag, new DeserialContext());
+        Assert.assertEquals(bytes.length, byteArray.getCurIndex());
+        return result;
+    }
+
+}
@@ -0,0 +1,138 @@
+package transfer.utils;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import transfer.ByteArray;
+import transfer.Inputable;
+import transfer.def.CompressMode;
+import transfer.def.PersistConfig;
+import transfer.def.Types;
+
+/**
+ * 存储压缩工具
+ * <br/>使用纯Java的LZ4实现,不依赖本地库
+ */
+public class CompressUtils {
+
+    /**
+     * 帧头最大长度
+     */
+    private static final int HEAD_MAX_LENGTH = 11;
+
+    /**
+     * 纯Java实现的LZ4
+     */
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.safeInstance();
+
+    private static final LZ4Compressor LZ4_COMPRESSOR = LZ4_FACTORY.fastCompressor();
+
+    private static final LZ4FastDecompressor LZ4_DECOMPRESSOR = LZ4_FACTORY.fastDecompressor();
+
+
+    /**
+     * 压缩
+     * <br/>长度小于PersistConfig#getCompressThreshold()或压缩后没有变小时返回原字节
+     * @param bytes 字节数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @param compressMode 压缩方式
+     * @return 压缩帧或原字节
+     */
+    public static byte[] compress(byte[] bytes, int offset, int length, CompressMode compressMode) {
+
+        if (compressMode == null || compressMode == CompressMode.NONE
+                || length < PersistConfig.getCompressThreshold()) {
+            return copyOf(bytes, offset, length);
+        }
+
+        byte[] compressed = new byte[HEAD_MAX_LENGTH + LZ4_COMPRESSOR.maxCompressedLength(length)];
+        int compressedLength = LZ4_COMPRESSOR.compress(bytes, offset, length, compressed, HEAD_MAX_LENGTH);
+        int headLength = putHead(compressed, compressMode, length, compressedLength);
+        if (headLength + compressedLength >= length) {
+            return copyOf(bytes, offset, length);
+        }
+
+        byte[] result = new byte[headLength + compressedLength];
+        System.arraycopy(compressed, 0, result, 0, headLength);
+        System.arraycopy(compressed, HEAD_MAX_LENGTH, result, headLength, compressedLength);
+        return result;
+    }
+
+
+    /**
+     * 是否压缩帧
+     * @param flag 首字节
+     * @return
+     */
+    public static boolean isCompressed(byte flag) {
+        return PersistConfig.getType(flag) == Types.COMPRESSED;
+    }
+
+
+    /**
+     * 解压缩帧
+     * @param inputable 输入接口(已读取首字节)
+     * @param flag 首字节
+     * @return 解压后的输入
+     */
+    public static ByteArray decompress(Inputable inputable, byte flag) {
+
+        CompressMode compressMode = CompressMode.valueOf(PersistConfig.getExtra(flag));
+        if (compressMode != CompressMode.LZ4) {
+            throw new IllegalArgumentException("不支持的压缩方式:" + PersistConfig.getExtra(flag));
+        }
+
+        int length = BitUtils.getInt(inputable);
+        int compressedLength = BitUtils.getInt(inputable);
+        ByteArray compressed = inputable.getByteArray(compressedLength);
+
+        byte[] bytes = new byte[length];
+        LZ4_DECOMPRESSOR.decompress(compressed.getByteArr(), compressed.getStartIndex(), bytes, 0, length);
+        return new ByteArray(bytes);
+    }
+
+
+    /**
+     * 获取输入
+     * <br/>压缩帧将先解压
+     * @param bytes 字节数组
+     * @return
+     */
+    public static ByteArray toInput(byte[] bytes) {
+        ByteArray byteArray = new ByteArray(bytes);
+        if (bytes.length > 0 && isCompressed(bytes[0])) {
+            return decompress(byteArray, byteArray.getByte());
+        }
+        return byteArray;
+    }
+
+
+    // 写入帧头,返回帧头长度
+    private static int putHead(byte[] bytes, CompressMode compressMode, int length, int compressedLength) {
+        int index = 0;
+        bytes[index++] = (byte) (Types.COMPRESSED | compressMode.getFlag());
+        index = putInt(bytes, index, length);
+        index = putInt(bytes, index, compressedLength);
+        return index;
+    }
+
+
+    // 写入变长int
+    private static int putInt(byte[] bytes, int index, int intVal) {
+        while ((intVal & ~0x7F) != 0) {
+            bytes[index++] = (byte) ((intVal & 0x7F) | 0x80);
+            intVal >>>= 7;
+        }
+        bytes[index++] = (byte) intVal;
+        return index;
+    }
+
+
+    private static byte[] copyOf(byte[] bytes, int offset, int length) {
+        byte[] result = new byte[length];
+        System.arraycopy(bytes, offset, result, 0, length);
+        return result;
+    }
+
+}
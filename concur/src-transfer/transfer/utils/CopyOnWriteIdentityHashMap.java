@@ -0,0 +1,125 @@
+package transfer.utils;
+
+/**
+ * 写时复制的IdentityHashMap
+ * <br/>读取不加锁,只访问不可变的桶链;写入加锁,复制桶数组后整体发布
+ * <br/>适用于启动后很少修改的注册表
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class CopyOnWriteIdentityHashMap<K, V> {
+
+    private static final int DEFAULT_TABLE_SIZE = 1024;
+
+    private volatile Entry<K, V>[] buckets;
+
+    private final int indexMask;
+
+    public CopyOnWriteIdentityHashMap() {
+        this(DEFAULT_TABLE_SIZE);
+    }
+
+    public CopyOnWriteIdentityHashMap(int tableSize) {
+        this.indexMask = tableSize - 1;
+        this.buckets = new Entry[tableSize];
+    }
+
+
+    public final V get(K key) {
+        final Entry<K, V>[] buckets = this.buckets;
+        final int bucket = System.identityHashCode(key) & indexMask;
+
+        for (Entry<K, V> entry = buckets[bucket]; entry != null; entry = entry.next) {
+            if (key == entry.key) {
+                return entry.value;
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * 添加或替换
+     * @param key 键
+     * @param value 值
+     * @return 是否替换了旧值
+     */
+    public synchronized boolean put(K key, V value) {
+        return this.doPut(key, value, true) != null;
+    }
+
+
+    /**
+     * 不存在时添加
+     * @param key 键
+     * @param value 值
+     * @return 已存在的值,不存在时返回null
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        return this.doPut(key, value, false);
+    }
+
+
+    // 复制桶数组并替换目标桶链,返回旧值
+    private V doPut(K key, V value, boolean replace) {
+        final int bucket = System.identityHashCode(key) & indexMask;
+
+        Entry<K, V> head = this.buckets[bucket];
+        Entry<K, V> oldEntry = null;
+        for (Entry<K, V> entry = head; entry != null; entry = entry.next) {
+            if (key == entry.key) {
+                oldEntry = entry;
+                break;
+            }
+        }
+
+        if (oldEntry != null) {
+            if (!replace || oldEntry.value == value) {
+                return oldEntry.value;
+            }
+            // 重建旧值之前的链节点
+            Entry<K, V> newHead = new Entry<K, V>(key, value, oldEntry.next);
+            for (Entry<K, V> entry = head; entry != oldEntry; entry = entry.next) {
+                newHead = new Entry<K, V>(entry.key, entry.value, newHead);
+            }
+            head = newHead;
+        } else {
+            head = new Entry<K, V>(key, value, head);
+        }
+
+        Entry<K, V>[] newBuckets = new Entry[this.buckets.length];
+        System.arraycopy(this.buckets, 0, newBuckets, 0, newBuckets.length);
+        newBuckets[bucket] = head;
+        this.buckets = newBuckets;
+
+        return oldEntry != null ? oldEntry.value : null;
+    }
+
+
+    public int size() {
+        int size = 0;
+        for (Entry<K, V> bucket : this.buckets) {
+            for (Entry<K, V> entry = bucket; entry != null; entry = entry.next) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+
+    private static final class Entry<K, V> {
+
+        final K key;
+
+        final V value;
+
+        final Entry<K, V> next;
+
+        Entry(K key, V value, Entry<K, V> next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+}
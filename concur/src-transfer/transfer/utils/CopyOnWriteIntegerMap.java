@@ -0,0 +1,124 @@
+package transfer.utils;
+
+/**
+ * 写时复制的IntegerMap
+ * <br/>读取不加锁,只访问不可变的桶链;写入加锁,复制桶数组后整体发布
+ * <br/>适用于启动后很少修改的注册表
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class CopyOnWriteIntegerMap<V> {
+
+    private static final int DEFAULT_TABLE_SIZE = 1024;
+
+    private volatile Entry<V>[] buckets;
+
+    private final int indexMask;
+
+    public CopyOnWriteIntegerMap() {
+        this(DEFAULT_TABLE_SIZE);
+    }
+
+    public CopyOnWriteIntegerMap(int tableSize) {
+        this.indexMask = tableSize - 1;
+        this.buckets = new Entry[tableSize];
+    }
+
+
+    public final V get(int key) {
+        final Entry<V>[] buckets = this.buckets;
+
+        for (Entry<V> entry = buckets[key & indexMask]; entry != null; entry = entry.next) {
+            if (key == entry.key) {
+                return entry.value;
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * 添加或替换
+     * @param key 键
+     * @param value 值
+     * @return 是否替换了旧值
+     */
+    public synchronized boolean put(int key, V value) {
+        final int bucket = key & indexMask;
+
+        Entry<V> head = this.buckets[bucket];
+        Entry<V> oldEntry = null;
+        for (Entry<V> entry = head; entry != null; entry = entry.next) {
+            if (key == entry.key) {
+                oldEntry = entry;
+                break;
+            }
+        }
+
+        if (oldEntry != null) {
+            if (oldEntry.value == value) {
+                return true;
+            }
+            // 重建旧值之前的链节点
+            Entry<V> newHead = new Entry<V>(key, value, oldEntry.next);
+            for (Entry<V> entry = head; entry != oldEntry; entry = entry.next) {
+                newHead = new Entry<V>(entry.key, entry.value, newHead);
+            }
+            head = newHead;
+        } else {
+            head = new Entry<V>(key, value, head);
+        }
+
+        Entry<V>[] newBuckets = new Entry[this.buckets.length];
+        System.arraycopy(this.buckets, 0, newBuckets, 0, newBuckets.length);
+        newBuckets[bucket] = head;
+        this.buckets = newBuckets;
+
+        return oldEntry != null;
+    }
+
+
+    /**
+     * 获取最大的键
+     * @return 为空时返回-1
+     */
+    public int maxKey() {
+        int maxKey = -1;
+        for (Entry<V> bucket : this.buckets) {
+            for (Entry<V> entry = bucket; entry != null; entry = entry.next) {
+                if (entry.key > maxKey) {
+                    maxKey = entry.key;
+                }
+            }
+        }
+        return maxKey;
+    }
+
+
+    public int size() {
+        int size = 0;
+        for (Entry<V> bucket : this.buckets) {
+            for (Entry<V> entry = bucket; entry != null; entry = entry.next) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+
+    private static final class Entry<V> {
+
+        final int key;
+
+        final V value;
+
+        final Entry<V> next;
+
+        Entry(int key, V value, Entry<V> next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+}
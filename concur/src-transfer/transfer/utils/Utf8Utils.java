@@ -0,0 +1,220 @@
+package transfer.utils;
+
+import transfer.ByteArray;
+import transfer.Inputable;
+import transfer.Outputable;
+
+import java.nio.charset.Charset;
+
+/**
+ * UTF-8字符串编解码工具类
+ * <br/>编码时先计算字节长度,再分段写入Outputable,不生成中间字节数组;纯ASCII字符串直接按字节写入
+ * <br/>解码时通过Inputable#getByteArray直接读取原始字节,纯ASCII字符串不经过字符集解码
+ * <br/>可选开启短字符串驻留缓存,重复出现的短字符串(如物品名,键名)复用同一实例
+ */
+public class Utf8Utils {
+
+    /**
+     * UTF-8字符集
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 编码分段长度
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * 驻留缓存的最大字符串字节长度
+     */
+    public static final int MAX_INTERN_LENGTH = 32;
+
+    /**
+     * 线程复用的编码分段
+     */
+    private static final ThreadLocal<byte[]> LOCAL_CHUNK = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CHUNK_SIZE];
+        }
+    };
+
+    /**
+     * 短字符串驻留缓存,按字节哈希直接映射,冲突时覆盖
+     */
+    private static volatile String[] internCache;
+
+
+    /**
+     * 设置短字符串驻留缓存大小
+     * @param size 缓存槽数量(取不小于size的2的幂), 0为关闭
+     */
+    public static void setInternCacheSize(int size) {
+        if (size <= 0) {
+            internCache = null;
+            return;
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        internCache = new String[capacity];
+    }
+
+
+    /**
+     * 计算字符串的UTF-8字节长度
+     * <br/>不成对的代理字符按'?'计算,与String#getBytes一致
+     * @param string 字符串
+     * @return
+     */
+    public static int encodedLength(String string) {
+        int length = string.length();
+        int bytesLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytesLength += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                bytesLength += 2;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // 替换为'?'
+            } else {
+                bytesLength += 2;
+            }
+        }
+        return bytesLength;
+    }
+
+
+    /**
+     * 写入字符串(长度 + UTF-8字节)
+     * @param outputable 输出接口
+     * @param string 字符串
+     */
+    public static void putString(Outputable outputable, String string) {
+        int length = string.length();
+        int bytesLength = encodedLength(string);
+        BitUtils.putInt(outputable, bytesLength);
+        if (bytesLength == 0) {
+            return;
+        }
+
+        byte[] chunk = LOCAL_CHUNK.get();
+        int pos = 0;
+        if (bytesLength == length) {
+            // 每个字符一个字节:ASCII或不成对的代理字符
+            for (int i = 0; i < length; i++) {
+                if (pos == CHUNK_SIZE) {
+                    outputable.putBytes(chunk, 0, pos);
+                    pos = 0;
+                }
+                char c = string.charAt(i);
+                chunk[pos++] = c < 0x80 ? (byte) c : (byte) '?';
+            }
+            outputable.putBytes(chunk, 0, pos);
+            return;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (pos > CHUNK_SIZE - 4) {
+                outputable.putBytes(chunk, 0, pos);
+                pos = 0;
+            }
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                chunk[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[pos++] = (byte) (0xC0 | (c >> 6));
+                chunk[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                chunk[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                chunk[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                chunk[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                chunk[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                chunk[pos++] = (byte) '?';
+            } else {
+                chunk[pos++] = (byte) (0xE0 | (c >> 12));
+                chunk[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                chunk[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        outputable.putBytes(chunk, 0, pos);
+    }
+
+
+    /**
+     * 读取字符串(长度 + UTF-8字节)
+     * @param inputable 输入接口
+     * @return
+     */
+    public static String getString(Inputable inputable) {
+        int length = BitUtils.getInt(inputable);
+        if (length == 0) {
+            return "";
+        }
+
+        ByteArray byteArray = inputable.getByteArray(length);
+        byte[] bytes = byteArray.getByteArr();
+        int offset = byteArray.getStartIndex();
+
+        boolean ascii = true;
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            byte b = bytes[i];
+            if (b < 0) {
+                ascii = false;
+                break;
+            }
+            hash = 31 * hash + b;
+        }
+
+        if (!ascii) {
+            return new String(bytes, offset, length, UTF_8);
+        }
+
+        String[] cache = internCache;
+        if (cache == null || length > MAX_INTERN_LENGTH) {
+            return newAsciiString(bytes, offset, length);
+        }
+
+        int slot = (hash ^ (hash >>> 16)) & (cache.length - 1);
+        String cached = cache[slot];
+        if (cached != null && equalsAscii(cached, bytes, offset, length)) {
+            return cached;
+        }
+        String string = newAsciiString(bytes, offset, length);
+        cache[slot] = string;
+        return string;
+    }
+
+
+    // 构造ASCII字符串,不经过字符集解码
+    @SuppressWarnings("deprecation")
+    private static String newAsciiString(byte[] bytes, int offset, int length) {
+        return new String(bytes, 0, offset, length);
+    }
+
+
+    // 比较ASCII字符串与字节
+    private static boolean equalsAscii(String string, byte[] bytes, int offset, int length) {
+        if (string.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (string.charAt(i) != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,182 @@
+package utils.collections.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的计数布隆过滤器
+ * <br/>每个位置使用4位计数器(每个long存放16个),支持删除元素;计数达到15后饱和,不再增减
+ * <br/>mightContain返回false时元素一定不存在,返回true时可能存在
+ * <br/>删除从未添加过的元素会导致误判为不存在,调用方需保证只删除已添加的元素
+ * <br/>整数类型(Byte/Short/Integer/Long)按数值计算hash,相同数值的不同类型视为同一元素
+ */
+public class CountingBloomFilter {
+
+	/** 计数器位数 */
+	private static final int COUNTER_BITS = 4;
+
+	/** 每个long中计数器个数 */
+	private static final int COUNTERS_PER_WORD = 64 / COUNTER_BITS;
+
+	/** 计数器最大值(饱和值) */
+	private static final long MAX_COUNT = (1L << COUNTER_BITS) - 1;
+
+	/** 计数器 */
+	private final AtomicLongArray words;
+
+	/** 计数器个数 */
+	private final long counterCount;
+
+	/** hash函数个数 */
+	private final int hashCount;
+
+
+	/**
+	 * 构造方法
+	 * @param expectedInsertions 预计元素个数
+	 * @param fpp 期望误判率 (0, 1)
+	 */
+	public CountingBloomFilter(int expectedInsertions, double fpp) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("expectedInsertions must > 0");
+		}
+		if (fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("fpp must in (0, 1)");
+		}
+		long counters = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (counters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+		this.words = new AtomicLongArray(wordCount);
+		this.counterCount = (long) wordCount * COUNTERS_PER_WORD;
+		this.hashCount = Math.max(1, (int) Math.round((double) this.counterCount / expectedInsertions * Math.log(2)));
+	}
+
+
+	/**
+	 * 添加元素
+	 * @param key 元素
+	 */
+	public void add(Object key) {
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= this.hashCount; i++) {
+			this.increment(this.index(h1 + i * h2));
+		}
+	}
+
+
+	/**
+	 * 删除元素
+	 * @param key 已添加过的元素
+	 */
+	public void remove(Object key) {
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= this.hashCount; i++) {
+			this.decrement(this.index(h1 + i * h2));
+		}
+	}
+
+
+	/**
+	 * 元素是否可能存在
+	 * @param key 元素
+	 * @return false 一定不存在; true 可能存在
+	 */
+	public boolean mightContain(Object key) {
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= this.hashCount; i++) {
+			long index = this.index(h1 + i * h2);
+			if (this.count(index) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * 清空
+	 */
+	public void clear() {
+		for (int i = 0; i < this.words.length(); i++) {
+			this.words.set(i, 0L);
+		}
+	}
+
+
+	// 计数器位置
+	private long index(int combinedHash) {
+		// 取正数
+		return (combinedHash & Integer.MAX_VALUE) % this.counterCount;
+	}
+
+
+	private long count(long index) {
+		long word = this.words.get((int) (index / COUNTERS_PER_WORD));
+		int shift = (int) (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+		return (word >>> shift) & MAX_COUNT;
+	}
+
+
+	private void increment(long index) {
+		int wordIndex = (int) (index / COUNTERS_PER_WORD);
+		int shift = (int) (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+		for (;;) {
+			long word = this.words.get(wordIndex);
+			long count = (word >>> shift) & MAX_COUNT;
+			if (count == MAX_COUNT) {
+				return;
+			}
+			if (this.words.compareAndSet(wordIndex, word, word + (1L << shift))) {
+				return;
+			}
+		}
+	}
+
+
+	private void decrement(long index) {
+		int wordIndex = (int) (index / COUNTERS_PER_WORD);
+		int shift = (int) (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+		for (;;) {
+			long word = this.words.get(wordIndex);
+			long count = (word >>> shift) & MAX_COUNT;
+			// 饱和后无法确定实际计数,不再减少
+			if (count == 0 || count == MAX_COUNT) {
+				return;
+			}
+			if (this.words.compareAndSet(wordIndex, word, word - (1L << shift))) {
+				return;
+			}
+		}
+	}
+
+
+	// 64位hash, 高低32位作为两个独立的hash
+	private static long hash(Object key) {
+		long value;
+		if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+			value = ((Number) key).longValue();
+		} else {
+			value = key.hashCode();
+		}
+		// MurmurHash3 fmix64
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	public long getCounterCount() {
+		return counterCount;
+	}
+
+}
@@ -64,6 +64,9 @@ public class AsmAccessHelper implements Opcodes {
 	
 	// putFieldsMthodMap缓存
 	private static Map<Class<?>, Map<Method, List<String>>> putFieldsMthodMapCache = new ConcurrentHashMap<Class<?>, Map<Method, List<String>>>();
+
+	// getFieldsMthodMap缓存
+	private static Map<Class<?>, Map<Method, List<String>>> getFieldsMthodMapCache = new ConcurrentHashMap<Class<?>, Map<Method, List<String>>>();
 	
 	
 	/**
@@ -503,6 +506,177 @@ public class AsmAccessHelper implements Opcodes {
 
 
 
+	/**
+	 * 获取读取属性的所有调用方法
+	 * @param clazz 类
+	 * @return 方法 - 读取的属性列表
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<Method, List<String>> getGetFieldsCallHierarchyMethodMap(final Class<?> clazz) {
+		// 查找缓存
+		if (getFieldsMthodMapCache.containsKey(clazz)) {
+			return getFieldsMthodMapCache.get(clazz);
+		}
+
+		ClassReader reader;
+
+		try {
+			reader = new ClassReader(clazz.getName());
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new IllegalStateException(e);
+		}
+
+		String internalClassName = Type.getInternalName(clazz);
+
+		Map<Method, List<String>> getFieldsMethodMap = new HashMap<Method, List<String>>();
+		Map<Method, Set<Method>> callHierarchyMap = new HashMap<Method, Set<Method>>();// key <--call-- value
+
+		ClassNode cn = new ClassNode();
+		reader.accept(cn, 0);
+		List<MethodNode> methodList = cn.methods;
+		for (MethodNode md : methodList) {
+			Method method = null;
+			if (md.instructions != null && !"<init>".equals(md.name)) {
+				for (ListIterator<AbstractInsnNode> it = md.instructions.iterator();it.hasNext();) {
+					AbstractInsnNode node = it.next();
+					if (node instanceof FieldInsnNode) {
+						FieldInsnNode fieldNode = ((FieldInsnNode) node);
+						if (fieldNode.getOpcode() == Opcodes.GETFIELD && fieldNode.owner.equals(internalClassName)) {
+							if (method == null) {
+								method = toClassMethod(clazz, md);
+							}
+							if (method == null) {
+								continue;
+							}
+							List<String> fields = getFieldsMethodMap.get(method);
+							if (fields == null) {
+								fields = new ArrayList<String>();
+								getFieldsMethodMap.put(method, fields);
+							}
+							if (!fields.contains(fieldNode.name)) {
+								fields.add(fieldNode.name);
+							}
+						}
+					} else if (node instanceof MethodInsnNode) {
+						MethodInsnNode methodNode = (MethodInsnNode) node;
+						if (methodNode.owner.equals(internalClassName)) {
+							if (method == null) {
+								method = toClassMethod(clazz, md);
+							}
+							Method calledMethod = toClassMethod(clazz, methodNode.name, methodNode.desc);
+							if (method == null || calledMethod == null) {
+								continue;
+							}
+							Set<Method> callMethods = callHierarchyMap.get(calledMethod);
+							if (callMethods == null) {
+								callMethods = new HashSet<Method>();
+								callHierarchyMap.put(calledMethod, callMethods);
+							}
+							callMethods.add(method);
+						}
+					}
+				}
+			}
+		}
+
+		// 处理callHierarchy,被调用方法读取的属性同时记到所有直接或间接调用它的public方法上
+		Map<Method, List<String>> result = new HashMap<Method, List<String>>(getFieldsMethodMap);
+		for (Map.Entry<Method, List<String>> getFieldsMethodEntry : getFieldsMethodMap.entrySet()) {
+			Set<Method> visited = new HashSet<Method>();
+			LinkedList<Method> callMethods = new LinkedList<Method>();
+			callMethods.add(getFieldsMethodEntry.getKey());
+			while (!callMethods.isEmpty()) {
+				Method calledMethod = callMethods.poll();
+				if (!visited.add(calledMethod)) {
+					continue;
+				}
+				if (calledMethod != getFieldsMethodEntry.getKey() && Modifier.isPublic(calledMethod.getModifiers())) {
+					List<String> fields = result.get(calledMethod);
+					if (fields == null) {
+						fields = new ArrayList<String>();
+						result.put(calledMethod, fields);
+					} else if (fields == getFieldsMethodMap.get(calledMethod)) {
+						fields = new ArrayList<String>(fields);
+						result.put(calledMethod, fields);
+					}
+					for (String field : getFieldsMethodEntry.getValue()) {
+						if (!fields.contains(field)) {
+							fields.add(field);
+						}
+					}
+				}
+				Set<Method> callers = callHierarchyMap.get(calledMethod);
+				if (callers != null) {
+					callMethods.addAll(callers);
+				}
+			}
+		}
+
+		getFieldsMthodMapCache.put(clazz, result);
+
+		return result;
+	}
+
+
+	/**
+	 * 获取只给属性赋值的set方法
+	 * <br/>方法体只有 this.field = 参数; return; 无条件赋值且不会抛出异常
+	 * @param clazz 类
+	 * @return 方法 - 赋值的属性名
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<Method, String> getSimpleSetterMethodMap(final Class<?> clazz) {
+		ClassReader reader;
+
+		try {
+			reader = new ClassReader(clazz.getName());
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new IllegalStateException(e);
+		}
+
+		String internalClassName = Type.getInternalName(clazz);
+
+		Map<Method, String> setterMethodMap = new HashMap<Method, String>();
+
+		ClassNode cn = new ClassNode();
+		reader.accept(cn, 0);
+		List<MethodNode> methodList = cn.methods;
+		for (MethodNode md : methodList) {
+			if (md.instructions == null || (md.access & ACC_STATIC) != 0 || Type.getArgumentTypes(md.desc).length != 1) {
+				continue;
+			}
+
+			// 去掉标签和行号等伪指令
+			List<AbstractInsnNode> insns = new ArrayList<AbstractInsnNode>(4);
+			for (ListIterator<AbstractInsnNode> it = md.instructions.iterator();it.hasNext();) {
+				AbstractInsnNode node = it.next();
+				if (node.getOpcode() >= 0) {
+					insns.add(node);
+				}
+			}
+			if (insns.size() != 4
+					|| insns.get(0).getOpcode() != ALOAD || ((VarInsnNode) insns.get(0)).var != 0
+					|| !(insns.get(1) instanceof VarInsnNode) || ((VarInsnNode) insns.get(1)).var != 1
+					|| insns.get(2).getOpcode() != PUTFIELD
+					|| insns.get(3).getOpcode() != RETURN) {
+				continue;
+			}
+			FieldInsnNode fieldNode = (FieldInsnNode) insns.get(2);
+			if (!fieldNode.owner.equals(internalClassName)) {
+				continue;
+			}
+			Method method = toClassMethod(clazz, md);
+			if (method != null) {
+				setterMethodMap.put(method, fieldNode.name);
+			}
+		}
+
+		return setterMethodMap;
+	}
+
+
 	private static Method toClassMethod(Class<?> clazz, MethodNode md) {
 		return toClassMethod(clazz, md.name, md.desc);
 	}